@@ -41,6 +41,8 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javassist.CannotCompileException;
 import javassist.ClassPool;
@@ -63,6 +65,8 @@ public class ClassFactory extends ClassLoader {
 			throws ClassNotFoundException {
 		if (cl == null)
 			return Class.forName(name);
+		if (cl instanceof ClassFactory)
+			return ((ClassFactory) cl).classForName(name);
 		synchronized (cl) {
 			return Class.forName(name, true, cl);
 		}
@@ -71,6 +75,8 @@ public class ClassFactory extends ClassLoader {
 	private Reference<ClassPool> cp;
 	private File output;
 	private List<ClassLoader> alternatives = new ArrayList<ClassLoader>();
+	/** Initialised classes by name, read without locking. */
+	private final ConcurrentMap<String, Class<?>> loaded = new ConcurrentHashMap<String, Class<?>>();
 
 	/**
 	 * Creates a new Class Factory using the current context class loader.
@@ -90,12 +96,18 @@ public class ClassFactory extends ClassLoader {
 		dir.mkdirs();
 	}
 
-	public synchronized Class<?> classForName(String name)
-			throws ClassNotFoundException {
-		return Class.forName(name, true, this);
+	public Class<?> classForName(String name) throws ClassNotFoundException {
+		Class<?> type = loaded.get(name);
+		if (type != null)
+			return type;
+		synchronized (this) {
+			type = Class.forName(name, true, this);
+		}
+		loaded.putIfAbsent(name, type);
+		return type;
 	}
 
-	public synchronized Object newInstance(String name) throws ClassNotFoundException,
+	public Object newInstance(String name) throws ClassNotFoundException,
 			InstantiationException, IllegalAccessException {
 		return classForName(name).newInstance();
 	}
@@ -44,8 +44,12 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static java.lang.reflect.Modifier.isAbstract;
 
@@ -77,6 +81,9 @@ public class ClassResolver {
 	private final RoleMapper mapper;
 	private final Class<?> blank;
 	private final ConcurrentMap<Set<URI>, Class<?>> multiples = new ConcurrentHashMap<Set<URI>, Class<?>>();
+	private final ConcurrentMap<URI, ConcurrentMap<Set<URI>, Class<?>>> individuals = new ConcurrentHashMap<URI, ConcurrentMap<Set<URI>, Class<?>>>();
+	/** Proxy classes by name, composed once while other threads wait. */
+	private final ConcurrentMap<String, Future<Class<?>>> composed = new ConcurrentHashMap<String, Future<Class<?>>>();
 	private final BehaviourProviderService behaviourService;
 
 	public ClassResolver() throws ObjectStoreConfigException {
@@ -156,11 +163,24 @@ public class ClassResolver {
 		return resolveBlankEntity(types);
 	}
 
-	private Class<?> resolveIndividualEntity(URI resource, Collection<URI> types) {
+	private Class<?> resolveIndividualEntity(URI resource, Set<URI> types) {
+		ConcurrentMap<Set<URI>, Class<?>> map = individuals.get(resource);
+		if (map == null) {
+			map = new ConcurrentHashMap<Set<URI>, Class<?>>();
+			ConcurrentMap<Set<URI>, Class<?>> o = individuals.putIfAbsent(resource, map);
+			if (o != null) {
+				map = o;
+			}
+		}
+		Class<?> proxy = map.get(types);
+		if (proxy != null)
+			return proxy;
 		Collection<Class<?>> roles = new ArrayList<Class<?>>();
 		roles = mapper.findIndividualRoles(resource, roles);
 		roles = mapper.findRoles(types, roles);
-		return resolveRoles(roles);
+		proxy = resolveRoles(roles);
+		map.putIfAbsent(types, proxy);
+		return proxy;
 	}
 
 	private Class<?> resolveRoles(Collection<Class<?>> roles) {
@@ -177,7 +197,36 @@ public class ClassResolver {
 		}
 	}
 
-	private Class<?> getComposedBehaviours(String className,
+	private Class<?> getComposedBehaviours(final String className,
+			final Collection<Class<?>> roles) throws Exception {
+		Future<Class<?>> future = composed.get(className);
+		if (future == null) {
+			FutureTask<Class<?>> task = new FutureTask<Class<?>>(
+					new Callable<Class<?>>() {
+						public Class<?> call() throws Exception {
+							return loadComposedBehaviours(className, roles);
+						}
+					});
+			future = composed.putIfAbsent(className, task);
+			if (future == null) {
+				future = task;
+				task.run();
+			}
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			composed.remove(className, future);
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+
+	private Class<?> loadComposedBehaviours(String className,
 			Collection<Class<?>> roles) throws Exception {
 		synchronized (cp) {
 			try {
@@ -0,0 +1,79 @@
+package org.openrdf.repository.object.composition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.repository.object.managers.RoleMapper;
+
+public class ClassResolverTest extends TestCase {
+
+	public interface Person {
+	}
+
+	public interface Agent {
+	}
+
+	private ValueFactory vf = ValueFactoryImpl.getInstance();
+	private ClassResolver resolver;
+	private URI person;
+	private URI agent;
+
+	@Override
+	protected void setUp() throws Exception {
+		RoleMapper mapper = new RoleMapper();
+		person = vf.createURI("urn:test:Person");
+		agent = vf.createURI("urn:test:Agent");
+		mapper.addConcept(Person.class, person);
+		mapper.addConcept(Agent.class, agent);
+		resolver = new ClassResolver(mapper, getClass().getClassLoader());
+	}
+
+	public void testSameClass() throws Exception {
+		Class<?> proxy = resolver.resolveBlankEntity(Collections.singleton(person));
+		assertTrue(Person.class.isAssignableFrom(proxy));
+		Set<URI> types = new HashSet<URI>();
+		types.add(person);
+		assertSame(proxy, resolver.resolveEntity(vf.createURI("urn:test:me"), types));
+	}
+
+	public void testConcurrentResolution() throws Exception {
+		final Set<URI> types = new HashSet<URI>();
+		types.add(person);
+		types.add(agent);
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Class<?>>> results = new ArrayList<Future<Class<?>>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<Class<?>>() {
+					public Class<?> call() throws Exception {
+						start.await();
+						return resolver.resolveBlankEntity(new HashSet<URI>(types));
+					}
+				}));
+			}
+			start.countDown();
+			Class<?> proxy = results.get(0).get();
+			assertTrue(Person.class.isAssignableFrom(proxy));
+			assertTrue(Agent.class.isAssignableFrom(proxy));
+			for (Future<Class<?>> result : results) {
+				assertSame(proxy, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package org.openrdf.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * How the values of an @Iri annotated property are cached by its object. A
+ * cache policy configured for the predicate in the
+ * {@link org.openrdf.repository.object.config.ObjectRepositoryConfig} takes
+ * precedence.
+ * 
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target( { ElementType.METHOD, ElementType.FIELD })
+public @interface Cached {
+
+	/**
+	 * Properties with this many values or more are not cached completely.
+	 */
+	int limit() default 10;
+
+	/**
+	 * Loads and caches all values on the first read, regardless of the limit.
+	 */
+	boolean eager() default false;
+
+	/**
+	 * Milliseconds the cached values are used, 0 to use them until they are
+	 * refreshed.
+	 */
+	long ttl() default 0;
+}
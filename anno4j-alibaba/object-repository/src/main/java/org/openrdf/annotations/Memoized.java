@@ -0,0 +1,30 @@
+package org.openrdf.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Memoizes the result of a method annotated with @Sparql by the connection,
+ * for each combination of arguments. A result is forgotten when a predicate
+ * the query reads from is written through the connection, or committed through
+ * another connection of the same repository, and when the connection rolls
+ * back. Writes that bypass the object repository are seen when the ttl
+ * expires.
+ * 
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Memoized {
+
+	/**
+	 * Number of argument combinations whose results are kept.
+	 */
+	int size() default 10;
+
+	/**
+	 * Milliseconds a result is used, 0 to use it until it is invalidated.
+	 */
+	long ttl() default 0;
+}
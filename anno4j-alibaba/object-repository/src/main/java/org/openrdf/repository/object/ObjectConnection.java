@@ -30,32 +30,56 @@ package org.openrdf.repository.object;
 
 import static org.openrdf.query.QueryLanguage.SPARQL;
 import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.ConvertingIteration;
+import info.aduna.iteration.Iteration;
 import info.aduna.iteration.LookAheadIteration;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.GraphQuery;
 import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.Query;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.TupleQuery;
+import org.openrdf.query.Update;
+import org.openrdf.query.UpdateExecutionException;
+import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.query.parser.ParsedBooleanQuery;
+import org.openrdf.query.parser.ParsedGraphQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.contextaware.ContextAwareConnection;
+import org.openrdf.repository.object.advisers.helpers.MemoizedResults;
 import org.openrdf.repository.object.exceptions.BlobConflictException;
 import org.openrdf.repository.object.exceptions.BlobStoreException;
 import org.openrdf.repository.object.exceptions.ObjectPersistException;
@@ -64,8 +88,14 @@ import org.openrdf.repository.object.result.ObjectIterator;
 import org.openrdf.repository.object.traits.Mergeable;
 import org.openrdf.repository.object.traits.RDFObjectBehaviour;
 import org.openrdf.repository.object.traits.Refreshable;
+import org.openrdf.repository.sail.SailBooleanQuery;
+import org.openrdf.repository.sail.SailGraphQuery;
+import org.openrdf.repository.sail.SailRepositoryConnection;
+import org.openrdf.repository.sail.SailTupleQuery;
 import org.openrdf.result.Result;
 import org.openrdf.result.impl.ResultImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
 import org.openrdf.store.blob.BlobObject;
 import org.openrdf.store.blob.BlobStore;
 import org.openrdf.store.blob.BlobVersion;
@@ -88,6 +118,13 @@ public class ObjectConnection extends ContextAwareConnection {
 		ObjectIterator.close(iter);
 	}
 
+	/**
+	 * Numbers of resources the shared object queries are bound to, a chunk of
+	 * resources is padded to the next one.
+	 */
+	private static final int[] CHUNK_SIZES = { 1, 16, 128, 1024 };
+	/** Maximum number of resources bound to one object query. */
+	private static final int VALUES_CHUNK = CHUNK_SIZES[CHUNK_SIZES.length - 1];
 	final Logger logger = LoggerFactory.getLogger(ObjectConnection.class);
 	private final ObjectRepository repository;
 	private String language;
@@ -95,11 +132,14 @@ public class ObjectConnection extends ContextAwareConnection {
 	private final ObjectFactory of;
 	private final Map<Object, Resource> assigned = new IdentityHashMap<Object, Resource>();
 	private final Set<Resource> merged = new HashSet<Resource>();
-	private final Map<Class<?>, Map<Integer, ObjectQuery>> queries = new HashMap<Class<?>, Map<Integer, ObjectQuery>>();
+	private final Map<Resource, Model> replacing = new HashMap<Resource, Model>();
+	private boolean updating;
 	private final BlobStore blobs;
 	private URI versionBundle;
 	private BlobVersion blobVersion;
 	private final Map<Resource, RDFObject> cachedObjects = new WeakValueMap<Resource, RDFObject>(512);
+	private final MemoizedResults memoized = new MemoizedResults();
+	private final Set<URI> written = new HashSet<URI>();
 
 	protected ObjectConnection(ObjectRepository repository,
 			RepositoryConnection connection, ObjectFactory factory,
@@ -111,6 +151,7 @@ public class ObjectConnection extends ContextAwareConnection {
 		this.blobs = blobs;
 		types.setConnection(this);
 		factory.setObjectConnection(this);
+		repository.addMemoizedResults(memoized);
 	}
 
 	@Override
@@ -153,7 +194,9 @@ public class ObjectConnection extends ContextAwareConnection {
 		try {
 			super.close();
 		} finally {
+			repository.removeMemoizedResults(memoized);
 			cachedObjects.clear();
+			memoized.clear();
 		}
 	}
 
@@ -168,6 +211,10 @@ public class ObjectConnection extends ContextAwareConnection {
 		}
 		super.rollback();
 		cachedObjects.clear();
+		memoized.clear();
+		synchronized (written) {
+			written.clear();
+		}
 	}
 
 	@Override
@@ -182,6 +229,7 @@ public class ObjectConnection extends ContextAwareConnection {
 					}
 				}
 				super.commit();
+				publishWritten();
 				if (blobVersion != null) {
 					blobVersion.commit();
 					blobVersion = null;
@@ -224,9 +272,182 @@ public class ObjectConnection extends ContextAwareConnection {
 			}
 		} else {
 			super.setAutoCommit(auto);
+			if (auto) {
+				publishWritten();
+			}
 		}
 	}
 
+	/**
+	 * Results of the methods with @Sparql and @Memoized evaluated by this
+	 * connection. They are invalidated when the predicates the methods read
+	 * are written through this connection or committed through another
+	 * connection of the repository, and when it rolls back.
+	 */
+	public MemoizedResults getMemoizedResults() {
+		return memoized;
+	}
+
+	@Override
+	public void add(Resource subject, URI predicate, Value object,
+			Resource... contexts) throws RepositoryException {
+		super.add(subject, predicate, object, contexts);
+		written(predicate);
+	}
+
+	@Override
+	public void add(Statement st, Resource... contexts)
+			throws RepositoryException {
+		super.add(st, contexts);
+		written(st.getPredicate());
+	}
+
+	@Override
+	public <E extends Exception> void add(
+			Iteration<? extends Statement, E> statements, Resource... contexts)
+			throws RepositoryException, E {
+		Set<URI> predicates = new HashSet<URI>();
+		super.add(record(statements, predicates), contexts);
+		written(predicates);
+	}
+
+	@Override
+	public void remove(Resource subject, URI predicate, Value object,
+			Resource... contexts) throws RepositoryException {
+		super.remove(subject, predicate, object, contexts);
+		written(predicate);
+	}
+
+	@Override
+	public void remove(Statement st, Resource... contexts)
+			throws RepositoryException {
+		super.remove(st, contexts);
+		written(st.getPredicate());
+	}
+
+	@Override
+	public <E extends Exception> void remove(
+			Iteration<? extends Statement, E> statements, Resource... contexts)
+			throws RepositoryException, E {
+		Set<URI> predicates = new HashSet<URI>();
+		super.remove(record(statements, predicates), contexts);
+		written(predicates);
+	}
+
+	@Override
+	public void clear(Resource... contexts) throws RepositoryException {
+		super.clear(contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public Update prepareUpdate(QueryLanguage ql, String update, String baseURI)
+			throws MalformedQueryException, RepositoryException {
+		final Update delegate = super.prepareUpdate(ql, update, baseURI);
+		return new Update() {
+			public void execute() throws UpdateExecutionException {
+				delegate.execute();
+				try {
+					written((URI) null);
+				} catch (RepositoryException e) {
+					throw new UpdateExecutionException(e);
+				}
+			}
+
+			public void setBinding(String name, Value value) {
+				delegate.setBinding(name, value);
+			}
+
+			public void removeBinding(String name) {
+				delegate.removeBinding(name);
+			}
+
+			public void clearBindings() {
+				delegate.clearBindings();
+			}
+
+			public BindingSet getBindings() {
+				return delegate.getBindings();
+			}
+
+			public void setDataset(Dataset dataset) {
+				delegate.setDataset(dataset);
+			}
+
+			public Dataset getDataset() {
+				return delegate.getDataset();
+			}
+
+			public void setIncludeInferred(boolean includeInferred) {
+				delegate.setIncludeInferred(includeInferred);
+			}
+
+			public boolean getIncludeInferred() {
+				return delegate.getIncludeInferred();
+			}
+		};
+	}
+
+	@Override
+	public void add(File file, String baseURI, RDFFormat dataFormat,
+			Resource... contexts) throws IOException, RDFParseException,
+			RepositoryException {
+		super.add(file, baseURI, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(File file, RDFFormat dataFormat, Resource... contexts)
+			throws IOException, RDFParseException, RepositoryException {
+		super.add(file, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(InputStream in, String baseURI, RDFFormat dataFormat,
+			Resource... contexts) throws IOException, RDFParseException,
+			RepositoryException {
+		super.add(in, baseURI, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(InputStream in, RDFFormat dataFormat, Resource... contexts)
+			throws IOException, RDFParseException, RepositoryException {
+		super.add(in, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(Reader reader, String baseURI, RDFFormat dataFormat,
+			Resource... contexts) throws IOException, RDFParseException,
+			RepositoryException {
+		super.add(reader, baseURI, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(Reader reader, RDFFormat dataFormat, Resource... contexts)
+			throws IOException, RDFParseException, RepositoryException {
+		super.add(reader, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(URL url, String baseURI, RDFFormat dataFormat,
+			Resource... contexts) throws IOException, RDFParseException,
+			RepositoryException {
+		super.add(url, baseURI, dataFormat, contexts);
+		written((URI) null);
+	}
+
+	@Override
+	public void add(URL url, RDFFormat dataFormat, Resource... contexts)
+			throws IOException, RDFParseException, RepositoryException {
+		super.add(url, dataFormat, contexts);
+		written((URI) null);
+	}
+
 	/**
 	 * The assign language for this connection, if any.
 	 *
@@ -316,11 +537,24 @@ public class ObjectConnection extends ContextAwareConnection {
 		if (autoCommit) {
 			setAutoCommit(false);
 		}
+		Model stored = null;
+		if (updating) {
+			stored = getStatements(resource, null, null, false).addTo(
+					new LinkedHashModel());
+		}
+		boolean replace = stored != null && !stored.isEmpty();
+		if (replace) {
+			synchronized (replacing) {
+				replacing.put(resource, stored);
+			}
+		}
 		try {
 			Class<?> proxy = entity.getClass();
 			Set<URI> list = getTypes(proxy, new HashSet<URI>(4));
 			for (URI type : list) {
-				types.addTypeStatement(resource, type);
+				if (!replace || !stored.contains(resource, RDF.TYPE, type)) {
+					types.addTypeStatement(resource, type);
+				}
 			}
 			Object result = of.createObject(resource, list);
 			if (result instanceof Mergeable) {
@@ -331,6 +565,11 @@ public class ObjectConnection extends ContextAwareConnection {
 			}
 			cachedObjects.remove(resource);
 		} finally {
+			if (replace) {
+				synchronized (replacing) {
+					replacing.remove(resource);
+				}
+			}
 			if (autoCommit && !isAutoCommit()) {
 				rollback();
 				setAutoCommit(true);
@@ -338,6 +577,76 @@ public class ObjectConnection extends ContextAwareConnection {
 		}
 	}
 
+	/**
+	 * Imports the instance like {@link #addObject(Object)}, but replaces the
+	 * stored values of the properties of a resource already in the store
+	 * instead of adding to them. Only the statements of changed values are
+	 * removed or added, all in one transaction. Properties with a null value
+	 * are left unchanged.
+	 *
+	 * @return the given instance's {@link Resource} identifier or
+	 *         {@link Literal} representation
+	 */
+	public Value updateObject(Object instance) throws RepositoryException {
+		if (instance instanceof RDFObjectBehaviour) {
+			RDFObjectBehaviour support = (RDFObjectBehaviour) instance;
+			Object entity = support.getBehaviourDelegate();
+			if (entity != instance)
+				return updateObject(entity);
+		}
+		Class<?> type = instance.getClass();
+		if (instance instanceof RDFObject
+				&& ((RDFObject) instance).getObjectConnection() == this)
+			return ((RDFObject) instance).getResource();
+		if (RDFObject.class.isAssignableFrom(type) || isEntity(type)) {
+			Resource resource = assignResource(instance);
+			updateObject(resource, instance);
+			return resource;
+		}
+		return addObject(instance);
+	}
+
+	/**
+	 * Imports the entity using the given handle, replacing the stored values
+	 * of its properties.
+	 *
+	 * @see #updateObject(Object)
+	 */
+	public void updateObject(Resource resource, Object entity)
+			throws RepositoryException {
+		boolean nested = updating;
+		updating = true;
+		try {
+			addObject(resource, entity);
+		} finally {
+			updating = nested;
+		}
+	}
+
+	/**
+	 * Whether the properties of the resource are currently being replaced by
+	 * {@link #updateObject(Object)}.
+	 */
+	public boolean isReplacing(Resource resource) {
+		synchronized (replacing) {
+			return replacing.containsKey(resource);
+		}
+	}
+
+	/**
+	 * The explicit statements of a resource being replaced by
+	 * {@link #updateObject(Object)}, read in one request when the update
+	 * began and kept current by the property sets that replace their values.
+	 *
+	 * @return the stored statements, or null if the resource is not being
+	 *         replaced
+	 */
+	public Model getReplacedStatements(Resource resource) {
+		synchronized (replacing) {
+			return replacing.get(resource);
+		}
+	}
+
 	/**
 	 * Explicitly adds the concept to the entity.
 	 *
@@ -564,11 +873,12 @@ public class ObjectConnection extends ContextAwareConnection {
 	 *
 	 * @see #addDesignation(Object, Class)
 	 */
-	public synchronized <T> Result<T> getObjects(Class<T> concept)
+	public <T> Result<T> getObjects(Class<T> concept)
 			throws RepositoryException,
 			QueryEvaluationException {
 		try {
-			return getObjectQuery(concept, 0).evaluate(concept);
+			return createObjectQuery(prepareObjectQuery(concept, 0)).evaluate(
+					concept);
 		} catch (MalformedQueryException e) {
 			throw new AssertionError(e);
 		}
@@ -587,41 +897,84 @@ public class ObjectConnection extends ContextAwareConnection {
 	/**
 	 * Loads the list of resources assumed to implement the given concept. The
 	 * concept must be a named concept and cannot be mapped to rdfs:Resource.
+	 * Many resources are loaded in chunks of up to 1024. Each chunk is padded
+	 * to one of a few sizes, whose queries are parsed once and shared by all
+	 * connections of the repository.
 	 */
-	public synchronized <T> Result<T> getObjects(final Class<T> concept,
+	public <T> Result<T> getObjects(final Class<T> concept,
 			Resource... resources) throws RepositoryException,
 			QueryEvaluationException {
-		try {
-			int size = resources.length;
-			ObjectQuery query = getObjectQuery(concept, size);
-			if (size == 1) {
-				query.setBinding(ObjectFactory.VAR_PREFIX, resources[0]);
-			} else if (size > 1) {
-				for (int i = 0; i < size; i++) {
-					query.setBinding(ObjectFactory.VAR_PREFIX + i, resources[i]);
-				}
+		if (resources.length == 0)
+			return getObjects(concept);
+		final Map<Resource, Integer> missing = new LinkedHashMap<Resource, Integer>();
+		final List<List<Resource>> groups = new ArrayList<List<Resource>>();
+		List<Resource> values = null;
+		for (Resource resource : resources) {
+			Integer count = missing.get(resource);
+			missing.put(resource, count == null ? 1 : count + 1);
+			if (count != null) {
+				continue;
+			} else if (values == null || values.size() >= VALUES_CHUNK) {
+				groups.add(values = new ArrayList<Resource>());
 			}
-			final List<Resource> list = new ArrayList<Resource>(size);
-			list.addAll(Arrays.asList(resources));
-			CloseableIteration<T, QueryEvaluationException> iter;
-			final Result<T> result = query.evaluate(concept);
-			iter = new LookAheadIteration<T, QueryEvaluationException>() {
-				@Override
-				protected T getNextElement() throws QueryEvaluationException {
+			values.add(resource);
+		}
+		final Iterator<List<Resource>> chunks = groups.iterator();
+		final Result<T> first = evaluateObjects(concept, chunks.next());
+		CloseableIteration<T, QueryEvaluationException> iter;
+		iter = new LookAheadIteration<T, QueryEvaluationException>() {
+			private Result<T> result = first;
+
+			@Override
+			protected T getNextElement() throws QueryEvaluationException {
+				while (result != null) {
 					T next = result.next();
 					if (next != null) {
-						list.remove(((RDFObject) next).getResource());
+						Resource resource = ((RDFObject) next).getResource();
+						Integer count = missing.remove(resource);
+						if (count == null) {
+							// the padding of a chunk repeats its last resource
+							continue;
+						} else if (count > 1) {
+							missing.put(resource, count - 1);
+						}
 						return next;
 					}
-					if (!list.isEmpty())
-						return (T) cache(of.createObject(list.remove(0)));
+					result.close();
+					result = null;
+					if (chunks.hasNext()) {
+						try {
+							result = evaluateObjects(concept, chunks.next());
+						} catch (RepositoryException e) {
+							throw new QueryEvaluationException(e);
+						}
+					}
+				}
+				if (missing.isEmpty())
 					return null;
+				Iterator<Map.Entry<Resource, Integer>> entries = missing
+						.entrySet().iterator();
+				Map.Entry<Resource, Integer> entry = entries.next();
+				if (entry.getValue() > 1) {
+					entry.setValue(entry.getValue() - 1);
+				} else {
+					entries.remove();
 				}
-			};
-			return new ResultImpl<T>(iter);
-		} catch (MalformedQueryException e) {
-			throw new AssertionError(e);
-		}
+				return (T) cache(of.createObject(entry.getKey()));
+			}
+
+			@Override
+			protected void handleClose() throws QueryEvaluationException {
+				try {
+					if (result != null) {
+						result.close();
+					}
+				} finally {
+					super.handleClose();
+				}
+			}
+		};
+		return new ResultImpl<T>(iter);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -701,23 +1054,168 @@ public class ObjectConnection extends ContextAwareConnection {
 		return cachedObjects.get(resource);
 	}
 
-	/** method and result synchronised on this */
-	private <T> ObjectQuery getObjectQuery(Class<T> concept,
-			int length) throws MalformedQueryException,
+	private <T> Result<T> evaluateObjects(Class<T> concept,
+			List<Resource> resources) throws RepositoryException,
+			QueryEvaluationException {
+		int size = VALUES_CHUNK;
+		for (int chunkSize : CHUNK_SIZES) {
+			if (chunkSize >= resources.size()) {
+				size = chunkSize;
+				break;
+			}
+		}
+		try {
+			TupleQuery query = prepareObjectQuery(concept, size);
+			if (size == 1) {
+				query.setBinding(ObjectFactory.VAR_PREFIX, resources.get(0));
+			} else {
+				int last = resources.size() - 1;
+				for (int i = 0; i < size; i++) {
+					query.setBinding(ObjectFactory.VAR_PREFIX + i,
+							resources.get(Math.min(i, last)));
+				}
+			}
+			return createObjectQuery(query).evaluate(concept);
+		} catch (MalformedQueryException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Prepares the object query of the concept for the number of bindings
+	 * from the parsed query shared by the repository.
+	 */
+	private TupleQuery prepareObjectQuery(Class<?> concept, int bindings)
+			throws MalformedQueryException, RepositoryException {
+		return prepareTupleQuery(
+				repository.getObjectQuery(concept, bindings, of), null);
+	}
+
+	/**
+	 * Prepares a SPARQL query parsed before, which may be shared between
+	 * connections. Embedded stores evaluate it without parsing it again,
+	 * other stores are sent its text.
+	 */
+	public TupleQuery prepareTupleQuery(ParsedTupleQuery query, String baseURI)
+			throws MalformedQueryException, RepositoryException {
+		RepositoryConnection delegate = getDelegate();
+		if (!(delegate instanceof SailRepositoryConnection))
+			return prepareTupleQuery(SPARQL, query.getSourceString(), baseURI);
+		return initQuery(new SailTupleQuery(query,
+				(SailRepositoryConnection) delegate) {
+		});
+	}
+
+	/**
+	 * Prepares a SPARQL query parsed before, which may be shared between
+	 * connections. Embedded stores evaluate it without parsing it again,
+	 * other stores are sent its text.
+	 */
+	public GraphQuery prepareGraphQuery(ParsedGraphQuery query, String baseURI)
+			throws MalformedQueryException, RepositoryException {
+		RepositoryConnection delegate = getDelegate();
+		if (!(delegate instanceof SailRepositoryConnection))
+			return prepareGraphQuery(SPARQL, query.getSourceString(), baseURI);
+		return initQuery(new SailGraphQuery(query,
+				(SailRepositoryConnection) delegate) {
+		});
+	}
+
+	/**
+	 * Prepares a SPARQL query parsed before, which may be shared between
+	 * connections. Embedded stores evaluate it without parsing it again,
+	 * other stores are sent its text.
+	 */
+	public BooleanQuery prepareBooleanQuery(ParsedBooleanQuery query,
+			String baseURI) throws MalformedQueryException,
 			RepositoryException {
-		if (queries.containsKey(concept)
-				&& queries.get(concept).containsKey(length)) {
-			return queries.get(concept).get(length);
-		} else {
-			String sparql = of.createObjectQuery(concept, length);
-			ObjectQuery query = prepareObjectQuery(SPARQL, sparql);
-			Map<Integer, ObjectQuery> map = queries.get(concept);
-			if (map == null) {
-				queries.put(concept, map = new HashMap<Integer, ObjectQuery>());
+		RepositoryConnection delegate = getDelegate();
+		if (!(delegate instanceof SailRepositoryConnection))
+			return prepareBooleanQuery(SPARQL, query.getSourceString(),
+					baseURI);
+		return initQuery(new SailBooleanQuery(query,
+				(SailRepositoryConnection) delegate) {
+		});
+	}
+
+	/**
+	 * Creates a new query that returns object(s) from a SPARQL query parsed
+	 * before.
+	 */
+	public ObjectQuery prepareObjectQuery(ParsedTupleQuery query,
+			String baseURI) throws MalformedQueryException,
+			RepositoryException {
+		return createObjectQuery(prepareTupleQuery(query, baseURI));
+	}
+
+	/**
+	 * Applies the contexts and settings of this connection, as it does to
+	 * the queries it parses itself.
+	 */
+	private <Q extends Query> Q initQuery(Q query) {
+		URI[] read = getReadContexts();
+		URI[] remove = getRemoveContexts();
+		URI insert = getInsertContext();
+		if (read.length > 0 || remove.length > 0 || insert != null) {
+			DatasetImpl dataset = new DatasetImpl();
+			for (URI graph : read) {
+				dataset.addDefaultGraph(graph);
+			}
+			for (URI graph : remove) {
+				dataset.addDefaultRemoveGraph(graph);
 			}
-			map.put(length, query);
-			return query;
+			dataset.setDefaultInsertGraph(insert);
+			query.setDataset(dataset);
 		}
+		query.setIncludeInferred(isIncludeInferred());
+		query.setMaxQueryTime(getMaxQueryTime());
+		return query;
+	}
+
+	/**
+	 * Invalidates the memoized results that read the predicate and publishes
+	 * it to the other connections once committed.
+	 * 
+	 * @param predicate
+	 *            written to or null if any predicate may have been written
+	 */
+	private void written(URI predicate) throws RepositoryException {
+		written(Collections.singleton(predicate));
+	}
+
+	private void written(Set<URI> predicates) throws RepositoryException {
+		if (predicates.isEmpty())
+			return;
+		memoized.invalidate(predicates);
+		synchronized (written) {
+			written.addAll(predicates);
+		}
+		if (isAutoCommit()) {
+			publishWritten();
+		}
+	}
+
+	private void publishWritten() {
+		Set<URI> predicates;
+		synchronized (written) {
+			if (written.isEmpty())
+				return;
+			predicates = new HashSet<URI>(written);
+			written.clear();
+		}
+		repository.invalidateMemoizedResults(memoized, predicates);
+	}
+
+	private <E extends Exception> Iteration<Statement, E> record(
+			Iteration<? extends Statement, E> statements,
+			final Set<URI> predicates) {
+		return new ConvertingIteration<Statement, Statement, E>(statements) {
+			@Override
+			protected Statement convert(Statement st) throws E {
+				predicates.add(st.getPredicate());
+				return st;
+			}
+		};
 	}
 
 	private ObjectQuery createObjectQuery(TupleQuery query) {
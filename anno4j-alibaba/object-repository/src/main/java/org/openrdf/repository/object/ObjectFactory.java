@@ -237,6 +237,12 @@ public class ObjectFactory {
 		factories = new HashMap<Class<?>, ObjectQueryFactory>();
 	}
 
+	/**
+	 * Creates a query for the objects of the concept. A query for no bindings
+	 * matches all objects of the concept, a query for one binding is bound to
+	 * $subj and a query for more bindings assigns $subj from the union of
+	 * $subj0, $subj1 and so on.
+	 */
 	protected String createObjectQuery(Class<?> concept, int bindings) {
 		Collection<PropertyDescriptor> subjectProperties = resolver.getPropertyMapper()
 				.findFunctionalProperties(concept);
@@ -250,6 +256,11 @@ public class ObjectFactory {
 			select.append(" ?subj_class");
 		}
 		where.append("\nWHERE { ");
+		for (int i = 0; i < bindings && bindings > 1; i++) {
+			where.append(i == 0 ? "\n" : " UNION ");
+			where.append("{ BIND ($").append(VAR_PREFIX).append(i);
+			where.append(" AS ?").append(VAR_PREFIX).append(") }");
+		}
 		URI uri = getNameOf(concept);
 		boolean typed = uri != null && bindings == 0;
 		if (typed) {
@@ -313,14 +324,6 @@ public class ObjectFactory {
 			}
 			where.append("}");
 		}
-		if (bindings > 1) {
-			where.append("\nFILTER (");
-			for (int i = 0; i < bindings; i++) {
-				where.append(" ?subj = $subj").append(i).append(" ||");
-			}
-			where.delete(where.length() - 2, where.length());
-			where.append(")");
-		}
 		where.append(" } ");
 		if (bindings > 1) {
 			where.append("\nORDER BY ?subj");
@@ -32,13 +32,29 @@ package org.openrdf.repository.object;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.contextaware.ContextAwareRepository;
+import org.openrdf.repository.object.advisers.helpers.CachePolicy;
+import org.openrdf.repository.object.advisers.helpers.CacheStatistics;
+import org.openrdf.repository.object.advisers.helpers.MemoizedResults;
 import org.openrdf.repository.object.exceptions.ObjectStoreConfigException;
+import org.openrdf.repository.object.result.ValuePool;
 import org.openrdf.store.blob.BlobStore;
 import org.openrdf.store.blob.BlobStoreFactory;
 
@@ -55,6 +71,12 @@ public class ObjectRepository extends ContextAwareRepository {
 	private String blobStoreUrl;
 	private Map<String, String> blobStoreParameters;
 	private BlobStore blobs;
+	private final Map<URI, CachePolicy> cachePolicies = new ConcurrentHashMap<URI, CachePolicy>();
+	private final ConcurrentMap<URI, CacheStatistics> cacheStatistics = new ConcurrentHashMap<URI, CacheStatistics>();
+	private volatile ValuePool valuePool;
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Integer, ParsedTupleQuery>> objectQueries = new ConcurrentHashMap<Class<?>, ConcurrentMap<Integer, ParsedTupleQuery>>();
+	private final Set<MemoizedResults> memoized = Collections
+			.newSetFromMap(new WeakHashMap<MemoizedResults, Boolean>());
 
 	public ObjectRepository() throws ObjectStoreConfigException {
 		this.service = new ObjectServiceImpl();
@@ -70,6 +92,7 @@ public class ObjectRepository extends ContextAwareRepository {
 
 	public void setObjectService(ObjectService service) {
 		this.service = service;
+		objectQueries.clear();
 	}
 
 	public synchronized String getBlobStoreUrl() {
@@ -90,6 +113,69 @@ public class ObjectRepository extends ContextAwareRepository {
 		blobs = null;
 	}
 
+	/**
+	 * @return the pool sharing the values read from query results, or null
+	 */
+	public ValuePool getValuePool() {
+		return valuePool;
+	}
+
+	/**
+	 * Shares equal URIs and short literals read from query results among
+	 * connections, keeping at most this many distinct values.
+	 * 
+	 * @param size
+	 *            number of values or 0 to not share them
+	 */
+	public void setValuePoolSize(int size) {
+		this.valuePool = size > 0 ? new ValuePool(size) : null;
+	}
+
+	/**
+	 * @return the cache policy configured for the properties of the
+	 *         predicate, or null
+	 */
+	public CachePolicy getCachePolicy(URI predicate) {
+		return cachePolicies.get(predicate);
+	}
+
+	/**
+	 * Overrides the cache policy of the properties of the predicate, including
+	 * the one given by their @Cached annotation. Affects the objects created
+	 * afterwards.
+	 * 
+	 * @param policy
+	 *            the policy or null to remove the configured one
+	 */
+	public void setCachePolicy(URI predicate, CachePolicy policy) {
+		if (policy == null) {
+			cachePolicies.remove(predicate);
+		} else {
+			cachePolicies.put(predicate, policy);
+		}
+	}
+
+	/**
+	 * @return the cache hits and misses of the properties of the predicate
+	 */
+	public CacheStatistics getCacheStatistics(URI predicate) {
+		CacheStatistics statistics = cacheStatistics.get(predicate);
+		if (statistics == null) {
+			CacheStatistics created = new CacheStatistics(predicate);
+			statistics = cacheStatistics.putIfAbsent(predicate, created);
+			if (statistics == null)
+				return created;
+		}
+		return statistics;
+	}
+
+	/**
+	 * @return the cache statistics of all predicates read so far
+	 */
+	public Map<URI, CacheStatistics> getCacheStatistics() {
+		return Collections.unmodifiableMap(cacheStatistics);
+	}
+
 	@Override
 	public File getDataDir() {
 		File dataDir = super.getDataDir();
@@ -147,6 +233,74 @@ public class ObjectRepository extends ContextAwareRepository {
 		this.blobs = store;
 	}
 
+	/**
+	 * The parsed query loading the objects of the concept bound to the given
+	 * number of resources, shared by all connections. Evaluating stores copy
+	 * the parsed query, so it can be evaluated concurrently.
+	 */
+	ParsedTupleQuery getObjectQuery(Class<?> concept, int bindings,
+			ObjectFactory of) throws MalformedQueryException {
+		ConcurrentMap<Integer, ParsedTupleQuery> queries = objectQueries
+				.get(concept);
+		if (queries == null) {
+			queries = new ConcurrentHashMap<Integer, ParsedTupleQuery>();
+			ConcurrentMap<Integer, ParsedTupleQuery> existing = objectQueries
+					.putIfAbsent(concept, queries);
+			if (existing != null) {
+				queries = existing;
+			}
+		}
+		ParsedTupleQuery query = queries.get(bindings);
+		if (query == null) {
+			String sparql = of.createObjectQuery(concept, bindings);
+			query = QueryParserUtil.parseTupleQuery(QueryLanguage.SPARQL,
+					sparql, null);
+			ParsedTupleQuery existing = queries.putIfAbsent(bindings, query);
+			if (existing != null)
+				return existing;
+		}
+		return query;
+	}
+
+	/**
+	 * Tracks the memoized results of an open connection, so the commits of
+	 * the other connections invalidate them.
+	 */
+	void addMemoizedResults(MemoizedResults results) {
+		synchronized (memoized) {
+			memoized.add(results);
+		}
+	}
+
+	void removeMemoizedResults(MemoizedResults results) {
+		synchronized (memoized) {
+			memoized.remove(results);
+		}
+	}
+
+	/**
+	 * Forgets the memoized results that read the committed predicates in all
+	 * open connections but the committing one.
+	 * 
+	 * @param predicates
+	 *            committed, containing null if any predicate may have been
+	 *            written
+	 */
+	void invalidateMemoizedResults(MemoizedResults committing,
+			Set<URI> predicates) {
+		List<MemoizedResults> open;
+		synchronized (memoized) {
+			if (memoized.size() < 2)
+				return;
+			open = new ArrayList<MemoizedResults>(memoized);
+		}
+		for (MemoizedResults results : open) {
+			if (results != committing) {
+				results.invalidate(predicates);
+			}
+		}
+	}
+
 	/**
 	 * Creates a new ObjectConnection that will need to be closed by the caller.
 	 */
@@ -34,8 +34,10 @@ import java.util.Set;
 
 import org.openrdf.query.BindingSet;
 import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.object.RDFObject;
 import org.openrdf.repository.object.advice.Advice;
 import org.openrdf.repository.object.advisers.helpers.PropertySet;
+import org.openrdf.repository.object.result.BindingLayout;
 import org.openrdf.repository.object.traits.Mergeable;
 import org.openrdf.repository.object.traits.ObjectMessage;
 import org.openrdf.repository.object.traits.PropertyConsumer;
@@ -78,10 +80,10 @@ public final class FieldBehaviour implements Advice, Mergeable,
 		return field.toString();
 	}
 
-	public void usePropertyBindings(String binding, List<BindingSet> results) {
+	public void usePropertyBindings(BindingLayout layout, List<BindingSet> results) {
 		if (property instanceof PropertyConsumer) {
-			String var = binding + "_" + field.getName();
-			if (results.get(0).getBindingNames().contains(var)) {
+			BindingLayout var = layout.getPropertyLayout(field.getName());
+			if (var != null) {
 				PropertyConsumer pc = (PropertyConsumer) property;
 				pc.usePropertyBindings(var, results);
 			}
@@ -96,7 +98,9 @@ public final class FieldBehaviour implements Advice, Mergeable,
 		if (concept.isAssignableFrom(source.getClass())) {
 			try {
 				Object value = field.get(source);
-				if (value != null) {
+				if (value != null && isReplacing()) {
+					setFieldValue(value);
+				} else if (value != null) {
 					if (Set.class.equals(this.type)) {
 						property.addAll((Set<?>) value);
 					} else {
@@ -168,7 +172,7 @@ public final class FieldBehaviour implements Advice, Mergeable,
 	private void storeFields(Object populated) throws IllegalAccessException {
 		if (concept.isAssignableFrom(proxy.getClass())) {
 			Object get = field.get(proxy);
-			if (get != populated) {
+			if (isModified(get, populated)) {
 				setFieldValue(get);
 			}
 		}
@@ -177,7 +181,7 @@ public final class FieldBehaviour implements Advice, Mergeable,
 				Object behaviour = f.get(proxy);
 				if (behaviour != null) {
 					Object get = field.get(behaviour);
-					if (get != populated) {
+					if (isModified(get, populated)) {
 						setFieldValue(get);
 					}
 				}
@@ -185,6 +189,26 @@ public final class FieldBehaviour implements Advice, Mergeable,
 		}
 	}
 
+	/**
+	 * Single values are compared by equality, so reassigning an equal value
+	 * does not rewrite the property. Sets may be modified in place and are
+	 * compared by identity.
+	 */
+	private boolean isModified(Object get, Object populated) {
+		if (get == populated)
+			return false;
+		if (get == null || Set.class.equals(type))
+			return true;
+		return !get.equals(populated);
+	}
+
+	private boolean isReplacing() {
+		if (!(proxy instanceof RDFObject))
+			return false;
+		RDFObject rdf = (RDFObject) proxy;
+		return rdf.getObjectConnection().isReplacing(rdf.getResource());
+	}
+
 	private Object getFieldValue() {
 		if (Set.class.equals(type))
 			return property.getAll();
@@ -195,9 +219,11 @@ public final class FieldBehaviour implements Advice, Mergeable,
 	}
 
 	private void setFieldValue(Object get) {
-		if (Set.class.equals(type))
+		if (Set.class.equals(type)) {
 			property.setAll((Set<?>) get);
-		property.setSingle(get);
+		} else {
+			property.setSingle(get);
+		}
 	}
 
 	private Object nil(Class<?> type) {
@@ -38,6 +38,7 @@ import org.openrdf.query.BindingSet;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.object.advice.Advice;
 import org.openrdf.repository.object.advisers.helpers.PropertySet;
+import org.openrdf.repository.object.result.BindingLayout;
 import org.openrdf.repository.object.traits.Mergeable;
 import org.openrdf.repository.object.traits.ObjectMessage;
 import org.openrdf.repository.object.traits.PropertyConsumer;
@@ -67,10 +68,10 @@ public final class PropertyBehaviour implements Advice, Mergeable,
 		return pd.toString();
 	}
 
-	public void usePropertyBindings(String binding, List<BindingSet> results) {
+	public void usePropertyBindings(BindingLayout layout, List<BindingSet> results) {
 		if (property instanceof PropertyConsumer) {
-			String var = binding + "_" + pd.getName();
-			if (results.get(0).getBindingNames().contains(var)) {
+			BindingLayout var = layout.getPropertyLayout(pd.getName());
+			if (var != null) {
 				PropertyConsumer pc = (PropertyConsumer) property;
 				pc.usePropertyBindings(var, results);
 			}
@@ -36,8 +36,12 @@ import java.io.Reader;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +52,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 
 import org.openrdf.OpenRDFException;
+import org.openrdf.annotations.Memoized;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Model;
@@ -55,12 +60,14 @@ import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.TupleQueryResult;
 import org.openrdf.repository.object.ObjectConnection;
 import org.openrdf.repository.object.RDFObject;
 import org.openrdf.repository.object.advice.Advice;
+import org.openrdf.repository.object.advisers.helpers.MemoizedResults;
 import org.openrdf.repository.object.advisers.helpers.SparqlEvaluator;
 import org.openrdf.repository.object.advisers.helpers.SparqlParameters;
 import org.openrdf.repository.object.advisers.helpers.SparqlEvaluator.SparqlBuilder;
@@ -75,11 +82,22 @@ import org.xml.sax.SAXException;
 
 /**
  * Executes a SPARQL query/update operation when a method with @Sparql is called.
+ * Results of methods also annotated with @Memoized are memoized by the
+ * connection.
  */
 public class SparqlAdvice implements Advice {
+	/** Return types that are consumed by the caller and cannot be reused. */
+	private static final Set<Class<?>> STREAMED = new HashSet<Class<?>>(
+			Arrays.<Class<?>> asList(TupleQueryResult.class,
+					GraphQueryResult.class, Result.class, CharSequence.class,
+					Readable.class, Reader.class, CharArrayWriter.class,
+					ByteArrayOutputStream.class, ReadableByteChannel.class,
+					InputStream.class, XMLEventReader.class, Document.class,
+					DocumentFragment.class, Element.class, Node.class));
 	private final SparqlEvaluator evaluator;
 	private final Class<?> returnClass;
 	private final Class<?> componentClass;
+	private final Memoized memo;
 	private final Map<Method, SparqlParameters> map = new HashMap<Method, SparqlParameters>();
 
 	public SparqlAdvice(SparqlEvaluator evaluator, Method m) {
@@ -88,6 +106,11 @@ public class SparqlAdvice implements Advice {
 		Type rtype = m.getGenericReturnType();
 		SparqlParameters parameters = new SparqlParameters(m);
 		this.componentClass = parameters.getComponentClass(returnClass, rtype);
+		if (isUpdate() || STREAMED.contains(returnClass)) {
+			this.memo = null;
+		} else {
+			this.memo = m.getAnnotation(Memoized.class);
+		}
 		map.put(m, parameters);
 	}
 
@@ -109,6 +132,21 @@ public class SparqlAdvice implements Advice {
 				((Refreshable) target).refresh();
 			}
 			return message.proceed();
+		} else if (memo != null) {
+			MemoizedResults memoized = con.getMemoizedResults();
+			Object key = with.getBindingKey();
+			Object result = memoized.get(this, key);
+			if (result != null)
+				return copy(result);
+			long version = memoized.getVersion();
+			result = cast(with, returnClass, componentClass);
+			if (result == null)
+				return message.proceed();
+			if (returnClass.isPrimitive() && result.equals(nil(returnClass)))
+				return message.proceed();
+			memoized.put(this, version, evaluator.getPredicates(),
+					memo.size(), memo.ttl(), key, copy(result));
+			return result;
 		} else {
 			Object result = cast(with, returnClass, componentClass);
 			if (result == null)
@@ -119,6 +157,21 @@ public class SparqlAdvice implements Advice {
 		}
 	}
 
+	/**
+	 * Copies mutable results, so callers cannot change the memoized one.
+	 */
+	private Object copy(Object result) {
+		if (result instanceof Model)
+			return new LinkedHashModel((Model) result);
+		if (result instanceof List)
+			return new ArrayList<Object>((List<?>) result);
+		if (result instanceof Set)
+			return new LinkedHashSet<Object>((Set<?>) result);
+		if (result instanceof byte[])
+			return ((byte[]) result).clone();
+		return result;
+	}
+
 	private synchronized SparqlParameters getParameters(Method m) {
 		if (map.containsKey(m))
 			return map.get(m);
@@ -3,14 +3,21 @@ package org.openrdf.repository.object.advisers;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
 import org.openrdf.query.parser.ParsedBooleanQuery;
 import org.openrdf.query.parser.ParsedGraphQuery;
 import org.openrdf.query.parser.ParsedOperation;
+import org.openrdf.query.parser.ParsedQuery;
 import org.openrdf.query.parser.ParsedTupleQuery;
 import org.openrdf.query.parser.sparql.SPARQLParser;
 import org.openrdf.repository.object.advisers.helpers.SparqlEvaluator;
@@ -73,6 +80,31 @@ public class SparqlQuery {
 		return query instanceof ParsedTupleQuery;
 	}
 
+	/**
+	 * @return the predicates this query reads, or null if it is an update or
+	 *         reads statements of variable predicates
+	 */
+	public Set<URI> getPredicates() {
+		if (!(query instanceof ParsedQuery))
+			return null;
+		final Set<URI> predicates = new HashSet<URI>();
+		final boolean[] variable = new boolean[1];
+		((ParsedQuery) query).getTupleExpr().visit(
+				new QueryModelVisitorBase<RuntimeException>() {
+					public void meet(StatementPattern node) {
+						Value pred = node.getPredicateVar().getValue();
+						if (pred instanceof URI) {
+							predicates.add((URI) pred);
+						} else {
+							variable[0] = true;
+						}
+					}
+				});
+		if (variable[0])
+			return null;
+		return predicates;
+	}
+
 	public synchronized String toObjectString(Class<?> concept) {
 		if (concept.equals(this.concept))
 			return object;
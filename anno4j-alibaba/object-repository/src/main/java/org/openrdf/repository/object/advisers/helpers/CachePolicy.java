@@ -0,0 +1,71 @@
+package org.openrdf.repository.object.advisers.helpers;
+
+import org.openrdf.annotations.Cached;
+
+/**
+ * How the values of a property are cached by a {@link CachedPropertySet}.
+ * 
+ */
+public class CachePolicy {
+	public static final CachePolicy DEFAULT = new CachePolicy(10, false, 0);
+
+	public static CachePolicy valueOf(Cached cached) {
+		return new CachePolicy(cached.limit(), cached.eager(), cached.ttl());
+	}
+
+	private final int limit;
+	private final boolean eager;
+	private final long ttl;
+
+	/**
+	 * @param limit
+	 *            properties with this many values or more are not cached
+	 *            completely
+	 * @param eager
+	 *            load and cache all values on the first read, regardless of
+	 *            the limit
+	 * @param ttl
+	 *            milliseconds the cached values are used, 0 to use them until
+	 *            they are refreshed
+	 */
+	public CachePolicy(int limit, boolean eager, long ttl) {
+		if (limit < 1)
+			throw new IllegalArgumentException("Cache limit must be positive: " + limit);
+		if (ttl < 0)
+			throw new IllegalArgumentException("Cache TTL must not be negative: " + ttl);
+		this.limit = limit;
+		this.eager = eager;
+		this.ttl = ttl;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public boolean isEager() {
+		return eager;
+	}
+
+	public long getTimeToLive() {
+		return ttl;
+	}
+
+	/**
+	 * @return true if a cache of the given size holds all values
+	 */
+	boolean isComplete(int size) {
+		return eager || size < limit;
+	}
+
+	/**
+	 * @return true if values cached at the given time must not be used anymore
+	 */
+	boolean isExpired(long cachedAt) {
+		return ttl > 0 && System.currentTimeMillis() - cachedAt >= ttl;
+	}
+
+	@Override
+	public String toString() {
+		return "limit=" + limit + ", eager=" + eager + ", ttl=" + ttl;
+	}
+}
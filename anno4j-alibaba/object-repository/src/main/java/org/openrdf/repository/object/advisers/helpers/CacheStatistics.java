@@ -0,0 +1,60 @@
+package org.openrdf.repository.object.advisers.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openrdf.model.URI;
+
+/**
+ * Counts the reads of the properties of one predicate that were answered from
+ * the cache of their objects and those that queried the store.
+ * 
+ */
+public class CacheStatistics {
+	private final URI predicate;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public CacheStatistics(URI predicate) {
+		this.predicate = predicate;
+	}
+
+	public URI getPredicate() {
+		return predicate;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the share of the reads answered from the cache, 0 if there were
+	 *         no reads
+	 */
+	public double getHitRate() {
+		long hit = hits.get();
+		long total = hit + misses.get();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	public void reset() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	void miss() {
+		misses.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return predicate + " hits=" + hits + ", misses=" + misses;
+	}
+}
@@ -44,30 +44,34 @@ import org.openrdf.model.Value;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.repository.RepositoryException;
-import org.openrdf.repository.object.ObjectConnection;
 import org.openrdf.repository.object.ObjectQuery;
 import org.openrdf.repository.object.RDFObject;
 import org.openrdf.repository.object.exceptions.ObjectPersistException;
+import org.openrdf.repository.object.result.BindingLayout;
 import org.openrdf.repository.object.result.ObjectCursor;
 import org.openrdf.repository.object.result.ObjectIterator;
 import org.openrdf.repository.object.traits.ManagedRDFObject;
 import org.openrdf.repository.object.traits.PropertyConsumer;
 
 /**
- * A set for a given getResource(), predicate.
+ * A set for a given getResource(), predicate. The values are cached as
+ * configured by the {@link CachePolicy} of the predicate. Writes through this
+ * set update a complete cache instead of discarding it.
  * 
  * @author James Leigh
  */
 public class CachedPropertySet extends RemotePropertySet implements
 		PropertyConsumer {
-	private static final int CACHE_LIMIT = 10;
 	List<Object> cache;
 	boolean cached;
+	private long cachedAt;
 	private ObjectQueryFactory factory;
 	private PropertySetFactory creator;
-	private String binding;
+	private BindingLayout layout;
 	private List<BindingSet> bindings;
 	private boolean merged;
+	private CachePolicy policy;
+	private CacheStatistics statistics;
 
 	public CachedPropertySet(ManagedRDFObject bean, PropertySetModifier property) {
 		super(bean, property);
@@ -78,8 +82,8 @@ public class CachedPropertySet extends RemotePropertySet implements
 		this.creator = creator;
 	}
 
-	public synchronized void usePropertyBindings(String binding, List<BindingSet> bindings) {
-		this.binding = binding;
+	public synchronized void usePropertyBindings(BindingLayout layout, List<BindingSet> bindings) {
+		this.layout = layout;
 		this.bindings = bindings;
 	}
 
@@ -88,155 +92,222 @@ public class CachedPropertySet extends RemotePropertySet implements
 		super.refresh();
 		cached = false;
 		cache = null;
-		binding = null;
+		layout = null;
 		bindings = null;
 	}
 
 	@Override
-	public void clear() {
-		if (isCacheComplete() && !cache.isEmpty()) {
-			ObjectConnection conn = getObjectConnection();
-			try {
-				boolean autoCommit = conn.isAutoCommit();
-				if (autoCommit)
-					conn.setAutoCommit(false);
-				try {
-					for (Object o : cache)
-						remove(o);
-					if (autoCommit)
-						conn.setAutoCommit(true);
-				} finally {
-					if (autoCommit && !conn.isAutoCommit()) {
-						conn.rollback();
-						conn.setAutoCommit(true);
-					}
+	public boolean add(Object o) {
+		List<Object> before = getCompleteCache();
+		long at = cachedAt;
+		boolean modified = super.add(o);
+		if (before != null && isCacheable(o)) {
+			List<Object> list = new ArrayList<Object>(before);
+			if (!list.contains(o)) {
+				list.add(o);
+			}
+			setCache(list, at);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean addAll(Collection<?> c) {
+		List<Object> before = getCompleteCache();
+		long at = cachedAt;
+		boolean modified = super.addAll(c);
+		if (before != null && isCacheable(c)) {
+			List<Object> list = new ArrayList<Object>(before);
+			for (Object o : c) {
+				if (!list.contains(o)) {
+					list.add(o);
 				}
-			} catch (RepositoryException e) {
-				throw new ObjectPersistException(e);
 			}
-			refreshCache();
-		} else if (!cached || !cache.isEmpty()) {
+			setCache(list, at);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		List<Object> before = getCompleteCache();
+		long at = cachedAt;
+		boolean modified = super.remove(o);
+		if (before != null && isCacheable(o)) {
+			List<Object> list = new ArrayList<Object>(before);
+			list.remove(o);
+			setCache(list, at);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		List<Object> before = getCompleteCache();
+		long at = cachedAt;
+		boolean modified = super.removeAll(c);
+		if (before != null && isCacheable(c)) {
+			List<Object> list = new ArrayList<Object>(before);
+			list.removeAll(c);
+			setCache(list, at);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		List<Object> before = getCompleteCache();
+		if (before == null)
+			return super.retainAll(c);
+		List<Object> removed = new ArrayList<Object>();
+		for (Object o : before) {
+			if (!c.contains(o)) {
+				removed.add(o);
+			}
+		}
+		return !removed.isEmpty() && removeAll(removed);
+	}
+
+	@Override
+	public void clear() {
+		if (isCacheComplete() && !cache.isEmpty()) {
+			super.removeAll(cache);
+		} else if (!isCached() || !cache.isEmpty()) {
 			super.clear();
 			refreshCache();
 		}
-		cache = Collections.EMPTY_LIST;
-		cached = true;
+		setCache(EMPTY_LIST);
 	}
 
 	@Override
 	public void setSingle(Object o) {
-		if (!cached || !cache.isEmpty()) {
+		if (!isCached() || !cache.isEmpty()) {
 			super.setSingle(o);
 		} else if (o != null) {
-			add(o);
+			super.add(o);
 		}
 		if (!merged) {
-			cache = o == null ? EMPTY_LIST : Collections.singletonList(o);
-			cached = true;
+			setCache(o == null ? EMPTY_LIST : Collections.singletonList(o));
 		}
 	}
 
 	@Override
 	public void setAll(Set<?> set) {
-		if (!cached || !cache.isEmpty()) {
+		if (!isCached() || !cache.isEmpty()) {
 			super.setAll(set);
-		} else if (!set.isEmpty()) {
-			addAll(set);
+		} else if (set != null && !set.isEmpty()) {
+			super.addAll(set);
 		}
 		if (!merged) {
-			cache = set == null ? EMPTY_LIST : new ArrayList<Object>(set);
-			cached = true;
+			setCache(set == null ? EMPTY_LIST : new ArrayList<Object>(set));
 		}
 	}
 
 	@Override
 	public boolean contains(Object o) {
-		if (isCacheComplete())
+		if (isCacheComplete()) {
+			getStatistics().hit();
 			return cache.contains(o);
-		if (cached && cache.contains(o))
+		}
+		if (cached && cache.contains(o)) {
+			getStatistics().hit();
 			return true;
+		}
+		if (isLoaded())
+			return cache.contains(o);
 		return super.contains(o);
 	}
 
 	@Override
 	public boolean containsAll(Collection<?> c) {
-		if (isCacheComplete())
+		if (isCacheComplete()) {
+			getStatistics().hit();
 			return cache.containsAll(c);
-		if (cached && cache.containsAll(c))
+		}
+		if (cached && cache.containsAll(c)) {
+			getStatistics().hit();
 			return true;
+		}
+		if (isLoaded())
+			return cache.containsAll(c);
 		return super.containsAll(c);
 	}
 
 	@Override
 	public Object getSingle() {
-		if (cached && cache.isEmpty())
+		if (isCached()) {
+			getStatistics().hit();
+		} else if (!isLoaded()) {
+			return super.getSingle();
+		}
+		if (cache.isEmpty())
 			return null;
-		if (cached)
-			return cache.get(0);
-		return super.getSingle();
+		return cache.get(0);
 	}
 
 	@Override
 	public boolean isEmpty() {
-		if (cached)
-			return cache.isEmpty();
-		return super.isEmpty();
-	}
-
-	@Override
-	public boolean removeAll(Collection<?> c) {
-		refreshCache();
-		return super.removeAll(c);
-	}
-
-	@Override
-	public boolean retainAll(Collection<?> c) {
-		refreshCache();
-		return super.retainAll(c);
+		if (isCached()) {
+			getStatistics().hit();
+		} else if (!isLoaded()) {
+			return super.isEmpty();
+		}
+		return cache.isEmpty();
 	}
 
 	@Override
 	public int size() {
-		if (isCacheComplete())
-			return cache.size();
-		return super.size();
+		if (isCacheComplete()) {
+			getStatistics().hit();
+		} else if (!isLoaded()) {
+			return super.size();
+		}
+		return cache.size();
 	}
 
 	@Override
 	public Iterator<Object> iterator() {
 		if (isCacheComplete()) {
-			final Iterator<Object> iter = cache.iterator();
-			return new Iterator<Object>() {
-				private Object e;
+			getStatistics().hit();
+		} else if (!isLoaded()) {
+			return super.iterator();
+		}
+		final Iterator<Object> iter = cache.iterator();
+		return new Iterator<Object>() {
+			private Object e;
 
-				public boolean hasNext() {
-					return iter.hasNext();
-				}
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
 
-				public Object next() {
-					return e = iter.next();
-				}
+			public Object next() {
+				return e = iter.next();
+			}
 
-				public void remove() {
-					CachedPropertySet.this.remove(e);
-				}
-			};
-		}
-		return super.iterator();
+			public void remove() {
+				CachedPropertySet.this.remove(e);
+			}
+		};
 	}
 
 	@Override
 	public Object[] toArray() {
-		if (isCacheComplete())
-			return cache.toArray();
-		return super.toArray();
+		if (isCacheComplete()) {
+			getStatistics().hit();
+		} else if (!isLoaded()) {
+			return super.toArray();
+		}
+		return cache.toArray();
 	}
 
 	@Override
 	public <T> T[] toArray(T[] a) {
-		if (isCacheComplete())
-			return cache.toArray(a);
-		return super.toArray(a);
+		if (isCacheComplete()) {
+			getStatistics().hit();
+		} else if (!isLoaded()) {
+			return super.toArray(a);
+		}
+		return cache.toArray(a);
 	}
 
 	protected void refreshCache() {
@@ -247,8 +318,100 @@ public class CachedPropertySet extends RemotePropertySet implements
 		}
 	}
 
+	/**
+	 * The policy configured for the predicate in the repository, given by the
+	 * @Cached annotation of the property or the default one.
+	 */
+	protected CachePolicy getCachePolicy() {
+		if (policy == null) {
+			CachePolicy configured = getObjectConnection().getRepository()
+					.getCachePolicy(getURI());
+			if (configured != null) {
+				policy = configured;
+			} else if (creator != null && creator.getCachePolicy() != null) {
+				policy = creator.getCachePolicy();
+			} else {
+				policy = CachePolicy.DEFAULT;
+			}
+		}
+		return policy;
+	}
+
+	private CacheStatistics getStatistics() {
+		if (statistics == null) {
+			statistics = getObjectConnection().getRepository()
+					.getCacheStatistics(getURI());
+		}
+		return statistics;
+	}
+
+	/**
+	 * Whether the cache holds values that have not expired.
+	 */
+	private boolean isCached() {
+		if (cached && getCachePolicy().isExpired(cachedAt)) {
+			refresh();
+		}
+		return cached;
+	}
+
 	private boolean isCacheComplete() {
-		return cached && cache.size() < CACHE_LIMIT;
+		return isCached() && getCachePolicy().isComplete(cache.size());
+	}
+
+	private List<Object> getCompleteCache() {
+		return isCacheComplete() ? cache : null;
+	}
+
+	/**
+	 * Records a cache miss and loads all values of an eager property into the
+	 * cache.
+	 * 
+	 * @return true if the cache is complete now
+	 */
+	private boolean isLoaded() {
+		getStatistics().miss();
+		if (!getCachePolicy().isEager())
+			return false;
+		ObjectIterator<?, Object> iter = getObjectIterator();
+		try {
+			while (iter.hasNext()) {
+				iter.next();
+			}
+		} finally {
+			iter.close();
+		}
+		return isCacheComplete();
+	}
+
+	private void setCache(List<Object> list) {
+		setCache(list, getCachePolicy().getTimeToLive() > 0 ? System
+				.currentTimeMillis() : 0);
+	}
+
+	private void setCache(List<Object> list, long at) {
+		cache = list;
+		cached = true;
+		cachedAt = at;
+	}
+
+	/**
+	 * Whether the cached representation of the values equals the given
+	 * objects, as they are literals or objects of this connection.
+	 */
+	private boolean isCacheable(Collection<?> c) {
+		for (Object o : c) {
+			if (!isCacheable(o))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean isCacheable(Object o) {
+		if (o instanceof RDFObject)
+			return isManaged(o);
+		return getObjectConnection().getObjectFactory().isDatatype(
+				o.getClass());
 	}
 
 	@Override
@@ -270,7 +433,7 @@ public class CachedPropertySet extends RemotePropertySet implements
 			QueryEvaluationException {
 		if (creator == null || factory == null) {
 			return super.getObjects();
-		} else if (binding == null) {
+		} else if (layout == null) {
 			ObjectQuery query = factory.createQuery(creator);
 			if (query == null)
 				return super.getObjects();
@@ -284,7 +447,7 @@ public class CachedPropertySet extends RemotePropertySet implements
 			CloseableIteratorIteration<BindingSet, QueryEvaluationException> result;
 			result = new CloseableIteratorIteration<BindingSet, QueryEvaluationException>(
 					bindings.iterator());
-			return new ObjectCursor(getObjectConnection(), result, binding);
+			return new ObjectCursor(getObjectConnection(), result, layout);
 		}
 	}
 
@@ -292,12 +455,13 @@ public class CachedPropertySet extends RemotePropertySet implements
 	protected ObjectIterator<?, Object> getObjectIterator() {
 		try {
 			return new ObjectIterator<Object, Object>(getObjects()) {
-				private List<Object> list = new ArrayList<Object>(CACHE_LIMIT);
+				private final CachePolicy policy = getCachePolicy();
+				private List<Object> list = new ArrayList<Object>();
 
 				@Override
 				protected Object convert(Object instance)
 						throws RepositoryException {
-					if (list != null && list.size() < CACHE_LIMIT)
+					if (list != null && policy.isComplete(list.size()))
 						list.add(instance);
 					return instance;
 				}
@@ -312,9 +476,8 @@ public class CachedPropertySet extends RemotePropertySet implements
 				public void close() {
 					try {
 						if (list != null
-								&& (!hasNext() || list.size() == CACHE_LIMIT)) {
-							cache = list;
-							cached = true;
+								&& (!hasNext() || !policy.isComplete(list.size()))) {
+							setCache(list);
 						}
 					} finally {
 						super.close();
@@ -0,0 +1,134 @@
+package org.openrdf.repository.object.advisers.helpers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrdf.model.URI;
+
+/**
+ * Results of methods evaluated by one connection, kept until the predicates
+ * the methods read from are written to, or the connection rolls back. Every
+ * invalidation advances the version, so a result evaluated concurrently with
+ * a commit is not kept.
+ *
+ */
+public class MemoizedResults {
+
+	private static class Memo {
+		final Object result;
+		final long expires;
+
+		Memo(Object result, long expires) {
+			this.result = result;
+			this.expires = expires;
+		}
+	}
+
+	private static class Bucket extends LinkedHashMap<Object, Memo> {
+		private static final long serialVersionUID = 1L;
+		final Set<URI> predicates;
+		final int limit;
+
+		Bucket(Set<URI> predicates, int limit) {
+			super(16, 0.75f, true);
+			this.predicates = predicates;
+			this.limit = limit;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Memo> eldest) {
+			return size() > limit;
+		}
+	}
+
+	private final Map<Object, Bucket> buckets = new HashMap<Object, Bucket>();
+	private long version;
+
+	/**
+	 * @return the memoized result of the method for the key, or null
+	 */
+	public synchronized Object get(Object method, Object key) {
+		Bucket bucket = buckets.get(method);
+		if (bucket == null)
+			return null;
+		Memo memo = bucket.get(key);
+		if (memo == null)
+			return null;
+		if (memo.expires > 0 && memo.expires < System.currentTimeMillis()) {
+			bucket.remove(key);
+			return null;
+		}
+		return memo.result;
+	}
+
+	/**
+	 * @return the version to pass to {@link #put}, read before the method is
+	 *         evaluated
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Memoizes the result of the method for the key, unless the results were
+	 * invalidated since the given version was read.
+	 *
+	 * @param predicates
+	 *            read by the method, or null if any write may change its
+	 *            result
+	 * @param limit
+	 *            number of results of the method to keep
+	 * @param ttl
+	 *            milliseconds the result is used, 0 to use it until it is
+	 *            invalidated
+	 */
+	public synchronized void put(Object method, long version,
+			Set<URI> predicates, int limit, long ttl, Object key, Object result) {
+		if (limit < 1 || version != this.version)
+			return;
+		Bucket bucket = buckets.get(method);
+		if (bucket == null) {
+			buckets.put(method, bucket = new Bucket(predicates, limit));
+		}
+		long expires = ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+		bucket.put(key, new Memo(result, expires));
+	}
+
+	public synchronized boolean isEmpty() {
+		return buckets.isEmpty();
+	}
+
+	/**
+	 * Forgets the results of the methods that read any of the predicates.
+	 *
+	 * @param predicates
+	 *            written to, containing null if any predicate may have been
+	 *            written
+	 */
+	public synchronized void invalidate(Set<URI> predicates) {
+		version++;
+		if (buckets.isEmpty())
+			return;
+		if (predicates.contains(null)) {
+			buckets.clear();
+			return;
+		}
+		Iterator<Bucket> iter = buckets.values().iterator();
+		while (iter.hasNext()) {
+			Bucket bucket = iter.next();
+			if (bucket.predicates == null
+					|| !Collections.disjoint(bucket.predicates, predicates)) {
+				iter.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		version++;
+		buckets.clear();
+	}
+}
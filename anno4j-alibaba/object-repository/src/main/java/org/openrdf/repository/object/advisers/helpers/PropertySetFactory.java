@@ -36,10 +36,12 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Set;
 
+import org.openrdf.annotations.Cached;
 import org.openrdf.annotations.Iri;
 import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.repository.object.result.ValuePool;
 import org.openrdf.repository.object.traits.ManagedRDFObject;
 
 /**
@@ -54,11 +56,15 @@ public class PropertySetFactory {
 
 	private Class<?> type;
 
-	private URI predicate;
+	private volatile URI predicate;
 
 	private boolean readOnly;
 
-	private PropertySetModifier modifier;
+	private volatile PropertySetModifier modifier;
+
+	private volatile boolean pooled;
+
+	private CachePolicy cachePolicy;
 
 	public PropertySetFactory(Field field, String predicate) {
 		Iri rdf = field.getAnnotation(Iri.class);
@@ -70,6 +76,10 @@ public class PropertySetFactory {
 		assert this.predicate != null;
 		name = field.getName();
 		type = field.getType();
+		Cached cached = field.getAnnotation(Cached.class);
+		if (cached != null) {
+			cachePolicy = CachePolicy.valueOf(cached);
+		}
 		if (Set.class.equals(type)) {
 			Type t = field.getGenericType();
 			if (t instanceof ParameterizedType) {
@@ -94,6 +104,10 @@ public class PropertySetFactory {
 		assert this.predicate != null;
 		name = property.getName();
 		type = property.getPropertyType();
+		Cached cached = getter.getAnnotation(Cached.class);
+		if (cached != null) {
+			cachePolicy = CachePolicy.valueOf(cached);
+		}
 		if (Set.class.equals(type)) {
 			Type t = property.getReadMethod().getGenericReturnType();
 			if (t instanceof ParameterizedType) {
@@ -122,6 +136,13 @@ public class PropertySetFactory {
 		return readOnly;
 	}
 
+	/**
+	 * @return the cache policy given by the @Cached annotation, or null
+	 */
+	public CachePolicy getCachePolicy() {
+		return cachePolicy;
+	}
+
 	public PropertySet createPropertySet(Object bean) {
 		CachedPropertySet property = createCachedPropertySet((ManagedRDFObject) bean);
 		property.setPropertySetFactory(this);
@@ -131,9 +152,24 @@ public class PropertySetFactory {
 	}
 
 	private CachedPropertySet createCachedPropertySet(ManagedRDFObject bean) {
+		if (!pooled) {
+			sharePredicate(bean.getObjectConnection().getRepository()
+					.getValuePool());
+		}
 		return new CachedPropertySet(bean, modifier);
 	}
 
+	private void sharePredicate(ValuePool pool) {
+		if (pool != null) {
+			URI shared = pool.intern(predicate);
+			if (shared != predicate) {
+				predicate = shared;
+				modifier = new PropertySetModifier(shared);
+			}
+		}
+		pooled = true;
+	}
+
 	private void setPredicate(String uri) {
 		predicate = vf.createURI(uri);
 		modifier = new PropertySetModifier(predicate);
@@ -28,9 +28,13 @@
  */
 package org.openrdf.repository.object.advisers.helpers;
 
+import java.util.Collection;
+
+import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.object.ObjectConnection;
 
@@ -62,6 +66,34 @@ public class PropertySetModifier {
 		conn.remove(subj, pred, obj);
 	}
 
+	/**
+	 * Adds the statements of all values with one call.
+	 */
+	public void addAll(ObjectConnection conn, Resource subj,
+			Collection<? extends Value> objs) throws RepositoryException {
+		if (!objs.isEmpty()) {
+			conn.add(createModel(subj, objs));
+		}
+	}
+
+	/**
+	 * Removes the statements of all values with one call.
+	 */
+	public void removeAll(ObjectConnection conn, Resource subj,
+			Collection<? extends Value> objs) throws RepositoryException {
+		if (!objs.isEmpty()) {
+			conn.remove(createModel(subj, objs));
+		}
+	}
+
+	private Model createModel(Resource subj, Collection<? extends Value> objs) {
+		Model model = new LinkedHashModel(objs.size());
+		for (Value obj : objs) {
+			model.add(subj, pred, obj);
+		}
+		return model;
+	}
+
 	@Override
 	public String toString() {
 		return pred.toString();
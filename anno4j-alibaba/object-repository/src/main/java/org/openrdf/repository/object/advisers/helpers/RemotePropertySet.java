@@ -33,12 +33,15 @@ import info.aduna.iteration.ConvertingIteration;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
@@ -95,16 +98,15 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 	}
 
 	public boolean addAll(Collection<?> c) {
+		if (c.isEmpty())
+			return false;
 		ObjectConnection conn = getObjectConnection();
-		boolean modified = false;
 		try {
 			boolean autoCommit = conn.isAutoCommit();
 			if (autoCommit)
 				conn.setAutoCommit(false);
 			try {
-				for (Object o : c)
-					if (add(o))
-						modified = true;
+				add(conn, getResource(), toValues(c));
 				if (autoCommit)
 					conn.setAutoCommit(true);
 			} finally {
@@ -118,7 +120,10 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 		}
 		refresh();
 		refreshEntity();
-		return modified;
+		for (Object o : c) {
+			refresh(o);
+		}
+		return true;
 	}
 
 	public void clear() {
@@ -218,16 +223,15 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 	}
 
 	public boolean removeAll(Collection<?> c) {
+		if (c.isEmpty())
+			return false;
 		ObjectConnection conn = getObjectConnection();
-		boolean modified = false;
 		try {
 			boolean autoCommit = conn.isAutoCommit();
 			if (autoCommit)
 				conn.setAutoCommit(false);
 			try {
-				for (Object o : c)
-					if (remove(o))
-						modified = true;
+				remove(conn, getResource(), toValues(c));
 				if (autoCommit)
 					conn.setAutoCommit(true);
 			} finally {
@@ -241,35 +245,31 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 		}
 		refresh();
 		refreshEntity();
-		return modified;
+		for (Object o : c) {
+			refresh(o);
+		}
+		return true;
 	}
 
 	public boolean retainAll(Collection<?> c) {
-		ObjectConnection conn = getObjectConnection();
-		boolean modified = false;
+		List<Object> removed = new ArrayList<Object>();
+		ObjectIterator<?, Object> e = getObjectIterator();
 		try {
-			boolean autoCommit = conn.isAutoCommit();
-			if (autoCommit)
-				conn.setAutoCommit(false);
-			ObjectIterator<?, Object> e = getObjectIterator();
-			try {
-				while (e.hasNext()) {
-					if (!c.contains(e.next())) {
-						e.remove();
-						modified = true;
-					}
+			while (e.hasNext()) {
+				Object o = e.next();
+				if (!c.contains(o)) {
+					removed.add(o);
 				}
-			} finally {
-				e.close();
 			}
-			if (autoCommit)
-				conn.setAutoCommit(true);
-		} catch (RepositoryException e) {
-			throw new ObjectPersistException(e);
+		} finally {
+			e.close();
 		}
-		refresh();
-		refreshEntity();
-		return modified;
+		if (removed.isEmpty()) {
+			refresh();
+			refreshEntity();
+			return false;
+		}
+		return removeAll(removed);
 	}
 
 	public void setAll(Set<?> set) {
@@ -279,15 +279,53 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 			clear();
 			return;
 		}
-		Set<Object> c = new HashSet<Object>(set);
+		replace(new ArrayList<Object>(set));
+	}
+
+	public void setSingle(Object o) {
+		if (o == null) {
+			clear();
+		} else {
+			replace(Collections.singletonList(o));
+		}
+	}
+
+	/**
+	 * Replaces the values by the given ones in one transaction. Only the
+	 * statements of removed and added values are written, unchanged values are
+	 * left as they are. While the object is being replaced by
+	 * {@link ObjectConnection#updateObject(Object)}, the current values are
+	 * taken from the statements read when the update began.
+	 */
+	void replace(Collection<?> objects) {
 		ObjectConnection conn = getObjectConnection();
+		boolean modified = false;
 		try {
 			boolean autoCommit = conn.isAutoCommit();
 			if (autoCommit)
 				conn.setAutoCommit(false);
 			try {
-				clear();
-				addAll(c);
+				Model stored = conn.getReplacedStatements(getResource());
+				Set<Value> current = getCurrentValues(stored);
+				Set<Value> replacement = new LinkedHashSet<Value>(toValues(objects));
+				List<Value> removed = new ArrayList<Value>();
+				for (Value value : current) {
+					if (!replacement.contains(value)) {
+						removed.add(value);
+					}
+				}
+				replacement.removeAll(current);
+				remove(conn, getResource(), removed);
+				add(conn, getResource(), replacement);
+				if (stored != null) {
+					for (Value value : removed) {
+						stored.remove(getResource(), getURI(), value);
+					}
+					for (Value value : replacement) {
+						stored.add(getResource(), getURI(), value);
+					}
+				}
+				modified = !removed.isEmpty() || !replacement.isEmpty();
 				if (autoCommit)
 					conn.setAutoCommit(true);
 			} finally {
@@ -299,32 +337,30 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 		} catch (RepositoryException e) {
 			throw new ObjectPersistException(e);
 		}
+		if (modified) {
+			refresh();
+			refreshEntity();
+		}
+		for (Object o : objects) {
+			refresh(o);
+		}
 	}
 
-	public void setSingle(Object o) {
-		if (o == null) {
-			clear();
-		} else {
-			ObjectConnection conn = getObjectConnection();
-			try {
-				boolean autoCommit = conn.isAutoCommit();
-				if (autoCommit)
-					conn.setAutoCommit(false);
-				try {
-					clear();
-					add(o);
-					if (autoCommit)
-						conn.setAutoCommit(true);
-				} finally {
-					if (autoCommit && !conn.isAutoCommit()) {
-						conn.rollback();
-						conn.setAutoCommit(true);
-					}
-				}
-			} catch (RepositoryException e) {
-				throw new ObjectPersistException(e);
+	private Set<Value> getCurrentValues(Model stored)
+			throws RepositoryException {
+		if (stored != null)
+			return new HashSet<Value>(stored.filter(getResource(), getURI(),
+					null).objects());
+		Set<Value> current = new HashSet<Value>();
+		CloseableIteration<Value, RepositoryException> values = getValues();
+		try {
+			while (values.hasNext()) {
+				current.add(values.next());
 			}
+		} finally {
+			values.close();
 		}
+		return current;
 	}
 
 	public int size() {
@@ -414,6 +450,16 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 		property.remove(conn, subj, obj);
 	}
 
+	void add(ObjectConnection conn, Resource subj, Collection<Value> objs)
+			throws RepositoryException {
+		property.addAll(conn, subj, objs);
+	}
+
+	void remove(ObjectConnection conn, Resource subj, Collection<Value> objs)
+			throws RepositoryException {
+		property.removeAll(conn, subj, objs);
+	}
+
 	void remove(ObjectConnection conn, Statement stmt)
 			throws RepositoryException {
 		assert stmt.getPredicate().equals(getURI());
@@ -445,6 +491,15 @@ public class RemotePropertySet implements PropertySet, Set<Object> {
 		return getObjectConnection().addObject(instance);
 	}
 
+	private List<Value> toValues(Collection<?> objects)
+			throws RepositoryException {
+		List<Value> values = new ArrayList<Value>(objects.size());
+		for (Object o : objects) {
+			values.add(getValue(o));
+		}
+		return values;
+	}
+
 	protected void refresh(Object o) {
 		if (o instanceof Refreshable) {
 			((Refreshable) o).refresh();
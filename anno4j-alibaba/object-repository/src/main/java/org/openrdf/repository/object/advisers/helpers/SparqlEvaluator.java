@@ -44,11 +44,16 @@ import java.net.MalformedURLException;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -80,6 +85,11 @@ import org.openrdf.query.TupleQuery;
 import org.openrdf.query.TupleQueryResult;
 import org.openrdf.query.TupleQueryResultHandlerException;
 import org.openrdf.query.Update;
+import org.openrdf.query.parser.ParsedBooleanQuery;
+import org.openrdf.query.parser.ParsedGraphQuery;
+import org.openrdf.query.parser.ParsedOperation;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
 import org.openrdf.query.resultio.sparqlxml.SPARQLBooleanXMLWriter;
 import org.openrdf.query.resultio.sparqlxml.SPARQLResultsXMLWriter;
 import org.openrdf.repository.RepositoryException;
@@ -97,6 +107,7 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 public class SparqlEvaluator {
+	private static final String PLACEHOLDER = "__";
 	private static final Pattern ILLEGAL_VAR = Pattern.compile("\\s|\\?");
 	private static final XMLInputFactory inFactory;
 	private static final DocumentBuilderFactory documentBuilderFactory;
@@ -119,8 +130,7 @@ public class SparqlEvaluator {
 		private ObjectConnection con;
 		private SparqlQuery query;
 		private Map<String, Value> bindings = new HashMap<String, Value>();
-		private List<String> bindingNames = new ArrayList<String>();
-		private List<List<Value>> bindingValues = new ArrayList<List<Value>>();
+		private Map<String, List<Value>> multiples = new LinkedHashMap<String, List<Value>>();
 		private org.openrdf.repository.object.ObjectFactory of;
 
 		public SparqlBuilder(ObjectConnection con, SparqlQuery query) {
@@ -133,7 +143,15 @@ public class SparqlEvaluator {
 
 		@Override
 		public String toString() {
-			return bindMultiples(query.toString());
+			return joinPlaceholders(query.toString(), getArities());
+		}
+
+		/**
+		 * @return the values bound so far, equal for equally bound builders
+		 */
+		public Object getBindingKey() {
+			return Arrays.asList(new HashMap<String, Value>(bindings),
+					new LinkedHashMap<String, List<Value>>(multiples));
 		}
 
 		public SparqlBuilder with(String name, Set values) {
@@ -142,34 +160,23 @@ public class SparqlEvaluator {
 				throw new IllegalArgumentException(
 						"Invalide SPARQL variable name: '" + name + "'");
 			}
-			List<List<Value>> list = new ArrayList<List<Value>>();
+			if (values.size() == 1 && values.iterator().next() != null) {
+				// a binding keeps the query text the same
+				multiples.remove(name);
+				return with(name, values.iterator().next());
+			}
+			bindings.remove(name);
+			List<Value> list = new ArrayList<Value>(values.size());
 			for (Object value : values) {
-				for (List<Value> bindings : bindingValues) {
-					List<Value> set = new ArrayList<Value>(bindings.size() + 1);
-					set.addAll(bindings);
-					if (value == null) {
-						set.add(null);
-					} else if (value instanceof Value) {
-						set.add((Value) value);
-					} else {
-						set.add(of.createValue(value));
-					}
-					list.add(set);
-				}
-				if (bindingValues.isEmpty()) {
-					List<Value> set = new ArrayList<Value>(1);
-					if (value == null) {
-						set.add(null);
-					} else if (value instanceof Value) {
-						set.add((Value) value);
-					} else {
-						set.add(of.createValue(value));
-					}
-					list.add(set);
+				if (value == null) {
+					list.add(null);
+				} else if (value instanceof Value) {
+					list.add((Value) value);
+				} else {
+					list.add(of.createValue(value));
 				}
 			}
-			bindingValues = list;
-			bindingNames.add(name);
+			multiples.put(name, list);
 			return this;
 		}
 
@@ -519,9 +526,14 @@ public class SparqlEvaluator {
 
 		public void asUpdate() throws OpenRDFException {
 			String base = query.getBaseURI();
-			String sparql = bindMultiples(query.toString());
-			Update qry = bindSingles(con.prepareUpdate(SPARQL, sparql, base));
-			qry.execute();
+			Map<String, Integer> arities = getArities();
+			String sparql = updates.get(arities);
+			if (sparql == null) {
+				sparql = joinPlaceholders(query.toString(), arities);
+				updates.putIfAbsent(arities, sparql);
+			}
+			Update qry = con.prepareUpdate(SPARQL, sparql, base);
+			bindMultiples(bindSingles(qry), arities).execute();
 		}
 
 		public void toOutputStream(OutputStream output)
@@ -557,91 +569,103 @@ public class SparqlEvaluator {
 
 		private GraphQuery prepareGraphQuery() throws MalformedQueryException,
 				RepositoryException {
-			String sparql = bindMultiples(query.toString());
 			String base = query.getBaseURI();
-			return bindSingles(con.prepareGraphQuery(SPARQL, sparql, base));
+			Map<String, Integer> arities = getArities();
+			ParsedGraphQuery parsed = (ParsedGraphQuery) parse(
+					GraphQuery.class, arities);
+			GraphQuery qry = con.prepareGraphQuery(parsed, base);
+			return bindMultiples(bindSingles(qry), arities);
 		}
 
 		private TupleQuery prepareTupleQuery() throws MalformedQueryException,
 				RepositoryException {
 			String base = query.getBaseURI();
-			String sparql = bindMultiples(query.toString());
-			return bindSingles(con.prepareTupleQuery(SPARQL, sparql, base));
+			Map<String, Integer> arities = getArities();
+			ParsedTupleQuery parsed = (ParsedTupleQuery) parse(
+					TupleQuery.class, arities);
+			TupleQuery qry = con.prepareTupleQuery(parsed, base);
+			return bindMultiples(bindSingles(qry), arities);
 		}
 
 		private BooleanQuery prepareBooleanQuery()
 				throws MalformedQueryException, RepositoryException {
 			String base = query.getBaseURI();
-			String sparql = bindMultiples(query.toString());
-			return bindSingles(con.prepareBooleanQuery(SPARQL, sparql, base));
+			Map<String, Integer> arities = getArities();
+			ParsedBooleanQuery parsed = (ParsedBooleanQuery) parse(
+					BooleanQuery.class, arities);
+			BooleanQuery qry = con.prepareBooleanQuery(parsed, base);
+			return bindMultiples(bindSingles(qry), arities);
 		}
 
 		private ObjectQuery prepareObjectQuery(Class<?> concept)
 				throws MalformedQueryException, RepositoryException {
 			String base = query.getBaseURI();
-			String sparql = bindMultiples(query.toObjectString(concept));
-			return bindSingles(con.prepareObjectQuery(SPARQL, sparql, base));
-		}
-
-		private String bindMultiples(String sparql) {
-			if (bindingNames.isEmpty())
-				return sparql;
-			StringBuilder sb = new StringBuilder(sparql);
-			sb.append("\nBINDINGS");
-			for (String name : bindingNames) {
-				sb.append(" ?").append(name);
+			Map<String, Integer> arities = getArities();
+			ParsedTupleQuery parsed = (ParsedTupleQuery) parse(concept,
+					arities);
+			ObjectQuery qry = con.prepareObjectQuery(parsed, base);
+			return bindMultiples(bindSingles(qry), arities);
+		}
+
+		/**
+		 * Parses the query for the type of result and the arities of the
+		 * multi-valued bindings once and shares it between the builders of
+		 * this evaluator.
+		 */
+		private ParsedOperation parse(Class<?> type, Map<String, Integer> arities)
+				throws MalformedQueryException {
+			List<Object> key = Arrays.<Object> asList(type, arities);
+			ParsedOperation parsed = queries.get(key);
+			if (parsed != null)
+				return parsed;
+			String base = query.getBaseURI();
+			if (GraphQuery.class.equals(type)) {
+				String sparql = joinPlaceholders(query.toString(), arities);
+				parsed = QueryParserUtil.parseGraphQuery(SPARQL, sparql, base);
+			} else if (TupleQuery.class.equals(type)) {
+				String sparql = joinPlaceholders(query.toString(), arities);
+				parsed = QueryParserUtil.parseTupleQuery(SPARQL, sparql, base);
+			} else if (BooleanQuery.class.equals(type)) {
+				String sparql = joinPlaceholders(query.toString(), arities);
+				parsed = QueryParserUtil.parseBooleanQuery(SPARQL, sparql, base);
+			} else {
+				String sparql = joinPlaceholders(query.toObjectString(type),
+						arities);
+				parsed = QueryParserUtil.parseTupleQuery(SPARQL, sparql, base);
 			}
-			sb.append(" {\n");
-			for (List<Value> values : bindingValues) {
-				sb.append("\t(");
-				for (Value value : values) {
-					if (value == null) {
-						sb.append("UNDEF");
-					} else if (value instanceof URI) {
-						writeURI(sb, value);
-					} else if (value instanceof BNode) {
-						writeBNode(sb, value);
-					} else if (value instanceof Literal) {
-						writeLiteral(sb, value);
-					} else {
-						throw new AssertionError();
-					}
-					sb.append(" ");
+			ParsedOperation o = queries.putIfAbsent(key, parsed);
+			return o == null ? parsed : o;
+		}
+
+		/**
+		 * The number of placeholders of each multi-valued binding, padded to
+		 * a power of four so few texts are needed. A binding with a null
+		 * value leaves the variable unconstrained and has no placeholders.
+		 */
+		private Map<String, Integer> getArities() {
+			Map<String, Integer> arities = new TreeMap<String, Integer>();
+			for (Map.Entry<String, List<Value>> e : multiples.entrySet()) {
+				List<Value> values = e.getValue();
+				if (values.contains(null))
+					continue;
+				int arity = 1;
+				while (arity < values.size()) {
+					arity *= 4;
 				}
-				sb.append(")\n");
+				arities.put(e.getKey(), arity);
 			}
-			sb.append("}\n");
-			return sb.toString();
+			return arities;
 		}
 
-		private void writeBNode(StringBuilder sb, Value value) {
-			sb.append("_:").append(value.stringValue());
-		}
-
-		private void writeLiteral(StringBuilder sb, Value value) {
-			Literal lit = (Literal) value;
-			sb.append("\"");
-			String label = value.stringValue();
-			sb.append(encodeString(label));
-			sb.append("\"");
-			if (lit.getDatatype() != null) {
-				// Append the literal's datatype (possibly written as an
-				// abbreviated URI)
-				sb.append("^^");
-				writeURI(sb, lit.getDatatype());
-			}
-			if (lit.getLanguage() != null) {
-				// Append the literal's language
-				sb.append("@");
-				sb.append(lit.getLanguage());
+		private <T extends Operation> T bindMultiples(T qry,
+				Map<String, Integer> arities) {
+			for (String name : arities.keySet()) {
+				List<Value> values = multiples.get(name);
+				for (int i = 0; i < values.size(); i++) {
+					qry.setBinding(name + PLACEHOLDER + i, values.get(i));
+				}
 			}
-		}
-
-		private void writeURI(StringBuilder sb, Value value) {
-			sb.append("<");
-			String uri = value.stringValue();
-			sb.append(encodeURIString(uri));
-			sb.append(">");
+			return qry;
 		}
 
 		private <T extends Operation> T bindSingles(T qry) {
@@ -650,30 +674,26 @@ public class SparqlEvaluator {
 			}
 			return qry;
 		}
-
-		private String encodeString(String label) {
-			label = label.replace("\\", "\\\\");
-			label = label.replace("\t", "\\t");
-			label = label.replace("\n", "\\n");
-			label = label.replace("\r", "\\r");
-			label = label.replace("\"", "\\\"");
-			return label;
-		}
-
-		private String encodeURIString(String uri) {
-			uri = uri.replace("\\", "\\\\");
-			uri = uri.replace(">", "\\>");
-			return uri;
-		}
 	}
 
 	private final SparqlQuery sparql;
 	private final String systemId;
+	private final Set<URI> predicates;
+	private final ConcurrentMap<List<Object>, ParsedOperation> queries = new ConcurrentHashMap<List<Object>, ParsedOperation>();
+	private final ConcurrentMap<Map<String, Integer>, String> updates = new ConcurrentHashMap<Map<String, Integer>, String>();
 
 	public SparqlEvaluator(SparqlQuery query) throws MalformedURLException,
 			MalformedQueryException, IOException {
 		this.systemId = query.getBaseURI();
 		sparql = query;
+		predicates = query.getPredicates();
+	}
+
+	/**
+	 * @return the predicates the query reads, or null if unknown
+	 */
+	public Set<URI> getPredicates() {
+		return predicates;
 	}
 
 	@Override
@@ -689,4 +709,167 @@ public class SparqlEvaluator {
 		return sparql;
 	}
 
+	/**
+	 * Joins each WHERE clause with one union for each multi-valued binding,
+	 * whose branches bind the variable to one placeholder each. Unbound
+	 * placeholders pad the union to its arity and match nothing. Each union
+	 * is a sub-select, so the unions are not distributed over each other.
+	 */
+	static String joinPlaceholders(String sparql, Map<String, Integer> arities) {
+		if (arities.isEmpty())
+			return sparql;
+		List<int[]> groups = findWhereClauses(sparql);
+		if (groups.isEmpty())
+			throw new IllegalArgumentException(
+					"Cannot bind multiple values without a WHERE clause");
+		StringBuilder unions = new StringBuilder();
+		for (Map.Entry<String, Integer> e : arities.entrySet()) {
+			String name = e.getKey();
+			unions.append("\n{ SELECT ?").append(name).append(" {");
+			for (int i = 0; i < e.getValue(); i++) {
+				if (i > 0) {
+					unions.append(" UNION");
+				}
+				unions.append(" { BIND ($").append(name).append(PLACEHOLDER)
+						.append(i).append(" AS ?").append(name);
+				unions.append(") FILTER bound(?").append(name).append(") }");
+			}
+			unions.append(" } }");
+		}
+		unions.append("\n");
+		StringBuilder sb = new StringBuilder(sparql.length() + groups.size()
+				* (unions.length() + 2));
+		int start = 0;
+		for (int[] group : groups) {
+			int open = group[0] + 1;
+			int close = group[1];
+			sb.append(sparql, start, open).append(unions);
+			if (group[2] > 0) {
+				// a sub-select must be a group of its own
+				sb.append("{").append(sparql, open, close).append("}");
+				start = close;
+			} else {
+				start = open;
+			}
+		}
+		sb.append(sparql, start, sparql.length());
+		return sb.toString();
+	}
+
+	/**
+	 * Finds the WHERE clauses of the query, or of each operation of an
+	 * update, skipping over literals, IRIs and comments.
+	 * 
+	 * @return the indexes of the opening and closing braces of each clause
+	 *         and 1 if it is a sub-select or 0 otherwise
+	 */
+	static List<int[]> findWhereClauses(String sparql) {
+		List<int[]> groups = new ArrayList<int[]>();
+		int[] group = null;
+		int depth = 0;
+		boolean where = false; // WHERE keyword read
+		boolean implicit = false; // SELECT, ASK or DESCRIBE may omit WHERE
+		boolean found = false; // WHERE clause of this operation found
+		boolean first = false; // next word is the first of the clause
+		int n = sparql.length();
+		for (int i = 0; i < n; i++) {
+			char c = sparql.charAt(i);
+			if (c == '#') {
+				while (i + 1 < n && sparql.charAt(i + 1) != '\n'
+						&& sparql.charAt(i + 1) != '\r') {
+					i++;
+				}
+				continue;
+			} else if (Character.isWhitespace(c)) {
+				continue;
+			} else if (c == '"' || c == '\'') {
+				i = skipString(sparql, i);
+			} else if (c == '<') {
+				i = skipIRI(sparql, i);
+			} else if (c == '{' && depth == 0) {
+				if (where || implicit && !found) {
+					group = new int[] { i, n, 0 };
+					groups.add(group);
+					found = first = true;
+				}
+				where = implicit = false;
+				depth++;
+				continue;
+			} else if (c == '{' || c == '(') {
+				depth++;
+			} else if (c == '}' || c == ')') {
+				depth--;
+				if (depth == 0 && group != null) {
+					group[1] = i;
+					group = null;
+				}
+			} else if (c == ';' && depth == 0) {
+				where = implicit = found = false;
+			} else if (isNameChar(c) || c == '?' || c == '$' || c == ':') {
+				int end = i + 1;
+				while (end < n && (isNameChar(sparql.charAt(end)) || sparql
+						.charAt(end) == ':')) {
+					end++;
+				}
+				String word = sparql.substring(i, end);
+				if (first && "SELECT".equalsIgnoreCase(word)) {
+					group[2] = 1;
+				} else if (depth == 0 && "WHERE".equalsIgnoreCase(word)) {
+					where = true;
+				} else if (depth == 0 && ("SELECT".equalsIgnoreCase(word)
+						|| "ASK".equalsIgnoreCase(word) || "DESCRIBE"
+							.equalsIgnoreCase(word))) {
+					implicit = true;
+				}
+				i = end - 1;
+			}
+			first = false;
+		}
+		return groups;
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+	}
+
+	/**
+	 * @return the index of the closing quote
+	 */
+	private static int skipString(String sparql, int start) {
+		char quote = sparql.charAt(start);
+		int n = sparql.length();
+		boolean isLong = start + 2 < n && sparql.charAt(start + 1) == quote
+				&& sparql.charAt(start + 2) == quote;
+		int i = isLong ? start + 3 : start + 1;
+		for (; i < n; i++) {
+			char c = sparql.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == quote && !isLong) {
+				return i;
+			} else if (c == quote && i + 2 < n
+					&& sparql.charAt(i + 1) == quote
+					&& sparql.charAt(i + 2) == quote) {
+				return i + 2;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return the index of the closing angle bracket, or of the opening one
+	 *         if it is a comparison
+	 */
+	private static int skipIRI(String sparql, int start) {
+		for (int i = start + 1, n = sparql.length(); i < n; i++) {
+			char c = sparql.charAt(i);
+			if (c == '>')
+				return i;
+			if (c <= ' ' || c == '<' || c == '"' || c == '{' || c == '}'
+					|| c == '|' || c == '^' || c == '`' || c == '\\')
+				return start;
+		}
+		return start;
+	}
+
 }
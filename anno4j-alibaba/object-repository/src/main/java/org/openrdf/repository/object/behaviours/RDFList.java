@@ -28,23 +28,38 @@
  */
 package org.openrdf.repository.object.behaviours;
 
+import static org.openrdf.query.QueryLanguage.SPARQL;
 import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.ConvertingIteration;
 
 import java.util.AbstractSequentialList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.openrdf.annotations.Precedes;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
@@ -58,7 +73,8 @@ import org.openrdf.repository.object.traits.Refreshable;
 /**
  * Java instance for rdf:List as a familiar interface to manipulate this List.
  * This implemention can only be modified when in autoCommit (autoFlush), or
- * when read uncommitted is supported.
+ * when read uncommitted is supported. The nodes of the list are loaded with a
+ * single query and kept until the list is refreshed.
  * 
  * @author James Leigh
  */
@@ -66,12 +82,17 @@ import org.openrdf.repository.object.traits.Refreshable;
 public abstract class RDFList extends AbstractSequentialList<Object> implements
 		Refreshable, Mergeable, RDFObject {
 
-	private int _size = -1;
+	private static final String CHAIN_QUERY = "SELECT ?node ?first ?rest\n"
+			+ "WHERE { $self <" + RDF.REST + ">* ?node\n"
+			+ "OPTIONAL { ?node <" + RDF.FIRST + "> ?first }\n"
+			+ "OPTIONAL { ?node <" + RDF.REST + "> ?rest } }";
+
+	private volatile Chain chain;
 
 	private RDFList parent;
 
 	public void refresh() {
-		_size = -1;
+		chain = null;
 		if (parent != null)
 			parent.refresh();
 	}
@@ -126,22 +147,98 @@ public abstract class RDFList extends AbstractSequentialList<Object> implements
 
 	@Override
 	public int size() {
-		if (_size < 0) {
-			synchronized (this) {
-				if (_size < 0) {
-					Resource list = getResource();
-					int size;
-					for (size = 0; list != null && !list.equals(RDF.NIL); size++) {
-						Resource nlist = getRest(list);
-						if (nlist == null && getFirst(list) == null)
-							break;
-						list = nlist;
+		return getChain().size();
+	}
+
+	@Override
+	public Object get(int index) {
+		Chain chain = getChain();
+		if (index < 0 || index >= chain.size() || chain.values[index] == null)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return createInstance(chain.values[index]);
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Object> c) {
+		if (c.isEmpty())
+			return false;
+		if (getResource().equals(RDF.NIL))
+			throw new ObjectPersistException(
+					"cannot add a value to the nil list");
+		ObjectConnection conn = getObjectConnection();
+		try {
+			boolean autoCommit = conn.isAutoCommit();
+			if (autoCommit)
+				conn.setAutoCommit(false);
+			try {
+				Chain chain = getChain();
+				ValueFactory vf = getValueFactory();
+				Model removed = new LinkedHashModel();
+				Model added = new LinkedHashModel();
+				Resource list = getResource();
+				if (chain.size() > 0) {
+					Resource last = chain.nodes[chain.size() - 1];
+					if (chain.tail != null) {
+						removed.add(last, RDF.REST, chain.tail);
 					}
-					_size = size;
+					list = vf.createBNode();
+					added.add(last, RDF.REST, list);
+				}
+				Iterator<? extends Object> iter = c.iterator();
+				while (iter.hasNext()) {
+					Object o = iter.next();
+					if (o != null) {
+						added.add(list, RDF.FIRST, conn.addObject(o));
+					}
+					Resource rest = RDF.NIL;
+					if (iter.hasNext()) {
+						rest = vf.createBNode();
+					}
+					added.add(list, RDF.REST, rest);
+					list = rest;
+				}
+				if (!removed.isEmpty()) {
+					conn.remove(removed);
+				}
+				conn.add(added);
+				if (autoCommit)
+					conn.setAutoCommit(true);
+			} finally {
+				if (autoCommit && !conn.isAutoCommit()) {
+					conn.rollback();
+					conn.setAutoCommit(true);
 				}
 			}
+			return true;
+		} catch (RepositoryException e) {
+			throw new ObjectPersistException(e);
+		} finally {
+			refresh();
+		}
+	}
+
+	@Override
+	public void clear() {
+		Chain chain = getChain();
+		if (chain.size() == 0)
+			return;
+		Model model = new LinkedHashModel();
+		for (int i = 0, n = chain.size(); i < n; i++) {
+			if (chain.values[i] != null) {
+				model.add(chain.nodes[i], RDF.FIRST, chain.values[i]);
+			}
+			Resource rest = i + 1 < n ? chain.nodes[i + 1] : chain.tail;
+			if (rest != null) {
+				model.add(chain.nodes[i], RDF.REST, rest);
+			}
+		}
+		try {
+			getObjectConnection().remove(model);
+		} catch (RepositoryException e) {
+			throw new ObjectPersistException(e);
+		} finally {
+			refresh();
 		}
-		return _size;
 	}
 
 	@Override
@@ -151,10 +248,17 @@ public abstract class RDFList extends AbstractSequentialList<Object> implements
 
 			private boolean removed;
 
+			private final Chain chain = getChain();
+
 			Resource list;
 			{
-				for (int i = 0; i < index; i++) {
-					next();
+				if (index < 0 || index > chain.size())
+					throw new IndexOutOfBoundsException("Index: " + index);
+				for (int i = 0; i < index - 1; i++) {
+					prevLists.add(chain.nodes[i]);
+				}
+				if (index > 0) {
+					list = chain.nodes[index - 1];
 				}
 			}
 
@@ -304,6 +408,10 @@ public abstract class RDFList extends AbstractSequentialList<Object> implements
 			}
 
 			public boolean hasNext() {
+				if (isLoaded()) {
+					int i = nextIndex();
+					return i < chain.size() && chain.values[i] != null;
+				}
 				Resource next;
 				if (list == null) {
 					next = getResource();
@@ -314,6 +422,16 @@ public abstract class RDFList extends AbstractSequentialList<Object> implements
 			}
 
 			public Object next() {
+				if (isLoaded()) {
+					int i = nextIndex();
+					if (i >= chain.size() || chain.values[i] == null)
+						throw new NoSuchElementException();
+					if (list != null) {
+						prevLists.add(list);
+					}
+					list = chain.nodes[i];
+					return createInstance(chain.values[i]);
+				}
 				if (list == null) {
 					list = getResource();
 				} else if (!removed) {
@@ -345,22 +463,22 @@ public abstract class RDFList extends AbstractSequentialList<Object> implements
 			public Object previous() {
 				list = prevLists.remove(prevLists.size() - 1);
 				removed = false;
-				Value first = getFirst(list);
+				Value first;
+				if (isLoaded()) {
+					first = chain.values[prevLists.size()];
+				} else {
+					first = getFirst(list);
+				}
 				if (first == null)
 					throw new NoSuchElementException();
 				return createInstance(first);
 			}
 
-			private Object createInstance(Value first) {
-				try {
-					if (first instanceof Resource)
-						return getObjectConnection()
-								.getObject((Resource) first);
-					return getObjectConnection().getObjectFactory()
-							.createObject(((Literal) first));
-				} catch (RepositoryException e) {
-					throw new ObjectStoreException(e);
-				}
+			/**
+			 * The loaded nodes can only be used until the list is modified.
+			 */
+			private boolean isLoaded() {
+				return !removed && chain == RDFList.this.chain;
 			}
 		};
 	}
@@ -370,6 +488,99 @@ public abstract class RDFList extends AbstractSequentialList<Object> implements
 		return super.toString();
 	}
 
+	private Object createInstance(Value first) {
+		try {
+			if (first instanceof Resource)
+				return getObjectConnection().getObject((Resource) first);
+			return getObjectConnection().getObjectFactory().createObject(
+					((Literal) first));
+		} catch (RepositoryException e) {
+			throw new ObjectStoreException(e);
+		}
+	}
+
+	private Chain getChain() {
+		Chain result = chain;
+		if (result == null) {
+			synchronized (this) {
+				result = chain;
+				if (result == null) {
+					chain = result = loadChain();
+				}
+			}
+		}
+		return result;
+	}
+
+	private Chain loadChain() {
+		ObjectConnection conn = getObjectConnection();
+		Map<Resource, Value> firsts = new HashMap<Resource, Value>();
+		Map<Resource, Resource> rests = new HashMap<Resource, Resource>();
+		try {
+			TupleQuery query = conn.prepareTupleQuery(SPARQL, CHAIN_QUERY);
+			query.setBinding("self", getResource());
+			TupleQueryResult result = query.evaluate();
+			try {
+				while (result.hasNext()) {
+					BindingSet bindings = result.next();
+					Resource node = (Resource) bindings.getValue("node");
+					Value first = bindings.getValue("first");
+					Value rest = bindings.getValue("rest");
+					if (first != null && !firsts.containsKey(node)) {
+						firsts.put(node, first);
+					}
+					if (rest instanceof Resource && !rests.containsKey(node)) {
+						rests.put(node, (Resource) rest);
+					}
+				}
+			} finally {
+				result.close();
+			}
+		} catch (MalformedQueryException e) {
+			throw new ObjectStoreException(e);
+		} catch (QueryEvaluationException e) {
+			throw new ObjectStoreException(e);
+		} catch (RepositoryException e) {
+			throw new ObjectStoreException(e);
+		}
+		List<Resource> nodes = new ArrayList<Resource>();
+		List<Value> values = new ArrayList<Value>();
+		Set<Resource> visited = new HashSet<Resource>();
+		Resource list = getResource();
+		Resource tail = null;
+		while (list != null && !list.equals(RDF.NIL) && visited.add(list)) {
+			Value first = firsts.get(list);
+			Resource rest = rests.get(list);
+			if (rest == null && first == null)
+				break;
+			nodes.add(list);
+			values.add(first);
+			tail = rest;
+			list = rest;
+		}
+		return new Chain(nodes.toArray(new Resource[nodes.size()]),
+				values.toArray(new Value[values.size()]), tail);
+	}
+
+	/**
+	 * The nodes of this list and their values as read from the store.
+	 */
+	private static final class Chain {
+		final Resource[] nodes;
+		final Value[] values;
+		final Resource tail;
+
+		Chain(Resource[] nodes, Value[] values, Resource tail) {
+			this.nodes = nodes;
+			this.values = values;
+			this.tail = tail;
+		}
+
+		int size() {
+			return nodes.length;
+		}
+	}
+
 	Value getFirst(Resource list) {
 		if (list == null)
 			return null;
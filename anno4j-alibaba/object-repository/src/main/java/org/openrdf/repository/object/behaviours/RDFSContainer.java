@@ -33,9 +33,17 @@ import info.aduna.iteration.CloseableIteration;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.openrdf.annotations.Precedes;
 import org.openrdf.model.Literal;
@@ -52,6 +60,7 @@ import org.openrdf.query.TupleQueryResult;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.object.ObjectConnection;
+import org.openrdf.repository.object.ObjectRepository;
 import org.openrdf.repository.object.RDFObject;
 import org.openrdf.repository.object.exceptions.ObjectPersistException;
 import org.openrdf.repository.object.exceptions.ObjectStoreException;
@@ -60,6 +69,8 @@ import org.openrdf.repository.object.traits.Refreshable;
 
 /**
  * This behaviour provides a java.util.List interface for RDF containers.
+ * Members are loaded in blocks that grow while the container is read
+ * sequentially, when the next block is also fetched in the background.
  * 
  * @author James Leigh
  */
@@ -69,14 +80,52 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 
 	private static final int UNKNOWN = -1;
 
-	private static final int BSIZE = 64;
+	private static final int BSIZE = 16;
+
+	/** Number of blocks loaded by the first query. */
+	private static final int INITIAL_BLOCKS = 4;
+
+	private static final int MAX_BLOCKS = 64;
+
+	private static final String MEMBER_PREFIX = RDF.NAMESPACE + '_';
+
+	private static final String SIZE_QUERY = "SELECT (COUNT(DISTINCT ?pred) AS ?count) (MAX(?member) AS ?max)\n"
+			+ "WHERE { $self ?pred ?value\n"
+			+ "FILTER (strstarts(str(?pred), \"" + MEMBER_PREFIX + "\")"
+			+ " && regex(substr(str(?pred), " + (MEMBER_PREFIX.length() + 1)
+			+ "), \"^[1-9][0-9]*$\"))\n"
+			+ "BIND (<http://www.w3.org/2001/XMLSchema#integer>(substr(str(?pred), "
+			+ (MEMBER_PREFIX.length() + 1) + ")) AS ?member) }";
+
+	private static final ExecutorService PREFETCH_EXECUTOR = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable,
+							"RDFSContainer prefetch");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 
 	private volatile int _size = UNKNOWN;
 
 	private List<Object[]> blocks = new ArrayList<Object[]>();
 
+	/** Number of blocks to load with the next query. */
+	private int blockCount = INITIAL_BLOCKS;
+
+	/** First block after the last load, if read sequentially. */
+	private int nextBlock = UNKNOWN;
+
+	private int prefetchBlock = UNKNOWN;
+
+	private int prefetchCount;
+
+	private Future<List<BindingSet>> prefetched;
+
 	public void refresh() {
 		_size = UNKNOWN;
+		cancelPrefetch();
 	}
 
 	@Override
@@ -86,9 +135,7 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 			Object[] block = getBlock(b);
 			if (block != null)
 				return block[index % BSIZE];
-			Object[] list = loadBlock(b);
-			assignBlock(b, list);
-			return list[index % BSIZE];
+			return loadBlocks(b)[index % BSIZE];
 		} catch (RepositoryException e) {
 			throw new ObjectStoreException(e);
 		} catch (QueryEvaluationException e) {
@@ -192,6 +239,7 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 				replace(i, get(i + 1));
 			}
 			URI pred = getMemberPredicate(size - 1);
+			cancelPrefetch();
 			conn.remove(getResource(), pred, null);
 			Object[] block = getBlock((size - 1) / BSIZE);
 			if (block != null) {
@@ -217,6 +265,7 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 			if (size < 0) {
 				size = (int) findSize();
 			}
+			cancelPrefetch();
 			for (int i = 0; i < size; i++) {
 				URI pred = getMemberPredicate(i);
 				conn.remove(resource, pred, null);
@@ -267,6 +316,7 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 		URI pred = getMemberPredicate(index);
 		Object old = get(index);
 		ObjectConnection conn = getObjectConnection();
+		cancelPrefetch();
 		if (old != null) {
 			conn.remove(getResource(), pred, null);
 		}
@@ -284,6 +334,7 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 		URI pred = getMemberPredicate(index);
 		Value newValue = getObjectConnection().addObject(o);
 		ObjectConnection conn = getObjectConnection();
+		cancelPrefetch();
 		conn.add(getResource(), pred, newValue);
 		clearBlock(index / BSIZE);
 	}
@@ -294,6 +345,7 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 		URI pred = getMemberPredicate(index);
 		ObjectConnection conn = getObjectConnection();
 		Value newValue = getObjectConnection().addObject(o);
+		cancelPrefetch();
 		boolean autoCommit = conn.isAutoCommit();
 		if (autoCommit)
 			conn.setAutoCommit(false);
@@ -315,6 +367,35 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 	}
 
 	private int findSize() throws RepositoryException {
+		try {
+			ObjectConnection conn = getObjectConnection();
+			TupleQuery query = conn.prepareTupleQuery(SPARQL, SIZE_QUERY);
+			query.setBinding("self", getResource());
+			TupleQueryResult result = query.evaluate();
+			try {
+				if (!result.hasNext())
+					return 0;
+				BindingSet bindings = result.next();
+				Value count = bindings.getValue("count");
+				Value max = bindings.getValue("max");
+				if (count == null || max == null)
+					return 0;
+				int size = ((Literal) count).intValue();
+				if (size == ((Literal) max).intValue())
+					return size;
+			} finally {
+				result.close();
+			}
+		} catch (MalformedQueryException e) {
+			throw new RepositoryException(e);
+		} catch (QueryEvaluationException e) {
+			throw new RepositoryException(e);
+		}
+		// members are not numbered contiguously
+		return scanSize();
+	}
+
+	private int scanSize() throws RepositoryException {
 		CloseableIteration<? extends Statement, RepositoryException> iter;
 		HashSet<URI> set = new HashSet<URI>();
 		ObjectConnection conn = getObjectConnection();
@@ -351,58 +432,189 @@ public abstract class RDFSContainer extends AbstractList<Object> implements
 		}
 	}
 
-	private Object[] loadBlock(int b) throws RepositoryException, QueryEvaluationException {
-		TupleQuery query = createBlockQuery(b);
-		TupleQueryResult result = query.evaluate();
-		BindingSet bindings = result.next();
-		ObjectConnection con = getObjectConnection();
-		Object[] list = new Object[BSIZE];
-		while (bindings != null) {
-			URI pred = (URI) bindings.getValue("pred");
-			int idx = getIndex(pred);
+	private Object[] loadBlocks(int b) throws RepositoryException,
+			QueryEvaluationException {
+		boolean sequential;
+		int count;
+		Future<List<BindingSet>> future;
+		synchronized (this) {
+			sequential = b == nextBlock;
+			if (sequential) {
+				blockCount = Math.min(blockCount * 2, MAX_BLOCKS);
+			} else if (nextBlock != UNKNOWN) {
+				blockCount = 1;
+			}
+			count = blockCount;
+			future = prefetched;
+			if (future != null && prefetchBlock == b) {
+				count = prefetchCount;
+				prefetched = null;
+			} else {
+				future = null;
+			}
+		}
+		List<BindingSet> rows = null;
+		if (future != null) {
+			rows = getPrefetched(future);
+		} else {
+			cancelPrefetch();
+		}
+		if (rows == null) {
+			count = limitBlocks(b, count);
+			rows = evaluate(getObjectConnection(), createBlockQuery(b, count),
+					getResource());
+		}
+		Object[][] list = createBlocks(b, count, rows);
+		for (int i = 0; i < count; i++) {
+			assignBlock(b + i, list[i]);
+		}
+		synchronized (this) {
+			nextBlock = b + count;
+		}
+		if (sequential) {
+			prefetch(b + count);
+		}
+		return list[0];
+	}
+
+	private int limitBlocks(int b, int count) {
+		int size = _size;
+		if (size > UNKNOWN) {
+			int remaining = (size + BSIZE - 1) / BSIZE - b;
+			if (remaining > 0 && remaining < count)
+				return remaining;
+		}
+		return count;
+	}
+
+	private Object[][] createBlocks(int b, int count, List<BindingSet> rows)
+			throws RepositoryException {
+		Map<Integer, Value> values = new HashMap<Integer, Value>();
+		Map<Integer, Set<URI>> types = new HashMap<Integer, Set<URI>>();
+		for (BindingSet bindings : rows) {
+			int idx = getIndex((URI) bindings.getValue("pred"));
 			Value value = bindings.getValue("value");
-			Set<URI> types = new HashSet<URI>(4);
-			do {
-				Value c = bindings.getValue("value_class");
-				if (c instanceof URI) {
-					types.add((URI) c);
-				}
-				bindings = result.hasNext() ? result.next() : null;
-			} while (bindings != null && pred.equals(bindings.getValue("pred")));
-			int i = idx % BSIZE;
+			if (!values.containsKey(idx)) {
+				values.put(idx, value);
+				types.put(idx, new HashSet<URI>(4));
+			} else if (!value.equals(values.get(idx))) {
+				continue;
+			}
+			Value c = bindings.getValue("value_class");
+			if (c instanceof URI) {
+				types.get(idx).add((URI) c);
+			}
+		}
+		ObjectConnection con = getObjectConnection();
+		Object[][] list = new Object[count][BSIZE];
+		for (Map.Entry<Integer, Value> e : values.entrySet()) {
+			int i = e.getKey() - b * BSIZE;
+			Value value = e.getValue();
 			if (value instanceof Literal) {
-				list[i] = con.getObject((Literal) value);
+				list[i / BSIZE][i % BSIZE] = con.getObject((Literal) value);
 			} else {
-				list[i] = con.getObject(types, (Resource) value);
+				list[i / BSIZE][i % BSIZE] = con.getObject(
+						types.get(e.getKey()), (Resource) value);
 			}
 		}
 		return list;
 	}
 
-	private TupleQuery createBlockQuery(int b) throws RepositoryException {
+	private String createBlockQuery(int b, int count) {
 		StringBuilder sb = new StringBuilder();
 		sb.append("SELECT ?pred ?value ?value_class\n");
-		sb.append("WHERE { $self ?pred ?value\n");
-		sb.append("OPTIONAL { ?value a ?value_class }\n");
-		sb.append("FILTER (");
-		for (int i = b * BSIZE, n = b * BSIZE + BSIZE; i < n; i++) {
-			sb.append("?pred = <");
-			sb.append(RDF.NAMESPACE);
-			sb.append("_");
+		sb.append("WHERE { VALUES ?pred {");
+		for (int i = b * BSIZE, n = (b + count) * BSIZE; i < n; i++) {
+			sb.append(" <");
+			sb.append(MEMBER_PREFIX);
 			sb.append((i + 1));
 			sb.append(">");
-			if (i + 1 < n) {
-				sb.append(" || ");
-			}
 		}
-		sb.append(")}\n");
-		ObjectConnection con = getObjectConnection();
+		sb.append(" }\n");
+		sb.append("$self ?pred ?value\n");
+		sb.append("OPTIONAL { ?value a ?value_class } }\n");
+		return sb.toString();
+	}
+
+	private static List<BindingSet> evaluate(ObjectConnection con,
+			String qry, Resource self) throws RepositoryException,
+			QueryEvaluationException {
 		try {
-			TupleQuery query = con.prepareTupleQuery(SPARQL, sb.toString());
-			query.setBinding("self", getResource());
-			return query;
+			TupleQuery query = con.prepareTupleQuery(SPARQL, qry);
+			query.setBinding("self", self);
+			TupleQueryResult result = query.evaluate();
+			try {
+				List<BindingSet> rows = new ArrayList<BindingSet>();
+				while (result.hasNext()) {
+					rows.add(result.next());
+				}
+				return rows;
+			} finally {
+				result.close();
+			}
 		} catch (MalformedQueryException e) {
 			throw new RepositoryException(e);
 		}
 	}
+
+	/**
+	 * Fetches the members of the blocks after a sequential read using a
+	 * separate connection, when no uncommitted changes could be missed.
+	 */
+	private void prefetch(int b) throws RepositoryException {
+		ObjectConnection conn = getObjectConnection();
+		int size = _size;
+		if (!conn.isAutoCommit() || size > UNKNOWN && b * BSIZE >= size)
+			return;
+		int count;
+		synchronized (this) {
+			count = blockCount;
+		}
+		count = limitBlocks(b, count);
+		final ObjectRepository repository = conn.getRepository();
+		final URI[] contexts = conn.getReadContexts();
+		final boolean inferred = conn.isIncludeInferred();
+		final String qry = createBlockQuery(b, count);
+		final Resource self = getResource();
+		Future<List<BindingSet>> future = PREFETCH_EXECUTOR
+				.submit(new Callable<List<BindingSet>>() {
+					public List<BindingSet> call() throws Exception {
+						ObjectConnection con = repository.getConnection();
+						try {
+							con.setReadContexts(contexts);
+							con.setIncludeInferred(inferred);
+							return evaluate(con, qry, self);
+						} finally {
+							con.close();
+						}
+					}
+				});
+		synchronized (this) {
+			if (prefetched != null) {
+				prefetched.cancel(false);
+			}
+			prefetched = future;
+			prefetchBlock = b;
+			prefetchCount = count;
+		}
+	}
+
+	private List<BindingSet> getPrefetched(Future<List<BindingSet>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			// load the blocks with this connection instead
+			return null;
+		}
+	}
+
+	private synchronized void cancelPrefetch() {
+		if (prefetched != null) {
+			prefetched.cancel(false);
+			prefetched = null;
+		}
+	}
 }
@@ -34,10 +34,15 @@ import static org.openrdf.repository.object.config.ObjectRepositorySchema.BEHAVI
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.BEHAVIOUR_JAR;
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.BLOB_STORE;
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.BLOB_STORE_PARAMETER;
+import static org.openrdf.repository.object.config.ObjectRepositorySchema.CACHE_EAGER;
+import static org.openrdf.repository.object.config.ObjectRepositorySchema.CACHE_LIMIT;
+import static org.openrdf.repository.object.config.ObjectRepositorySchema.CACHE_POLICY;
+import static org.openrdf.repository.object.config.ObjectRepositorySchema.CACHE_TTL;
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.CONCEPT;
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.CONCEPT_JAR;
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.DATATYPE;
 import static org.openrdf.repository.object.config.ObjectRepositorySchema.KNOWN_AS;
+import static org.openrdf.repository.object.config.ObjectRepositorySchema.VALUE_POOL_SIZE;
 
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -51,6 +56,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.openrdf.model.Graph;
+import org.openrdf.model.Literal;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
@@ -63,6 +69,7 @@ import org.openrdf.model.util.ModelException;
 import org.openrdf.repository.config.RepositoryConfigException;
 import org.openrdf.repository.contextaware.config.ContextAwareConfig;
 import org.openrdf.repository.object.ObjectRepository;
+import org.openrdf.repository.object.advisers.helpers.CachePolicy;
 import org.openrdf.repository.object.exceptions.ObjectStoreConfigException;
 
 /**
@@ -85,6 +92,8 @@ public class ObjectRepositoryConfig extends ContextAwareConfig implements
 	private List<URL> behaviourJars = new ArrayList<URL>();
 	private Value blobStore;
 	private Set<Value> blobStoreParameters = new HashSet<Value>();
+	private Map<URI, CachePolicy> cachePolicies = new HashMap<URI, CachePolicy>();
+	private int valuePoolSize;
 
 	public ObjectRepositoryConfig() {
 		super();
@@ -392,6 +401,38 @@ public class ObjectRepositoryConfig extends ContextAwareConfig implements
 		}
 	}
 
+	public Map<URI, CachePolicy> getCachePolicies() {
+		return unmodifiableMap(cachePolicies);
+	}
+
+	/**
+	 * Sets how the values of the properties of the predicate are cached,
+	 * overriding their @Cached annotation.
+	 */
+	public void setCachePolicy(URI predicate, CachePolicy policy) {
+		if (policy == null) {
+			cachePolicies.remove(predicate);
+		} else {
+			cachePolicies.put(predicate, policy);
+		}
+	}
+
+	public void setCachePolicy(String predicate, CachePolicy policy) {
+		setCachePolicy(vf.createURI(predicate), policy);
+	}
+
+	public int getValuePoolSize() {
+		return valuePoolSize;
+	}
+
+	/**
+	 * Shares equal URIs and short literals read from query results, keeping
+	 * at most this many distinct values, or none if 0.
+	 */
+	public void setValuePoolSize(int valuePoolSize) {
+		this.valuePoolSize = valuePoolSize;
+	}
+
 	public ObjectRepositoryConfig clone() {
 		try {
 			Object o = super.clone();
@@ -406,6 +447,7 @@ public class ObjectRepositoryConfig extends ContextAwareConfig implements
 			clone.conceptJars = new ArrayList<URL>(conceptJars);
 			clone.behaviourJars = new ArrayList<URL>(behaviourJars);
 			clone.blobStoreParameters = new HashSet<Value>(blobStoreParameters);
+			clone.cachePolicies = new HashMap<URI, CachePolicy>(cachePolicies);
 			Graph model = new GraphImpl();
 			Resource subj = clone.export(model);
 			clone.parse(model, subj);
@@ -436,6 +478,18 @@ public class ObjectRepositoryConfig extends ContextAwareConfig implements
 		for (Value v : blobStoreParameters) {
 			model.add(subj, BLOB_STORE_PARAMETER, v);
 		}
+		for (Map.Entry<URI, CachePolicy> e : cachePolicies.entrySet()) {
+			CachePolicy policy = e.getValue();
+			Resource node = vf.createBNode();
+			model.add(subj, CACHE_POLICY, node);
+			model.add(node, KNOWN_AS, e.getKey());
+			model.add(node, CACHE_LIMIT, vf.createLiteral(policy.getLimit()));
+			model.add(node, CACHE_EAGER, vf.createLiteral(policy.isEager()));
+			model.add(node, CACHE_TTL, vf.createLiteral(policy.getTimeToLive()));
+		}
+		if (valuePoolSize > 0) {
+			model.add(subj, VALUE_POOL_SIZE, vf.createLiteral(valuePoolSize));
+		}
 		return subj;
 	}
 
@@ -459,10 +513,28 @@ public class ObjectRepositoryConfig extends ContextAwareConfig implements
 			blobStore = model.filter(subj, BLOB_STORE, null).objectValue();
 			blobStoreParameters.clear();
 			blobStoreParameters.addAll(model.filter(subj, BLOB_STORE_PARAMETER, null).objects());
+			cachePolicies.clear();
+			for (Value obj : model.filter(subj, CACHE_POLICY, null).objects()) {
+				Resource node = (Resource) obj;
+				URI predicate = model.filter(node, KNOWN_AS, null).objectURI();
+				if (predicate == null)
+					throw new ObjectStoreConfigException("Cache policy without predicate: " + node);
+				Literal limit = model.filter(node, CACHE_LIMIT, null).objectLiteral();
+				Literal eager = model.filter(node, CACHE_EAGER, null).objectLiteral();
+				Literal ttl = model.filter(node, CACHE_TTL, null).objectLiteral();
+				cachePolicies.put(predicate, new CachePolicy(
+						limit == null ? CachePolicy.DEFAULT.getLimit() : limit.intValue(),
+						eager != null && eager.booleanValue(),
+						ttl == null ? 0 : ttl.longValue()));
+			}
+			Literal poolSize = model.filter(subj, VALUE_POOL_SIZE, null).objectLiteral();
+			valuePoolSize = poolSize == null ? 0 : poolSize.intValue();
 		} catch (MalformedURLException e) {
 			throw new ObjectStoreConfigException(e);
 		} catch (ModelException e) {
 			throw new ObjectStoreConfigException(e);
+		} catch (IllegalArgumentException e) {
+			throw new ObjectStoreConfigException(e);
 		}
 	}
 
@@ -47,6 +47,7 @@ import org.openrdf.repository.config.RepositoryImplConfig;
 import org.openrdf.repository.contextaware.config.ContextAwareFactory;
 import org.openrdf.repository.object.ObjectRepository;
 import org.openrdf.repository.object.ObjectServiceImpl;
+import org.openrdf.repository.object.advisers.helpers.CachePolicy;
 import org.openrdf.repository.object.behaviours.RDFObjectImpl;
 import org.openrdf.repository.object.exceptions.ObjectStoreConfigException;
 import org.openrdf.repository.object.managers.LiteralManager;
@@ -152,6 +153,10 @@ public class ObjectRepositoryFactory extends ContextAwareFactory {
 		ObjectRepository repo = createObjectRepository(mapper, literals, cl);
 		repo.setBlobStoreUrl(module.getBlobStore());
 		repo.setBlobStoreParameters(module.getBlobStoreParameters());
+		for (Map.Entry<URI, CachePolicy> e : module.getCachePolicies().entrySet()) {
+			repo.setCachePolicy(e.getKey(), e.getValue());
+		}
+		repo.setValuePoolSize(module.getValuePoolSize());
 		return repo;
 	}
 
@@ -70,6 +70,21 @@ public class ObjectRepositorySchema {
 	/** <tt>http://www.openrdf.org/config/repository/object#blobStoreParameter</tt> */
 	public final static URI BLOB_STORE_PARAMETER;
 
+	/** <tt>http://www.openrdf.org/config/repository/object#cachePolicy</tt> */
+	public final static URI CACHE_POLICY;
+
+	/** <tt>http://www.openrdf.org/config/repository/object#cacheLimit</tt> */
+	public final static URI CACHE_LIMIT;
+
+	/** <tt>http://www.openrdf.org/config/repository/object#cacheEager</tt> */
+	public final static URI CACHE_EAGER;
+
+	/** <tt>http://www.openrdf.org/config/repository/object#cacheTtl</tt> */
+	public final static URI CACHE_TTL;
+
+	/** <tt>http://www.openrdf.org/config/repository/object#valuePoolSize</tt> */
+	public final static URI VALUE_POOL_SIZE;
+
 	static {
 		ValueFactory vf = ValueFactoryImpl.getInstance();
 		DATATYPE = vf.createURI(NAMESPACE, "datatype");
@@ -80,5 +95,10 @@ public class ObjectRepositorySchema {
 		BEHAVIOUR_JAR = vf.createURI(NAMESPACE, "behaviourJar");
 		BLOB_STORE = vf.createURI(NAMESPACE, "blobStore");
 		BLOB_STORE_PARAMETER = vf.createURI(NAMESPACE, "blobStoreParameter");
+		CACHE_POLICY = vf.createURI(NAMESPACE, "cachePolicy");
+		CACHE_LIMIT = vf.createURI(NAMESPACE, "cacheLimit");
+		CACHE_EAGER = vf.createURI(NAMESPACE, "cacheEager");
+		CACHE_TTL = vf.createURI(NAMESPACE, "cacheTtl");
+		VALUE_POOL_SIZE = vf.createURI(NAMESPACE, "valuePoolSize");
 	}
 }
@@ -0,0 +1,63 @@
+package org.openrdf.repository.object.result;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variables that bind the types and eagerly loaded properties of the objects
+ * of a result variable. A layout is created once per cursor from the variables
+ * of its result, so the objects read by the cursor find the variables of their
+ * properties without checking the names of every row.
+ *
+ */
+public final class BindingLayout {
+	private final String binding;
+	private final String classBinding;
+	private final Set<String> names;
+	private final Map<String, BindingLayout> properties = new HashMap<String, BindingLayout>();
+
+	/**
+	 * @param binding
+	 *            variable binding the objects
+	 * @param names
+	 *            variables of the result
+	 */
+	public BindingLayout(String binding, Set<String> names) {
+		this.binding = binding;
+		this.classBinding = binding + "_class";
+		this.names = names;
+	}
+
+	public String getBinding() {
+		return binding;
+	}
+
+	/**
+	 * @return variable binding the types of the object
+	 */
+	public String getClassBinding() {
+		return classBinding;
+	}
+
+	/**
+	 * @return layout of the values of the named property, or null if the
+	 *         result does not bind them
+	 */
+	public synchronized BindingLayout getPropertyLayout(String property) {
+		if (properties.containsKey(property))
+			return properties.get(property);
+		String var = binding + "_" + property;
+		BindingLayout layout = null;
+		if (names.contains(var)) {
+			layout = new BindingLayout(var, names);
+		}
+		properties.put(property, layout);
+		return layout;
+	}
+
+	@Override
+	public String toString() {
+		return binding;
+	}
+}
@@ -62,6 +62,8 @@ public class ObjectArrayCursor extends LookAheadIteration<Object, QueryEvaluatio
 	private ObjectFactory of;
 	private ObjectConnection manager;
 	private final Class<?> componentType;
+	private final BindingLayout[] layouts;
+	private final ValuePool pool;
 
 	public ObjectArrayCursor(ObjectConnection manager, TupleQueryResult result,
 			List<String> bindings) throws QueryEvaluationException {
@@ -76,6 +78,12 @@ public class ObjectArrayCursor extends LookAheadIteration<Object, QueryEvaluatio
 		this.manager = manager;
 		this.of = manager.getObjectFactory();
 		this.componentType = componentType;
+		this.pool = manager.getRepository().getValuePool();
+		Set<String> names = new HashSet<String>(result.getBindingNames());
+		this.layouts = new BindingLayout[bindings.size()];
+		for (int i = 0; i < layouts.length; i++) {
+			layouts[i] = new BindingLayout(bindings.get(i), names);
+		}
 	}
 
 	@Override
@@ -91,7 +99,8 @@ public class ObjectArrayCursor extends LookAheadIteration<Object, QueryEvaluatio
 		Object result = Array.newInstance(componentType, resources.length);
 		for (int i = 0; i < resources.length; i++) {
 			if (resources[i] != null) {
-				Object value = createRDFObject(resources[i], bindings.get(i), properties);
+				Object value = createRDFObject(resources[i], layouts[i],
+						properties);
 				Array.set(result, i, value);
 			}
 		}
@@ -116,19 +125,20 @@ public class ObjectArrayCursor extends LookAheadIteration<Object, QueryEvaluatio
 		return v1 == v2 || v1 != null && v1.equals(v2);
 	}
 
-	private Object createRDFObject(Value value, String binding, List<BindingSet> properties)
-			throws QueryEvaluationException {
+	private Object createRDFObject(Value value, BindingLayout layout,
+			List<BindingSet> properties) throws QueryEvaluationException {
+		String classBinding = layout.getClassBinding();
 		if (value == null)
 			return null;
 		if (value instanceof Literal)
 			return of.createObject((Literal) value);
 		Object obj;
-		if (properties.get(0).hasBinding(binding + "_class")) {
+		if (properties.get(0).hasBinding(classBinding)) {
 			Set<URI> list = new HashSet<URI>(properties.size());
 			for (BindingSet bindings : properties) {
-				Value t = bindings.getValue(binding + "_class");
+				Value t = bindings.getValue(classBinding);
 				if (t instanceof URI) {
-					list.add((URI) t);
+					list.add(pool == null ? (URI) t : pool.intern((URI) t));
 				}
 			}
 			obj = manager.getObject(list, (Resource) value);
@@ -140,7 +150,10 @@ public class ObjectArrayCursor extends LookAheadIteration<Object, QueryEvaluatio
 			}
 		}
 		if (obj instanceof PropertyConsumer) {
-			((PropertyConsumer) obj).usePropertyBindings(binding, properties);
+			if (pool != null) {
+				properties = pool.internLiterals(properties);
+			}
+			((PropertyConsumer) obj).usePropertyBindings(layout, properties);
 		}
 		return obj;
 	}
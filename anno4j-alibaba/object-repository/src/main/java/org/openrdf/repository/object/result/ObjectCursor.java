@@ -32,6 +32,7 @@ import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.LookAheadIteration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -42,6 +43,7 @@ import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.TupleQueryResult;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.object.ObjectConnection;
 import org.openrdf.repository.object.ObjectFactory;
@@ -55,18 +57,41 @@ import org.openrdf.repository.object.traits.PropertyConsumer;
  */
 public class ObjectCursor extends LookAheadIteration<Object, QueryEvaluationException> {
 	private String binding;
+	private String classBinding;
+	private BindingLayout layout;
 	private CloseableIteration<BindingSet, QueryEvaluationException> result;
 	private BindingSet next;
 	private ObjectFactory of;
 	private ObjectConnection manager;
+	private ValuePool pool;
 
 	public ObjectCursor(ObjectConnection manager, CloseableIteration<BindingSet, QueryEvaluationException> result,
 			String binding) throws QueryEvaluationException {
-		this.binding = binding;
+		this(manager, result, binding, null);
+	}
+
+	/**
+	 * Reads the objects of a layout shared with the cursor that read the
+	 * result rows.
+	 */
+	public ObjectCursor(ObjectConnection manager, CloseableIteration<BindingSet, QueryEvaluationException> result,
+			BindingLayout layout) throws QueryEvaluationException {
+		this(manager, result, layout.getBinding(), layout);
+	}
+
+	private ObjectCursor(ObjectConnection manager, CloseableIteration<BindingSet, QueryEvaluationException> result,
+			String binding, BindingLayout layout) throws QueryEvaluationException {
 		this.result = result;
 		this.next = result.hasNext() ? result.next() : null;
+		if (layout == null) {
+			layout = new BindingLayout(binding, getBindingNames(result, next));
+		}
+		this.layout = layout;
+		this.binding = binding;
+		this.classBinding = layout.getClassBinding();
 		this.manager = manager;
 		this.of = manager.getObjectFactory();
+		this.pool = manager.getRepository().getValuePool();
 	}
 
 	@Override
@@ -81,9 +106,23 @@ public class ObjectCursor extends LookAheadIteration<Object, QueryEvaluationExce
 		return createRDFObject(resource, properties);
 	}
 
+	private static Set<String> getBindingNames(CloseableIteration<BindingSet, QueryEvaluationException> result,
+			BindingSet first) throws QueryEvaluationException {
+		if (result instanceof TupleQueryResult)
+			return new HashSet<String>(((TupleQueryResult) result).getBindingNames());
+		if (first == null)
+			return Collections.emptySet();
+		return first.getBindingNames();
+	}
+
 	private List<BindingSet> readProperties() throws QueryEvaluationException {
 		Value resource = next.getValue(binding);
+		BindingSet first = next;
+		next = result.hasNext() ? result.next() : null;
+		if (next == null || !equals(resource, next.getValue(binding)))
+			return Collections.singletonList(first);
 		List<BindingSet> properties = new ArrayList<BindingSet>();
+		properties.add(first);
 		while (next != null && equals(resource, next.getValue(binding))) {
 			properties.add(next);
 			next = result.hasNext() ? result.next() : null;
@@ -102,15 +141,8 @@ public class ObjectCursor extends LookAheadIteration<Object, QueryEvaluationExce
 		if (value instanceof Literal)
 			return of.createObject((Literal) value);
 		Object obj;
-		if (properties.get(0).hasBinding(binding + "_class")) {
-			Set<URI> list = new HashSet<URI>(properties.size());
-			for (BindingSet bindings : properties) {
-				Value t = bindings.getValue(binding + "_class");
-				if (t instanceof URI) {
-					list.add((URI) t);
-				}
-			}
-			obj = manager.getObject(list, (Resource) value);
+		if (properties.get(0).hasBinding(classBinding)) {
+			obj = manager.getObject(readTypes(properties), (Resource) value);
 		} else {
 			try {
 				obj = manager.getObject(value);
@@ -119,11 +151,37 @@ public class ObjectCursor extends LookAheadIteration<Object, QueryEvaluationExce
 			}
 		}
 		if (obj instanceof PropertyConsumer) {
-			((PropertyConsumer) obj).usePropertyBindings(binding, properties);
+			if (pool != null) {
+				properties = pool.internLiterals(properties);
+			}
+			((PropertyConsumer) obj).usePropertyBindings(layout, properties);
 		}
 		return obj;
 	}
 
+	private Set<URI> readTypes(List<BindingSet> properties) {
+		if (properties.size() == 1) {
+			Value t = properties.get(0).getValue(classBinding);
+			if (t instanceof URI)
+				return Collections.singleton(intern((URI) t));
+			return Collections.emptySet();
+		}
+		Set<URI> list = new HashSet<URI>(properties.size());
+		for (BindingSet bindings : properties) {
+			Value t = bindings.getValue(classBinding);
+			if (t instanceof URI) {
+				list.add(intern((URI) t));
+			}
+		}
+		return list;
+	}
+
+	private URI intern(URI uri) {
+		if (pool == null)
+			return uri;
+		return pool.intern(uri);
+	}
+
 	@Override
 	public void handleClose() throws QueryEvaluationException {
 		result.close();
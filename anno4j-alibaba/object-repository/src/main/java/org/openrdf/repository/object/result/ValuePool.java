@@ -0,0 +1,114 @@
+package org.openrdf.repository.object.result;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.MapBindingSet;
+
+/**
+ * Shares equal type URIs, predicates and short literals read from query
+ * results, so the values kept by objects and caches are the same instances and
+ * compare by identity. Subject resources are not pooled, as most of them are
+ * read only once. When the pool is full the least recently used value is
+ * evicted.
+ *
+ */
+public class ValuePool {
+	/** Longer literals are not shared. */
+	public static final int MAX_LABEL_LENGTH = 64;
+	private final int size;
+	private final Map<Value, Value> pool;
+
+	public ValuePool(final int size) {
+		assert size > 0;
+		this.size = size;
+		this.pool = new LinkedHashMap<Value, Value>(Math.min(size, 1024),
+				0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Value, Value> eldest) {
+				return size() > size;
+			}
+		};
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return an equal value from the pool, or the value itself
+	 */
+	public Value intern(Value value) {
+		if (value instanceof URI) {
+			return share(value);
+		} else if (value instanceof Literal) {
+			if (value.stringValue().length() > MAX_LABEL_LENGTH)
+				return value;
+			return share(value);
+		}
+		return value;
+	}
+
+	public URI intern(URI uri) {
+		if (uri == null)
+			return null;
+		return (URI) share(uri);
+	}
+
+	/**
+	 * Shares the short literals of property bindings that are kept by objects.
+	 *
+	 * @return the bindings with pooled literals
+	 */
+	public List<BindingSet> internLiterals(List<BindingSet> bindings) {
+		List<BindingSet> result = null;
+		for (int i = 0, n = bindings.size(); i < n; i++) {
+			BindingSet shared = internLiterals(bindings.get(i));
+			if (result == null && shared != bindings.get(i)) {
+				result = new ArrayList<BindingSet>(bindings.subList(0, i));
+			}
+			if (result != null) {
+				result.add(shared);
+			}
+		}
+		return result == null ? bindings : result;
+	}
+
+	private BindingSet internLiterals(BindingSet bindings) {
+		MapBindingSet result = null;
+		for (Binding binding : bindings) {
+			Value value = binding.getValue();
+			if (value instanceof Literal && intern(value) != value) {
+				result = new MapBindingSet(bindings.size());
+				break;
+			}
+		}
+		if (result == null)
+			return bindings;
+		for (Binding binding : bindings) {
+			Value value = binding.getValue();
+			if (value instanceof Literal) {
+				value = intern(value);
+			}
+			result.addBinding(binding.getName(), value);
+		}
+		return result;
+	}
+
+	private synchronized Value share(Value value) {
+		Value shared = pool.get(value);
+		if (shared != null)
+			return shared;
+		pool.put(value, value);
+		return value;
+	}
+}
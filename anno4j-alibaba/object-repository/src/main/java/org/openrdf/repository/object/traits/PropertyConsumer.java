@@ -31,6 +31,7 @@ package org.openrdf.repository.object.traits;
 import java.util.List;
 
 import org.openrdf.query.BindingSet;
+import org.openrdf.repository.object.result.BindingLayout;
 
 /**
  * Trait used for property mappers that support eager loading of their property
@@ -41,5 +42,10 @@ import org.openrdf.query.BindingSet;
  */
 public interface PropertyConsumer {
 
-	void usePropertyBindings(String binding, List<BindingSet> results);
+	/**
+	 * @param layout
+	 *            variables binding the object and its properties, shared by
+	 *            all objects of the result
+	 */
+	void usePropertyBindings(BindingLayout layout, List<BindingSet> results);
 }
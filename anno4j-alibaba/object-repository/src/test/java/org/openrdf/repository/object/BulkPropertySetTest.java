@@ -0,0 +1,164 @@
+package org.openrdf.repository.object;
+
+import info.aduna.iteration.Iteration;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
+import org.openrdf.repository.base.RepositoryWrapper;
+import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
+import org.openrdf.repository.object.config.ObjectRepositoryFactory;
+
+public class BulkPropertySetTest extends ObjectRepositoryTestCase {
+
+	public static Test suite() throws Exception {
+		return ObjectRepositoryTestCase.suite(BulkPropertySetTest.class);
+	}
+
+	@Iri("urn:test:Segmented")
+	public interface Segmented {
+		@Iri("urn:test:segment")
+		Set<String> getSegments();
+
+		void setSegments(Set<String> segments);
+	}
+
+	private int singleCalls;
+	private int bulkCalls;
+	private Segmented segmented;
+
+	@Override
+	protected ObjectRepository getRepository() throws Exception {
+		RepositoryWrapper delegate = new RepositoryWrapper(super
+				.getRepository().getDelegate()) {
+			public RepositoryConnection getConnection()
+					throws RepositoryException {
+				return new RepositoryConnectionWrapper(this, super
+						.getConnection()) {
+					public void add(Resource subject, URI predicate,
+							Value object, Resource... contexts)
+							throws RepositoryException {
+						singleCalls++;
+						super.add(subject, predicate, object, contexts);
+					}
+
+					public void remove(Resource subject, URI predicate,
+							Value object, Resource... contexts)
+							throws RepositoryException {
+						singleCalls++;
+						super.remove(subject, predicate, object, contexts);
+					}
+
+					public void add(Iterable<? extends Statement> statements,
+							Resource... contexts) throws RepositoryException {
+						bulkCalls++;
+						super.add(statements, contexts);
+					}
+
+					public <E extends Exception> void add(
+							Iteration<? extends Statement, E> statements,
+							Resource... contexts) throws RepositoryException, E {
+						bulkCalls++;
+						super.add(statements, contexts);
+					}
+
+					public void remove(
+							Iterable<? extends Statement> statements,
+							Resource... contexts) throws RepositoryException {
+						bulkCalls++;
+						super.remove(statements, contexts);
+					}
+
+					public <E extends Exception> void remove(
+							Iteration<? extends Statement, E> statements,
+							Resource... contexts) throws RepositoryException, E {
+						bulkCalls++;
+						super.remove(statements, contexts);
+					}
+				};
+			}
+		};
+		return new ObjectRepositoryFactory().createRepository(config, delegate);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		config.addConcept(Segmented.class);
+		super.setUp();
+		segmented = con.addDesignation(con.getObject("urn:test:video"),
+				Segmented.class);
+		singleCalls = bulkCalls = 0;
+	}
+
+	public void testAddAll() throws Exception {
+		assertTrue(segmented.getSegments().addAll(segments(0, 100)));
+		assertEquals(0, singleCalls);
+		assertEquals(1, bulkCalls);
+		assertEquals(100, segmented.getSegments().size());
+	}
+
+	public void testRemoveAll() throws Exception {
+		segmented.getSegments().addAll(segments(0, 100));
+		singleCalls = bulkCalls = 0;
+		assertTrue(segmented.getSegments().removeAll(segments(0, 50)));
+		assertEquals(0, singleCalls);
+		assertEquals(1, bulkCalls);
+		assertEquals(new HashSet<String>(segments(50, 100)), segmented
+				.getSegments());
+	}
+
+	public void testRetainAll() throws Exception {
+		segmented.getSegments().addAll(segments(0, 100));
+		singleCalls = bulkCalls = 0;
+		assertTrue(segmented.getSegments().retainAll(segments(0, 10)));
+		assertEquals(0, singleCalls);
+		assertEquals(1, bulkCalls);
+		assertEquals(10, segmented.getSegments().size());
+		assertFalse(segmented.getSegments().retainAll(segments(0, 10)));
+	}
+
+	public void testClearCached() throws Exception {
+		segmented.getSegments().addAll(segments(0, 5));
+		Set<String> segments = segmented.getSegments();
+		int count = 0;
+		for (String segment : segments) {
+			count++;
+		}
+		assertEquals(5, count);
+		singleCalls = bulkCalls = 0;
+		segments.clear();
+		assertEquals(0, singleCalls);
+		assertEquals(1, bulkCalls);
+		assertTrue(segmented.getSegments().isEmpty());
+	}
+
+	public void testSetAll() throws Exception {
+		segmented.setSegments(new HashSet<String>(segments(0, 100)));
+		singleCalls = bulkCalls = 0;
+		segmented.setSegments(new HashSet<String>(segments(50, 150)));
+		assertEquals(0, singleCalls);
+		assertEquals(2, bulkCalls);
+		assertEquals(new HashSet<String>(segments(50, 150)), segmented
+				.getSegments());
+	}
+
+	private List<String> segments(int from, int to) {
+		List<String> list = new ArrayList<String>(to - from);
+		for (int i = from; i < to; i++) {
+			list.add("segment" + i);
+		}
+		return list;
+	}
+}
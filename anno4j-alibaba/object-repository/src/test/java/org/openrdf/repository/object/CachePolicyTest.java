@@ -0,0 +1,146 @@
+package org.openrdf.repository.object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.openrdf.annotations.Cached;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.URI;
+import org.openrdf.repository.object.advisers.helpers.CachePolicy;
+import org.openrdf.repository.object.advisers.helpers.CacheStatistics;
+import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
+import org.openrdf.repository.object.config.ObjectRepositoryConfig;
+
+public class CachePolicyTest extends ObjectRepositoryTestCase {
+
+	public static Test suite() throws Exception {
+		return ObjectRepositoryTestCase.suite(CachePolicyTest.class);
+	}
+
+	@Iri("urn:test:Video")
+	public interface Video {
+		@Iri("urn:test:shot")
+		Set<String> getShots();
+
+		void setShots(Set<String> shots);
+
+		@Cached(eager = true)
+		@Iri("urn:test:tag")
+		Set<String> getTags();
+
+		void setTags(Set<String> tags);
+	}
+
+	private Video video;
+	private URI shot;
+	private URI tag;
+
+	@Override
+	protected void setUp() throws Exception {
+		config.addConcept(Video.class);
+		config.setCachePolicy("urn:test:configured", new CachePolicy(5, true, 0));
+		super.setUp();
+		shot = con.getValueFactory().createURI("urn:test:shot");
+		tag = con.getValueFactory().createURI("urn:test:tag");
+		video = con.addDesignation(con.getObject("urn:test:video"), Video.class);
+	}
+
+	public void testDefaultLimit() throws Exception {
+		video.getShots().addAll(values(0, 50));
+		Set<String> shots = video.getShots();
+		assertEquals(50, count(shots));
+		CacheStatistics statistics = getStatistics(shot);
+		assertEquals(50, shots.size());
+		assertEquals(0, statistics.getHitCount());
+	}
+
+	public void testConfiguredLimit() throws Exception {
+		con.getRepository().setCachePolicy(shot, new CachePolicy(100, false, 0));
+		Video video = con.addDesignation(con.getObject("urn:test:other"), Video.class);
+		video.getShots().addAll(values(0, 50));
+		Set<String> shots = video.getShots();
+		assertEquals(50, count(shots));
+		CacheStatistics statistics = getStatistics(shot);
+		assertEquals(50, shots.size());
+		assertTrue(shots.contains("value49"));
+		assertEquals(2, statistics.getHitCount());
+		con.getRepository().setCachePolicy(shot, null);
+	}
+
+	public void testEagerAnnotation() throws Exception {
+		video.getTags().addAll(values(0, 50));
+		Set<String> tags = video.getTags();
+		CacheStatistics statistics = getStatistics(tag);
+		assertTrue(tags.contains("value10"));
+		assertEquals(1, statistics.getMissCount());
+		assertEquals(50, tags.size());
+		assertFalse(tags.contains("other"));
+		assertEquals(2, statistics.getHitCount());
+		assertEquals(1, statistics.getMissCount());
+		assertEquals(2.0 / 3, statistics.getHitRate(), 0.001);
+	}
+
+	public void testIncrementalUpdates() throws Exception {
+		video.getTags().addAll(values(0, 20));
+		Set<String> tags = video.getTags();
+		assertEquals(20, tags.size());
+		CacheStatistics statistics = getStatistics(tag);
+
+		tags.add("added");
+		tags.removeAll(values(0, 10));
+		tags.retainAll(values(10, 15));
+		assertEquals(5, tags.size());
+		assertEquals(0, statistics.getMissCount());
+		assertEquals(values(10, 15), new ArrayList<String>(tags));
+		assertEquals(5, con.getStatements(((RDFObject) video).getResource(),
+				tag, null).asList().size());
+	}
+
+	public void testTimeToLive() throws Exception {
+		con.getRepository().setCachePolicy(shot, new CachePolicy(10, false, 1));
+		Video video = con.addDesignation(con.getObject("urn:test:other"), Video.class);
+		video.getShots().addAll(values(0, 5));
+		Set<String> shots = video.getShots();
+		assertEquals(5, count(shots));
+		CacheStatistics statistics = getStatistics(shot);
+		Thread.sleep(10);
+		assertEquals(5, shots.size());
+		assertEquals(0, statistics.getHitCount());
+		assertEquals(1, statistics.getMissCount());
+		con.getRepository().setCachePolicy(shot, null);
+	}
+
+	public void testConfigClone() throws Exception {
+		ObjectRepositoryConfig clone = config.clone();
+		URI configured = con.getValueFactory().createURI("urn:test:configured");
+		CachePolicy policy = clone.getCachePolicies().get(configured);
+		assertEquals(5, policy.getLimit());
+		assertTrue(policy.isEager());
+		assertEquals(5, con.getRepository().getCachePolicy(configured).getLimit());
+	}
+
+	private CacheStatistics getStatistics(URI predicate) {
+		CacheStatistics statistics = con.getRepository().getCacheStatistics(predicate);
+		statistics.reset();
+		return statistics;
+	}
+
+	private int count(Set<String> set) {
+		int count = 0;
+		for (String value : set) {
+			count++;
+		}
+		return count;
+	}
+
+	private List<String> values(int from, int to) {
+		List<String> list = new ArrayList<String>(to - from);
+		for (int i = from; i < to; i++) {
+			list.add("value" + i);
+		}
+		return list;
+	}
+}
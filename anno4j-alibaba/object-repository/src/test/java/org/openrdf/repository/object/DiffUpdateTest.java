@@ -0,0 +1,177 @@
+package org.openrdf.repository.object;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
+import org.openrdf.repository.base.RepositoryWrapper;
+import org.openrdf.repository.event.base.NotifyingRepositoryWrapper;
+import org.openrdf.repository.event.base.RepositoryConnectionListenerAdapter;
+import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
+import org.openrdf.repository.object.config.ObjectRepositoryFactory;
+
+public class DiffUpdateTest extends ObjectRepositoryTestCase {
+
+	public static Test suite() throws Exception {
+		return ObjectRepositoryTestCase.suite(DiffUpdateTest.class);
+	}
+
+	@Iri("urn:test:Item")
+	public static class Item {
+		@Iri("urn:test:label")
+		private String label;
+		@Iri("urn:test:tag")
+		private Set<String> tags;
+
+		public String getLabel() {
+			return label;
+		}
+
+		public void setLabel(String label) {
+			this.label = label;
+		}
+
+		public Set<String> getTags() {
+			return tags;
+		}
+
+		public void setTags(Set<String> tags) {
+			this.tags = tags;
+		}
+	}
+
+	private int added;
+	private int removed;
+	private int reads;
+	private URI uri;
+
+	@Override
+	protected ObjectRepository getRepository() throws Exception {
+		Repository counting = new RepositoryWrapper(super.getRepository().getDelegate()) {
+			public RepositoryConnection getConnection() throws RepositoryException {
+				return new RepositoryConnectionWrapper(this, getDelegate().getConnection()) {
+					public RepositoryResult<Statement> getStatements(Resource subj,
+							URI pred, Value obj, boolean includeInferred,
+							Resource... contexts) throws RepositoryException {
+						reads++;
+						return super.getStatements(subj, pred, obj, includeInferred, contexts);
+					}
+
+					public boolean hasStatement(Resource subj, URI pred, Value obj,
+							boolean includeInferred, Resource... contexts)
+							throws RepositoryException {
+						reads++;
+						return super.hasStatement(subj, pred, obj, includeInferred, contexts);
+					}
+				};
+			}
+		};
+		NotifyingRepositoryWrapper delegate = new NotifyingRepositoryWrapper(counting);
+		delegate.addRepositoryConnectionListener(new RepositoryConnectionListenerAdapter() {
+			public void add(RepositoryConnection conn, Resource subject,
+					URI predicate, Value object, Resource... contexts) {
+				added++;
+			}
+
+			public void remove(RepositoryConnection conn, Resource subject,
+					URI predicate, Value object, Resource... contexts) {
+				removed++;
+			}
+		});
+		return new ObjectRepositoryFactory().createRepository(config, delegate);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		config.addConcept(Item.class);
+		super.setUp();
+		ValueFactory vf = con.getValueFactory();
+		uri = vf.createURI("urn:test:item");
+	}
+
+	public void testUnchangedUpdate() throws Exception {
+		con.addObject(uri, createItem("label", "a", "b"));
+		added = removed = 0;
+		con.updateObject(uri, createItem("label", "a", "b"));
+		assertEquals(0, added);
+		assertEquals(0, removed);
+	}
+
+	public void testChangedValue() throws Exception {
+		con.addObject(uri, createItem("old", "a"));
+		added = removed = 0;
+		con.updateObject(uri, createItem("new", "a"));
+		assertEquals(1, added);
+		assertEquals(1, removed);
+		assertEquals("new", ((Item) con.getObject(uri)).getLabel());
+	}
+
+	public void testChangedSet() throws Exception {
+		con.addObject(uri, createItem("label", "a", "b"));
+		added = removed = 0;
+		con.updateObject(uri, createItem("label", "b", "c"));
+		assertEquals(1, added);
+		assertEquals(1, removed);
+		Item item = (Item) con.getObject(uri);
+		assertEquals(new HashSet<String>(Arrays.asList("b", "c")), item.getTags());
+	}
+
+	public void testOneReadPerUpdate() throws Exception {
+		con.addObject(uri, createItem("old", "a", "b"));
+		reads = 0;
+		con.updateObject(uri, createItem("new", "b", "c"));
+		assertEquals(1, reads);
+		Item item = (Item) con.getObject(uri);
+		assertEquals("new", item.getLabel());
+		assertEquals(new HashSet<String>(Arrays.asList("b", "c")), item.getTags());
+	}
+
+	public void testNullValueUnchanged() throws Exception {
+		con.addObject(uri, createItem("label", "a"));
+		con.updateObject(uri, createItem(null, "b"));
+		Item item = (Item) con.getObject(uri);
+		assertEquals("label", item.getLabel());
+		assertEquals(new HashSet<String>(Arrays.asList("b")), item.getTags());
+	}
+
+	public void testUpdateNewResource() throws Exception {
+		con.updateObject(uri, createItem("label", "a"));
+		assertEquals("label", ((Item) con.getObject(uri)).getLabel());
+	}
+
+	public void testAddObjectAddsValues() throws Exception {
+		con.addObject(uri, createItem("old"));
+		con.addObject(uri, createItem("new"));
+		assertEquals(2, con.getStatements(uri, con.getValueFactory().createURI("urn:test:label"), null).asList().size());
+	}
+
+	public void testSetEqualValue() throws Exception {
+		con.addObject(uri, createItem("label", "a"));
+		Item item = (Item) con.getObject(uri);
+		added = removed = 0;
+		item.setLabel(new String("label"));
+		item.setTags(new HashSet<String>(Arrays.asList("a")));
+		assertEquals(0, added);
+		assertEquals(0, removed);
+	}
+
+	private Item createItem(String label, String... tags) {
+		Item item = new Item();
+		item.setLabel(label);
+		item.setTags(new HashSet<String>(Arrays.asList(tags)));
+		return item;
+	}
+}
@@ -0,0 +1,173 @@
+package org.openrdf.repository.object;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
+
+public class GetObjectsTest extends ObjectRepositoryTestCase {
+	private static final String BASE = "urn:test:item";
+
+	public static Test suite() throws Exception {
+		return ObjectRepositoryTestCase.suite(GetObjectsTest.class);
+	}
+
+	@Iri("urn:test:Item")
+	public interface Item {
+		@Iri("urn:test:label")
+		String getLabel();
+
+		void setLabel(String label);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		config.addConcept(Item.class);
+		super.setUp();
+	}
+
+	public void testManyResources() throws Exception {
+		Resource[] resources = addItems(2500);
+		List<Item> items = con.getObjects(Item.class, resources).asList();
+		assertEquals(2500, items.size());
+		Set<String> labels = new HashSet<String>();
+		for (Item item : items) {
+			labels.add(item.getLabel());
+		}
+		assertEquals(2500, labels.size());
+		assertTrue(labels.contains("label2499"));
+	}
+
+	public void testMissingAndDuplicateResources() throws Exception {
+		Resource[] stored = addItems(2);
+		ValueFactory vf = con.getValueFactory();
+		Resource missing = vf.createURI(BASE, "missing");
+		Resource[] resources = { stored[0], missing, stored[1], stored[0] };
+		List<?> objects = con.getObjects(Item.class, resources).asList();
+		assertEquals(4, objects.size());
+		List<Resource> loaded = new ArrayList<Resource>();
+		for (Object object : objects) {
+			loaded.add(((RDFObject) object).getResource());
+		}
+		assertEquals(2, count(loaded, stored[0]));
+		assertEquals(1, count(loaded, stored[1]));
+		assertEquals(1, count(loaded, missing));
+	}
+
+	public void testBlankNode() throws Exception {
+		Resource[] stored = addItems(2);
+		Item blank = con.addDesignation(
+				con.getObject(con.getValueFactory().createBNode()), Item.class);
+		blank.setLabel("blank");
+		Resource bnode = ((RDFObject) blank).getResource();
+		Resource[] resources = { stored[0], bnode, stored[1] };
+		Set<String> labels = new HashSet<String>();
+		for (Item item : con.getObjects(Item.class, resources).asList()) {
+			labels.add(item.getLabel());
+		}
+		assertTrue(labels.contains("blank"));
+		assertTrue(labels.contains("label0"));
+		assertTrue(labels.contains("label1"));
+	}
+
+	public void testReusedChunkQuery() throws Exception {
+		Resource[] stored = addItems(4);
+		Resource[] first = { stored[0], stored[1] };
+		Resource[] second = { stored[3], stored[2] };
+		Set<String> labels = new HashSet<String>();
+		for (Item item : con.getObjects(Item.class, first).asList()) {
+			labels.add(item.getLabel());
+		}
+		assertEquals(2, labels.size());
+		assertTrue(labels.contains("label1"));
+		labels.clear();
+		for (Item item : con.getObjects(Item.class, second).asList()) {
+			labels.add(item.getLabel());
+		}
+		assertEquals(2, labels.size());
+		assertTrue(labels.contains("label2"));
+		assertTrue(labels.contains("label3"));
+	}
+
+	public void testPaddedChunk() throws Exception {
+		Resource[] stored = addItems(3);
+		List<?> objects = con.getObjects(Item.class, stored).asList();
+		assertEquals(3, objects.size());
+		Set<Resource> loaded = new HashSet<Resource>();
+		for (Object object : objects) {
+			loaded.add(((RDFObject) object).getResource());
+		}
+		assertEquals(3, loaded.size());
+	}
+
+	public void testSharedQuery() throws Exception {
+		ObjectRepository repository = con.getRepository();
+		ObjectConnection other = repository.getConnection();
+		try {
+			assertSame(repository.getObjectQuery(Item.class, 16,
+					con.getObjectFactory()), repository.getObjectQuery(
+					Item.class, 16, other.getObjectFactory()));
+		} finally {
+			other.close();
+		}
+	}
+
+	public void testConcurrentReaders() throws Exception {
+		final Resource[] stored = addItems(20);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < 20; j++) {
+							assertEquals(20, con.getObjects(Item.class, stored)
+									.asList().size());
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(errors.toString(), 0, errors.size());
+	}
+
+	private Resource[] addItems(int count) throws Exception {
+		ValueFactory vf = con.getValueFactory();
+		Resource[] resources = new Resource[count];
+		for (int i = 0; i < count; i++) {
+			URI uri = vf.createURI(BASE, String.valueOf(i));
+			Item item = con.addDesignation(con.getObject(uri), Item.class);
+			item.setLabel("label" + i);
+			resources[i] = uri;
+		}
+		return resources;
+	}
+
+	private int count(List<Resource> list, Resource resource) {
+		int count = 0;
+		for (Resource r : list) {
+			if (r.equals(resource)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
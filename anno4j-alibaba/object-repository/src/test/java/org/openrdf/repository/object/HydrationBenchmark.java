@@ -0,0 +1,88 @@
+package org.openrdf.repository.object;
+
+import java.lang.management.ManagementFactory;
+
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.object.config.ObjectRepositoryConfig;
+import org.openrdf.repository.object.config.ObjectRepositoryFactory;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * Measures the time and memory allocated to read objects with eagerly loaded
+ * properties from a query result. Not part of the test suite, run it with mvn
+ * exec:java -Dexec.mainClass=org.openrdf.repository.object.HydrationBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class HydrationBenchmark {
+	private static final String NS = "urn:bench:";
+	private static final int OBJECTS = 20000;
+
+	@Iri(NS + "Item")
+	public interface Item {
+		@Iri(NS + "label")
+		String getLabel();
+
+		void setLabel(String label);
+
+		@Iri(NS + "rank")
+		int getRank();
+
+		void setRank(int rank);
+
+		@Iri(NS + "note")
+		String getNote();
+
+		void setNote(String note);
+	}
+
+	public static void main(String[] args) throws Exception {
+		ObjectRepositoryConfig config = new ObjectRepositoryConfig();
+		config.addConcept(Item.class);
+		SailRepository delegate = new SailRepository(new MemoryStore());
+		delegate.initialize();
+		ObjectRepository repository = new ObjectRepositoryFactory()
+				.createRepository(config, delegate);
+		ObjectConnection con = repository.getConnection();
+		try {
+			ValueFactory vf = con.getValueFactory();
+			con.setAutoCommit(false);
+			for (int i = 0; i < OBJECTS; i++) {
+				Item item = con.addDesignation(con.getObject(vf.createURI(NS,
+						String.valueOf(i))), Item.class);
+				item.setLabel("label" + i);
+				item.setRank(i);
+				item.setNote("note" + i);
+			}
+			con.setAutoCommit(true);
+			// The first rounds warm up the JIT
+			for (int round = 0; round < 6; round++) {
+				long bytes = allocatedBytes();
+				long begin = System.nanoTime();
+				int count = 0;
+				long hash = 0;
+				for (Item item : con.getObjects(Item.class).asList()) {
+					hash += item.getLabel().length() + item.getRank();
+					count++;
+				}
+				long elapsed = System.nanoTime() - begin;
+				bytes = allocatedBytes() - bytes;
+				if (round > 2) {
+					System.out.printf("%,d objects: %,.0f objects/sec, %,d bytes/object (%d)%n",
+							count, (double) count / elapsed * 1000000000L,
+							bytes / count, hash);
+				}
+			}
+		} finally {
+			con.close();
+			repository.shutDown();
+		}
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean()).getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+}
@@ -1,5 +1,6 @@
 package org.openrdf.repository.object;
 
+import java.io.StringReader;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -20,6 +21,8 @@ import org.openrdf.model.ValueFactory;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.object.advisers.SparqlQuery;
+import org.openrdf.repository.object.advisers.helpers.SparqlEvaluator;
 import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
 import org.openrdf.repository.object.base.RepositoryTestCase;
 import org.openrdf.result.Result;
@@ -57,6 +60,19 @@ public class NamedQueryTest extends ObjectRepositoryTestCase {
 				+ "?friend :name $name }")
 		Set<Person> findFriendsByNames(@Bind("name") Set<String> arg1);
 
+		@Sparql(PREFIX + "INSERT { $this :friend ?friend }\n"
+				+ "WHERE { ?friend a :Person; :name $name }")
+		void addFriendsByNames(@Bind("name") Set<String> names);
+
+		@Sparql(PREFIX + "SELECT ?friend # the friends { with a name }\n"
+				+ "WHERE { $this :friend ?friend . ?friend :name $name "
+				+ "FILTER (?name != \"}\") } ORDER BY ?friend # }")
+		List<Person> findFriendsOrderedByNames(@Bind("name") Set<String> arg1);
+
+		@Sparql(PREFIX + "SELECT (COUNT(?friend) AS ?count) "
+				+ "{ $this :friend ?friend . ?friend :name $name }")
+		BindingSet countFriendsByNames(@Bind("name") Set<String> arg1);
+
 		@Sparql(PREFIX + "SELECT ?friend WHERE { $this :friend ?friend . "
 				+ "?friend :name $name }")
 		Person[] findFriendsArrayByNames(@Bind("name") Set<String> arg1);
@@ -182,6 +198,69 @@ public class NamedQueryTest extends ObjectRepositoryTestCase {
 				new HashSet<String>(Arrays.asList("john", "james")), new HashSet<Integer>(Arrays.asList(101, 102))));
 	}
 
+	public void testFriendsByManyNamesAndAges() throws Exception {
+		Set<String> names = new HashSet<String>();
+		Set<Integer> ages = new HashSet<Integer>();
+		for (int i = 0; i < 200; i++) {
+			names.add("name" + i);
+			ages.add(i);
+		}
+		names.add("john");
+		ages.add(101);
+		assertEquals(Collections.singleton(john),
+				me.findFriendsByNamesAndAge(names, ages));
+	}
+
+	public void testFriendsByNoNames() throws Exception {
+		assertTrue(me.findFriendsByNames(Collections.<String> emptySet())
+				.isEmpty());
+	}
+
+	public void testIndependentValues() throws Exception {
+		String sparql = PREFIX + "SELECT ?friend WHERE { $this :friend ?friend . "
+				+ "?friend :name $name; :age $age } ORDER BY ?friend";
+		SparqlEvaluator evaluator = new SparqlEvaluator(new SparqlQuery(
+				new StringReader(sparql), NS));
+		String query = evaluator.prepare(con)
+				.with("name", new HashSet<String>(Arrays.asList("a", "b", "c")))
+				.with("age", new HashSet<Integer>(Arrays.asList(1, 2, 3)))
+				.toString();
+		assertTrue(query.contains("{ BIND ($name__3 AS ?name)"));
+		assertTrue(query.contains("{ BIND ($age__3 AS ?age)"));
+		assertTrue(query.endsWith("} ORDER BY ?friend"));
+		// the text depends on the arities only, not on the values
+		assertEquals(query, evaluator.prepare(con)
+				.with("name", new HashSet<String>(Arrays.asList("x", "y")))
+				.with("age", new HashSet<Integer>(Arrays.asList(4, 5, 6, 7)))
+				.toString());
+		assertFalse(query.contains("\"a\""));
+		String single = evaluator.prepare(con)
+				.with("name", Collections.singleton("a")).toString();
+		assertEquals(sparql, single);
+	}
+
+	public void testAddFriendsByNames() throws Exception {
+		me.addFriendsByNames(new HashSet<String>(Arrays.asList("phil", "james")));
+		assertEquals(new HashSet<Person>(Arrays.asList(me, john, phil)),
+				new HashSet<Person>(me.getFriends()));
+	}
+
+	public void testBracesInLiteralsAndComments() throws Exception {
+		me.addFriend(phil);
+		Set<String> names = new HashSet<String>(Arrays.asList("john", "phil", "}"));
+		assertEquals(Arrays.asList(john, phil),
+				me.findFriendsOrderedByNames(names));
+		assertEquals(Arrays.asList(phil),
+				me.findFriendsOrderedByNames(new HashSet<String>(Arrays.asList("phil", "bob"))));
+	}
+
+	public void testWithoutWhereKeyword() throws Exception {
+		me.addFriend(phil);
+		BindingSet result = me.countFriendsByNames(new HashSet<String>(Arrays
+				.asList("john", "phil", "bob")));
+		assertEquals("2", result.getValue("count").stringValue());
+	}
+
 	public void testBindingSetByName() throws Exception {
 		ValueFactory vf = con.getValueFactory();
 		BindingSet result = me.findBindingSetByName("john");
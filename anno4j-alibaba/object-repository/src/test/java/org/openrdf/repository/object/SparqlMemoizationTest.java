@@ -0,0 +1,164 @@
+package org.openrdf.repository.object;
+
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.openrdf.annotations.Bind;
+import org.openrdf.annotations.Iri;
+import org.openrdf.annotations.Memoized;
+import org.openrdf.annotations.Sparql;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.Update;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
+
+public class SparqlMemoizationTest extends ObjectRepositoryTestCase {
+	private static final String NS = "urn:test:";
+	private static final String PREFIX = "PREFIX :<" + NS + ">\n";
+
+	public static Test suite() throws Exception {
+		return ObjectRepositoryTestCase.suite(SparqlMemoizationTest.class);
+	}
+
+	@Iri(NS + "Shelf")
+	public interface Shelf {
+		@Iri(NS + "title")
+		String getTitle();
+
+		void setTitle(String title);
+
+		@Iri(NS + "note")
+		String getNote();
+
+		void setNote(String note);
+
+		@Memoized
+		@Sparql(PREFIX + "SELECT ?title WHERE { $this :book ?book . "
+				+ "?book :title ?title }")
+		Set<String> findTitles();
+
+		@Memoized(ttl = 1)
+		@Sparql(PREFIX + "SELECT ?book WHERE { $this :book ?book }")
+		Set<Object> findBooks();
+
+		@Memoized(size = 2)
+		@Sparql(PREFIX + "SELECT ?book WHERE { $this :book ?book . "
+				+ "?book :title $title }")
+		Set<Object> findBooks(@Bind("title") String title);
+	}
+
+	private ValueFactory vf;
+	private URI book;
+	private URI title;
+	private Shelf shelf;
+	private Resource resource;
+
+	@Override
+	protected void setUp() throws Exception {
+		config.addConcept(Shelf.class);
+		super.setUp();
+		vf = con.getValueFactory();
+		book = vf.createURI(NS, "book");
+		title = vf.createURI(NS, "title");
+		shelf = con.addDesignation(con.getObject(NS + "shelf"), Shelf.class);
+		resource = ((RDFObject) shelf).getResource();
+		addBook("one");
+	}
+
+	public void testMemoized() throws Exception {
+		assertEquals(1, shelf.findTitles().size());
+		addBookUntracked("two");
+		assertEquals(1, shelf.findTitles().size());
+		con.getMemoizedResults().clear();
+		assertEquals(2, shelf.findTitles().size());
+	}
+
+	public void testInvalidatedByOtherCommit() throws Exception {
+		assertEquals(1, shelf.findTitles().size());
+		ObjectConnection other = con.getRepository().getConnection();
+		try {
+			other.setAutoCommit(false);
+			URI uri = vf.createURI(NS, "two");
+			other.add(resource, book, uri);
+			other.add(uri, title, vf.createLiteral("two"));
+			assertEquals(1, shelf.findTitles().size());
+			other.commit();
+			assertEquals(2, shelf.findTitles().size());
+		} finally {
+			other.close();
+		}
+	}
+
+	public void testInvalidatedAfterUpdate() throws Exception {
+		assertEquals(1, shelf.findTitles().size());
+		Update update = con.prepareUpdate(QueryLanguage.SPARQL, PREFIX
+				+ "INSERT DATA { <" + resource + "> :book :two . "
+				+ ":two :title 'two' }");
+		assertEquals(1, shelf.findTitles().size());
+		update.execute();
+		assertEquals(2, shelf.findTitles().size());
+	}
+
+	public void testRollback() throws Exception {
+		con.setAutoCommit(false);
+		addBook("two");
+		assertEquals(2, shelf.findTitles().size());
+		con.rollback();
+		con.setAutoCommit(true);
+		assertEquals(1, shelf.findTitles().size());
+	}
+
+	public void testInvalidatedByWrite() throws Exception {
+		assertEquals(1, shelf.findTitles().size());
+		addBook("two");
+		assertEquals(2, shelf.findTitles().size());
+	}
+
+	public void testUnrelatedWrite() throws Exception {
+		assertEquals(1, shelf.findTitles().size());
+		addBookUntracked("two");
+		shelf.setNote("note");
+		assertEquals(1, shelf.findTitles().size());
+	}
+
+	public void testCopies() throws Exception {
+		Set<String> titles = shelf.findTitles();
+		titles.add("changed");
+		assertEquals(1, shelf.findTitles().size());
+	}
+
+	public void testArguments() throws Exception {
+		assertEquals(1, shelf.findBooks("one").size());
+		assertEquals(0, shelf.findBooks("two").size());
+		addBookUntracked("two");
+		assertEquals(0, shelf.findBooks("two").size());
+		assertEquals(1, shelf.findBooks("one").size());
+		shelf.findBooks("three");
+		assertEquals(1, shelf.findBooks("two").size());
+	}
+
+	public void testTimeToLive() throws Exception {
+		assertEquals(1, shelf.findBooks().size());
+		addBookUntracked("two");
+		Thread.sleep(10);
+		assertEquals(2, shelf.findBooks().size());
+	}
+
+	private void addBook(String name) throws Exception {
+		URI uri = vf.createURI(NS, name);
+		con.add(resource, book, uri);
+		con.add(uri, title, vf.createLiteral(name));
+	}
+
+	/** Writes bypassing the object repository, unseen by the memoized results. */
+	private void addBookUntracked(String name) throws Exception {
+		RepositoryConnection delegate = con.getDelegate();
+		URI uri = vf.createURI(NS, name);
+		delegate.add(resource, book, uri);
+		delegate.add(uri, title, vf.createLiteral(name));
+	}
+}
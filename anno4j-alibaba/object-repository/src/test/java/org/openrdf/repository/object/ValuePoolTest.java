@@ -0,0 +1,116 @@
+package org.openrdf.repository.object;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.MapBindingSet;
+import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
+import org.openrdf.repository.object.result.ValuePool;
+
+public class ValuePoolTest extends ObjectRepositoryTestCase {
+	private static final String NS = "urn:test:";
+
+	public static Test suite() throws Exception {
+		return ObjectRepositoryTestCase.suite(ValuePoolTest.class);
+	}
+
+	@Iri(NS + "Item")
+	public interface Item {
+		@Iri(NS + "label")
+		String getLabel();
+
+		void setLabel(String label);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		config.addConcept(Item.class);
+		config.setValuePoolSize(100);
+		super.setUp();
+		ValueFactory vf = con.getValueFactory();
+		for (int i = 0; i < 3; i++) {
+			Item item = con.addDesignation(
+					con.getObject(vf.createURI(NS, "item" + i)), Item.class);
+			item.setLabel("label" + i);
+		}
+	}
+
+	public void testSharedPredicatesAndLiterals() throws Exception {
+		ObjectConnection first = con.getRepository().getConnection();
+		ObjectConnection other = con.getRepository().getConnection();
+		try {
+			List<Item> items = first.getObjects(Item.class).asList();
+			List<Item> others = other.getObjects(Item.class).asList();
+			assertEquals(3, others.size());
+			ValuePool pool = con.getRepository().getValuePool();
+			for (Item item : items) {
+				Literal label = new LiteralImpl(item.getLabel());
+				assertNotSame(label, pool.intern(label));
+			}
+			URI predicate = con.getValueFactory().createURI(NS, "label");
+			assertNotSame(predicate, pool.intern(predicate));
+		} finally {
+			first.close();
+			other.close();
+		}
+	}
+
+	public void testLiteralBindings() throws Exception {
+		ValuePool pool = new ValuePool(10);
+		ValueFactory vf = con.getValueFactory();
+		MapBindingSet a = new MapBindingSet();
+		a.addBinding("subj", vf.createURI(NS, "a"));
+		a.addBinding("label", vf.createLiteral("label"));
+		MapBindingSet b = new MapBindingSet();
+		b.addBinding("subj", vf.createURI(NS, "a"));
+		b.addBinding("label", vf.createLiteral("label"));
+		List<BindingSet> first = pool.internLiterals(Arrays.<BindingSet> asList(a));
+		assertSame(a, first.get(0));
+		BindingSet shared = pool.internLiterals(Arrays.<BindingSet> asList(b)).get(0);
+		assertSame(a.getValue("label"), shared.getValue("label"));
+		assertSame(b.getValue("subj"), shared.getValue("subj"));
+	}
+
+	public void testLeastRecentlyUsed() throws Exception {
+		ValuePool pool = new ValuePool(2);
+		ValueFactory vf = con.getValueFactory();
+		URI a = vf.createURI(NS, "a");
+		assertSame(a, pool.intern(a));
+		assertSame(a, pool.intern(vf.createURI(NS, "a")));
+		URI b = vf.createURI(NS, "b");
+		pool.intern(b);
+		pool.intern(vf.createURI(NS, "a"));
+		pool.intern(vf.createURI(NS, "c"));
+		assertSame(a, pool.intern(vf.createURI(NS, "a")));
+		URI copy = vf.createURI(NS, "b");
+		assertSame(copy, pool.intern(copy));
+	}
+
+	public void testLongLiteral() throws Exception {
+		ValuePool pool = new ValuePool(10);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i <= ValuePool.MAX_LABEL_LENGTH; i++) {
+			sb.append('x');
+		}
+		LiteralImpl lit = new LiteralImpl(sb.toString());
+		pool.intern(lit);
+		LiteralImpl copy = new LiteralImpl(sb.toString());
+		assertSame(copy, pool.intern(copy));
+		LiteralImpl shrt = new LiteralImpl("short");
+		pool.intern(shrt);
+		assertSame(shrt, pool.intern(new LiteralImpl("short")));
+	}
+
+	public void testConfig() throws Exception {
+		assertEquals(100, config.clone().getValuePoolSize());
+		assertEquals(100, con.getRepository().getValuePool().getSize());
+	}
+}
@@ -35,10 +35,14 @@ import java.util.List;
 
 import junit.framework.Test;
 
+import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.repository.object.base.ObjectRepositoryTestCase;
 import org.openrdf.repository.object.concepts.Seq;
+import org.openrdf.repository.object.traits.Refreshable;
 
 public class ContainerTest extends ObjectRepositoryTestCase {
 
@@ -127,4 +131,66 @@ public class ContainerTest extends ObjectRepositoryTestCase {
 			sum += item;
 		}
 	}
+
+	public void testSequentialRead() throws Exception {
+		List<Integer> list = new ArrayList<Integer>(1000);
+		for (int i = 0; i < 1000; i++) {
+			list.add(i);
+		}
+		Value uri = con.addObject(list);
+		list = (List<Integer>) con.getObject(uri);
+		assertEquals(1000, list.size());
+		int count = 0;
+		for (Integer item : list) {
+			assertEquals(count++, item.intValue());
+		}
+		assertEquals(1000, count);
+	}
+
+	public void testRandomAccess() throws Exception {
+		List<Integer> list = new ArrayList<Integer>(500);
+		for (int i = 0; i < 500; i++) {
+			list.add(i);
+		}
+		Value uri = con.addObject(list);
+		list = (List<Integer>) con.getObject(uri);
+		assertEquals(Integer.valueOf(499), list.get(499));
+		assertEquals(Integer.valueOf(7), list.get(7));
+		assertEquals(Integer.valueOf(250), list.get(250));
+		assertEquals(Integer.valueOf(251), list.get(251));
+	}
+
+	public void testModifiedWhileReading() throws Exception {
+		List<Integer> list = new ArrayList<Integer>(300);
+		for (int i = 0; i < 300; i++) {
+			list.add(i);
+		}
+		Value uri = con.addObject(list);
+		list = (List<Integer>) con.getObject(uri);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i), list.get(i));
+		}
+		list.set(200, -200);
+		list.remove(150);
+		assertEquals(299, list.size());
+		assertEquals(Integer.valueOf(-200), list.get(199));
+		assertEquals(Integer.valueOf(299), list.get(298));
+	}
+
+	public void testSizeOfUnorderedMembers() throws Exception {
+		URI root = con.getValueFactory().createURI("urn:root");
+		con.add(root, RDF.TYPE, RDF.SEQ);
+		con.add(root, RDFS.LABEL, con.getValueFactory().createLiteral("root"));
+		for (int i : new int[] { 1, 2, 4 }) {
+			URI pred = con.getValueFactory().createURI(RDF.NAMESPACE + "_" + i);
+			con.add(root, pred, con.getValueFactory().createLiteral(i));
+		}
+		List<Object> list = (List<Object>) con.getObject(root);
+		assertEquals(2, list.size());
+		assertEquals(Arrays.asList(1, 2), new ArrayList<Object>(list));
+		con.add(root, con.getValueFactory().createURI(RDF.NAMESPACE + "_3"),
+				con.getValueFactory().createLiteral(3));
+		((Refreshable) list).refresh();
+		assertEquals(4, list.size());
+	}
 }
@@ -31,6 +31,7 @@ package org.openrdf.repository.object.behaviours;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.ListIterator;
 import java.util.Set;
 
 import junit.framework.Test;
@@ -38,6 +39,7 @@ import junit.framework.Test;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
@@ -49,6 +51,7 @@ import org.openrdf.repository.object.base.RepositoryTestCase;
 import org.openrdf.repository.object.concepts.List;
 import org.openrdf.repository.object.config.ObjectRepositoryConfig;
 import org.openrdf.repository.object.config.ObjectRepositoryFactory;
+import org.openrdf.repository.object.traits.Refreshable;
 
 public class ListTest extends RepositoryTestCase {
 	public static Test suite() throws Exception {
@@ -135,6 +138,61 @@ public class ListTest extends RepositoryTestCase {
 		assertEquals(Arrays.asList("ONE", "TWO", "THREE"), list);
 	}
 
+	public void testGet() throws Exception {
+		List<Object> list = manager.addDesignation(manager.getObject("urn:root"), List.class);
+		java.util.List<Object> values = new ArrayList<Object>();
+		for (int i = 0; i < 100; i++) {
+			values.add("value" + i);
+		}
+		list.addAll(values);
+		assertEquals(100, list.size());
+		assertEquals("value0", list.get(0));
+		assertEquals("value57", list.get(57));
+		assertEquals("value99", list.get(99));
+		try {
+			list.get(100);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+		assertEquals(values.subList(90, 100), list.subList(90, 100));
+	}
+
+	public void testAddAllAppends() throws Exception {
+		List<Object> list = manager.addDesignation(manager.getObject("urn:root"), List.class);
+		assertFalse(list.addAll(Arrays.asList()));
+		list.add("one");
+		assertTrue(list.addAll(Arrays.asList("two", "three")));
+		assertEquals(Arrays.asList("one", "two", "three"), list);
+		list = (List<Object>) manager.getObject("urn:root");
+		assertEquals(Arrays.asList("one", "two", "three"), list);
+		assertEquals(3, list.size());
+	}
+
+	public void testIteratorAfterChange() throws Exception {
+		List<Object> list = manager.addDesignation(manager.getObject("urn:root"), List.class);
+		list.addAll(Arrays.asList("one", "two", "three", "four"));
+		ListIterator<Object> it = list.listIterator(2);
+		assertEquals(2, it.nextIndex());
+		assertEquals("three", it.next());
+		it.set("THREE");
+		assertEquals("four", it.next());
+		assertFalse(it.hasNext());
+		assertEquals(Arrays.asList("one", "two", "THREE", "four"), list);
+	}
+
+	public void testRefresh() throws Exception {
+		List<Object> list = manager.addDesignation(manager.getObject("urn:root"), List.class);
+		list.addAll(Arrays.asList("one", "two"));
+		assertEquals(2, list.size());
+		URI root = ValueFactoryImpl.getInstance().createURI("urn:", "root");
+		manager.remove(root, RDF.FIRST, null);
+		manager.add(root, RDF.FIRST, manager.getValueFactory().createLiteral("ONE"));
+		assertEquals("one", list.get(0));
+		((Refreshable) list).refresh();
+		assertEquals(Arrays.asList("ONE", "two"), list);
+	}
+
 	public void testDelete() throws Exception {
 		int before = getSize(repository);
 		URI uri = ValueFactoryImpl.getInstance().createURI("urn:", "root");
@@ -1,9 +1,14 @@
 package com.github.anno4j;
 
+import com.github.anno4j.index.TextIndex;
 import com.github.anno4j.persistence.IDGenerator;
+import com.github.anno4j.persistence.PersistenceListener;
 import com.github.anno4j.persistence.PersistenceService;
+import com.github.anno4j.persistence.WriteBehindPersistenceService;
 import com.github.anno4j.persistence.impl.IDGeneratorAnno4jURN;
 import com.github.anno4j.querying.QueryService;
+import com.github.anno4j.sharding.ShardedObjectRepository;
+import com.github.anno4j.sharding.ShardingStrategy;
 import org.openrdf.model.URI;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryException;
@@ -15,6 +20,11 @@ import org.openrdf.sail.memory.MemoryStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 
 /**
  * Read and write API for W3C Web Annotation Data Model (http://www.w3.org/TR/annotation-model/) and W3C Open Annotation Data Model (http://www.openannotation.org/spec/core/).
@@ -50,6 +60,21 @@ public class Anno4j {
      */
     private ObjectRepository objectRepository;
 
+    /**
+     * Optional sharding layer, distributing annotations over several repositories. Null if a single repository is used.
+     */
+    private ShardedObjectRepository shardedRepository;
+
+    /**
+     * Listeners registered at every created persistence service.
+     */
+    private final List<PersistenceListener> persistenceListeners = new CopyOnWriteArrayList<PersistenceListener>();
+
+    /**
+     * Optional full-text index, used by the text criteria of the created query services. Null if not configured.
+     */
+    private TextIndex textIndex;
+
 
     /**
      * Private constructor because of singleton pattern
@@ -72,7 +97,10 @@ public class Anno4j {
      * @return persistence object
      */
     public PersistenceService createPersistenceService() {
-        return new PersistenceService(objectRepository);
+        if (shardedRepository != null) {
+            return addListeners(new PersistenceService(shardedRepository, null));
+        }
+        return addListeners(new PersistenceService(objectRepository));
     }
 
     /**
@@ -81,7 +109,34 @@ public class Anno4j {
      * @return persistence object
      */
     public PersistenceService createPersistenceService(URI graph) {
-        return new PersistenceService(objectRepository, graph);
+        if (shardedRepository != null) {
+            return addListeners(new PersistenceService(shardedRepository, graph));
+        }
+        return addListeners(new PersistenceService(objectRepository, graph));
+    }
+
+    /**
+     * Create a persistence object writing the annotations in background group commits, see
+     * {@link WriteBehindPersistenceService}. The service has to be closed.
+     * @param graph Graph context to write to, null for the default graph
+     * @param journal File journaling the queued annotations for crash safety, null to not journal them
+     * @return persistence object
+     * @throws RepositoryException
+     * @throws IOException if the journal could not be opened
+     */
+    public WriteBehindPersistenceService createWriteBehindPersistenceService(URI graph, File journal) throws RepositoryException, IOException {
+        WriteBehindPersistenceService persistenceService = (shardedRepository != null)
+                ? new WriteBehindPersistenceService(shardedRepository, graph, journal)
+                : new WriteBehindPersistenceService(objectRepository, graph, journal);
+        addListeners(persistenceService);
+        return persistenceService;
+    }
+
+    private PersistenceService addListeners(PersistenceService persistenceService) {
+        for (PersistenceListener listener : persistenceListeners) {
+            persistenceService.addListener(listener);
+        }
+        return persistenceService;
     }
 
     /**
@@ -90,17 +145,23 @@ public class Anno4j {
      * @return query service object for specified type
      */
     public QueryService createQueryService(Class clazz) {
-        return new QueryService(clazz, objectRepository);
+        if (shardedRepository != null) {
+            return new QueryService(clazz, shardedRepository).textIndex(textIndex);
+        }
+        return new QueryService(clazz, objectRepository).textIndex(textIndex);
     }
 
     /**
      * Create query service
      * @param clazz Result type
-     * @param graph Graph context to query
+     * @param graphs Graph contexts to query
      * @return query service object for specified type
      */
-    public QueryService createQueryService(Class clazz, URI graph) {
-        return new QueryService(clazz, objectRepository, graph);
+    public QueryService createQueryService(Class clazz, URI... graphs) {
+        if (shardedRepository != null) {
+            return new QueryService(clazz, shardedRepository, graphs).textIndex(textIndex);
+        }
+        return new QueryService(clazz, objectRepository, graphs).textIndex(textIndex);
     }
 
     /**
@@ -137,6 +198,43 @@ public class Anno4j {
         this.repository = repository;
         // update alibaba wrapper
         this.objectRepository = new ObjectRepositoryFactory().createRepository(repository);
+        // a single repository replaces a previously configured sharding layer
+        setShardedRepository(null);
+    }
+
+    /**
+     * Configures Anno4j to distribute annotations over several repositories (shards). Annotations are written to the shard
+     * selected by the given strategy, queries are executed on all shards in parallel and merged.
+     * The first shard is used as the repository for everything that is not shard-aware.
+     * @param repositories Repositories to use as shards.
+     * @param shardingStrategy Strategy deciding which shard owns an annotation.
+     * @throws RepositoryException
+     * @throws RepositoryConfigException
+     */
+    public void setShards(List<? extends Repository> repositories, ShardingStrategy shardingStrategy) throws RepositoryException, RepositoryConfigException {
+        ShardedObjectRepository sharded = new ShardedObjectRepository(repositories, shardingStrategy);
+        this.repository = repositories.get(0);
+        this.objectRepository = sharded.getShards().get(0);
+        setShardedRepository(sharded);
+    }
+
+    /**
+     * Replaces the sharding layer, stopping the previous one.
+     * @param shardedRepository new sharding layer or null.
+     */
+    private void setShardedRepository(ShardedObjectRepository shardedRepository) {
+        if (this.shardedRepository != null) {
+            this.shardedRepository.shutDown();
+        }
+        this.shardedRepository = shardedRepository;
+    }
+
+    /**
+     * Getter for the configured sharding layer.
+     * @return configured ShardedObjectRepository, or null if a single repository is used.
+     */
+    public ShardedObjectRepository getShardedRepository() {
+        return shardedRepository;
     }
 
     /**
@@ -147,6 +245,45 @@ public class Anno4j {
         return objectRepository;
     }
 
+    /**
+     * Registers a listener at every persistence service created afterwards.
+     * @param listener Listener notified after annotations were written.
+     */
+    public void addPersistenceListener(PersistenceListener listener) {
+        persistenceListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener from the persistence services created afterwards.
+     * @param listener Listener to remove.
+     */
+    public void removePersistenceListener(PersistenceListener listener) {
+        persistenceListeners.remove(listener);
+    }
+
+    /**
+     * Configures the full-text index of the text criteria of the query services. The index is registered as
+     * persistence listener, so it follows the annotations written by the persistence services created afterwards.
+     * @param textIndex Full-text index to use, or null to disable the text criteria.
+     */
+    public void setTextIndex(TextIndex textIndex) {
+        if (this.textIndex != null) {
+            removePersistenceListener(this.textIndex);
+        }
+        this.textIndex = textIndex;
+        if (textIndex != null) {
+            addPersistenceListener(textIndex);
+        }
+    }
+
+    /**
+     * Getter for the configured full-text index.
+     * @return configured TextIndex, or null if none is configured.
+     */
+    public TextIndex getTextIndex() {
+        return textIndex;
+    }
+
     /**
      * Getter for the Anno4j getter instance.
      * @return singleton Anno4j instance.
@@ -0,0 +1,269 @@
+package com.github.anno4j.index;
+
+import org.openrdf.model.Resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of the texts of one field (LDPath expression). Every annotation is a document with a numeric id,
+ * every term has a postings list of the ids of the documents containing it and the term frequencies, ordered by id.
+ * The index is not thread-safe.
+ */
+class FieldIndex {
+
+    /**
+     * BM25 term frequency saturation
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * BM25 document length normalization
+     */
+    private static final double B = 0.75;
+
+    private final Map<String, Postings> postings = new HashMap<String, Postings>();
+
+    /**
+     * The document id of every indexed annotation
+     */
+    private final Map<Resource, Integer> documents = new HashMap<Resource, Integer>();
+
+    /**
+     * The annotation of every document id, null if the document was removed
+     */
+    private List<Resource> annotations = new ArrayList<Resource>();
+
+    /**
+     * The number of terms of every document
+     */
+    private int[] lengths = new int[16];
+
+    private long totalLength = 0;
+
+    /**
+     * Number of removed documents still contained in the postings lists
+     */
+    private int removed = 0;
+
+    /**
+     * Indexes the terms of the annotation, replacing its previous terms.
+     */
+    void add(Resource annotation, List<String> terms) {
+        remove(annotation);
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        int document = annotations.size();
+        annotations.add(annotation);
+        documents.put(annotation, document);
+        if (document == lengths.length) {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[document] = terms.size();
+        totalLength += terms.size();
+
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (String term : terms) {
+            Integer frequency = frequencies.get(term);
+            frequencies.put(term, (frequency == null) ? 1 : frequency + 1);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Postings termPostings = postings.get(entry.getKey());
+            if (termPostings == null) {
+                termPostings = new Postings();
+                postings.put(entry.getKey(), termPostings);
+            }
+            termPostings.add(document, entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the annotation. Its entries stay in the postings lists and are skipped by the queries until the index is
+     * compacted.
+     */
+    void remove(Resource annotation) {
+        Integer document = documents.remove(annotation);
+        if (document == null) {
+            return;
+        }
+
+        annotations.set(document, null);
+        totalLength -= lengths[document];
+        removed++;
+        if (removed > 1024 && removed > documents.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes all documents.
+     */
+    void clear() {
+        postings.clear();
+        documents.clear();
+        annotations = new ArrayList<Resource>();
+        lengths = new int[16];
+        totalLength = 0;
+        removed = 0;
+    }
+
+    /**
+     * Finds the annotations containing all terms of the query, ranked by BM25. The document frequencies include
+     * removed documents not yet compacted, like most inverted indexes do.
+     *
+     * @param terms The terms of the query
+     * @return the matching annotations, the most relevant first
+     */
+    List<TextHit> search(List<String> terms) {
+        List<TextHit> hits = new ArrayList<TextHit>();
+        if (terms.isEmpty() || documents.isEmpty()) {
+            return hits;
+        }
+
+        List<Postings> lists = new ArrayList<Postings>();
+        for (String term : new LinkedHashSet<String>(terms)) {
+            Postings termPostings = postings.get(term);
+            if (termPostings == null) {
+                return hits;
+            }
+            lists.add(termPostings);
+        }
+        // Intersecting beginning with the rarest term
+        Collections.sort(lists, new Comparator<Postings>() {
+            @Override
+            public int compare(Postings first, Postings second) {
+                return first.size - second.size;
+            }
+        });
+
+        int count = documents.size();
+        double averageLength = (double) totalLength / count;
+        double[] idf = new double[lists.size()];
+        for (int i = 0; i < idf.length; i++) {
+            int frequency = Math.min(lists.get(i).size, count);
+            idf[i] = Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+        }
+
+        int[] cursors = new int[lists.size()];
+        Postings rarest = lists.get(0);
+        candidates:
+        for (int i = 0; i < rarest.size; i++) {
+            int document = rarest.documents[i];
+            Resource annotation = annotations.get(document);
+            if (annotation == null) {
+                continue;
+            }
+
+            double normalization = K1 * (1 - B + B * lengths[document] / averageLength);
+            double score = idf[0] * tf(rarest.frequencies[i], normalization);
+            for (int j = 1; j < lists.size(); j++) {
+                Postings other = lists.get(j);
+                int cursor = cursors[j];
+                while (cursor < other.size && other.documents[cursor] < document) {
+                    cursor++;
+                }
+                cursors[j] = cursor;
+                if (cursor == other.size) {
+                    break candidates;
+                }
+                if (other.documents[cursor] != document) {
+                    continue candidates;
+                }
+                score += idf[j] * tf(other.frequencies[cursor], normalization);
+            }
+            hits.add(new TextHit(annotation, score));
+        }
+
+        Collections.sort(hits, new Comparator<TextHit>() {
+            @Override
+            public int compare(TextHit first, TextHit second) {
+                return Double.compare(second.getScore(), first.getScore());
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * @return the number of indexed annotations
+     */
+    int size() {
+        return documents.size();
+    }
+
+    private static double tf(int frequency, double normalization) {
+        return frequency * (K1 + 1) / (frequency + normalization);
+    }
+
+    /**
+     * Renumbers the remaining documents and drops the removed ones from the postings lists.
+     */
+    private void compact() {
+        int[] ids = new int[annotations.size()];
+        List<Resource> compacted = new ArrayList<Resource>(documents.size());
+        int[] compactedLengths = new int[Math.max(16, documents.size())];
+        for (int document = 0; document < annotations.size(); document++) {
+            Resource annotation = annotations.get(document);
+            if (annotation == null) {
+                ids[document] = -1;
+            } else {
+                ids[document] = compacted.size();
+                compactedLengths[compacted.size()] = lengths[document];
+                documents.put(annotation, compacted.size());
+                compacted.add(annotation);
+            }
+        }
+
+        Iterator<Postings> iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            Postings termPostings = iterator.next();
+            int size = 0;
+            for (int i = 0; i < termPostings.size; i++) {
+                int id = ids[termPostings.documents[i]];
+                if (id != -1) {
+                    termPostings.documents[size] = id;
+                    termPostings.frequencies[size] = termPostings.frequencies[i];
+                    size++;
+                }
+            }
+            termPostings.size = size;
+            if (size == 0) {
+                iterator.remove();
+            }
+        }
+
+        annotations = compacted;
+        lengths = compactedLengths;
+        removed = 0;
+    }
+
+    /**
+     * The documents containing a term, in ascending order of their ids, and the frequency of the term in each.
+     */
+    private static class Postings {
+
+        private int[] documents = new int[4];
+
+        private int[] frequencies = new int[4];
+
+        private int size = 0;
+
+        void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.anno4j.index;
+
+import org.openrdf.model.Resource;
+
+/**
+ * An annotation matching a full-text query, see {@link TextIndex#search(String, String)}.
+ */
+public class TextHit {
+
+    /**
+     * The resource of the matching annotation
+     */
+    private final Resource annotation;
+
+    /**
+     * The BM25 relevance of the annotation for the query
+     */
+    private final double score;
+
+    public TextHit(Resource annotation, double score) {
+        this.annotation = annotation;
+        this.score = score;
+    }
+
+    public Resource getAnnotation() {
+        return annotation;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return annotation + " (" + score + ")";
+    }
+}
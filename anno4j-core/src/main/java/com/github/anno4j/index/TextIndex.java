@@ -0,0 +1,564 @@
+package com.github.anno4j.index;
+
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.namespaces.CNT;
+import com.github.anno4j.model.namespaces.OADM;
+import com.github.anno4j.model.namespaces.RDF;
+import com.github.anno4j.persistence.PersistenceListener;
+import com.github.anno4j.querying.ProjectionRow;
+import com.github.anno4j.querying.QueryService;
+import com.github.anno4j.querying.ValuesCriteria;
+import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.object.ObjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process full-text index of the textual values of annotations, e.g. the exact text of TextQuoteSelectors or
+ * embedded textual bodies. Every field is an LDPath expression beginning from the Annotation object, whose values
+ * are tokenized into an inverted index and ranked by BM25.
+ * <p/>
+ * Registered by {@link com.github.anno4j.Anno4j#setTextIndex(TextIndex)}, the index follows the annotations
+ * written by the persistence services and serves {@link QueryService#textMatch(String, String)}. Persisted annotations
+ * are only queued by the writing thread. Their texts are loaded in batches from the repository they were written to
+ * before the next search, or by the writing thread once many annotations are queued. A bulk update reloads the
+ * annotations of the updated graph. The index can be rebuilt from the store at any time, e.g. after annotations were
+ * imported without a persistence service.
+ */
+public class TextIndex implements PersistenceListener {
+
+    private final Logger logger = LoggerFactory.getLogger(TextIndex.class);
+
+    /**
+     * The fields indexed by default: the exact, prefix and suffix text of TextQuoteSelectors and the text of
+     * embedded bodies.
+     */
+    public static final String[] DEFAULT_FIELDS = {
+            "oa:hasTarget/oa:hasSelector/oa:exact",
+            "oa:hasTarget/oa:hasSelector/oa:prefix",
+            "oa:hasTarget/oa:hasSelector/oa:suffix",
+            "oa:hasBody/cnt:chars",
+            "oa:hasBody/rdf:value"
+    };
+
+    /**
+     * The index of every field
+     */
+    private final Map<String, FieldIndex> fields = new LinkedHashMap<String, FieldIndex>();
+
+    /**
+     * Name spaces of the LDPath expressions of the fields
+     */
+    private final HashMap<String, String> prefixes = new HashMap<String, String>();
+
+    /**
+     * Number of annotations whose texts are loaded by one query
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Number of queued annotations at which the writing thread indexes them itself
+     */
+    private static final int MAX_PENDING = 10000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The repository and graph every indexed annotation was loaded from, guarded by the lock
+     */
+    private final Map<Resource, Source> sources = new HashMap<Resource, Source>();
+
+    /**
+     * The annotations persisted since the last flush, per repository and graph. Guarded by itself, like the updated
+     * sources and the number of pending annotations.
+     */
+    private final Map<Source, Set<Resource>> pending = new LinkedHashMap<Source, Set<Resource>>();
+
+    /**
+     * The repositories and graphs changed by bulk updates since the last flush
+     */
+    private final Set<Source> updated = new LinkedHashSet<Source>();
+
+    private int pendingCount = 0;
+
+    /**
+     * Serializes the flushes
+     */
+    private final Object flushing = new Object();
+
+    /**
+     * Creates an index of the {@link #DEFAULT_FIELDS}.
+     */
+    public TextIndex() {
+        this(DEFAULT_FIELDS);
+    }
+
+    /**
+     * @param fields The LDPath expressions to index, beginning from the Annotation object, e.g. "oa:hasBody/ex:value".
+     *               Their values have to be literals.
+     */
+    public TextIndex(String... fields) {
+        for (String field : fields) {
+            this.fields.put(field, new FieldIndex());
+        }
+        prefixes.put(OADM.PREFIX, OADM.NS);
+        prefixes.put(CNT.PREFIX, CNT.NS);
+        prefixes.put(RDF.PREFIX, RDF.NS);
+    }
+
+    /**
+     * Setting shortcut names for URI prefixes used by the fields.
+     *
+     * @param label The label of the namespace, e.g. foaf
+     * @param url   The URL
+     * @return itself to allow chaining.
+     */
+    public TextIndex addPrefix(String label, String url) {
+        this.prefixes.put(label, url);
+        return this;
+    }
+
+    /**
+     * @return the indexed LDPath expressions
+     */
+    public List<String> getFields() {
+        return new ArrayList<String>(fields.keySet());
+    }
+
+    /**
+     * Indexes the texts of a field of the annotation, replacing previously indexed texts of this field.
+     *
+     * @param annotation The resource of the annotation
+     * @param field      One of the indexed LDPath expressions
+     * @param texts      The values of the field
+     */
+    public void add(Resource annotation, String field, Collection<String> texts) {
+        FieldIndex index = getFieldIndex(field);
+        List<String> terms = tokenize(texts);
+
+        lock.writeLock().lock();
+        try {
+            index.add(annotation, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the texts of all fields of the annotation from the given repository and graph and indexes them, replacing
+     * the previously indexed texts of the annotation.
+     *
+     * @param annotation The resource of the annotation
+     * @param repository The repository of the annotation
+     * @param graph      The graph context of the annotation, null for the default graph
+     */
+    public void index(Resource annotation, ObjectRepository repository, URI graph) throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        index(new Source(repository, graph), Collections.singletonList(annotation));
+    }
+
+    /**
+     * Removes the annotation from all fields.
+     *
+     * @param annotation The resource of the annotation
+     */
+    public void remove(Resource annotation) {
+        lock.writeLock().lock();
+        try {
+            removeIndexed(annotation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all annotations from the index, including the queued ones.
+     */
+    public void clear() {
+        synchronized (pending) {
+            pending.clear();
+            updated.clear();
+            pendingCount = 0;
+        }
+        lock.writeLock().lock();
+        try {
+            for (FieldIndex index : fields.values()) {
+                index.clear();
+            }
+            sources.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the texts of all annotations of the given repository.
+     *
+     * @param repository The repository to index
+     * @param graphs     The graph contexts to index, none for the whole repository
+     */
+    public void rebuild(ObjectRepository repository, URI... graphs) throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        rebuild(Collections.singletonList(repository), graphs);
+    }
+
+    /**
+     * Rebuilds the index from the texts of all annotations of the given repositories, e.g. the shards of a sharded
+     * repository.
+     *
+     * @param repositories The repositories to index
+     * @param graphs       The graph contexts to index, none for the whole repositories
+     */
+    public void rebuild(Collection<ObjectRepository> repositories, URI... graphs) throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        Map<Source, Map<Resource, Map<String, Set<String>>>> texts = new LinkedHashMap<Source, Map<Resource, Map<String, Set<String>>>>();
+        for (ObjectRepository repository : repositories) {
+            if (graphs.length == 0) {
+                Source source = new Source(repository, null);
+                texts.put(source, loadTexts(source, null));
+            }
+            for (URI graph : graphs) {
+                Source source = new Source(repository, graph);
+                texts.put(source, loadTexts(source, null));
+            }
+        }
+
+        synchronized (flushing) {
+            clear();
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<Source, Map<Resource, Map<String, Set<String>>>> source : texts.entrySet()) {
+                    for (Map.Entry<Resource, Map<String, Set<String>>> annotation : source.getValue().entrySet()) {
+                        putIndexed(annotation.getKey(), source.getKey(), annotation.getValue());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Indexes the queued annotations and reloads the annotations of the updated graphs. Called before every search.
+     */
+    public void flush() throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        synchronized (flushing) {
+            Map<Source, Set<Resource>> annotations;
+            Set<Source> reloaded;
+            synchronized (pending) {
+                if (pending.isEmpty() && updated.isEmpty()) {
+                    return;
+                }
+                annotations = new LinkedHashMap<Source, Set<Resource>>(pending);
+                reloaded = new LinkedHashSet<Source>(updated);
+                pending.clear();
+                updated.clear();
+                pendingCount = 0;
+            }
+
+            try {
+                Iterator<Source> sourceIterator = reloaded.iterator();
+                while (sourceIterator.hasNext()) {
+                    reindex(sourceIterator.next());
+                    sourceIterator.remove();
+                }
+                Iterator<Map.Entry<Source, Set<Resource>>> annotationIterator = annotations.entrySet().iterator();
+                while (annotationIterator.hasNext()) {
+                    Map.Entry<Source, Set<Resource>> source = annotationIterator.next();
+                    List<Resource> resources = new ArrayList<Resource>(source.getValue());
+                    for (int from = 0; from < resources.size(); from += BATCH_SIZE) {
+                        index(source.getKey(), resources.subList(from, Math.min(from + BATCH_SIZE, resources.size())));
+                    }
+                    annotationIterator.remove();
+                }
+            } finally {
+                // Queuing what could not be indexed again
+                synchronized (pending) {
+                    updated.addAll(reloaded);
+                    for (Map.Entry<Source, Set<Resource>> source : annotations.entrySet()) {
+                        for (Resource annotation : source.getValue()) {
+                            queue(source.getKey(), annotation);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the annotations whose field contains all terms of the query, ranked by their BM25 relevance.
+     *
+     * @param field One of the indexed LDPath expressions
+     * @param query The query text, tokenized like the indexed texts
+     * @return the matching annotations, the most relevant first
+     */
+    public List<TextHit> search(String field, String query) {
+        FieldIndex index = getFieldIndex(field);
+        List<String> terms = Tokenizer.tokenize(query);
+        flushQuietly();
+
+        lock.readLock().lock();
+        try {
+            return index.search(terms);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the most relevant annotations whose field contains all terms of the query.
+     *
+     * @param field      One of the indexed LDPath expressions
+     * @param query      The query text, tokenized like the indexed texts
+     * @param maxResults The maximum number of hits
+     * @return the matching annotations, the most relevant first
+     */
+    public List<TextHit> search(String field, String query, int maxResults) {
+        List<TextHit> hits = search(field, query);
+        return (hits.size() > maxResults) ? new ArrayList<TextHit>(hits.subList(0, maxResults)) : hits;
+    }
+
+    /**
+     * @param field One of the indexed LDPath expressions
+     * @return the number of annotations with a text in this field
+     */
+    public int size(String field) {
+        FieldIndex index = getFieldIndex(field);
+        flushQuietly();
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues the persisted annotation to be indexed before the next search.
+     */
+    @Override
+    public void annotationPersisted(Annotation annotation, ObjectRepository repository, URI graph) {
+        boolean full;
+        synchronized (pending) {
+            queue(new Source(repository, graph), annotation.getResource());
+            full = pendingCount >= MAX_PENDING;
+        }
+        if (full) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Reloads the annotations of the updated graph before the next search, as the changed annotations are unknown.
+     */
+    @Override
+    public void annotationsUpdated(ObjectRepository repository, URI graph) {
+        Source source = new Source(repository, graph);
+        synchronized (pending) {
+            updated.add(source);
+            Set<Resource> annotations = pending.remove(source);
+            if (annotations != null) {
+                pendingCount -= annotations.size();
+            }
+        }
+    }
+
+    /**
+     * Adds the annotation to the pending ones, guarded by the pending map.
+     */
+    private void queue(Source source, Resource annotation) {
+        Set<Resource> annotations = pending.get(source);
+        if (annotations == null) {
+            annotations = new LinkedHashSet<Resource>();
+            pending.put(source, annotations);
+        }
+        if (annotations.add(annotation)) {
+            pendingCount++;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Could not index the texts of the persisted annotations", e);
+        }
+    }
+
+    /**
+     * Loads the texts of the annotations from their repository and graph and indexes them.
+     */
+    private void index(Source source, List<Resource> annotations) throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        Map<Resource, Map<String, Set<String>>> texts = loadTexts(source, annotations);
+
+        lock.writeLock().lock();
+        try {
+            for (Resource annotation : annotations) {
+                putIndexed(annotation, source, texts.get(annotation));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the annotations loaded from the repository and graph by their current texts. Reloading the default
+     * graph reloads the whole repository.
+     */
+    private void reindex(Source source) throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        Map<Resource, Map<String, Set<String>>> texts = loadTexts(source, null);
+
+        lock.writeLock().lock();
+        try {
+            List<Resource> stale = new ArrayList<Resource>();
+            for (Map.Entry<Resource, Source> indexed : sources.entrySet()) {
+                Source other = indexed.getValue();
+                if (other.equals(source) || (source.graph == null && other.repository == source.repository)) {
+                    stale.add(indexed.getKey());
+                }
+            }
+            for (Resource annotation : stale) {
+                removeIndexed(annotation);
+            }
+            for (Map.Entry<Resource, Map<String, Set<String>>> annotation : texts.entrySet()) {
+                putIndexed(annotation.getKey(), source, annotation.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the texts of all fields of the annotation, called with the write lock held.
+     */
+    private void putIndexed(Resource annotation, Source source, Map<String, Set<String>> annotationTexts) {
+        for (Map.Entry<String, FieldIndex> field : fields.entrySet()) {
+            Set<String> values = (annotationTexts != null) ? annotationTexts.get(field.getKey()) : null;
+            field.getValue().add(annotation, tokenize(values));
+        }
+        sources.put(annotation, source);
+    }
+
+    /**
+     * Removes the annotation from all fields, called with the write lock held.
+     */
+    private void removeIndexed(Resource annotation) {
+        for (FieldIndex index : fields.values()) {
+            index.remove(annotation);
+        }
+        sources.remove(annotation);
+    }
+
+    private FieldIndex getFieldIndex(String field) {
+        lock.readLock().lock();
+        try {
+            FieldIndex index = fields.get(field);
+            if (index == null) {
+                throw new IllegalArgumentException(field + " is not indexed, the indexed fields are " + fields.keySet());
+            }
+            return index;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the values of all fields of the annotations of the repository and graph, one field per query to not
+     * multiply the values of different fields.
+     *
+     * @param source      The repository and graph to read from
+     * @param annotations The annotations to load, null for all
+     * @return the distinct texts per field of every annotation
+     */
+    private Map<Resource, Map<String, Set<String>>> loadTexts(Source source, List<Resource> annotations) throws RepositoryException, QueryEvaluationException, MalformedQueryException, ParseException {
+        Map<Resource, Map<String, Set<String>>> texts = new HashMap<Resource, Map<String, Set<String>>>();
+        for (String field : fields.keySet()) {
+            QueryService<Annotation> queryService = (source.graph != null)
+                    ? new QueryService<Annotation>(Annotation.class, source.repository, source.graph)
+                    : new QueryService<Annotation>(Annotation.class, source.repository);
+            queryService.addPrefixes(prefixes);
+            if (annotations != null) {
+                queryService.addCriteriaObject(new ValuesCriteria(annotations));
+            }
+
+            for (ProjectionRow row : queryService.select(field)) {
+                Value value = row.getValue(0);
+                if (value == null) {
+                    continue;
+                }
+                Map<String, Set<String>> annotationTexts = texts.get(row.getAnnotation());
+                if (annotationTexts == null) {
+                    annotationTexts = new HashMap<String, Set<String>>();
+                    texts.put(row.getAnnotation(), annotationTexts);
+                }
+                if (!annotationTexts.containsKey(field)) {
+                    annotationTexts.put(field, new LinkedHashSet<String>());
+                }
+                annotationTexts.get(field).add(value.stringValue());
+            }
+        }
+        return texts;
+    }
+
+    private static List<String> tokenize(Collection<String> texts) {
+        List<String> terms = new ArrayList<String>();
+        if (texts != null) {
+            for (String text : texts) {
+                Tokenizer.tokenize(text, terms);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * A repository and graph context annotations are loaded from.
+     */
+    private static class Source {
+
+        private final ObjectRepository repository;
+
+        /**
+         * The graph context, null for the default graph
+         */
+        private final URI graph;
+
+        Source(ObjectRepository repository, URI graph) {
+            this.repository = repository;
+            this.graph = graph;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Source)) {
+                return false;
+            }
+
+            Source that = (Source) o;
+            return repository == that.repository && ((graph != null) ? graph.equals(that.graph) : that.graph == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(repository) + ((graph != null) ? graph.hashCode() : 0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.anno4j.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into lower case terms at every character that is neither a letter nor a digit. No stemming or stop
+ * word removal is applied, so the same tokenizer is used for indexed texts and queries.
+ */
+final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @param text The text to split
+     * @return the terms of the text, in the order of their occurrence
+     */
+    static List<String> tokenize(CharSequence text) {
+        List<String> terms = new ArrayList<String>();
+        tokenize(text, terms);
+        return terms;
+    }
+
+    /**
+     * Appends the terms of the text to the given list.
+     *
+     * @param text  The text to split
+     * @param terms The list to add the terms to
+     */
+    static void tokenize(CharSequence text, List<String> terms) {
+        if (text == null) {
+            return;
+        }
+
+        StringBuilder term = new StringBuilder(16);
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+
+            if (Character.isLetterOrDigit(codePoint)) {
+                term.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (term.length() > 0) {
+            terms.add(term.toString());
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.github.anno4j.io;
+
+import com.github.anno4j.model.namespaces.OADM;
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.QueryOptimizer;
+import com.github.anno4j.querying.QueryService;
+import com.github.anno4j.querying.evaluation.EvalQuery;
+import com.hp.hpl.jena.query.Query;
+import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streams the RDF statements of annotations matching the given criteria to a Sesame {@link org.openrdf.rio.RDFHandler},
+ * without creating any AliBaba objects. Besides the annotation itself, its bodies, targets and selectors, the members
+ * of choices and composites and all blank nodes reachable through them are exported. Other linked resources, e.g.
+ * sources or agents, are only referenced. A resource shared by several annotations, e.g. a common target, is exported
+ * once while it is among the recently exported resources. Matching annotations are read from a streamed query result
+ * and exported one by one, so the memory consumption does not depend on the number of exported annotations.
+ */
+public class AnnotationExporter {
+
+    /**
+     * The predicates leading from an annotation to the resources exported with it
+     */
+    private static final Set<URI> PARTS = new HashSet<URI>(Arrays.<URI>asList(
+            new URIImpl(OADM.HAS_BODY),
+            new URIImpl(OADM.HAS_TARGET),
+            new URIImpl(OADM.HAS_SELECTOR),
+            new URIImpl(OADM.ITEM),
+            new URIImpl(OADM.MEMBERS)));
+
+    /**
+     * Number of exported resources remembered on a connection to skip shared resources
+     */
+    private static final int RECENT_RESOURCES = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(AnnotationExporter.class);
+
+    /**
+     * The repository to export from
+     */
+    private final Repository repository;
+
+    /**
+     * The graph contexts to export. Empty if the whole repository is exported.
+     */
+    private final URI[] graphs;
+
+    /**
+     * All user defined name spaces
+     */
+    private Map<String, String> prefixes = QueryService.getDefaultPrefixes();
+
+    /**
+     * All user defined criteria
+     */
+    private ArrayList<Criteria> criteria = new ArrayList<Criteria>();
+
+    /**
+     * Indicates if multiple graphs are exported concurrently
+     */
+    private boolean parallel = false;
+
+    /**
+     * Constructor
+     *
+     * @param repository The repository to export from
+     * @param graphs     The graph contexts to export, none for the whole repository
+     */
+    public AnnotationExporter(Repository repository, URI... graphs) {
+        this.repository = repository;
+        this.graphs = (graphs != null) ? graphs : new URI[0];
+    }
+
+    /**
+     * Adding a criteria object, restricting the exported annotations.
+     *
+     * @param criteria The criteria object, its LDPath beginning from the Annotation object
+     * @return itself to allow chaining.
+     */
+    public AnnotationExporter addCriteria(Criteria criteria) {
+        this.criteria.add(criteria);
+        return this;
+    }
+
+    /**
+     * Setting shortcut names for URI prefixes.
+     *
+     * @param label The label of the namespace, e.g. foaf
+     * @param url   The URL
+     * @return itself to allow chaining.
+     */
+    public AnnotationExporter addPrefix(String label, String url) {
+        this.prefixes.put(label, url);
+        return this;
+    }
+
+    /**
+     * Defines if multiple graphs are exported concurrently on separate connections. The statements of the graphs are then
+     * interleaved in the output.
+     *
+     * @param parallel true for a concurrent export per graph.
+     * @return itself to allow chaining.
+     */
+    public AnnotationExporter setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Serializes all matching annotations to the given stream.
+     *
+     * @param out    The stream to write to
+     * @param format The RDF format, e.g. RDFFormat.NTRIPLES, RDFFormat.TURTLE or RDFFormat.BINARY
+     * @return the number of exported annotations
+     */
+    public long export(OutputStream out, RDFFormat format) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException, RDFHandlerException {
+        return export(Rio.createWriter(format, out));
+    }
+
+    /**
+     * Streams the statements of all matching annotations to the given handler.
+     *
+     * @param handler The handler receiving the statements
+     * @return the number of exported annotations
+     */
+    public long export(RDFHandler handler) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException, RDFHandlerException {
+        Query sparql = EvalQuery.evaluate(criteria, prefixes);
+        sparql.setDistinct(true);
+        String q = QueryOptimizer.getInstance().optimizeFilters(sparql.serialize());
+        logger.debug("Export query:\n" + q);
+
+        handler.startRDF();
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            handler.handleNamespace(prefix.getKey(), prefix.getValue());
+        }
+
+        long count;
+        if (parallel && graphs.length > 1) {
+            count = exportParallel(q, new SynchronizedRDFHandler(handler));
+        } else {
+            count = export(q, graphs, handler);
+        }
+
+        handler.endRDF();
+        return count;
+    }
+
+    /**
+     * Exports every graph on its own connection, concurrently.
+     *
+     * @param q       The SPARQL query selecting the annotations
+     * @param handler The thread safe handler receiving the statements
+     * @return the number of exported annotations
+     */
+    private long exportParallel(final String q, final RDFHandler handler) throws RepositoryException, MalformedQueryException, QueryEvaluationException, RDFHandlerException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(graphs.length, Runtime.getRuntime().availableProcessors()));
+
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (final URI graph : graphs) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return export(q, new URI[]{graph}, handler);
+                    }
+                }));
+            }
+
+            long count = 0;
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryEvaluationException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            } else if (cause instanceof MalformedQueryException) {
+                throw (MalformedQueryException) cause;
+            } else if (cause instanceof QueryEvaluationException) {
+                throw (QueryEvaluationException) cause;
+            } else if (cause instanceof RDFHandlerException) {
+                throw (RDFHandlerException) cause;
+            }
+            throw new QueryEvaluationException(cause);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Exports the annotations of the given graph contexts. The annotations are read from a streamed result, their
+     * statements on a second connection.
+     *
+     * @param q        The SPARQL query selecting the annotations
+     * @param contexts The graph contexts, empty for the whole repository
+     * @param handler  The handler receiving the statements
+     * @return the number of exported annotations
+     */
+    private long export(String q, URI[] contexts, RDFHandler handler) throws RepositoryException, MalformedQueryException, QueryEvaluationException, RDFHandlerException {
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            RepositoryConnection reader = repository.getConnection();
+            try {
+                TupleQuery query = connection.prepareTupleQuery(QueryLanguage.SPARQL, q);
+
+                if (contexts.length > 0) {
+                    DatasetImpl dataset = new DatasetImpl();
+                    for (URI context : contexts) {
+                        dataset.addDefaultGraph(context);
+                    }
+                    query.setDataset(dataset);
+                }
+
+                Set<Resource> exported = Collections.newSetFromMap(new RecentResources());
+                long count = 0;
+                TupleQueryResult result = query.evaluate();
+                try {
+                    while (result.hasNext()) {
+                        BindingSet bindings = result.next();
+                        exportResource((Resource) bindings.getValue(EvalQuery.ANNOTATION_VAR), reader, contexts, handler, exported);
+                        count++;
+                    }
+                } finally {
+                    result.close();
+                }
+                return count;
+            } finally {
+                reader.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Exports the statements of the given annotation and of its parts: the objects of the {@link #PARTS} predicates
+     * and all blank nodes, recursively. Parts already exported for a previous annotation are skipped.
+     *
+     * @param annotation The annotation resource
+     * @param connection The connection to read from
+     * @param contexts   The graph contexts, empty for the whole repository
+     * @param handler    The handler receiving the statements
+     * @param exported   The recently exported resources
+     */
+    private void exportResource(Resource annotation, RepositoryConnection connection, URI[] contexts, RDFHandler handler, Set<Resource> exported) throws RepositoryException, RDFHandlerException {
+        Deque<Resource> open = new ArrayDeque<Resource>();
+        open.push(annotation);
+        exported.add(annotation);
+
+        while (!open.isEmpty()) {
+            RepositoryResult<Statement> statements = connection.getStatements(open.pop(), null, null, false, contexts);
+            try {
+                while (statements.hasNext()) {
+                    Statement statement = statements.next();
+                    handler.handleStatement(statement);
+
+                    Value object = statement.getObject();
+                    boolean part = object instanceof BNode || (object instanceof Resource && PARTS.contains(statement.getPredicate()));
+                    if (part && exported.add((Resource) object)) {
+                        open.push((Resource) object);
+                    }
+                }
+            } finally {
+                statements.close();
+            }
+        }
+    }
+
+    /**
+     * The most recently exported resources, evicting the eldest.
+     */
+    private static class RecentResources extends LinkedHashMap<Resource, Boolean> {
+
+        RecentResources() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Resource, Boolean> eldest) {
+            return size() > RECENT_RESOURCES;
+        }
+    }
+
+    /**
+     * Serializes concurrent calls to a handler, which is not thread safe in general.
+     */
+    private static class SynchronizedRDFHandler implements RDFHandler {
+
+        private final RDFHandler delegate;
+
+        SynchronizedRDFHandler(RDFHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void startRDF() throws RDFHandlerException {
+            delegate.startRDF();
+        }
+
+        @Override
+        public synchronized void endRDF() throws RDFHandlerException {
+            delegate.endRDF();
+        }
+
+        @Override
+        public synchronized void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+            delegate.handleNamespace(prefix, uri);
+        }
+
+        @Override
+        public synchronized void handleStatement(Statement st) throws RDFHandlerException {
+            delegate.handleStatement(st);
+        }
+
+        @Override
+        public synchronized void handleComment(String comment) throws RDFHandlerException {
+            delegate.handleComment(comment);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.anno4j.io;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams serialized annotations (e.g. created by the {@link com.github.anno4j.io.AnnotationExporter}) into a repository,
+ * without creating any AliBaba objects. The statements are written in transactions of a configurable size, so the
+ * memory consumption does not depend on the size of the input.
+ */
+public class AnnotationImporter {
+
+    /**
+     * The repository to import into
+     */
+    private final Repository repository;
+
+    /**
+     * The graph context to import into. Null to keep the contexts of the input.
+     */
+    private final URI graph;
+
+    /**
+     * Number of statements written per transaction
+     */
+    private int batchSize = 10000;
+
+    /**
+     * Constructor
+     *
+     * @param repository The repository to import into
+     */
+    public AnnotationImporter(Repository repository) {
+        this(repository, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param repository The repository to import into
+     * @param graph      The graph context to import into
+     */
+    public AnnotationImporter(Repository repository, URI graph) {
+        this.repository = repository;
+        this.graph = graph;
+    }
+
+    /**
+     * Setting the number of statements written per transaction.
+     *
+     * @param batchSize Number of statements per transaction.
+     * @return itself to allow chaining.
+     */
+    public AnnotationImporter setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Parses the given stream and writes all statements to the repository.
+     *
+     * @param in      The stream to read from
+     * @param baseURI The base URI to resolve relative URIs against
+     * @param format  The RDF format, e.g. RDFFormat.NTRIPLES, RDFFormat.TURTLE or RDFFormat.BINARY
+     * @return the number of imported statements
+     */
+    public long importAnnotations(InputStream in, String baseURI, RDFFormat format) throws RepositoryException, RDFParseException, RDFHandlerException, IOException {
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            RDFParser parser = Rio.createParser(format, repository.getValueFactory());
+            BatchInserter inserter = new BatchInserter(connection);
+            parser.setRDFHandler(inserter);
+
+            try {
+                parser.parse(in, baseURI);
+            } catch (RDFHandlerException e) {
+                // Unwrapping errors of the repository
+                if (e.getCause() instanceof RepositoryException) {
+                    throw (RepositoryException) e.getCause();
+                }
+                throw e;
+            }
+
+            return inserter.getCount();
+        } finally {
+            if (connection.isActive()) {
+                connection.rollback();
+            }
+            connection.close();
+        }
+    }
+
+    /**
+     * Writes the parsed statements in transactions of batchSize statements.
+     */
+    private class BatchInserter extends RDFHandlerBase {
+
+        private final RepositoryConnection connection;
+
+        private long count = 0;
+
+        BatchInserter(RepositoryConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void handleStatement(Statement st) throws RDFHandlerException {
+            try {
+                if (!connection.isActive()) {
+                    connection.begin();
+                }
+
+                Resource[] contexts = (graph != null) ? new Resource[]{graph} : (st.getContext() != null) ? new Resource[]{st.getContext()} : new Resource[0];
+                connection.add(st.getSubject(), st.getPredicate(), st.getObject(), contexts);
+
+                if (++count % batchSize == 0) {
+                    connection.commit();
+                }
+            } catch (RepositoryException e) {
+                throw new RDFHandlerException(e);
+            }
+        }
+
+        @Override
+        public void endRDF() throws RDFHandlerException {
+            try {
+                if (connection.isActive()) {
+                    connection.commit();
+                }
+            } catch (RepositoryException e) {
+                throw new RDFHandlerException(e);
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
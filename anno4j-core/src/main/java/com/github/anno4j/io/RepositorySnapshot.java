@@ -0,0 +1,426 @@
+package com.github.anno4j.io;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes all statements of a repository to a compact binary snapshot file and restores them, e.g. to refill an
+ * in-memory repository at startup without re-ingesting the annotations.
+ * <p/>
+ * The file holds a header, the name spaces and the statements, followed by the number of statements and a CRC32
+ * checksum of everything before it. Every statement is written as the ids of its subject, predicate, object and
+ * context (0 for the default graph). A value is written in full only where its id appears for the first time, so
+ * every value is stored once. Restoring memory-maps the file, validates the checksum before anything is loaded and
+ * adds the statements in transactions of a configurable size.
+ * <p/>
+ * A typical setup restores the last snapshot at startup and then keeps it up to date:
+ * <pre>
+ * RepositorySnapshot snapshot = new RepositorySnapshot(anno4j.getRepository());
+ * if (file.exists()) {
+ *     snapshot.restore(file);
+ * }
+ * snapshot.scheduleSnapshots(file, 10, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class RepositorySnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositorySnapshot.class);
+
+    private static final int MAGIC = 0x414E4A53;
+
+    private static final int VERSION = 1;
+
+    private static final byte URI_TAG = 1;
+    private static final byte BNODE_TAG = 2;
+    private static final byte PLAIN_TAG = 3;
+    private static final byte LANG_TAG = 4;
+    private static final byte TYPED_TAG = 5;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Size of the regions of the file mapped at once
+     */
+    private static final int WINDOW = 64 << 20;
+
+    /**
+     * The repository to snapshot and restore
+     */
+    private final Repository repository;
+
+    /**
+     * Number of statements written per transaction when restoring
+     */
+    private int batchSize = 65536;
+
+    /**
+     * Writes the periodic snapshots, null if none are scheduled
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor
+     *
+     * @param repository The repository to snapshot and restore
+     */
+    public RepositorySnapshot(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Setting the number of statements written per transaction when restoring.
+     *
+     * @param batchSize Number of statements per transaction.
+     * @return itself to allow chaining.
+     */
+    public RepositorySnapshot setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Writes all statements and name spaces of the repository to the file. The snapshot is written to a temporary
+     * file of its own first and then moved over the given one, so the file always holds a complete snapshot, even if
+     * a scheduled and a manual snapshot are written at the same time.
+     * <p/>
+     * Writing keeps a map of all distinct values of the repository to their ids on the heap, so a snapshot needs about
+     * as much heap as the values themselves, unlike restoring.
+     *
+     * @param file The snapshot file
+     * @return the number of written statements
+     */
+    public long write(File file) throws RepositoryException, IOException {
+        File temporary = File.createTempFile("." + file.getName() + "-", ".tmp", file.getAbsoluteFile().getParentFile());
+        FileOutputStream stream = new FileOutputStream(temporary);
+        CRC32 checksum = new CRC32();
+        long count = 0;
+        boolean written = false;
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, checksum), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            List<Namespace> namespaces = connection.getNamespaces().asList();
+            out.writeInt(namespaces.size());
+            for (Namespace namespace : namespaces) {
+                writeString(out, namespace.getPrefix());
+                writeString(out, namespace.getName());
+            }
+
+            Map<Value, Integer> ids = new HashMap<Value, Integer>();
+            RepositoryResult<Statement> statements = connection.getStatements(null, null, null, false);
+            try {
+                while (statements.hasNext()) {
+                    Statement statement = statements.next();
+                    writeValue(out, statement.getSubject(), ids);
+                    writeValue(out, statement.getPredicate(), ids);
+                    writeValue(out, statement.getObject(), ids);
+                    writeValue(out, statement.getContext(), ids);
+                    count++;
+                }
+            } finally {
+                statements.close();
+            }
+
+            out.writeLong(count);
+            out.flush();
+            new DataOutputStream(stream).writeLong(checksum.getValue());
+            stream.getFD().sync();
+            stream.close();
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+        } finally {
+            connection.close();
+            stream.close();
+            if (!written) {
+                temporary.delete();
+            }
+        }
+        logger.debug("Wrote snapshot of {} statements to {}", count, file);
+        return count;
+    }
+
+    /**
+     * Adds the statements and name spaces of a snapshot to the repository. The checksum of the file is validated
+     * before anything is added.
+     *
+     * @param file The snapshot file
+     * @return the number of restored statements
+     * @throws IOException if the file is not a valid snapshot
+     */
+    public long restore(File file) throws RepositoryException, IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < 28) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            MappedInput in = new MappedInput(channel, size - 16);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            validate(channel, size);
+            return load(in, readLong(channel, size - 16));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes a snapshot to the file periodically, on a daemon thread. Replaces an earlier schedule.
+     *
+     * @param file   The snapshot file
+     * @param period The time between the end of one snapshot and the start of the next one
+     * @param unit   The unit of the period
+     */
+    public synchronized void scheduleSnapshots(final File file, long period, TimeUnit unit) {
+        cancelSnapshots();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "anno4j-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(file);
+                } catch (Exception e) {
+                    logger.error("Writing snapshot to " + file + " failed", e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops writing periodic snapshots. A snapshot being written is completed.
+     */
+    public synchronized void cancelSnapshots() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    private long load(MappedInput in, long count) throws RepositoryException, IOException {
+        ValueFactory valueFactory = repository.getValueFactory();
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            connection.begin();
+            int namespaces = in.readInt();
+            for (int i = 0; i < namespaces; i++) {
+                connection.setNamespace(in.readString(), in.readString());
+            }
+
+            List<Value> values = new ArrayList<Value>();
+            values.add(null);
+            for (long i = 0; i < count; i++) {
+                Resource subject = (Resource) readValue(in, values, valueFactory);
+                URI predicate = (URI) readValue(in, values, valueFactory);
+                Value object = readValue(in, values, valueFactory);
+                Resource context = (Resource) readValue(in, values, valueFactory);
+                connection.add(subject, predicate, object, context);
+                if ((i + 1) % batchSize == 0) {
+                    connection.commit();
+                    connection.begin();
+                }
+            }
+            connection.commit();
+            logger.debug("Restored {} statements with {} values", count, values.size() - 1);
+            return count;
+        } finally {
+            if (connection.isActive()) {
+                connection.rollback();
+            }
+            connection.close();
+        }
+    }
+
+    private void validate(FileChannel channel, long size) throws IOException {
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        long end = size - 8;
+        for (long position = 0; position < end; position += WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, end - position));
+            while (window.hasRemaining()) {
+                int length = Math.min(buffer.length, window.remaining());
+                window.get(buffer, 0, length);
+                checksum.update(buffer, 0, length);
+            }
+        }
+        if (checksum.getValue() != readLong(channel, end)) {
+            throw new IOException("Checksum mismatch, the snapshot is corrupt");
+        }
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 8).getLong();
+    }
+
+    private static void writeValue(DataOutputStream out, Value value, Map<Value, Integer> ids) throws IOException {
+        if (value == null) {
+            out.writeInt(0);
+            return;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            out.writeInt(id);
+            return;
+        }
+        id = ids.size() + 1;
+        ids.put(value, id);
+        out.writeInt(id);
+        if (value instanceof URI) {
+            out.writeByte(URI_TAG);
+            writeString(out, value.stringValue());
+        } else if (value instanceof BNode) {
+            out.writeByte(BNODE_TAG);
+            writeString(out, value.stringValue());
+        } else {
+            Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                out.writeByte(LANG_TAG);
+                writeString(out, literal.getLanguage());
+            } else if (literal.getDatatype() != null) {
+                out.writeByte(TYPED_TAG);
+                writeString(out, literal.getDatatype().stringValue());
+            } else {
+                out.writeByte(PLAIN_TAG);
+            }
+            writeString(out, literal.getLabel());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Value readValue(MappedInput in, List<Value> values, ValueFactory valueFactory) throws IOException {
+        int id = in.readInt();
+        if (id < values.size()) {
+            return values.get(id);
+        }
+        if (id != values.size()) {
+            throw new IOException("Invalid value id " + id);
+        }
+        Value value;
+        byte tag = in.readByte();
+        if (tag == URI_TAG) {
+            value = valueFactory.createURI(in.readString());
+        } else if (tag == BNODE_TAG) {
+            value = valueFactory.createBNode(in.readString());
+        } else if (tag == LANG_TAG) {
+            String language = in.readString();
+            value = valueFactory.createLiteral(in.readString(), language);
+        } else if (tag == TYPED_TAG) {
+            URI datatype = valueFactory.createURI(in.readString());
+            value = valueFactory.createLiteral(in.readString(), datatype);
+        } else if (tag == PLAIN_TAG) {
+            value = valueFactory.createLiteral(in.readString());
+        } else {
+            throw new IOException("Invalid value tag " + tag);
+        }
+        values.add(value);
+        return value;
+    }
+
+    /**
+     * Reads a file sequentially through memory-mapped windows.
+     */
+    private static class MappedInput {
+
+        private final FileChannel channel;
+
+        /**
+         * End of the readable part of the file
+         */
+        private final long end;
+
+        /**
+         * Position of the current window in the file
+         */
+        private long offset = 0;
+
+        private MappedByteBuffer window;
+
+        MappedInput(FileChannel channel, long end) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, end));
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return window.get();
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            return window.getInt();
+        }
+
+        String readString() throws IOException {
+            int length = readInt();
+            require(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, UTF8);
+        }
+
+        private void require(int length) throws IOException {
+            if (window.remaining() >= length) {
+                return;
+            }
+            long position = offset + window.position();
+            if (length < 0 || position + length > end) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+            offset = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Math.max(WINDOW, length), end - position));
+        }
+    }
+}
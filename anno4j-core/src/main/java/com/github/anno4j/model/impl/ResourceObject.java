@@ -27,9 +27,10 @@ import org.openrdf.sail.memory.MemoryStore;
 public class ResourceObject implements RDFObject {
 
     /**
-     * Unique identifier for the instance.
+     * Unique identifier for the instance. Generated on first access, so objects which are never persisted or whose
+     * identifier is provided by a proxy do not consume an identifier.
      */
-    private Resource resource = Anno4j.getInstance().getIdGenerator().generateID();
+    private Resource resource;
 
     /**
      *  The current {@link org.openrdf.repository.object.ObjectConnection} this object is attached to. Will be implemented by the proxy object.
@@ -59,6 +60,9 @@ public class ResourceObject implements RDFObject {
      * @return Value of Unique identifier for the instance..
      */
     public Resource getResource() {
+        if (resource == null) {
+            resource = Anno4j.getInstance().getIdGenerator().generateID();
+        }
         return resource;
     }
 
@@ -85,7 +89,7 @@ public class ResourceObject implements RDFObject {
      * @return identifier as String.
      */
     public String getResourceAsString() {
-        return this.resource.stringValue();
+        return this.getResource().stringValue();
     }
 
     public String getNTriples(){
@@ -34,6 +34,11 @@ public class FragmentSelector extends Selector {
      */
     @Iri(DCTERMS.CONFORMS_TO) private String conformsTo;
 
+    /**
+     * The media fragment parsed from the value, cached together with the value it was parsed from.
+     */
+    private transient ParsedValue parsedValue;
+
     /**
      * Basic constructor.
      */
@@ -112,6 +117,22 @@ public class FragmentSelector extends Selector {
         this.value = value;
     }
 
+    /**
+     * Parses the value as W3C Media Fragment. The result is cached until the value changes.
+     *
+     * @return the spatial and temporal dimensions of the value, or null if the value is no valid media fragment. The
+     * returned object is shared and must not be modified.
+     */
+    public MediaFragment getMediaFragment() {
+        String current = getValue();
+        ParsedValue parsed = parsedValue;
+        if (parsed == null || (current != parsed.value && (current == null || !current.equals(parsed.value)))) {
+            parsed = new ParsedValue(current, MediaFragment.parse(current));
+            parsedValue = parsed;
+        }
+        return parsed.mediaFragment;
+    }
+
     @Override
     public String toString() {
         return "FragmentSelector{" +
@@ -120,4 +141,19 @@ public class FragmentSelector extends Selector {
                 ", conformsTo='" + conformsTo + '\'' +
                 "}'";
     }
+
+    /**
+     * A value with the media fragment parsed from it, replaced as a whole when the value changes.
+     */
+    private static class ParsedValue {
+
+        private final String value;
+
+        private final MediaFragment mediaFragment;
+
+        ParsedValue(String value, MediaFragment mediaFragment) {
+            this.value = value;
+            this.mediaFragment = mediaFragment;
+        }
+    }
 }
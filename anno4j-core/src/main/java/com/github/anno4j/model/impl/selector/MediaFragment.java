@@ -0,0 +1,332 @@
+package com.github.anno4j.model.impl.selector;
+
+/**
+ * Hand-written codec for the spatial ("xywh=[pixel:]x,y,w,h") and temporal ("t=[npt:]start,end") dimensions of
+ * W3C Media Fragments 1.0. A value is parsed once into primitive fields, without regular expressions or intermediate
+ * strings. Times are given in milliseconds, regions in pixels.
+ *
+ * @see <a href="http://www.w3.org/TR/media-frags/">http://www.w3.org/TR/media-frags/</a>
+ */
+public class MediaFragment {
+
+    /**
+     * Value of the fields of a dimension not contained in the fragment, and of an omitted end time
+     */
+    public static final int UNDEFINED = -1;
+
+    private boolean spatial;
+
+    private int x = UNDEFINED;
+
+    private int y = UNDEFINED;
+
+    private int width = UNDEFINED;
+
+    private int height = UNDEFINED;
+
+    private boolean temporal;
+
+    private int start = UNDEFINED;
+
+    private int end = UNDEFINED;
+
+    /**
+     * Current position while parsing
+     */
+    private int position;
+
+    /**
+     * Parses the given media fragment.
+     *
+     * @param value The fragment, with or without the initial "#"
+     * @return the parsed fragment, or null if the value has neither a valid spatial nor a valid temporal dimension
+     */
+    public static MediaFragment parse(CharSequence value) {
+        MediaFragment fragment = new MediaFragment();
+        return fragment.read(value) ? fragment : null;
+    }
+
+    /**
+     * Parses the given media fragment into this object, replacing its previous state. Allows to parse many fragments
+     * without allocations.
+     *
+     * @param value The fragment, with or without the initial "#"
+     * @return true if the value has a valid spatial or temporal dimension
+     */
+    public boolean read(CharSequence value) {
+        spatial = false;
+        temporal = false;
+        x = y = width = height = start = end = UNDEFINED;
+        if (value == null) {
+            return false;
+        }
+
+        int length = value.length();
+        position = (length > 0 && value.charAt(0) == '#') ? 1 : 0;
+        while (position < length) {
+            int dimensionEnd = indexOf(value, '&', position, length);
+
+            if (startsWith(value, "xywh=", position)) {
+                position += 5;
+                spatial = readSpatial(value, dimensionEnd);
+            } else if (startsWith(value, "t=", position)) {
+                position += 2;
+                temporal = readTemporal(value, dimensionEnd);
+            }
+            position = dimensionEnd + 1;
+        }
+
+        if (!spatial) {
+            x = y = width = height = UNDEFINED;
+        }
+        if (!temporal) {
+            start = end = UNDEFINED;
+        }
+        return spatial || temporal;
+    }
+
+    /**
+     * Formats a spatial fragment, e.g. "#xywh=10,20,100,50".
+     */
+    public static String formatSpatial(int x, int y, int width, int height) {
+        StringBuilder builder = new StringBuilder(32);
+        appendSpatial(builder.append('#'), x, y, width, height);
+        return builder.toString();
+    }
+
+    /**
+     * Formats a temporal fragment, e.g. "t=npt:4.556,10.000".
+     */
+    public static String formatTemporal(int start, int end) {
+        StringBuilder builder = new StringBuilder(32);
+        appendTemporal(builder, start, end);
+        return builder.toString();
+    }
+
+    /**
+     * Formats a spatial and temporal fragment, e.g. "#xywh=10,20,100,50&amp;t=npt:4.556,10.000".
+     */
+    public static String formatSpatialTemporal(int x, int y, int width, int height, int start, int end) {
+        StringBuilder builder = new StringBuilder(64);
+        appendSpatial(builder.append('#'), x, y, width, height);
+        appendTemporal(builder.append('&'), start, end);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the spatial dimension "xywh=x,y,w,h".
+     */
+    public static StringBuilder appendSpatial(StringBuilder builder, int x, int y, int width, int height) {
+        return builder.append("xywh=").append(x).append(',').append(y).append(',').append(width).append(',').append(height);
+    }
+
+    /**
+     * Appends the temporal dimension "t=npt:start,end", with the times as seconds with three decimals.
+     */
+    public static StringBuilder appendTemporal(StringBuilder builder, int start, int end) {
+        builder.append("t=npt:");
+        appendSeconds(builder, start).append(',');
+        return appendSeconds(builder, end);
+    }
+
+    public boolean hasSpatial() {
+        return spatial;
+    }
+
+    public boolean hasTemporal() {
+        return temporal;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the start time in milliseconds
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end time in milliseconds, {@link #UNDEFINED} if the fragment lasts until the end of the media
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(64).append('#');
+        if (spatial) {
+            appendSpatial(builder, x, y, width, height);
+        }
+        if (temporal) {
+            if (spatial) {
+                builder.append('&');
+            }
+            builder.append("t=npt:");
+            appendSeconds(builder, start);
+            if (end != UNDEFINED) {
+                appendSeconds(builder.append(','), end);
+            }
+        }
+        return builder.toString();
+    }
+
+    private boolean readSpatial(CharSequence value, int limit) {
+        if (startsWith(value, "pixel:", position)) {
+            position += 6;
+        }
+
+        x = readInteger(value, limit);
+        if (x == UNDEFINED || !skip(value, ',', limit)) {
+            return false;
+        }
+        y = readInteger(value, limit);
+        if (y == UNDEFINED || !skip(value, ',', limit)) {
+            return false;
+        }
+        width = readInteger(value, limit);
+        if (width == UNDEFINED || !skip(value, ',', limit)) {
+            return false;
+        }
+        height = readInteger(value, limit);
+        return height != UNDEFINED && position == limit;
+    }
+
+    private boolean readTemporal(CharSequence value, int limit) {
+        if (startsWith(value, "npt:", position)) {
+            position += 4;
+        }
+
+        // The start defaults to zero, the end to the end of the media
+        start = (position < limit && value.charAt(position) == ',') ? 0 : readTime(value, limit);
+        if (start == UNDEFINED) {
+            return false;
+        }
+        if (position == limit) {
+            end = UNDEFINED;
+            return true;
+        }
+        if (!skip(value, ',', limit)) {
+            return false;
+        }
+        end = readTime(value, limit);
+        return end != UNDEFINED && position == limit && end >= start;
+    }
+
+    /**
+     * Reads a time in the formats "seconds[.fraction]" or "[hh:]mm:ss[.fraction]".
+     *
+     * @return the time in milliseconds, or {@link #UNDEFINED} if there is no valid time
+     */
+    private int readTime(CharSequence value, int limit) {
+        long seconds = 0;
+        int groups = 0;
+        do {
+            int group = readInteger(value, limit);
+            if (group == UNDEFINED || (groups > 0 && group >= 60)) {
+                return UNDEFINED;
+            }
+            seconds = seconds * 60 + group;
+            groups++;
+        } while (groups < 3 && skip(value, ':', limit));
+
+        long millis = seconds * 1000;
+        if (skip(value, '.', limit)) {
+            int digits = 0;
+            int fraction = 0;
+            while (position < limit && isDigit(value.charAt(position))) {
+                if (digits < 3) {
+                    fraction = fraction * 10 + (value.charAt(position) - '0');
+                    digits++;
+                }
+                position++;
+            }
+            if (digits == 0) {
+                return UNDEFINED;
+            }
+            for (; digits < 3; digits++) {
+                fraction *= 10;
+            }
+            millis += fraction;
+        }
+        return (millis > Integer.MAX_VALUE) ? UNDEFINED : (int) millis;
+    }
+
+    /**
+     * Reads a non-negative integer.
+     *
+     * @return the integer, or {@link #UNDEFINED} if there are no digits or the value overflows
+     */
+    private int readInteger(CharSequence value, int limit) {
+        int begin = position;
+        long result = 0;
+        while (position < limit && isDigit(value.charAt(position))) {
+            result = result * 10 + (value.charAt(position) - '0');
+            if (result > Integer.MAX_VALUE) {
+                return UNDEFINED;
+            }
+            position++;
+        }
+        return (position == begin) ? UNDEFINED : (int) result;
+    }
+
+    private boolean skip(CharSequence value, char c, int limit) {
+        if (position < limit && value.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private static StringBuilder appendSeconds(StringBuilder builder, int millis) {
+        int fraction = millis % 1000;
+        builder.append(millis / 1000).append('.');
+        if (fraction < 100) {
+            builder.append('0');
+        }
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean startsWith(CharSequence value, String prefix, int offset) {
+        if (value.length() - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (value.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence value, char c, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.model.Annotation;
+import org.openrdf.model.URI;
+import org.openrdf.repository.object.ObjectRepository;
+
+/**
+ * Listener notified by the {@link PersistenceService} after annotations were written, e.g. to keep an index up to
+ * date. Listeners are called synchronously by the writing thread and must be thread-safe.
+ */
+public interface PersistenceListener {
+
+    /**
+     * Called after the annotation was written.
+     *
+     * @param annotation The persisted annotation
+     * @param repository The repository the annotation was written to, its shard if sharding is used
+     * @param graph      The graph context the annotation was written to, null for the default graph
+     */
+    void annotationPersisted(Annotation annotation, ObjectRepository repository, URI graph);
+
+    /**
+     * Called after a bulk update or deletion, which changes an unknown set of annotations without loading them. Called
+     * once for every shard if sharding is used.
+     *
+     * @param repository The repository that was updated
+     * @param graph      The graph context that was updated, null for the default graph
+     */
+    void annotationsUpdated(ObjectRepository repository, URI graph);
+}
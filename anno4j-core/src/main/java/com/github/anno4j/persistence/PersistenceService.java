@@ -1,22 +1,58 @@
 package com.github.anno4j.persistence;
 
 import com.github.anno4j.model.Annotation;
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.QueryService;
+import com.github.anno4j.querying.evaluation.EvalUpdate;
+import com.github.anno4j.sharding.ShardedObjectRepository;
+import org.apache.marmotta.ldpath.parser.ParseException;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.UpdateExecutionException;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.object.ObjectConnection;
 import org.openrdf.repository.object.ObjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class provides write access for annotated POJOs. Annotated objects will be converted to corresponding RDF content and then transmitted to the connected SPARQL endpoint.
  */
 public class PersistenceService {
 
+    private final Logger logger = LoggerFactory.getLogger(PersistenceService.class);
+
     /**
      * Local/Remote SPARQL endpoint connection
      */
     private ObjectRepository objectRepository;
     private URI graph;
 
+    /**
+     * Sharding layer selecting the repository per annotation. Null if a single repository is used.
+     */
+    private ShardedObjectRepository shardedRepository;
+
+    /**
+     * All user defined name spaces, used by the criteria of bulk updates
+     */
+    private Map<String, String> prefixes = QueryService.getDefaultPrefixes();
+
+    /**
+     * Listeners notified after annotations were written
+     */
+    private final List<PersistenceListener> listeners = new CopyOnWriteArrayList<PersistenceListener>();
+
     /**
      * Constructor
      * @param objectRepository Local/Remote SPARQL endpoint connection
@@ -36,13 +72,23 @@ public class PersistenceService {
 
     }
 
+    /**
+     * Constructor
+     * @param shardedRepository Sharding layer selecting the owning repository of every annotation
+     * @param graph Graph context to query
+     */
+    public PersistenceService(ShardedObjectRepository shardedRepository, URI graph) {
+        this.shardedRepository = shardedRepository;
+        this.graph = graph;
+    }
+
     /**
      * Writes the annotation to the configured SPARQL endpoint with a corresponding INSERT query.
      * @param annotation annotation to write to the SPARQL endpoint
      * @throws RepositoryException
      */
     public void persistAnnotation(Annotation annotation) throws RepositoryException {
-        ObjectConnection connection = objectRepository.getConnection();
+        ObjectConnection connection = getTargetRepository(annotation).getConnection();
 
         if(graph != null) {
             connection.setReadContexts(graph);
@@ -52,5 +98,162 @@ public class PersistenceService {
 
         connection.addObject(annotation);
         connection.close();
+
+        notifyPersisted(annotation);
+    }
+
+    /**
+     * Writes the changes of an annotation that was persisted before. Instead of adding the values of its properties to
+     * the stored ones like {@link #persistAnnotation(Annotation)}, the stored values are replaced, removing and
+     * inserting only the statements of changed values in one transaction. Properties set to null are left unchanged.
+     * An annotation not yet stored is simply inserted.
+     *
+     * @param annotation annotation to write to the SPARQL endpoint
+     * @throws RepositoryException
+     */
+    public void updateAnnotation(Annotation annotation) throws RepositoryException {
+        ObjectConnection connection = getTargetRepository(annotation).getConnection();
+
+        if(graph != null) {
+            connection.setReadContexts(graph);
+            connection.setInsertContext(graph);
+            connection.setRemoveContexts(graph);
+        }
+
+        connection.updateObject(annotation);
+        connection.close();
+
+        notifyPersisted(annotation);
+    }
+
+    /**
+     * Registers a listener notified after annotations were written by this service.
+     *
+     * @param listener The listener
+     * @return itself to allow chaining.
+     */
+    public PersistenceService addListener(PersistenceListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(PersistenceListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Setting shortcut names for URI prefixes, used by the criteria of deleteWhere and updateWhere.
+     *
+     * @param label The label of the namespace, e.g. foaf
+     * @param url   The URL
+     * @return itself to allow chaining.
+     */
+    public PersistenceService addPrefix(String label, String url) {
+        this.prefixes.put(label, url);
+        return this;
+    }
+
+    /**
+     * Removes all annotations matching the given criteria, together with their bodies, targets and the selectors of their
+     * targets, by a single SPARQL DELETE query. No annotation objects are loaded.
+     *
+     * @param criteria The criteria selecting the annotations. The LDPath expressions begin from the Annotation object.
+     * @throws RepositoryException
+     * @throws ParseException
+     * @throws MalformedQueryException
+     * @throws UpdateExecutionException
+     */
+    public void deleteWhere(Criteria... criteria) throws RepositoryException, ParseException, MalformedQueryException, UpdateExecutionException {
+        executeUpdate(EvalUpdate.evaluateDelete(new ArrayList<Criteria>(Arrays.asList(criteria)), prefixes).toString());
+    }
+
+    /**
+     * Replaces the value of a property of all annotations matching the given criteria by a single SPARQL DELETE/INSERT
+     * query. No annotation objects are loaded.
+     *
+     * @param ldpath   The LDPath to the property, beginning from the Annotation object, e.g. "oa:hasBody/ex:value".
+     *                 The last step has to be a property.
+     * @param value    The new value of the property
+     * @param criteria The criteria selecting the annotations. The LDPath expressions begin from the Annotation object.
+     * @throws RepositoryException
+     * @throws ParseException
+     * @throws MalformedQueryException
+     * @throws UpdateExecutionException
+     */
+    public void updateWhere(String ldpath, Value value, Criteria... criteria) throws RepositoryException, ParseException, MalformedQueryException, UpdateExecutionException {
+        executeUpdate(EvalUpdate.evaluateUpdate(ldpath, value, new ArrayList<Criteria>(Arrays.asList(criteria)), prefixes).toString());
+    }
+
+    /**
+     * Replaces the textual value of a property of all annotations matching the given criteria.
+     *
+     * @param ldpath   The LDPath to the property, beginning from the Annotation object. The last step has to be a property.
+     * @param value    The new textual value of the property
+     * @param criteria The criteria selecting the annotations.
+     * @see #updateWhere(String, org.openrdf.model.Value, com.github.anno4j.querying.Criteria...)
+     */
+    public void updateWhere(String ldpath, String value, Criteria... criteria) throws RepositoryException, ParseException, MalformedQueryException, UpdateExecutionException {
+        updateWhere(ldpath, new LiteralImpl(value), criteria);
+    }
+
+    /**
+     * Executes the SPARQL update on the repository, or on every shard.
+     *
+     * @param update The SPARQL update
+     */
+    private void executeUpdate(String update) throws RepositoryException, MalformedQueryException, UpdateExecutionException {
+        logger.debug("Bulk update:\n" + update);
+
+        for (ObjectRepository repository : getRepositories()) {
+            ObjectConnection connection = repository.getConnection();
+            try {
+                if (graph != null) {
+                    connection.setReadContexts(graph);
+                    connection.setInsertContext(graph);
+                    connection.setRemoveContexts(graph);
+                }
+
+                connection.prepareUpdate(QueryLanguage.SPARQL, update).execute();
+            } finally {
+                connection.close();
+            }
+        }
+
+        notifyUpdated();
+    }
+
+    /**
+     * @return the graph context the annotations are written to, null for the default graph
+     */
+    public URI getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the repository the annotation is written to, the owning shard if sharding is used
+     */
+    ObjectRepository getTargetRepository(Annotation annotation) {
+        return (shardedRepository != null) ? shardedRepository.getShard(annotation) : objectRepository;
+    }
+
+    /**
+     * @return the repository, or all shards if sharding is used
+     */
+    List<ObjectRepository> getRepositories() {
+        return (shardedRepository != null) ? shardedRepository.getShards() : Collections.singletonList(objectRepository);
+    }
+
+    void notifyPersisted(Annotation annotation) {
+        for (PersistenceListener listener : listeners) {
+            listener.annotationPersisted(annotation, getTargetRepository(annotation), graph);
+        }
+    }
+
+    void notifyUpdated() {
+        for (ObjectRepository repository : getRepositories()) {
+            for (PersistenceListener listener : listeners) {
+                listener.annotationsUpdated(repository, graph);
+            }
+        }
     }
 }
@@ -0,0 +1,380 @@
+package com.github.anno4j.persistence;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the statements of the annotations queued by the {@link WriteBehindPersistenceService}. A
+ * record is forced to disk before the annotation is queued, so annotations accepted but not yet committed survive a
+ * crash and are replayed on the next start. Concurrent writers share one fsync (group commit).
+ * <p/>
+ * Records are committed in the order of the queue, which may differ from the order of the journal. The journal keeps
+ * the offset up to which all records are committed. It is truncated when all records are committed, and compacted
+ * once the committed prefix exceeds a threshold, by copying the records after it to a new file replacing the
+ * journal. The journal thus stays bounded under constant load.
+ * <p/>
+ * Every record consists of its length, a CRC32 checksum and the payload: the shard index, the graph context and the
+ * statements in N-Triples syntax. Replaying stops at the first incomplete or corrupt record, e.g. a torn write.
+ */
+class WriteBehindJournal {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Default size of the committed prefix that is compacted, in bytes
+     */
+    static final long DEFAULT_COMPACT_THRESHOLD = 4 * 1024 * 1024;
+
+    private final File path;
+
+    private final long compactThreshold;
+
+    private RandomAccessFile file;
+
+    private FileChannel channel;
+
+    /**
+     * Serializes the writes, the truncation and the compaction
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Serializes the fsync calls, the truncation and the compaction
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * The offsets below are logical: they keep growing across truncations and compactions. The file starts at this
+     * offset.
+     */
+    private long base = 0;
+
+    /**
+     * End of the written records
+     */
+    private long position;
+
+    /**
+     * Position up to which the records are forced to disk
+     */
+    private volatile long syncedPosition;
+
+    /**
+     * Position up to which all records are committed
+     */
+    private long committedPosition;
+
+    /**
+     * End offsets of the records after the committed prefix by their start offsets, once they are forced to disk
+     */
+    private final Map<Long, Long> records = new HashMap<Long, Long>();
+
+    /**
+     * Start offsets of the committed records after the committed prefix
+     */
+    private final Set<Long> committed = new HashSet<Long>();
+
+    WriteBehindJournal(File file) throws IOException {
+        this(file, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param file             The journal file
+     * @param compactThreshold Size of the committed prefix in bytes that is compacted
+     */
+    WriteBehindJournal(File file, long compactThreshold) throws IOException {
+        this.path = file;
+        this.compactThreshold = compactThreshold;
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        this.position = channel.size();
+        this.syncedPosition = position;
+        this.committedPosition = 0;
+    }
+
+    /**
+     * Reads all complete records of the journal.
+     */
+    List<Record> read() throws IOException {
+        List<Record> result = new ArrayList<Record>();
+        ValueFactory valueFactory = ValueFactoryImpl.getInstance();
+        synchronized (writeLock) {
+            DataInputStream input = new DataInputStream(Channels.newInputStream(channel.position(0)));
+            try {
+                while (true) {
+                    int length = input.readInt();
+                    long checksum = input.readLong();
+                    if (length < 0 || length > channel.size()) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    input.readFully(payload);
+
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if (crc.getValue() != checksum) {
+                        break;
+                    }
+                    result.add(Record.decode(payload, valueFactory));
+                }
+            } catch (EOFException e) {
+                // Incomplete last record
+            } finally {
+                channel.position(position - base);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends a record and forces it to disk.
+     *
+     * @param shard      Index of the target shard, 0 without sharding
+     * @param graph      The graph context, null for the default graph
+     * @param statements The statements of the annotation
+     * @return the offset of the record, to be passed to {@link #checkpoint(Collection)} once it is committed
+     */
+    long append(int shard, URI graph, List<Statement> statements) throws IOException {
+        byte[] payload = Record.encode(shard, graph, statements);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + payload.length);
+        buffer.putInt(payload.length).putLong(crc.getValue()).put(payload).flip();
+
+        long start;
+        long end;
+        synchronized (writeLock) {
+            start = position;
+            try {
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position - base);
+                }
+            } catch (IOException e) {
+                // The next record overwrites the torn one
+                position = start;
+                throw e;
+            }
+            end = position;
+        }
+        boolean synced = false;
+        try {
+            sync(end);
+            synced = true;
+        } finally {
+            synchronized (writeLock) {
+                records.put(start, end);
+                if (!synced) {
+                    // The record is rejected, it must not hold back the committed prefix
+                    committed.add(start);
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Forces the records up to the given position to disk. A thread finding its record already forced by another one
+     * returns immediately, so concurrent appends share one fsync.
+     */
+    private void sync(long end) throws IOException {
+        if (syncedPosition < end) {
+            synchronized (syncLock) {
+                if (syncedPosition < end) {
+                    long written;
+                    synchronized (writeLock) {
+                        written = position;
+                    }
+                    channel.force(false);
+                    syncedPosition = written;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the records as committed. Truncates the journal if all records are committed, or compacts it if the
+     * committed prefix exceeds the threshold.
+     *
+     * @param offsets The offsets of the committed records returned by {@link #append(int, URI, List)}
+     * @return true if the journal was truncated or compacted
+     */
+    boolean checkpoint(Collection<Long> offsets) throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                committed.addAll(offsets);
+                while (committed.remove(committedPosition)) {
+                    committedPosition = records.remove(committedPosition);
+                }
+                if (committedPosition == position && position > base) {
+                    truncate();
+                    return true;
+                }
+                if (committedPosition - base >= compactThreshold) {
+                    compact();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Discards all records, e.g. after they were replayed.
+     */
+    void truncate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.truncate(0);
+                channel.force(false);
+                base = position;
+                syncedPosition = position;
+                committedPosition = position;
+                records.clear();
+                committed.clear();
+            }
+        }
+    }
+
+    /**
+     * Copies the records after the committed prefix to a new file and replaces the journal by it. A crash leaves
+     * either journal complete.
+     */
+    private void compact() throws IOException {
+        File copy = new File(path.getPath() + ".compact");
+        RandomAccessFile target = new RandomAccessFile(copy, "rw");
+        try {
+            FileChannel targetChannel = target.getChannel();
+            targetChannel.truncate(0);
+            long from = committedPosition - base;
+            long to = position - base;
+            while (from < to) {
+                from += channel.transferTo(from, to - from, targetChannel);
+            }
+            targetChannel.force(false);
+        } finally {
+            target.close();
+        }
+        Files.move(copy.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        file.close();
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        base = committedPosition;
+        syncedPosition = position;
+    }
+
+    /**
+     * @return the size of the journal file in bytes
+     */
+    long size() throws IOException {
+        synchronized (writeLock) {
+            return channel.size();
+        }
+    }
+
+    void close() throws IOException {
+        synchronized (writeLock) {
+            file.close();
+        }
+    }
+
+    /**
+     * The statements of one queued annotation.
+     */
+    static class Record {
+
+        private final int shard;
+
+        private final URI graph;
+
+        private final List<Statement> statements;
+
+        Record(int shard, URI graph, List<Statement> statements) {
+            this.shard = shard;
+            this.graph = graph;
+            this.statements = statements;
+        }
+
+        int getShard() {
+            return shard;
+        }
+
+        URI getGraph() {
+            return graph;
+        }
+
+        List<Statement> getStatements() {
+            return statements;
+        }
+
+        static byte[] encode(int shard, URI graph, List<Statement> statements) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * statements.size());
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(shard);
+            writeString(output, (graph != null) ? NTriplesUtil.toNTriplesString(graph) : "");
+            output.writeInt(statements.size());
+            for (Statement statement : statements) {
+                writeString(output, NTriplesUtil.toNTriplesString(statement.getSubject()));
+                writeString(output, NTriplesUtil.toNTriplesString(statement.getPredicate()));
+                writeString(output, NTriplesUtil.toNTriplesString(statement.getObject()));
+            }
+            output.flush();
+            return bytes.toByteArray();
+        }
+
+        static Record decode(byte[] payload, ValueFactory valueFactory) throws IOException {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            int shard = input.readInt();
+            String graph = readString(input);
+            int count = input.readInt();
+            List<Statement> statements = new ArrayList<Statement>(count);
+            for (int i = 0; i < count; i++) {
+                Resource subject = NTriplesUtil.parseResource(readString(input), valueFactory);
+                URI predicate = NTriplesUtil.parseURI(readString(input), valueFactory);
+                Value object = NTriplesUtil.parseValue(readString(input), valueFactory);
+                statements.add(valueFactory.createStatement(subject, predicate, object));
+            }
+            return new Record(shard, graph.isEmpty() ? null : NTriplesUtil.parseURI(graph, valueFactory), statements);
+        }
+
+        private static void writeString(DataOutputStream output, String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        private static String readString(DataInputStream input) throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return new String(bytes, UTF8);
+        }
+    }
+}
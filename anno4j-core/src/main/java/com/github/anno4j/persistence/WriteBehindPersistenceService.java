@@ -0,0 +1,596 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.sharding.ShardedObjectRepository;
+import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.UpdateExecutionException;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.repository.config.RepositoryConfigException;
+import org.openrdf.repository.object.ObjectConnection;
+import org.openrdf.repository.object.ObjectRepository;
+import org.openrdf.repository.object.ObjectService;
+import org.openrdf.repository.object.config.ObjectRepositoryConfig;
+import org.openrdf.repository.object.config.ObjectRepositoryFactory;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Persistence service writing annotations behind the back of the calling threads. {@link #persistAnnotation(Annotation)}
+ * converts the annotation to statements, optionally journals them, and returns after adding them to a bounded
+ * lock-free queue. A background committer drains the queue and writes the annotations of many threads in one
+ * transaction (group commit), as soon as a batch is full or the oldest queued annotation waited for the maximum delay.
+ * <p/>
+ * Queued annotations are not visible to queries until they are committed. Callers needing to read their writes call
+ * {@link #flush()}. With a journal file, every accepted annotation is forced to disk before it is queued and replayed
+ * when the service is created again after a crash, so no accepted annotation is lost.
+ * <p/>
+ * Listeners are notified by the committer thread after the transaction of the annotation was committed. Bulk updates
+ * and deletions flush the queue first, so they see all previously persisted annotations.
+ */
+public class WriteBehindPersistenceService extends PersistenceService implements Closeable {
+
+    private final Logger logger = LoggerFactory.getLogger(WriteBehindPersistenceService.class);
+
+    /**
+     * Default maximum number of queued annotations
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Default maximum number of annotations per transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default maximum time in milliseconds an annotation waits for its batch to fill up
+     */
+    public static final long DEFAULT_MAX_DELAY = 50;
+
+    /**
+     * Delay in milliseconds before a failed transaction is retried
+     */
+    private static final long RETRY_DELAY = 1000;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final long maxDelayNanos;
+
+    /**
+     * Annotations accepted but not yet committed, in the order of their acceptance
+     */
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<Pending>();
+
+    /**
+     * Number of queued annotations, bounding the queue
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Number of annotations accepted since the service was created, counted before they are queued
+     */
+    private final AtomicLong accepted = new AtomicLong();
+
+    /**
+     * Number of annotations committed since the service was created
+     */
+    private volatile long committed = 0;
+
+    /**
+     * Number of failed transactions since the service was created
+     */
+    private volatile long failures = 0;
+
+    private volatile Exception lastFailure;
+
+    /**
+     * The committer commits immediately while fewer annotations than requested by a flush are committed
+     */
+    private final AtomicLong flushRequested = new AtomicLong();
+
+    /**
+     * Waiting flushes are notified by the committer on this monitor
+     */
+    private final Object commitMonitor = new Object();
+
+    private volatile boolean running = true;
+
+    private final WriteBehindJournal journal;
+
+    /**
+     * Idle in-memory repositories converting annotations to statements outside of the target repository. Every
+     * converting thread takes its own, so concurrent producers do not wait for each other's transaction.
+     */
+    private final ConcurrentLinkedQueue<ObjectRepository> scratchRepositories = new ConcurrentLinkedQueue<ObjectRepository>();
+
+    /**
+     * Object service shared by the in-memory repositories, so the roles are only loaded once
+     */
+    private final ObjectService scratchService;
+
+    private final Thread committer;
+
+    public WriteBehindPersistenceService(ObjectRepository objectRepository, URI graph, File journal) throws RepositoryException, IOException {
+        this(objectRepository, graph, journal, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Constructor
+     * @param objectRepository Local/Remote SPARQL endpoint connection
+     * @param graph Graph context to write to, null for the default graph
+     * @param journal File journaling the queued annotations, null to not journal them. Records left by a crash are
+     *                replayed.
+     * @param capacity Maximum number of queued annotations, persisting blocks while the queue is full
+     * @param batchSize Maximum number of annotations per transaction
+     * @param maxDelay Maximum time in milliseconds an annotation waits for its batch to fill up
+     */
+    public WriteBehindPersistenceService(ObjectRepository objectRepository, URI graph, File journal, int capacity, int batchSize, long maxDelay) throws RepositoryException, IOException {
+        super(objectRepository, graph);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        this.journal = (journal != null) ? new WriteBehindJournal(journal) : null;
+        this.scratchService = createScratchService();
+        this.committer = start();
+    }
+
+    public WriteBehindPersistenceService(ShardedObjectRepository shardedRepository, URI graph, File journal) throws RepositoryException, IOException {
+        this(shardedRepository, graph, journal, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Constructor
+     * @param shardedRepository Sharding layer selecting the owning repository of every annotation
+     * @param graph Graph context to write to, null for the default graph
+     * @param journal File journaling the queued annotations, null to not journal them
+     * @param capacity Maximum number of queued annotations
+     * @param batchSize Maximum number of annotations per transaction
+     * @param maxDelay Maximum time in milliseconds an annotation waits for its batch to fill up
+     */
+    public WriteBehindPersistenceService(ShardedObjectRepository shardedRepository, URI graph, File journal, int capacity, int batchSize, long maxDelay) throws RepositoryException, IOException {
+        super(shardedRepository, graph);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        this.journal = (journal != null) ? new WriteBehindJournal(journal) : null;
+        this.scratchService = createScratchService();
+        this.committer = start();
+    }
+
+    /**
+     * Queues the annotation for the next group commit. The annotation must not be modified afterwards. Blocks while
+     * the queue is full.
+     *
+     * @param annotation annotation to write to the SPARQL endpoint
+     * @throws RepositoryException if the annotation could not be converted or journaled, or the service is closed
+     */
+    @Override
+    public void persistAnnotation(Annotation annotation) throws RepositoryException {
+        if (!running) {
+            throw new RepositoryException("The write-behind persistence service is closed.");
+        }
+
+        ObjectRepository target = getTargetRepository(annotation);
+        Pending pending = new Pending(annotation, target, toStatements(annotation));
+
+        // Reserving a slot of the bounded queue
+        int size;
+        do {
+            size = queued.get();
+            if (size >= capacity) {
+                LockSupport.unpark(committer);
+                LockSupport.parkNanos(100000);
+            }
+        } while (size >= capacity || !queued.compareAndSet(size, size + 1));
+
+        if (journal != null) {
+            try {
+                pending.journalOffset = journal.append(getRepositories().indexOf(target), getGraph(), pending.statements);
+            } catch (IOException e) {
+                queued.decrementAndGet();
+                throw new RepositoryException("Could not journal " + annotation.getResource(), e);
+            }
+        }
+
+        accepted.incrementAndGet();
+        pending.queuedAt = System.nanoTime();
+        queue.offer(pending);
+        if (size + 1 >= batchSize || size == 0) {
+            LockSupport.unpark(committer);
+        }
+    }
+
+    /**
+     * Commits all annotations persisted before and waits for the commit.
+     *
+     * @throws RepositoryException if a transaction failed meanwhile. The annotations stay queued and are retried.
+     */
+    public void flush() throws RepositoryException {
+        flush(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Commits all annotations persisted before and waits for the commit at most the given time.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit    The unit of the timeout
+     * @return true if the annotations are committed, false if the timeout elapsed
+     * @throws RepositoryException if a transaction failed meanwhile. The annotations stay queued and are retried.
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws RepositoryException {
+        long target = accepted.get();
+        long failuresBefore = failures;
+        long deadline = System.nanoTime() + Math.min(unit.toNanos(timeout), Long.MAX_VALUE / 2);
+
+        long requested;
+        do {
+            requested = flushRequested.get();
+        } while (requested < target && !flushRequested.compareAndSet(requested, target));
+        LockSupport.unpark(committer);
+
+        synchronized (commitMonitor) {
+            while (committed < target) {
+                if (failures != failuresBefore) {
+                    throw new RepositoryException("Write-behind transaction failed", lastFailure);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(commitMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of persisted annotations not yet committed
+     */
+    public int getPendingCount() {
+        return queued.get();
+    }
+
+    /**
+     * Commits the queued annotations and stops the committer.
+     *
+     * @throws IOException if the journal could not be closed, or the queued annotations could not be committed. They
+     *                     are replayed from the journal on the next start.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RepositoryException e) {
+            throw new IOException("Could not commit the queued annotations", e);
+        } finally {
+            running = false;
+            LockSupport.unpark(committer);
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            ObjectRepository scratchRepository;
+            while ((scratchRepository = scratchRepositories.poll()) != null) {
+                try {
+                    scratchRepository.shutDown();
+                } catch (RepositoryException e) {
+                    logger.warn("Could not shut down a conversion repository", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits the queued annotations and writes the changes of the annotation synchronously, as the replaced values
+     * have to be read from the store.
+     */
+    @Override
+    public void updateAnnotation(Annotation annotation) throws RepositoryException {
+        flush();
+        super.updateAnnotation(annotation);
+    }
+
+    @Override
+    public void deleteWhere(Criteria... criteria) throws RepositoryException, ParseException, MalformedQueryException, UpdateExecutionException {
+        flush();
+        super.deleteWhere(criteria);
+    }
+
+    @Override
+    public void updateWhere(String ldpath, Value value, Criteria... criteria) throws RepositoryException, ParseException, MalformedQueryException, UpdateExecutionException {
+        flush();
+        super.updateWhere(ldpath, value, criteria);
+    }
+
+    /**
+     * Replays the records of the journal left by a crash and starts the committer.
+     */
+    private Thread start() throws RepositoryException, IOException {
+        if (journal != null) {
+            replay();
+        }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "anno4j-write-behind");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void replay() throws RepositoryException, IOException {
+        List<WriteBehindJournal.Record> records = journal.read();
+        if (records.isEmpty()) {
+            journal.truncate();
+            return;
+        }
+
+        logger.info("Replaying " + records.size() + " journaled annotations");
+        List<ObjectRepository> repositories = getRepositories();
+        Map<ObjectRepository, List<WriteBehindJournal.Record>> groups = new LinkedHashMap<ObjectRepository, List<WriteBehindJournal.Record>>();
+        for (WriteBehindJournal.Record record : records) {
+            ObjectRepository repository = repositories.get((record.getShard() >= 0 && record.getShard() < repositories.size()) ? record.getShard() : 0);
+            if (!groups.containsKey(repository)) {
+                groups.put(repository, new ArrayList<WriteBehindJournal.Record>());
+            }
+            groups.get(repository).add(record);
+        }
+
+        for (Map.Entry<ObjectRepository, List<WriteBehindJournal.Record>> group : groups.entrySet()) {
+            RepositoryConnection connection = group.getKey().getConnection();
+            try {
+                connection.begin();
+                for (WriteBehindJournal.Record record : group.getValue()) {
+                    add(connection, record.getStatements(), record.getGraph());
+                }
+                connection.commit();
+            } finally {
+                connection.close();
+            }
+        }
+        journal.truncate();
+        notifyUpdated();
+    }
+
+    private void commitLoop() {
+        List<Pending> batch = new ArrayList<Pending>(batchSize);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            if (batch.isEmpty()) {
+                Pending first = queue.peek();
+                if (first == null) {
+                    LockSupport.parkNanos(maxDelayNanos);
+                    continue;
+                }
+
+                // Waiting for the batch to fill up, unless a flush is waiting
+                long deadline = first.queuedAt + maxDelayNanos;
+                long remaining;
+                while (running && queued.get() < batchSize && flushRequested.get() <= committed
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+
+                Pending pending;
+                while (batch.size() < batchSize && (pending = queue.poll()) != null) {
+                    batch.add(pending);
+                }
+            }
+
+            try {
+                commit(batch);
+            } catch (Exception e) {
+                logger.error("Write-behind transaction of " + batch.size() + " annotations failed", e);
+                lastFailure = e;
+                synchronized (commitMonitor) {
+                    failures++;
+                    commitMonitor.notifyAll();
+                }
+                if (!running) {
+                    // Closed, the annotations are replayed from the journal on the next start
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY));
+                continue;
+            }
+
+            queued.addAndGet(-batch.size());
+            synchronized (commitMonitor) {
+                committed += batch.size();
+                commitMonitor.notifyAll();
+            }
+            if (journal != null) {
+                List<Long> offsets = new ArrayList<Long>(batch.size());
+                for (Pending pending : batch) {
+                    offsets.add(pending.journalOffset);
+                }
+                try {
+                    journal.checkpoint(offsets);
+                } catch (IOException e) {
+                    logger.warn("Could not compact the write-behind journal", e);
+                }
+            }
+            for (Pending pending : batch) {
+                notifyPersisted(pending.annotation);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the batch in one transaction per target repository.
+     */
+    private void commit(List<Pending> batch) throws RepositoryException {
+        Map<ObjectRepository, List<Pending>> groups = new LinkedHashMap<ObjectRepository, List<Pending>>();
+        for (Pending pending : batch) {
+            if (!groups.containsKey(pending.repository)) {
+                groups.put(pending.repository, new ArrayList<Pending>());
+            }
+            groups.get(pending.repository).add(pending);
+        }
+
+        for (Map.Entry<ObjectRepository, List<Pending>> group : groups.entrySet()) {
+            RepositoryConnection connection = group.getKey().getConnection();
+            try {
+                connection.begin();
+                for (Pending pending : group.getValue()) {
+                    add(connection, pending.statements, getGraph());
+                }
+                connection.commit();
+            } finally {
+                if (connection.isActive()) {
+                    connection.rollback();
+                }
+                connection.close();
+            }
+        }
+    }
+
+    private static void add(RepositoryConnection connection, List<Statement> statements, URI graph) throws RepositoryException {
+        if (graph != null) {
+            connection.add(statements, graph);
+        } else {
+            connection.add(statements);
+        }
+    }
+
+    /**
+     * Converts the annotation to statements by adding it to an idle in-memory repository in a transaction, which is
+     * rolled back afterwards. The values are copied, so they do not refer to the in-memory repository.
+     */
+    private List<Statement> toStatements(Annotation annotation) throws RepositoryException {
+        ObjectRepository scratchRepository = scratchRepositories.poll();
+        if (scratchRepository == null) {
+            scratchRepository = createScratchRepository(scratchService);
+        }
+        try {
+            return toStatements(annotation, scratchRepository);
+        } finally {
+            scratchRepositories.add(scratchRepository);
+        }
+    }
+
+    private static List<Statement> toStatements(Annotation annotation, ObjectRepository scratchRepository) throws RepositoryException {
+        ObjectConnection connection = scratchRepository.getConnection();
+        try {
+            connection.begin();
+            connection.addObject(annotation);
+
+            ValueFactory valueFactory = ValueFactoryImpl.getInstance();
+            List<Statement> statements = new ArrayList<Statement>();
+            RepositoryResult<Statement> result = connection.getStatements(null, null, null, false);
+            try {
+                while (result.hasNext()) {
+                    Statement statement = result.next();
+                    statements.add(valueFactory.createStatement((Resource) copy(statement.getSubject(), valueFactory),
+                            valueFactory.createURI(statement.getPredicate().stringValue()),
+                            copy(statement.getObject(), valueFactory)));
+                }
+            } finally {
+                result.close();
+            }
+            return statements;
+        } finally {
+            connection.rollback();
+            connection.close();
+        }
+    }
+
+    private static Value copy(Value value, ValueFactory valueFactory) {
+        if (value instanceof URI) {
+            return valueFactory.createURI(value.stringValue());
+        } else if (value instanceof BNode) {
+            return valueFactory.createBNode(((BNode) value).getID());
+        }
+        Literal literal = (Literal) value;
+        if (literal.getLanguage() != null) {
+            return valueFactory.createLiteral(literal.getLabel(), literal.getLanguage());
+        } else if (literal.getDatatype() != null) {
+            return valueFactory.createLiteral(literal.getLabel(), valueFactory.createURI(literal.getDatatype().stringValue()));
+        }
+        return valueFactory.createLiteral(literal.getLabel());
+    }
+
+    private static ObjectService createScratchService() throws RepositoryException {
+        try {
+            return new ObjectRepositoryFactory().getRepository(new ObjectRepositoryConfig()).getObjectService();
+        } catch (RepositoryConfigException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    private static ObjectRepository createScratchRepository(ObjectService service) throws RepositoryException {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        ObjectRepository scratchRepository = new ObjectRepository(service);
+        scratchRepository.setDelegate(repository);
+        return scratchRepository;
+    }
+
+    /**
+     * An accepted annotation with its statements and target repository.
+     */
+    private static class Pending {
+
+        private final Annotation annotation;
+
+        private final ObjectRepository repository;
+
+        private final List<Statement> statements;
+
+        private long queuedAt;
+
+        /**
+         * Offset of the record in the journal, if journaled
+         */
+        private long journalOffset;
+
+        Pending(Annotation annotation, ObjectRepository repository, List<Statement> statements) {
+            this.annotation = annotation;
+            this.repository = repository;
+            this.statements = statements;
+        }
+    }
+}
@@ -2,7 +2,8 @@ package com.github.anno4j.persistence.impl;
 
 import com.github.anno4j.persistence.IDGenerator;
 import org.openrdf.model.Resource;
-import org.openrdf.sail.memory.model.MemValueFactory;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
 
 import java.util.UUID;
 
@@ -11,12 +12,14 @@ import java.util.UUID;
  */
 public class IDGeneratorAnno4jURN implements IDGenerator {
 
+    private final ValueFactory valueFactory = ValueFactoryImpl.getInstance();
+
     /**
      * Generates a unique resource with an urn:anno4j prefix.
      * @return a Resource containing a unique identifier.
      */
     @Override
     public Resource generateID() {
-        return new MemValueFactory().createURI("urn:anno4j:" + UUID.randomUUID());
+        return valueFactory.createURI("urn:anno4j:" + UUID.randomUUID());
     }
 }
@@ -0,0 +1,123 @@
+package com.github.anno4j.persistence.impl;
+
+import com.github.anno4j.persistence.IDGenerator;
+import org.openrdf.model.Resource;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * IDGenerator creating lexicographically time-ordered identifiers in the ULID format: 48 bits of milliseconds since
+ * the epoch followed by 80 random bits, encoded as 26 characters of Crockford's Base32 (e.g.
+ * urn:anno4j:01ARZ3NDEKTSV4RRFFQ69G5FAV).
+ * <p/>
+ * Every thread keeps its own state and random source, so no locks or shared counters are involved. Within the same
+ * millisecond, the random part of a thread is incremented, so identifiers of one thread are strictly ascending.
+ */
+public class IDGeneratorTimeOrdered implements IDGenerator {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private static final int TIME_LENGTH = 10;
+
+    private static final int LENGTH = 26;
+
+    private final ValueFactory valueFactory = ValueFactoryImpl.getInstance();
+
+    private final String prefix;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State(prefix.length());
+        }
+    };
+
+    /**
+     * Creates identifiers with the urn:anno4j: prefix.
+     */
+    public IDGeneratorTimeOrdered() {
+        this("urn:anno4j:");
+    }
+
+    /**
+     * @param prefix The prefix of the identifiers, e.g. a namespace of the application
+     */
+    public IDGeneratorTimeOrdered(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Generates a unique, time-ordered resource.
+     * @return a Resource containing a unique identifier.
+     */
+    @Override
+    public Resource generateID() {
+        return valueFactory.createURI(state.get().next(prefix));
+    }
+
+    /**
+     * The last timestamp and random bits of a thread, and a buffer to encode them.
+     */
+    private static class State {
+
+        private long lastMillis = -1;
+
+        /**
+         * The upper 16 of the 80 random bits
+         */
+        private long randomHigh;
+
+        /**
+         * The lower 64 of the 80 random bits
+         */
+        private long randomLow;
+
+        private final char[] buffer;
+
+        State(int prefixLength) {
+            this.buffer = new char[prefixLength + LENGTH];
+        }
+
+        String next(String prefix) {
+            long millis = System.currentTimeMillis();
+            if (millis > lastMillis) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                randomHigh = random.nextInt() & 0xFFFF;
+                randomLow = random.nextLong();
+                lastMillis = millis;
+            } else if (++randomLow == 0) {
+                // The clock did not advance (or went back), incrementing the random part keeps the order
+                randomHigh = (randomHigh + 1) & 0xFFFF;
+                if (randomHigh == 0) {
+                    lastMillis++;
+                }
+            }
+
+            prefix.getChars(0, prefix.length(), buffer, 0);
+            int offset = prefix.length();
+
+            long time = lastMillis;
+            for (int i = TIME_LENGTH - 1; i >= 0; i--) {
+                buffer[offset + i] = ALPHABET[(int) (time & 31)];
+                time >>>= 5;
+            }
+
+            // 80 random bits as 16 characters: 4 characters from the 16 high bits and the top 4 low bits,
+            // 12 characters from the remaining 60 low bits
+            long high = (randomHigh << 4) | (randomLow >>> 60);
+            long low = randomLow & 0x0FFFFFFFFFFFFFFFL;
+            for (int i = LENGTH - 1; i >= TIME_LENGTH + 4; i--) {
+                buffer[offset + i] = ALPHABET[(int) (low & 31)];
+                low >>>= 5;
+            }
+            for (int i = TIME_LENGTH + 3; i >= TIME_LENGTH; i--) {
+                buffer[offset + i] = ALPHABET[(int) (high & 31)];
+                high >>>= 5;
+            }
+
+            return new String(buffer);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.anno4j.querying;
+
+/**
+ * Strategies for querying multiple graph contexts
+ */
+public enum GraphQueryMode {
+    /**
+     * A single query is evaluated against the dataset merged from all graphs
+     */
+    DATASET,
+
+    /**
+     * One query per graph is evaluated concurrently on separate connections, the results are merged and deduplicated
+     */
+    PARALLEL
+}
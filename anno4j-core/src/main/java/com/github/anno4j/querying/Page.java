@@ -0,0 +1,41 @@
+package com.github.anno4j.querying;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated query, see {@link QueryService#executePage(int, String)}.
+ *
+ * @param <T> The type of the annotations
+ */
+public class Page<T> {
+
+    /**
+     * The annotations of this page
+     */
+    private final List<T> results;
+
+    /**
+     * The opaque token to request the following page, or null if this is the last page
+     */
+    private final String continuationToken;
+
+    public Page(List<T> results, String continuationToken) {
+        this.results = results;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * @return true if there is a following page
+     */
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.anno4j.querying;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Value;
+import org.openrdf.repository.object.ObjectFactory;
+
+import java.util.Arrays;
+
+/**
+ * One row of a projection query, see {@link QueryService#select(String...)}. Holds the plain values of the selected
+ * LDPath expressions for one annotation, without creating any objects for the annotation or its resources. The
+ * literals are converted to Java objects while the row is read, so the row stays usable after its connection is
+ * closed.
+ */
+public class ProjectionRow {
+
+    /**
+     * The selected LDPath expressions, in the order of the values
+     */
+    private final String[] ldpaths;
+
+    /**
+     * The annotation the values belong to
+     */
+    private final Resource annotation;
+
+    /**
+     * The values of the LDPath expressions, null if an expression has no value
+     */
+    private final Value[] values;
+
+    /**
+     * The value the rows are ordered by, if an LDPath ordering is defined
+     */
+    private final Value sortKey;
+
+    /**
+     * The values converted to Java objects, literals according to their datatype
+     */
+    private final Object[] objects;
+
+    ProjectionRow(String[] ldpaths, Resource annotation, Value[] values, Value sortKey, ObjectFactory objectFactory) {
+        this.ldpaths = ldpaths;
+        this.annotation = annotation;
+        this.values = values;
+        this.sortKey = sortKey;
+        this.objects = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            objects[i] = (values[i] instanceof Literal) ? objectFactory.createObject((Literal) values[i]) : values[i];
+        }
+    }
+
+    public Resource getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * @param index The index of the LDPath expression passed to {@link QueryService#select(String...)}
+     * @return the value, or null if the expression has no value for this annotation
+     */
+    public Value getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param ldpath The LDPath expression, as passed to {@link QueryService#select(String...)}
+     * @return the value, or null if the expression has no value for this annotation
+     */
+    public Value getValue(String ldpath) {
+        return values[indexOf(ldpath)];
+    }
+
+    /**
+     * Returns the value as Java object. Literals are converted according to their datatype, like the properties of
+     * the annotation objects are. Resources are returned as they are, no object is created for them.
+     *
+     * @param index The index of the LDPath expression passed to {@link QueryService#select(String...)}
+     * @return the converted value, or null if the expression has no value for this annotation
+     */
+    public Object getObject(int index) {
+        return objects[index];
+    }
+
+    /**
+     * @param ldpath The LDPath expression, as passed to {@link QueryService#select(String...)}
+     * @return the converted value, or null if the expression has no value for this annotation
+     * @see #getObject(int)
+     */
+    public Object getObject(String ldpath) {
+        return getObject(indexOf(ldpath));
+    }
+
+    Value getSortKey() {
+        return sortKey;
+    }
+
+    private int indexOf(String ldpath) {
+        for (int i = 0; i < ldpaths.length; i++) {
+            if (ldpaths[i].equals(ldpath)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(ldpath + " is not selected.");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProjectionRow)) {
+            return false;
+        }
+
+        ProjectionRow that = (ProjectionRow) o;
+        return annotation.equals(that.annotation) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * annotation.hashCode() + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return annotation + " " + Arrays.toString(values);
+    }
+}
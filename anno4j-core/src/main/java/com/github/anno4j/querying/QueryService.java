@@ -1,28 +1,61 @@
 package com.github.anno4j.querying;
 
+import com.github.anno4j.index.TextHit;
+import com.github.anno4j.index.TextIndex;
 import com.github.anno4j.model.Annotation;
 import com.github.anno4j.model.namespaces.*;
+import com.github.anno4j.querying.evaluation.EvalAggregate;
+import com.github.anno4j.querying.evaluation.EvalKeyset;
+import com.github.anno4j.querying.evaluation.EvalProjection;
 import com.github.anno4j.querying.evaluation.EvalQuery;
+import com.github.anno4j.sharding.ShardedObjectRepository;
 import com.hp.hpl.jena.query.Query;
 import org.apache.jena.atlas.io.IndentedWriter;
 import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.datatypes.XMLDatatypeUtil;
+import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.OWL;
 import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.model.vocabulary.SKOS;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.evaluation.util.ValueComparator;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.object.ObjectConnection;
-import org.openrdf.repository.object.ObjectQuery;
 import org.openrdf.repository.object.ObjectRepository;
+import org.openrdf.repository.object.RDFObject;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+import org.openrdf.sail.memory.MemoryStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * The QueryService allows to query triple stores by using criteria. Furthermore
@@ -35,7 +68,28 @@ import java.util.Map;
 public class QueryService<T extends Annotation> {
 
     private final Logger logger = LoggerFactory.getLogger(QueryService.class);
-    private final URI graph;
+
+    /**
+     * Executor for querying multiple graphs concurrently, if no sharding layer provides one.
+     */
+    private static final ExecutorService GRAPH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "anno4j-graph-query");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * The graph contexts to query. Empty if the default graph is queried.
+     */
+    private final URI[] graphs;
+
+    /**
+     * Specifies how multiple graph contexts are queried.
+     */
+    private GraphQueryMode graphQueryMode = GraphQueryMode.DATASET;
 
     /**
      * The type of the result set.
@@ -47,6 +101,11 @@ public class QueryService<T extends Annotation> {
      */
     private ObjectRepository objectRepository;
 
+    /**
+     * Sharding layer, if the query has to be executed on multiple repositories. Null if a single repository is used.
+     */
+    private ShardedObjectRepository shardedRepository;
+
     /**
      * LDPath for the shortcut method setBodyCriteria
      *
@@ -91,11 +150,15 @@ public class QueryService<T extends Annotation> {
     private ArrayList<Criteria> criteria = new ArrayList<Criteria>();
 
     /**
-     * Specifies the ordering of the result set
-     * TODO: evaluate if this is possible with the current implementation, because the user does not know the generated variable names etc...
+     * Specifies the ordering of the result set. The result set is ordered by the annotation resource.
      */
     private Order order = null;
 
+    /**
+     * LDPath to the value the result set is ordered by, before the annotation resource
+     */
+    private String orderKey = null;
+
     /**
      * Limit value of the query
      */
@@ -111,6 +174,11 @@ public class QueryService<T extends Annotation> {
      */
     private QueryOptimizer queryOptimizer = null;
 
+    /**
+     * Full-text index resolving the text criteria, null if none is configured
+     */
+    private TextIndex textIndex = null;
+
     /**
      * Required to have an ongoing variable name when creating the SPARQL query
      */
@@ -118,29 +186,55 @@ public class QueryService<T extends Annotation> {
 
 
     public QueryService(Class<T> type, ObjectRepository objectRepository) {
-       this(type, objectRepository, null);
+       this(type, objectRepository, new URI[0]);
     }
 
-    public QueryService(Class<T> type, ObjectRepository objectRepository, URI graph) {
+    public QueryService(Class<T> type, ObjectRepository objectRepository, URI... graphs) {
         this.type = type;
         this.objectRepository = objectRepository;
         // Setting some standard name spaces
-        addPrefix(OADM.PREFIX, OADM.NS);
-        addPrefix(CNT.PREFIX, CNT.NS);
-        addPrefix(DC.PREFIX, DC.NS);
-        addPrefix(DCTERMS.PREFIX, DCTERMS.NS);
-        addPrefix(DCTYPES.PREFIX, DCTYPES.NS);
-        addPrefix(FOAF.PREFIX, FOAF.NS);
-        addPrefix(PROV.PREFIX, PROV.NS);
-        addPrefix(RDF.PREFIX, RDF.NS);
-        addPrefix(OWL.PREFIX, OWL.NAMESPACE);
-        addPrefix(RDFS.PREFIX, RDFS.NAMESPACE);
-        addPrefix(SKOS.PREFIX, SKOS.NAMESPACE);
+        addPrefixes(getDefaultPrefixes());
 
         this.queryOptimizer = QueryOptimizer.getInstance();
-        this.graph = graph;
+
+        // Ignoring null graphs, which denote the default graph
+        List<URI> graphList = new ArrayList<URI>();
+        if (graphs != null) {
+            for (URI graph : graphs) {
+                if (graph != null) {
+                    graphList.add(graph);
+                }
+            }
+        }
+        this.graphs = graphList.toArray(new URI[graphList.size()]);
     }
 
+    public QueryService(Class<T> type, ShardedObjectRepository shardedRepository, URI... graphs) {
+        this(type, shardedRepository.getShards().get(0), graphs);
+        this.shardedRepository = shardedRepository;
+    }
+
+
+    /**
+     * Getter for the standard name spaces, which are available in every LDPath expression.
+     *
+     * @return map from prefix label to namespace URL.
+     */
+    public static HashMap<String, String> getDefaultPrefixes() {
+        HashMap<String, String> prefixes = new HashMap<String, String>();
+        prefixes.put(OADM.PREFIX, OADM.NS);
+        prefixes.put(CNT.PREFIX, CNT.NS);
+        prefixes.put(DC.PREFIX, DC.NS);
+        prefixes.put(DCTERMS.PREFIX, DCTERMS.NS);
+        prefixes.put(DCTYPES.PREFIX, DCTYPES.NS);
+        prefixes.put(FOAF.PREFIX, FOAF.NS);
+        prefixes.put(PROV.PREFIX, PROV.NS);
+        prefixes.put(RDF.PREFIX, RDF.NS);
+        prefixes.put(OWL.PREFIX, OWL.NAMESPACE);
+        prefixes.put(RDFS.PREFIX, RDFS.NAMESPACE);
+        prefixes.put(SKOS.PREFIX, SKOS.NAMESPACE);
+        return prefixes;
+    }
 
     /**
      * Setting a criteria for filtering eu.mico.platform.persistence.impl.impl.* objects.
@@ -393,6 +487,53 @@ public class QueryService<T extends Annotation> {
         return this;
     }
 
+    /**
+     * Restricts the annotations to those whose text at the given LDPath contains all terms of the query. The matching
+     * annotations are resolved by the configured full-text index and bound by a VALUES block, instead of filtering
+     * all annotations by a regular expression.
+     *
+     * @param ldpath A field of the full-text index, e.g. "oa:hasTarget/oa:hasSelector/oa:exact"
+     * @param query  The terms to search for
+     * @return itself to allow chaining.
+     * @throws IllegalStateException if no full-text index is configured
+     * @see com.github.anno4j.Anno4j#setTextIndex(com.github.anno4j.index.TextIndex)
+     */
+    public QueryService textMatch(String ldpath, String query) {
+        if (textIndex == null) {
+            throw new IllegalStateException("No full-text index configured.");
+        }
+        return textMatch(textIndex, ldpath, query);
+    }
+
+    /**
+     * Restricts the annotations to those whose text at the given LDPath contains all terms of the query, as resolved
+     * by the given full-text index.
+     *
+     * @param index  The full-text index
+     * @param ldpath A field of the full-text index
+     * @param query  The terms to search for
+     * @return itself to allow chaining.
+     */
+    public QueryService textMatch(TextIndex index, String ldpath, String query) {
+        List<Resource> candidates = new ArrayList<Resource>();
+        for (TextHit hit : index.search(ldpath, query)) {
+            candidates.add(hit.getAnnotation());
+        }
+        criteria.add(new ValuesCriteria(candidates));
+        return this;
+    }
+
+    /**
+     * Setting the full-text index used by {@link #textMatch(String, String)}.
+     *
+     * @param textIndex The full-text index
+     * @return itself to allow chaining.
+     */
+    public QueryService textIndex(TextIndex textIndex) {
+        this.textIndex = textIndex;
+        return this;
+    }
+
     /**
      * Setting shortcut names for URI prefixes.
      *
@@ -417,13 +558,30 @@ public class QueryService<T extends Annotation> {
     }
 
     /**
-     * Defines the ordering of the result set.
+     * Defines the ordering of the result set by annotation resource. The ordering is applied where the results of
+     * several shards or graphs are merged and by {@link #executePage(int)}. A single query on one repository returns
+     * the annotations in the order of the store.
      *
      * @param order Defines the order of the result set.
      * @return itself to allow chaining.
      */
     public QueryService orderBy(Order order) {
         this.order = order;
+        this.orderKey = null;
+        return this;
+    }
+
+    /**
+     * Defines the ordering of the result set by the value of the given LDPath. Annotations with the same value are
+     * ordered by their resource. Annotations without a value are not part of the result set.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @param order  Defines the order of the result set.
+     * @return itself to allow chaining.
+     */
+    public QueryService orderBy(String ldpath, Order order) {
+        this.order = order;
+        this.orderKey = ldpath;
         return this;
     }
 
@@ -449,24 +607,606 @@ public class QueryService<T extends Annotation> {
         return this;
     }
 
+    /**
+     * Defines how multiple graph contexts are queried. Either as one query against the merged dataset of all graphs
+     * (default), or as concurrent queries per graph, whose results are merged and deduplicated.
+     *
+     * @param graphQueryMode The strategy for querying multiple graphs.
+     * @return itself to allow chaining.
+     */
+    public QueryService graphQueryMode(GraphQueryMode graphQueryMode) {
+        this.graphQueryMode = graphQueryMode;
+        return this;
+    }
+
     /**
      * Creates and executes the SPARQL query according to the
-     * criteria specified by the user.
+     * criteria specified by the user. The annotations are read from an in-memory copy of their statements, the
+     * connections to the repository are closed when this method returns. Changes to the annotations are written with
+     * {@link com.github.anno4j.persistence.PersistenceService#updateAnnotation(Annotation)}.
      *
      * @param <T>
      * @return the result set
      */
     public <T> List<T> execute() throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
-        ObjectConnection con = objectRepository.getConnection();
+        List<ObjectRepository> repositories = getRepositories();
+        List<URI[]> contexts = getContexts();
+
+        if (repositories.size() == 1 && contexts.size() == 1) {
+            Snapshot snapshot = new Snapshot(repositories.get(0));
+            List<Resource> annotations;
+            ObjectConnection con = repositories.get(0).getConnection();
+            try {
+                setGraphContext(con, contexts.get(0));
+
+                annotations = evaluate(con, createQuery(limit, offset));
+                snapshot.copy(con, annotations);
+            } finally {
+                con.close();
+            }
+            return (List<T>) snapshot.load(type, annotations);
+        }
+
+        // Merging needs the annotation resources and sort keys, the objects are loaded for the requested page only
+        Integer partialLimit = null;
+        if (limit != null) {
+            partialLimit = limit + ((offset != null) ? offset : 0);
+        }
+        List<KeyedRow> rows = evaluateRows(EvalKeyset.evaluate(criteria, prefixes, orderKey, order, null, null, partialLimit), order);
+
+        int from = (offset != null) ? Math.min(offset, rows.size()) : 0;
+        int to = (limit != null) ? Math.min(from + limit, rows.size()) : rows.size();
+
+        return (List<T>) load(rows.subList(from, to));
+    }
+
+    /**
+     * Executes the query page by page. Instead of skipping the results of the previous pages with an OFFSET, every page
+     * continues after the last annotation of the previous page, so deep pages are as cheap as the first one.
+     * The annotations are ordered as defined by {@link #orderBy(Order)} or {@link #orderBy(String, Order)}, ascending
+     * by resource otherwise. A sort key is expected to have a single value per annotation. Limit and offset are ignored.
+     *
+     * @param pageSize The maximum number of annotations per page
+     * @return the first page
+     */
+    public Page<T> executePage(int pageSize) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        return executePage(pageSize, null);
+    }
+
+    /**
+     * Executes the query for the page following the page the continuation token was returned with. The token is only
+     * valid for a query with the same criteria and ordering.
+     *
+     * @param pageSize          The maximum number of annotations per page
+     * @param continuationToken The token of the previous page, or null for the first page
+     * @return the requested page
+     * @see #executePage(int)
+     */
+    public Page<T> executePage(int pageSize, String continuationToken) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The page size must be positive, but was " + pageSize);
+        }
+
+        Resource lastAnnotation = null;
+        Value lastKey = null;
+        if (continuationToken != null) {
+            Value[] last = decodeToken(continuationToken);
+            lastAnnotation = (Resource) last[0];
+            lastKey = (last.length > 1) ? last[1] : null;
+        }
+
+        Order pageOrder = (order != null) ? order : Order.ASCENDING;
+
+        // Requesting one more row, to know if there is a following page
+        List<KeyedRow> rows = evaluateRows(EvalKeyset.evaluate(criteria, prefixes, orderKey, pageOrder, lastAnnotation, lastKey, pageSize + 1), pageOrder);
+
+        String token = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            KeyedRow last = rows.get(pageSize - 1);
+            token = encodeToken(last.annotation, last.key);
+        }
+
+        return new Page<T>((List<T>) (List<?>) load(rows), token);
+    }
+
+    /**
+     * Selects the values of the given LDPath expressions for every annotation matching the criteria, instead of the
+     * annotations themselves. No objects are created for the annotations or their resources, literals are converted
+     * to Java objects while the rows are read. Every combination of values is returned as a separate row, so an
+     * annotation with two values for each of two expressions yields four rows; select multi-valued expressions in
+     * separate calls to avoid the product. An expression without value leaves its column empty. Ordering, limit and
+     * offset are applied to the rows.
+     *
+     * @param ldpaths Syntax similar to XPath. Beginning from the Annotation object
+     * @return the rows
+     */
+    public List<ProjectionRow> select(final String... ldpaths) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        List<ObjectRepository> repositories = getRepositories();
+        List<URI[]> contexts = getContexts();
+        boolean partial = repositories.size() > 1 || contexts.size() > 1;
+
+        Query sparql = EvalProjection.evaluate(ldpaths, criteria, prefixes, orderKey, order);
+        if (!partial) {
+            if (limit != null) {
+                sparql.setLimit(limit);
+            }
+            if (offset != null) {
+                sparql.setOffset(offset);
+            }
+        } else if (limit != null) {
+            sparql.setLimit(limit + ((offset != null) ? offset : 0));
+        }
+
+        final String q = sparql.serialize();
+        logger.debug("Created query:\n" + q);
+
+        List<Callable<List<ProjectionRow>>> tasks = new ArrayList<Callable<List<ProjectionRow>>>();
+        for (final ObjectRepository repository : repositories) {
+            for (final URI[] context : contexts) {
+                tasks.add(new Callable<List<ProjectionRow>>() {
+                    @Override
+                    public List<ProjectionRow> call() throws Exception {
+                        ObjectConnection con = repository.getConnection();
+                        try {
+                            setGraphContext(con, context);
+                            TupleQueryResult result = con.prepareTupleQuery(QueryLanguage.SPARQL, q).evaluate();
+                            try {
+                                List<ProjectionRow> rows = new ArrayList<ProjectionRow>();
+                                while (result.hasNext()) {
+                                    BindingSet bindings = result.next();
+                                    Value[] values = new Value[ldpaths.length];
+                                    for (int i = 0; i < values.length; i++) {
+                                        values[i] = bindings.getValue(EvalProjection.VALUE_VAR_PREFIX + i);
+                                    }
+                                    rows.add(new ProjectionRow(ldpaths, (Resource) bindings.getValue(EvalQuery.ANNOTATION_VAR), values,
+                                            bindings.getValue(EvalKeyset.KEY_VAR), con.getObjectFactory()));
+                                }
+                                return rows;
+                            } finally {
+                                result.close();
+                            }
+                        } finally {
+                            con.close();
+                        }
+                    }
+                });
+            }
+        }
+
+        List<ProjectionRow> rows = invokeAll(tasks);
+        if (!partial) {
+            return rows;
+        }
+
+        // Deduplicating rows of annotations contained in multiple graphs
+        rows = new ArrayList<ProjectionRow>(new LinkedHashSet<ProjectionRow>(rows));
+        if (order != null) {
+            Collections.sort(rows, new ProjectionRowComparator(order));
+        }
+
+        int from = (offset != null) ? Math.min(offset, rows.size()) : 0;
+        int to = (limit != null) ? Math.min(from + limit, rows.size()) : rows.size();
+
+        return new ArrayList<ProjectionRow>(rows.subList(from, to));
+    }
+
+    /**
+     * Counts the annotations matching the criteria, without loading them. Ordering, limit and offset are ignored.
+     *
+     * @return the number of matching annotations
+     */
+    public long count() throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        long count = 0;
+        for (BindingSet bindings : evaluateTupleQuery(EvalAggregate.evaluateCount(criteria, prefixes))) {
+            count += ((Literal) bindings.getValue(EvalAggregate.COUNT_VAR)).longValue();
+        }
+        return count;
+    }
+
+    /**
+     * Checks if any annotation matches the criteria, without loading it.
+     *
+     * @return true if at least one annotation matches
+     */
+    public boolean exists() throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        Query sparql = EvalQuery.evaluate(criteria, prefixes);
+        sparql.setLimit(1);
+        return !evaluateTupleQuery(sparql).isEmpty();
+    }
+
+    /**
+     * Counts the annotations matching the criteria per value of the given LDPath, e.g. the number of annotations per
+     * content item. Ordering, limit and offset are ignored.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @return the number of matching annotations per value
+     */
+    public Map<String, Long> countBy(String ldpath) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (BindingSet bindings : evaluateTupleQuery(EvalAggregate.evaluateCountBy(ldpath, criteria, prefixes))) {
+            Value key = bindings.getValue(EvalAggregate.KEY_VAR);
+            if (key == null) {
+                continue;
+            }
+
+            long count = ((Literal) bindings.getValue(EvalAggregate.COUNT_VAR)).longValue();
+            Long previous = counts.get(key.stringValue());
+            counts.put(key.stringValue(), (previous != null) ? previous + count : count);
+        }
+        return counts;
+    }
+
+    /**
+     * Computes the minimum of the numeric values of the given LDPath over all matching annotations.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @return the minimum value, or null if there is no value
+     * @throws IllegalArgumentException if the minimum is not a numeric literal
+     */
+    public Double min(String ldpath) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        return toDouble(ldpath, minValue(ldpath));
+    }
+
+    /**
+     * Computes the maximum of the numeric values of the given LDPath over all matching annotations.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @return the maximum value, or null if there is no value
+     * @throws IllegalArgumentException if the maximum is not a numeric literal
+     */
+    public Double max(String ldpath) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        return toDouble(ldpath, maxValue(ldpath));
+    }
+
+    /**
+     * Computes the minimum of the values of the given LDPath over all matching annotations. Values of any type, e.g.
+     * dates, strings or resources, are compared in the SPARQL ordering.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @return the minimum value, or null if there is no value
+     */
+    public Value minValue(String ldpath) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        ValueComparator values = new ValueComparator();
+        Value min = null;
+        for (BindingSet bindings : evaluateTupleQuery(EvalAggregate.evaluateMin(ldpath, criteria, prefixes))) {
+            Value value = bindings.getValue(EvalAggregate.RESULT_VAR);
+            if (value != null && (min == null || values.compare(value, min) < 0)) {
+                min = value;
+            }
+        }
+        return min;
+    }
 
-        if(graph != null) {
-            con.setReadContexts(graph);
-            con.setInsertContext(graph);
-            con.setRemoveContexts(graph);
+    /**
+     * Computes the maximum of the values of the given LDPath over all matching annotations. Values of any type, e.g.
+     * dates, strings or resources, are compared in the SPARQL ordering.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @return the maximum value, or null if there is no value
+     */
+    public Value maxValue(String ldpath) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        ValueComparator values = new ValueComparator();
+        Value max = null;
+        for (BindingSet bindings : evaluateTupleQuery(EvalAggregate.evaluateMax(ldpath, criteria, prefixes))) {
+            Value value = bindings.getValue(EvalAggregate.RESULT_VAR);
+            if (value != null && (max == null || values.compare(value, max) > 0)) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Computes the average of the numeric values of the given LDPath over all matching annotations.
+     *
+     * @param ldpath Syntax similar to XPath. Beginning from the Annotation object
+     * @return the average value, or null if there is no value
+     */
+    public Double avg(String ldpath) throws ParseException, RepositoryException, MalformedQueryException, QueryEvaluationException {
+        double sum = 0;
+        long count = 0;
+        for (BindingSet bindings : evaluateTupleQuery(EvalAggregate.evaluateSumAndCount(ldpath, criteria, prefixes))) {
+            Value partialSum = bindings.getValue(EvalAggregate.SUM_VAR);
+            Value partialCount = bindings.getValue(EvalAggregate.COUNT_VAR);
+            if (partialSum != null && partialCount != null) {
+                sum += ((Literal) partialSum).doubleValue();
+                count += ((Literal) partialCount).longValue();
+            }
+        }
+        return (count > 0) ? sum / count : null;
+    }
+
+    /**
+     * Converts an aggregated value of the given LDPath to a number.
+     */
+    private static Double toDouble(String ldpath, Value value) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Literal) || ((Literal) value).getDatatype() == null
+                || !XMLDatatypeUtil.isNumericDatatype(((Literal) value).getDatatype())) {
+            throw new IllegalArgumentException("The values of " + ldpath + " are not numeric, found " + value);
+        }
+        return ((Literal) value).doubleValue();
+    }
+
+    /**
+     * Evaluates a tuple query on the repository, or on all shards in parallel. The graph contexts are always queried as
+     * one dataset. The results of all repositories are concatenated.
+     *
+     * @param sparql The query to evaluate
+     * @return all result rows
+     */
+    private List<BindingSet> evaluateTupleQuery(Query sparql) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        final String q = sparql.serialize();
+        logger.debug("Created query:\n" + q);
+
+        List<Callable<List<BindingSet>>> tasks = new ArrayList<Callable<List<BindingSet>>>();
+        for (final ObjectRepository repository : getRepositories()) {
+            tasks.add(new Callable<List<BindingSet>>() {
+                @Override
+                public List<BindingSet> call() throws Exception {
+                    ObjectConnection con = repository.getConnection();
+                    try {
+                        setGraphContext(con, graphs);
+                        TupleQueryResult result = con.prepareTupleQuery(QueryLanguage.SPARQL, q).evaluate();
+                        try {
+                            List<BindingSet> rows = new ArrayList<BindingSet>();
+                            while (result.hasNext()) {
+                                rows.add(result.next());
+                            }
+                            return rows;
+                        } finally {
+                            result.close();
+                        }
+                    } finally {
+                        con.close();
+                    }
+                }
+            });
+        }
+
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Evaluates the keyset query on every combination of repository and graph context. The rows are merged,
+     * deduplicated and ordered by sort key and annotation.
+     *
+     * @param sparql The query created by {@link com.github.anno4j.querying.evaluation.EvalKeyset}
+     * @param order  The direction of the ordering
+     * @return the ordered rows
+     */
+    private List<KeyedRow> evaluateRows(Query sparql, Order order) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        final String q = sparql.serialize();
+        logger.debug("Created query:\n" + q);
+
+        List<Callable<List<KeyedRow>>> tasks = new ArrayList<Callable<List<KeyedRow>>>();
+        for (final ObjectRepository repository : getRepositories()) {
+            for (final URI[] context : getContexts()) {
+                tasks.add(new Callable<List<KeyedRow>>() {
+                    @Override
+                    public List<KeyedRow> call() throws Exception {
+                        ObjectConnection con = repository.getConnection();
+                        try {
+                            setGraphContext(con, context);
+                            TupleQueryResult result = con.prepareTupleQuery(QueryLanguage.SPARQL, q).evaluate();
+                            try {
+                                List<KeyedRow> rows = new ArrayList<KeyedRow>();
+                                while (result.hasNext()) {
+                                    BindingSet bindings = result.next();
+                                    rows.add(new KeyedRow(repository, context, (Resource) bindings.getValue(EvalQuery.ANNOTATION_VAR), bindings.getValue(EvalKeyset.KEY_VAR)));
+                                }
+                                return rows;
+                            } finally {
+                                result.close();
+                            }
+                        } finally {
+                            con.close();
+                        }
+                    }
+                });
+            }
+        }
+
+        // Deduplicating annotations contained in multiple graphs or having multiple sort keys
+        Map<Resource, KeyedRow> merged = new LinkedHashMap<Resource, KeyedRow>();
+        for (KeyedRow row : invokeAll(tasks)) {
+            if (!merged.containsKey(row.annotation)) {
+                merged.put(row.annotation, row);
+            }
+        }
+
+        List<KeyedRow> rows = new ArrayList<KeyedRow>(merged.values());
+        Collections.sort(rows, new KeyedRowComparator(order));
+        return rows;
+    }
+
+    /**
+     * Loads the annotations of the given rows, copying them with one query per repository and graph context. The
+     * connections are closed before the annotations are returned, which are read from the copy.
+     *
+     * @param rows The rows to load
+     * @return the annotations, in the order of the rows
+     */
+    private List<Object> load(List<KeyedRow> rows) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        Map<ObjectRepository, Map<URI[], List<Resource>>> groups = new HashMap<ObjectRepository, Map<URI[], List<Resource>>>();
+        List<Resource> annotations = new ArrayList<Resource>(rows.size());
+        for (KeyedRow row : rows) {
+            if (!groups.containsKey(row.repository)) {
+                groups.put(row.repository, new HashMap<URI[], List<Resource>>());
+            }
+            if (!groups.get(row.repository).containsKey(row.context)) {
+                groups.get(row.repository).put(row.context, new ArrayList<Resource>());
+            }
+            groups.get(row.repository).get(row.context).add(row.annotation);
+            annotations.add(row.annotation);
+        }
+        if (groups.isEmpty()) {
+            return new ArrayList<Object>();
+        }
+
+        Snapshot snapshot = new Snapshot(groups.keySet().iterator().next());
+        for (Map.Entry<ObjectRepository, Map<URI[], List<Resource>>> repository : groups.entrySet()) {
+            for (Map.Entry<URI[], List<Resource>> context : repository.getValue().entrySet()) {
+                ObjectConnection con = repository.getKey().getConnection();
+                try {
+                    setGraphContext(con, context.getKey());
+                    snapshot.copy(con, context.getValue());
+                } finally {
+                    con.close();
+                }
+            }
+        }
+        return snapshot.load(type, annotations);
+    }
+
+    /**
+     * Runs the tasks on the executor of the shards or graphs, or in the calling thread if there is only one task.
+     *
+     * @param tasks The tasks to run
+     * @param <V>   The type of the results
+     * @return the concatenated results of all tasks
+     */
+    private <V> List<V> invokeAll(List<Callable<List<V>>> tasks) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        List<V> results = new ArrayList<V>();
+        try {
+            if (tasks.size() == 1) {
+                return tasks.get(0).call();
+            }
+
+            ExecutorService executor = (shardedRepository != null) ? shardedRepository.getExecutor() : GRAPH_EXECUTOR;
+            for (Future<List<V>> future : executor.invokeAll(tasks)) {
+                results.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryEvaluationException(e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (RepositoryException e) {
+            throw e;
+        } catch (MalformedQueryException e) {
+            throw e;
+        } catch (QueryEvaluationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new QueryEvaluationException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Unwraps the cause of a failed parallel evaluation.
+     *
+     * @param e The exception thrown by the future
+     * @return the cause, if it is a QueryEvaluationException, otherwise a QueryEvaluationException wrapping the cause
+     */
+    private static QueryEvaluationException unwrap(ExecutionException e) throws RepositoryException, MalformedQueryException {
+        Throwable cause = e.getCause();
+        if (cause instanceof RepositoryException) {
+            throw (RepositoryException) cause;
+        } else if (cause instanceof MalformedQueryException) {
+            throw (MalformedQueryException) cause;
+        } else if (cause instanceof QueryEvaluationException) {
+            return (QueryEvaluationException) cause;
+        }
+        return new QueryEvaluationException(cause);
+    }
+
+    /**
+     * @return the shards, or the single repository if the annotations are not sharded
+     */
+    private List<ObjectRepository> getRepositories() {
+        return (shardedRepository != null) ? shardedRepository.getShards() : Collections.singletonList(objectRepository);
+    }
+
+    /**
+     * @return the graph contexts to query separately, according to the graph query mode
+     */
+    private List<URI[]> getContexts() {
+        List<URI[]> contexts = new ArrayList<URI[]>();
+        if (GraphQueryMode.PARALLEL.equals(graphQueryMode) && graphs.length > 1) {
+            for (URI graph : graphs) {
+                contexts.add(new URI[]{graph});
+            }
+        } else {
+            contexts.add(graphs);
+        }
+        return contexts;
+    }
+
+    /**
+     * Encodes the last row of a page as continuation token.
+     */
+    private static String encodeToken(Resource annotation, Value key) {
+        StringBuilder token = new StringBuilder(NTriplesUtil.toNTriplesString(annotation));
+        if (key != null) {
+            token.append('\n').append(NTriplesUtil.toNTriplesString(key));
+        }
+
+        try {
+            return URLEncoder.encode(token.toString(), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
+    }
+
+    /**
+     * Decodes a continuation token to the annotation and the optional sort key of the last row of a page.
+     */
+    private static Value[] decodeToken(String token) {
+        try {
+            String[] parts = URLDecoder.decode(token, "UTF-8").split("\n");
+            Value[] values = new Value[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                values[i] = NTriplesUtil.parseValue(parts[i], ValueFactoryImpl.getInstance());
+            }
+
+            if (values.length > 2 || !(values[0] instanceof Resource)) {
+                throw new IllegalArgumentException("Invalid continuation token: " + token);
+            }
+            return values;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+    }
 
+    /**
+     * Restricts the connection to the given graph contexts. Writes are only bound to a context if exactly one graph is given.
+     *
+     * @param con      The connection to configure
+     * @param contexts The graph contexts, empty for the default graph
+     */
+    private void setGraphContext(ObjectConnection con, URI[] contexts) {
+        if (contexts.length > 0) {
+            con.setReadContexts(contexts);
+            con.setRemoveContexts(contexts);
+        }
+
+        if (contexts.length == 1) {
+            con.setInsertContext(contexts[0]);
+        }
+    }
+
+    /**
+     * Creates the optimized SPARQL query according to the criteria specified by the user.
+     *
+     * @param limit  The limit value of the query, or null
+     * @param offset The offset value of the query, or null
+     * @return the SPARQL query
+     */
+    private String createQuery(Integer limit, Integer offset) throws ParseException {
         Query sparql = EvalQuery.evaluate(criteria, prefixes);
 
+        // Ordering by resource only is left to the merging of shard and graph results
+        if (orderKey != null) {
+            EvalKeyset.addOrder(sparql, orderKey, order, prefixes);
+        }
+
         if (limit != null) {
             sparql.setLimit(limit);
         }
@@ -490,7 +1230,19 @@ public class QueryService<T extends Annotation> {
         q = queryOptimizer.optimizeFilters(q);
         logger.debug("FILTERs optimized:\n " + q);
 
-        ObjectQuery query = con.prepareObjectQuery(q);
+        return q;
+    }
+
+    /**
+     * Evaluates the given SPARQL query on the connection and returns the resulting objects.
+     *
+     * @param con The connection to evaluate the query on
+     * @param q   The SPARQL query
+     * @param <T>
+     * @return the result set
+     */
+    private List<Resource> evaluate(ObjectConnection con, String q) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        TupleQuery query = con.prepareTupleQuery(QueryLanguage.SPARQL, q);
 
         if (query.getDataset() != null) {
             logger.info("\nGRAPH CONTEXT = " + query.getDataset().getDefaultGraphs() + "\nFINAL QUERY :\n" + q);
@@ -498,8 +1250,159 @@ public class QueryService<T extends Annotation> {
             logger.info("\nFINAL QUERY :\n" + q);
         }
 
-        List<T> resultList = (List<T>) query.evaluate(this.type).asList();
+        TupleQueryResult result = query.evaluate();
+        try {
+            String binding = result.getBindingNames().get(0);
+            List<Resource> annotations = new ArrayList<Resource>();
+            Value previous = null;
+            while (result.hasNext()) {
+                // The rows of an annotation follow each other, like they are grouped into one object
+                Value annotation = result.next().getValue(binding);
+                if (annotation instanceof Resource && !annotation.equals(previous)) {
+                    annotations.add((Resource) annotation);
+                }
+                previous = annotation;
+            }
+            return annotations;
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * An in-memory copy of the annotations read from one or more connections, with the statements of all resources
+     * reachable from them. The annotations are loaded from the copy, so the connections they were read from can be
+     * closed before the annotations are returned. The copy shares the concepts and behaviours of the repository.
+     */
+    private static class Snapshot {
+
+        /**
+         * Describes the annotations and every resource reachable from them, as the lazily loaded properties of the
+         * annotation objects would read them.
+         */
+        private static final String DESCRIBE_QUERY = "CONSTRUCT { ?s ?p ?o } WHERE { VALUES ?annotation { %s } "
+                + "?annotation (<urn:anno4j:any>|!<urn:anno4j:any>)* ?s . ?s ?p ?o . }";
+
+        private final ObjectConnection connection;
+
+        Snapshot(ObjectRepository repository) throws RepositoryException {
+            SailRepository memory = new SailRepository(new MemoryStore());
+            memory.initialize();
+            ObjectRepository snapshot = new ObjectRepository(repository.getObjectService());
+            snapshot.setDelegate(memory);
+            this.connection = snapshot.getConnection();
+        }
+
+        /**
+         * Copies the statements of the annotations from the connection.
+         *
+         * @param con         The connection the annotations were found with
+         * @param annotations The annotations to copy
+         */
+        void copy(ObjectConnection con, List<Resource> annotations) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+            StringBuilder values = new StringBuilder();
+            for (Resource annotation : annotations) {
+                if (annotation instanceof URI) {
+                    values.append(NTriplesUtil.toNTriplesString(annotation)).append(' ');
+                }
+            }
+            if (values.length() == 0) {
+                return;
+            }
+            GraphQueryResult result = con.prepareGraphQuery(QueryLanguage.SPARQL, String.format(DESCRIBE_QUERY, values)).evaluate();
+            try {
+                connection.add(result);
+            } finally {
+                result.close();
+            }
+        }
+
+        /**
+         * @return the copied annotations, in the given order
+         */
+        List<Object> load(Class<?> type, List<Resource> annotations) throws RepositoryException, QueryEvaluationException {
+            Map<Resource, Object> objects = new HashMap<Resource, Object>();
+            if (!annotations.isEmpty()) {
+                for (Object object : connection.getObjects(type, annotations.toArray(new Resource[annotations.size()])).asList()) {
+                    objects.put(((RDFObject) object).getResource(), object);
+                }
+            }
+
+            List<Object> results = new ArrayList<Object>(annotations.size());
+            for (Resource annotation : annotations) {
+                results.add(objects.get(annotation));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * An annotation with its sort key, and the repository and graph context it was found in.
+     */
+    private static class KeyedRow {
+
+        private final ObjectRepository repository;
+
+        private final URI[] context;
+
+        private final Resource annotation;
+
+        private final Value key;
+
+        KeyedRow(ObjectRepository repository, URI[] context, Resource annotation, Value key) {
+            this.repository = repository;
+            this.context = context;
+            this.annotation = annotation;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Orders rows by their sort key and annotation, like SPARQL orders values.
+     */
+    private static class KeyedRowComparator implements Comparator<KeyedRow> {
+
+        private final ValueComparator values = new ValueComparator();
 
-        return resultList;
+        private final Order order;
+
+        KeyedRowComparator(Order order) {
+            this.order = order;
+        }
+
+        @Override
+        public int compare(KeyedRow r1, KeyedRow r2) {
+            return compareSortKeys(values, r1.key, r1.annotation, r2.key, r2.annotation, order);
+        }
+    }
+
+    /**
+     * Orders projection rows by their sort key and annotation, like SPARQL orders values.
+     */
+    private static class ProjectionRowComparator implements Comparator<ProjectionRow> {
+
+        private final ValueComparator values = new ValueComparator();
+
+        private final Order order;
+
+        ProjectionRowComparator(Order order) {
+            this.order = order;
+        }
+
+        @Override
+        public int compare(ProjectionRow r1, ProjectionRow r2) {
+            return compareSortKeys(values, r1.getSortKey(), r1.getAnnotation(), r2.getSortKey(), r2.getAnnotation(), order);
+        }
+    }
+
+    private static int compareSortKeys(ValueComparator values, Value key1, Resource annotation1, Value key2, Resource annotation2, Order order) {
+        int result = 0;
+        if (key1 != null && key2 != null) {
+            result = values.compare(key1, key2);
+        }
+        if (result == 0) {
+            result = annotation1.stringValue().compareTo(annotation2.stringValue());
+        }
+        return (Order.DESCENDING.equals(order)) ? -result : result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.github.anno4j.querying;
+
+import org.openrdf.model.Value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A Criteria restricting the value of an LDPath expression, or the annotation itself, to an enumeration of values.
+ * The values are bound by a SPARQL VALUES block, so the triple store joins against them instead of filtering all
+ * annotations.
+ */
+public class ValuesCriteria extends Criteria {
+
+    /**
+     * The allowed values, URIs or literals
+     */
+    private final List<Value> values;
+
+    /**
+     * Restricts the annotations to the given resources.
+     *
+     * @param values The resources of the annotations
+     */
+    public ValuesCriteria(Collection<? extends Value> values) {
+        this(null, values);
+    }
+
+    /**
+     * Restricts the value of the LDPath expression.
+     *
+     * @param ldpath The LDPath expression, beginning from the Annotation object. Null for the annotation itself.
+     * @param values The allowed values
+     */
+    public ValuesCriteria(String ldpath, Collection<? extends Value> values) {
+        super(ldpath, Comparison.EQ);
+        this.values = new ArrayList<Value>(values);
+    }
+
+    public List<Value> getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.anno4j.querying.evaluation;
+
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.evaluation.ldpath.LDPathEvaluator;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVarDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMax;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMin;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggSum;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import org.apache.marmotta.ldpath.backend.sesame.SesameValueBackend;
+import org.apache.marmotta.ldpath.parser.LdPathParser;
+import org.apache.marmotta.ldpath.parser.ParseException;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Creates aggregating SPARQL queries over the annotations matching the given criteria. The graph patterns are the same
+ * {@link com.github.anno4j.querying.evaluation.EvalQuery} creates, only the projection differs.
+ */
+public class EvalAggregate {
+
+    /**
+     * Name of the variable the number of annotations is bound to
+     */
+    public static final String COUNT_VAR = "count";
+
+    /**
+     * Name of the variable the grouping key is bound to
+     */
+    public static final String KEY_VAR = "key";
+
+    /**
+     * Name of the variable the sum of values is bound to
+     */
+    public static final String SUM_VAR = "sum";
+
+    /**
+     * Name of the variable the minimum or maximum value is bound to
+     */
+    public static final String RESULT_VAR = "result";
+
+    /**
+     * Creates a query counting the distinct matching annotations, bound to {@link #COUNT_VAR}.
+     *
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL query
+     */
+    public static Query evaluateCount(ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Query query = createQuery(EvalQuery.evaluate(criteria, prefixes));
+        query.setQuerySelectType();
+        query.addResultVar(Var.alloc(COUNT_VAR), query.allocAggregate(new AggCountVarDistinct(new ExprVar(EvalQuery.ANNOTATION_VAR))));
+        return query;
+    }
+
+    /**
+     * Creates a query counting the distinct matching annotations per value of the given LDPath. The values are bound to
+     * {@link #KEY_VAR}, the numbers of annotations to {@link #COUNT_VAR}.
+     *
+     * @param ldpath   The LDPath to the grouping values, beginning from the Annotation object
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL query
+     */
+    public static Query evaluateCountBy(String ldpath, ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Query base = EvalQuery.evaluate(criteria, prefixes);
+        Var value = evaluatePath(ldpath, base, prefixes);
+
+        Query query = createQuery(base);
+        query.setQuerySelectType();
+        query.addResultVar(Var.alloc(KEY_VAR), new ExprVar(value));
+        query.addResultVar(Var.alloc(COUNT_VAR), query.allocAggregate(new AggCountVarDistinct(new ExprVar(EvalQuery.ANNOTATION_VAR))));
+        query.addGroupBy(value);
+        return query;
+    }
+
+    /**
+     * Creates a query for the minimum of the values of the given LDPath, bound to {@link #RESULT_VAR}.
+     *
+     * @param ldpath   The LDPath to the values, beginning from the Annotation object
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL query
+     */
+    public static Query evaluateMin(String ldpath, ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Query base = EvalQuery.evaluate(criteria, prefixes);
+        Var value = evaluatePath(ldpath, base, prefixes);
+
+        Query query = createQuery(base);
+        query.setQuerySelectType();
+        query.addResultVar(Var.alloc(RESULT_VAR), query.allocAggregate(new AggMin(new ExprVar(value))));
+        return query;
+    }
+
+    /**
+     * Creates a query for the maximum of the values of the given LDPath, bound to {@link #RESULT_VAR}.
+     *
+     * @param ldpath   The LDPath to the values, beginning from the Annotation object
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL query
+     */
+    public static Query evaluateMax(String ldpath, ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Query base = EvalQuery.evaluate(criteria, prefixes);
+        Var value = evaluatePath(ldpath, base, prefixes);
+
+        Query query = createQuery(base);
+        query.setQuerySelectType();
+        query.addResultVar(Var.alloc(RESULT_VAR), query.allocAggregate(new AggMax(new ExprVar(value))));
+        return query;
+    }
+
+    /**
+     * Creates a query for the sum ({@link #SUM_VAR}) and the number ({@link #COUNT_VAR}) of the values of the given
+     * LDPath. Both are needed to compute averages over several repositories.
+     *
+     * @param ldpath   The LDPath to the values, beginning from the Annotation object
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL query
+     */
+    public static Query evaluateSumAndCount(String ldpath, ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Query base = EvalQuery.evaluate(criteria, prefixes);
+        Var value = evaluatePath(ldpath, base, prefixes);
+
+        Query query = createQuery(base);
+        query.setQuerySelectType();
+        query.addResultVar(Var.alloc(SUM_VAR), query.allocAggregate(new AggSum(new ExprVar(value))));
+        query.addResultVar(Var.alloc(COUNT_VAR), query.allocAggregate(new AggCountVar(new ExprVar(value))));
+        return query;
+    }
+
+    /**
+     * Adds the patterns of the LDPath, beginning from the annotation variable, to the query.
+     *
+     * @return the variable the values of the LDPath are bound to
+     */
+    static Var evaluatePath(String ldpath, Query query, Map<String, String> prefixes) throws ParseException {
+        LdPathParser parser = new LdPathParser(new SesameValueBackend(), new StringReader(ldpath));
+        return LDPathEvaluator.evaluate(parser.parseSelector(prefixes), (ElementGroup) query.getQueryPattern(), Var.alloc(EvalQuery.ANNOTATION_VAR));
+    }
+
+    /**
+     * Creates a new query with the patterns and namespaces of the given query, but without its projection.
+     */
+    private static Query createQuery(Query base) {
+        Query query = QueryFactory.make();
+        query.setQueryPattern(base.getQueryPattern());
+        query.setPrefixMapping(base.getPrefixMapping());
+        return query;
+    }
+}
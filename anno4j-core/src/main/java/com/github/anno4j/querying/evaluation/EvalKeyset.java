@@ -0,0 +1,104 @@
+package com.github.anno4j.querying.evaluation;
+
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.Order;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.E_Equals;
+import com.hp.hpl.jena.sparql.expr.E_GreaterThan;
+import com.hp.hpl.jena.sparql.expr.E_LessThan;
+import com.hp.hpl.jena.sparql.expr.E_LogicalAnd;
+import com.hp.hpl.jena.sparql.expr.E_LogicalOr;
+import com.hp.hpl.jena.sparql.expr.E_Str;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Value;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Creates keyset (seek) paginated queries over the annotations matching the given criteria. Instead of skipping the
+ * rows of the previous pages with an OFFSET, every page continues after the last row of the previous page.
+ * The annotations are ordered by their optional sort key first and by their resource second.
+ */
+public class EvalKeyset {
+
+    /**
+     * Name of the variable the sort key is bound to
+     */
+    public static final String KEY_VAR = "key";
+
+    /**
+     * Creates a query for the page following the given row.
+     *
+     * @param criteria       The criteria selecting the annotations
+     * @param prefixes       The namespaces used in the LDPath expressions
+     * @param keyPath        The LDPath to the sort key, beginning from the Annotation object, or null to order by resource
+     * @param order          The direction of the ordering
+     * @param lastAnnotation The last annotation of the previous page, or null for the first page
+     * @param lastKey        The sort key of the last annotation of the previous page, or null
+     * @param limit          The maximum number of rows, or null
+     * @return the SPARQL query, binding the annotation and (if present) the sort key to {@link #KEY_VAR}
+     */
+    public static Query evaluate(ArrayList<Criteria> criteria, Map<String, String> prefixes, String keyPath, Order order,
+                                 Resource lastAnnotation, Value lastKey, Integer limit) throws ParseException {
+        Query query = EvalQuery.evaluate(criteria, prefixes);
+        query.setDistinct(true);
+
+        Var key = addOrder(query, keyPath, order, prefixes);
+        if (key != null) {
+            query.addResultVar(Var.alloc(KEY_VAR), new ExprVar(key));
+        }
+
+        if (lastAnnotation != null) {
+            boolean descending = Order.DESCENDING.equals(order);
+            Expr filter = after(new E_Str(new ExprVar(EvalQuery.ANNOTATION_VAR)), NodeValue.makeString(lastAnnotation.stringValue()), descending);
+            if (key != null && lastKey != null) {
+                NodeValue last = NodeValue.makeNode(EvalUpdate.asNode(lastKey));
+                filter = new E_LogicalOr(after(new ExprVar(key), last, descending), new E_LogicalAnd(new E_Equals(new ExprVar(key), last), filter));
+            }
+            ((ElementGroup) query.getQueryPattern()).addElementFilter(new ElementFilter(filter));
+        }
+
+        if (limit != null) {
+            query.setLimit(limit);
+        }
+
+        return query;
+    }
+
+    /**
+     * Orders the annotations of the query by the value of the given LDPath first and by their resource second.
+     *
+     * @param query    The query created by {@link com.github.anno4j.querying.evaluation.EvalQuery}
+     * @param keyPath  The LDPath to the sort key, beginning from the Annotation object, or null to order by resource only
+     * @param order    The direction of the ordering
+     * @param prefixes The namespaces used in the LDPath expression
+     * @return the variable the sort key is bound to, or null if there is no sort key
+     */
+    public static Var addOrder(Query query, String keyPath, Order order, Map<String, String> prefixes) throws ParseException {
+        int direction = Order.DESCENDING.equals(order) ? Query.ORDER_DESCENDING : Query.ORDER_ASCENDING;
+
+        Var key = null;
+        if (keyPath != null) {
+            key = EvalAggregate.evaluatePath(keyPath, query, prefixes);
+            query.addOrderBy(key, direction);
+        }
+        query.addOrderBy(Var.alloc(EvalQuery.ANNOTATION_VAR), direction);
+
+        return key;
+    }
+
+    /**
+     * Creates the comparison selecting the values following the given value in the requested direction.
+     */
+    private static Expr after(Expr expr, NodeValue value, boolean descending) {
+        return descending ? new E_LessThan(expr, value) : new E_GreaterThan(expr, value);
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.anno4j.querying.evaluation;
+
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.Order;
+import com.github.anno4j.querying.evaluation.ldpath.LDPathEvaluator;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementOptional;
+import org.apache.marmotta.ldpath.backend.sesame.SesameValueBackend;
+import org.apache.marmotta.ldpath.parser.LdPathParser;
+import org.apache.marmotta.ldpath.parser.ParseException;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Creates projection queries, selecting the values of LDPath expressions of the annotations matching the given
+ * criteria instead of the annotations themselves.
+ */
+public class EvalProjection {
+
+    /**
+     * Prefix of the variables the values are bound to, followed by the index of the LDPath expression
+     */
+    public static final String VALUE_VAR_PREFIX = "value";
+
+    /**
+     * Creates a query binding the annotation and the values of each LDPath expression. The expressions are optional,
+     * an annotation without a value is selected with an unbound variable.
+     *
+     * @param ldpaths  The LDPath expressions, beginning from the Annotation object
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @param keyPath  The LDPath to the sort key, bound to {@link EvalKeyset#KEY_VAR}, or null
+     * @param order    The direction of the ordering, or null if the result is not ordered
+     * @return the SPARQL query
+     */
+    public static Query evaluate(String[] ldpaths, ArrayList<Criteria> criteria, Map<String, String> prefixes, String keyPath, Order order) throws ParseException {
+        Query query = EvalQuery.evaluate(criteria, prefixes);
+        query.setDistinct(true);
+
+        Var annotationVar = Var.alloc(EvalQuery.ANNOTATION_VAR);
+        for (int i = 0; i < ldpaths.length; i++) {
+            ElementGroup optional = new ElementGroup();
+            LdPathParser parser = new LdPathParser(new SesameValueBackend(), new StringReader(ldpaths[i]));
+            Var value = LDPathEvaluator.evaluate(parser.parseSelector(prefixes), optional, annotationVar);
+
+            ((ElementGroup) query.getQueryPattern()).addElement(new ElementOptional(optional));
+            query.addResultVar(Var.alloc(VALUE_VAR_PREFIX + i), new ExprVar(value));
+        }
+
+        if (order != null) {
+            Var key = EvalKeyset.addOrder(query, keyPath, order, prefixes);
+            if (key != null) {
+                query.addResultVar(Var.alloc(EvalKeyset.KEY_VAR), new ExprVar(key));
+            }
+        }
+
+        return query;
+    }
+}
@@ -2,36 +2,63 @@ package com.github.anno4j.querying.evaluation;
 
 import com.github.anno4j.model.namespaces.OADM;
 import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.ValuesCriteria;
 import com.github.anno4j.querying.evaluation.ldpath.LDPathEvaluator;
 import com.hp.hpl.jena.graph.NodeFactory;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.syntax.ElementData;
 import com.hp.hpl.jena.sparql.syntax.ElementGroup;
 import com.hp.hpl.jena.vocabulary.RDF;
 import org.apache.marmotta.ldpath.backend.sesame.SesameValueBackend;
 import org.apache.marmotta.ldpath.parser.LdPathParser;
 import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class EvalQuery {
 
     private static final Logger logger = LoggerFactory.getLogger(EvalQuery.class);
 
+    /**
+     * Name of the variable the matching annotations are bound to
+     */
+    public static final String ANNOTATION_VAR = "annotation";
+
     public static Query evaluate(ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
 
         Query query = QueryFactory.make();
         query.setQuerySelectType();
 
-        ElementGroup elementGroup = new ElementGroup();
+        Var annotationVar = Var.alloc(ANNOTATION_VAR);
+        ElementGroup elementGroup = createPattern(criteria, prefixes, annotationVar);
+
+        // Adding all generated patterns to the query object
+        query.setQueryPattern(elementGroup);
+
+        // Choose what we want so select - SELECT ?annotation in this case
+        query.addResultVar(annotationVar);
+        // Setting the default prefixes, like rdf: or dc:
+        query.getPrefixMapping().setNsPrefixes(prefixes);
+
+        return query;
+    }
 
-        Var annotationVar = Var.alloc("annotation");
+    /**
+     * Creates the pattern matching the annotations bound to the given variable. All other variables are generated, so
+     * the pattern can be combined with others.
+     */
+    static ElementGroup createPattern(ArrayList<Criteria> criteria, Map<String, String> prefixes, Var annotationVar) throws ParseException {
+        ElementGroup elementGroup = new ElementGroup();
 
         // Creating and adding the first triple - "?annotation rdf:type oa:Annotation
         Triple t1 = new Triple(annotationVar, RDF.type.asNode(), NodeFactory.createURI(OADM.ANNOTATION));
@@ -39,23 +66,34 @@ public class EvalQuery {
 
         // Evaluating the criteria
         for (Criteria c : criteria) {
+            if (c instanceof ValuesCriteria && c.getLdpath() == null) {
+                elementGroup.addElement(createValues(annotationVar, ((ValuesCriteria) c).getValues()));
+                continue;
+            }
+
             SesameValueBackend backend = new SesameValueBackend();
             LdPathParser parser = new LdPathParser(backend, new StringReader(c.getLdpath()));
             Var var = LDPathEvaluator.evaluate(parser.parseSelector(prefixes), elementGroup, annotationVar);
 
-            if (c.getConstraint() != null) {
+            if (c instanceof ValuesCriteria) {
+                elementGroup.addElement(createValues(var, ((ValuesCriteria) c).getValues()));
+            } else if (c.getConstraint() != null) {
                 EvalComparison.evaluate(elementGroup, c, var);
             }
         }
 
-        // Adding all generated patterns to the query object
-        query.setQueryPattern(elementGroup);
-
-        // Choose what we want so select - SELECT ?annotation in this case
-        query.addResultVar(annotationVar);
-        // Setting the default prefixes, like rdf: or dc:
-        query.getPrefixMapping().setNsPrefixes(prefixes);
+        return elementGroup;
+    }
 
-        return query;
+    /**
+     * Creates the VALUES block binding the variable to each of the values.
+     */
+    private static ElementData createValues(Var var, List<Value> values) {
+        ElementData data = new ElementData();
+        data.add(var);
+        for (Value value : values) {
+            data.add(BindingFactory.binding(var, EvalUpdate.asNode(value)));
+        }
+        return data;
     }
 }
\ No newline at end of file
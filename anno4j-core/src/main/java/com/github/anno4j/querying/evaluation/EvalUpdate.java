@@ -0,0 +1,187 @@
+package com.github.anno4j.querying.evaluation;
+
+import com.github.anno4j.model.namespaces.OADM;
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.evaluation.ldpath.LDPathEvaluator;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.shared.impl.PrefixMappingImpl;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.E_NotExists;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.modify.request.UpdateModify;
+import com.hp.hpl.jena.sparql.path.P_Alt;
+import com.hp.hpl.jena.sparql.path.P_Link;
+import com.hp.hpl.jena.sparql.path.P_Seq;
+import com.hp.hpl.jena.sparql.path.Path;
+import com.hp.hpl.jena.sparql.syntax.ElementBind;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementOptional;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementSubQuery;
+import com.hp.hpl.jena.sparql.syntax.ElementUnion;
+import com.hp.hpl.jena.update.UpdateRequest;
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.backend.sesame.SesameValueBackend;
+import org.apache.marmotta.ldpath.model.selectors.PathSelector;
+import org.apache.marmotta.ldpath.model.selectors.PropertySelector;
+import org.apache.marmotta.ldpath.parser.LdPathParser;
+import org.apache.marmotta.ldpath.parser.ParseException;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Creates SPARQL updates for all annotations matching the given criteria. The annotations are selected by the same
+ * query {@link com.github.anno4j.querying.evaluation.EvalQuery} creates, which is embedded as a sub-select.
+ */
+public class EvalUpdate {
+
+    /**
+     * Creates a DELETE query, removing all statements of the matching annotations and of their bodies, targets and
+     * the selectors of their targets. Bodies, targets and selectors, which are also part of an annotation not matching
+     * the criteria, are kept.
+     *
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL update
+     */
+    public static UpdateRequest evaluateDelete(ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Var annotationVar = Var.alloc(EvalQuery.ANNOTATION_VAR);
+        Var subject = Var.alloc(VarIDGenerator.createID());
+        Var predicate = Var.alloc(VarIDGenerator.createID());
+        Var object = Var.alloc(VarIDGenerator.createID());
+
+        ElementGroup elementGroup = createAnnotationGroup(criteria, prefixes);
+
+        Triple statement = new Triple(subject, predicate, object);
+
+        // The statements of the annotation itself
+        ElementGroup annotationStatements = new ElementGroup();
+        annotationStatements.addTriplePattern(new Triple(annotationVar, predicate, object));
+        annotationStatements.addElement(new ElementBind(subject, new ExprVar(annotationVar)));
+
+        // The statements of its body, target or the selector of its target
+        Path hasTarget = new P_Link(NodeFactory.createURI(OADM.HAS_TARGET));
+        Path parts = new P_Alt(new P_Alt(new P_Link(NodeFactory.createURI(OADM.HAS_BODY)), hasTarget), new P_Seq(hasTarget, new P_Link(NodeFactory.createURI(OADM.HAS_SELECTOR))));
+        ElementGroup partStatements = new ElementGroup();
+        ElementPathBlock epb = new ElementPathBlock();
+        epb.addTriple(new TriplePath(annotationVar, parts, subject));
+        partStatements.addElement(epb);
+        partStatements.addTriplePattern(statement);
+
+        // Unless the part is shared with another annotation not matching the criteria
+        Var other = Var.alloc(VarIDGenerator.createID());
+        ElementGroup shared = new ElementGroup();
+        ElementPathBlock otherParts = new ElementPathBlock();
+        otherParts.addTriple(new TriplePath(other, parts, subject));
+        shared.addElement(otherParts);
+        shared.addElementFilter(new ElementFilter(new E_NotExists(EvalQuery.createPattern(criteria, prefixes, other))));
+        partStatements.addElementFilter(new ElementFilter(new E_NotExists(shared)));
+
+        ElementUnion union = new ElementUnion();
+        union.addElement(annotationStatements);
+        union.addElement(partStatements);
+        elementGroup.addElement(union);
+
+        UpdateModify delete = new UpdateModify();
+        delete.getDeleteAcc().addTriple(statement);
+        delete.setHasDeleteClause(true);
+        delete.setElement(elementGroup);
+
+        return createRequest(delete, prefixes);
+    }
+
+    /**
+     * Creates a DELETE/INSERT query, replacing the values of a property of all matching annotations.
+     *
+     * @param ldpath   The LDPath to the property, beginning from the Annotation object. The last step has to be a property.
+     * @param value    The new value of the property
+     * @param criteria The criteria selecting the annotations
+     * @param prefixes The namespaces used in the LDPath expressions
+     * @return the SPARQL update
+     */
+    public static UpdateRequest evaluateUpdate(String ldpath, Value value, ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Var annotationVar = Var.alloc(EvalQuery.ANNOTATION_VAR);
+        Var oldValue = Var.alloc(VarIDGenerator.createID());
+
+        LdPathParser parser = new LdPathParser(new SesameValueBackend(), new StringReader(ldpath));
+        NodeSelector selector = parser.parseSelector(prefixes);
+
+        ElementGroup elementGroup = createAnnotationGroup(criteria, prefixes);
+
+        // Resolving the node, whose property is updated
+        Var subject = annotationVar;
+        PropertySelector property;
+        if (selector instanceof PathSelector && ((PathSelector) selector).getRight() instanceof PropertySelector) {
+            subject = LDPathEvaluator.evaluate(((PathSelector) selector).getLeft(), elementGroup, annotationVar);
+            property = (PropertySelector) ((PathSelector) selector).getRight();
+        } else if (selector instanceof PropertySelector) {
+            property = (PropertySelector) selector;
+        } else {
+            throw new IllegalStateException("The last step of the LDPath " + ldpath + " has to be a property.");
+        }
+        Node predicate = NodeFactory.createURI(property.getProperty().toString());
+
+        ElementGroup optionalGroup = new ElementGroup();
+        optionalGroup.addTriplePattern(new Triple(subject, predicate, oldValue));
+        elementGroup.addElement(new ElementOptional(optionalGroup));
+
+        UpdateModify update = new UpdateModify();
+        update.getDeleteAcc().addTriple(new Triple(subject, predicate, oldValue));
+        update.getInsertAcc().addTriple(new Triple(subject, predicate, asNode(value)));
+        update.setHasDeleteClause(true);
+        update.setHasInsertClause(true);
+        update.setElement(elementGroup);
+
+        return createRequest(update, prefixes);
+    }
+
+    /**
+     * Creates the WHERE group, binding the annotation variable by a sub-select of the matching annotations.
+     */
+    private static ElementGroup createAnnotationGroup(ArrayList<Criteria> criteria, Map<String, String> prefixes) throws ParseException {
+        Query select = EvalQuery.evaluate(criteria, prefixes);
+        select.setDistinct(true);
+        // The namespaces are declared by the update request, a sub-select must not declare them again
+        select.setPrefixMapping(new PrefixMappingImpl());
+
+        ElementGroup elementGroup = new ElementGroup();
+        elementGroup.addElement(new ElementSubQuery(select));
+        return elementGroup;
+    }
+
+    private static UpdateRequest createRequest(UpdateModify update, Map<String, String> prefixes) {
+        UpdateRequest request = new UpdateRequest();
+        request.getPrefixMapping().setNsPrefixes(prefixes);
+        request.add(update);
+        return request;
+    }
+
+    /**
+     * Converts an openrdf value to the corresponding Jena node.
+     */
+    static Node asNode(Value value) {
+        if (value instanceof URI) {
+            return NodeFactory.createURI(value.stringValue());
+        } else if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                return NodeFactory.createLiteral(literal.getLabel(), literal.getLanguage(), false);
+            } else if (literal.getDatatype() != null) {
+                return NodeFactory.createLiteral(literal.getLabel(), TypeMapper.getInstance().getSafeTypeByName(literal.getDatatype().stringValue()));
+            }
+            return NodeFactory.createLiteral(literal.getLabel());
+        }
+        throw new IllegalArgumentException(value + " is neither a URI nor a literal.");
+    }
+}
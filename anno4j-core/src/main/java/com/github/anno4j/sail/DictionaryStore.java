@@ -0,0 +1,113 @@
+package com.github.anno4j.sail;
+
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.helpers.SailBase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An in-memory {@link org.openrdf.sail.Sail} that keeps its data off the Java heap. Every value is stored once in
+ * a dictionary and referred to by an int id. The quads of these ids are indexed by subject, predicate and object in
+ * sorted runs. Lookups by type and by subject plus predicate, which make up the queries that Anno4j generates, are
+ * range scans over those runs.
+ * <p>
+ * Ids are ints to halve the size of the indexes. As every index run and the id tables are single buffers of at most
+ * 2 GB, the store holds up to about 134 million statements and 268 million distinct values.
+ * <p>
+ * Each commit publishes a new immutable snapshot of the indexes. A query reads the snapshot taken when it starts,
+ * so it does not block writers and is not blocked by them. Like in the MemoryStore, one transaction at a time can
+ * write: a connection waits for the write lock at its first change and keeps it until it commits or rolls back, so
+ * removals always see the latest commit. The store does not persist its data.
+ * Use it with Anno4j like this:
+ * <pre>
+ * anno4j.setRepository(new SailRepository(new DictionaryStore()));
+ * </pre>
+ */
+public class DictionaryStore extends SailBase {
+
+    private final ValueDictionary dictionary = new ValueDictionary();
+
+    private final Map<String, String> namespaces = new LinkedHashMap<String, String>();
+
+    private volatile QuadSnapshot snapshot = QuadSnapshot.EMPTY;
+
+    /**
+     * Held by the connection whose transaction writes. A semaphore, as a transaction may end on another thread.
+     */
+    private final Semaphore writeLock = new Semaphore(1);
+
+    @Override
+    protected void shutDownInternal() throws SailException {
+        snapshot = QuadSnapshot.EMPTY;
+        dictionary.clear();
+        synchronized (namespaces) {
+            namespaces.clear();
+        }
+    }
+
+    @Override
+    protected SailConnection getConnectionInternal() throws SailException {
+        return new DictionaryStoreConnection(this);
+    }
+
+    @Override
+    public boolean isWritable() throws SailException {
+        return true;
+    }
+
+    @Override
+    public ValueFactory getValueFactory() {
+        return ValueFactoryImpl.getInstance();
+    }
+
+    /**
+     * @return the number of distinct values stored
+     */
+    public int getValueCount() {
+        return dictionary.size();
+    }
+
+    ValueDictionary getDictionary() {
+        return dictionary;
+    }
+
+    Map<String, String> getNamespaces() {
+        return namespaces;
+    }
+
+    QuadSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Waits until no other transaction writes.
+     */
+    void lockWrites() throws SailException {
+        try {
+            writeLock.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SailException(e);
+        }
+    }
+
+    void unlockWrites() {
+        writeLock.release();
+    }
+
+    /**
+     * Publishes a snapshot with the changes of a transaction.
+     *
+     * @param quads the ids of the changed quads in subject, predicate, object, context order
+     * @param added 1 for every quad that is added, 0 for every quad that is removed
+     * @param count the number of changed quads, which must be distinct
+     */
+    synchronized void commit(int[] quads, byte[] added, int count) {
+        snapshot = snapshot.with(quads, added, count);
+    }
+}
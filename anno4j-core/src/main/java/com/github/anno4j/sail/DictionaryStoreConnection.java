@@ -0,0 +1,455 @@
+package com.github.anno4j.sail;
+
+import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.CloseableIteratorIteration;
+import info.aduna.iteration.LookAheadIteration;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.NamespaceImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.algebra.QueryRoot;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.evaluation.EvaluationStrategy;
+import org.openrdf.query.algebra.evaluation.TripleSource;
+import org.openrdf.query.algebra.evaluation.impl.BindingAssigner;
+import org.openrdf.query.algebra.evaluation.impl.CompareOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.ConjunctiveConstraintSplitter;
+import org.openrdf.query.algebra.evaluation.impl.ConstantOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.DisjunctiveConstraintOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.openrdf.query.algebra.evaluation.impl.EvaluationStrategyImpl;
+import org.openrdf.query.algebra.evaluation.impl.FilterOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.IterativeEvaluationOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.OrderLimitOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.QueryJoinOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.QueryModelNormalizer;
+import org.openrdf.query.algebra.evaluation.impl.SameTermFilterOptimizer;
+import org.openrdf.query.impl.EmptyBindingSet;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.helpers.SailConnectionBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A connection to a {@link DictionaryStore}. The changes of a transaction are kept on the heap and are visible to
+ * this connection only, until the commit publishes them to the store at once. A transaction holds the write lock of
+ * the store from its first change to its end.
+ */
+class DictionaryStoreConnection extends SailConnectionBase {
+
+    private final DictionaryStore store;
+
+    private final ValueDictionary dictionary;
+
+    /**
+     * The quads added (true) and removed (false) by the active transaction
+     */
+    private final Map<Quad, Boolean> changes = new LinkedHashMap<Quad, Boolean>();
+
+    /**
+     * Whether the active transaction holds the write lock of the store
+     */
+    private boolean writing = false;
+
+    DictionaryStoreConnection(DictionaryStore store) {
+        super(store);
+        this.store = store;
+        this.dictionary = store.getDictionary();
+    }
+
+    @Override
+    protected CloseableIteration<? extends BindingSet, QueryEvaluationException> evaluateInternal(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings, boolean includeInferred) throws SailException {
+        tupleExpr = tupleExpr.clone();
+        if (!(tupleExpr instanceof QueryRoot)) {
+            tupleExpr = new QueryRoot(tupleExpr);
+        }
+        final QuadSnapshot snapshot = store.getSnapshot();
+        TripleSource source = new TripleSource() {
+            @Override
+            public CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(Resource subj, URI pred, Value obj, Resource... contexts) throws QueryEvaluationException {
+                return statements(snapshot, subj, pred, obj, contexts);
+            }
+
+            @Override
+            public ValueFactory getValueFactory() {
+                return store.getValueFactory();
+            }
+        };
+        try {
+            EvaluationStrategy strategy = new EvaluationStrategyImpl(source, dataset);
+            new BindingAssigner().optimize(tupleExpr, dataset, bindings);
+            new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
+            new CompareOptimizer().optimize(tupleExpr, dataset, bindings);
+            new ConjunctiveConstraintSplitter().optimize(tupleExpr, dataset, bindings);
+            new DisjunctiveConstraintOptimizer().optimize(tupleExpr, dataset, bindings);
+            new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
+            new QueryModelNormalizer().optimize(tupleExpr, dataset, bindings);
+            new QueryJoinOptimizer(new Statistics(snapshot)).optimize(tupleExpr, dataset, bindings);
+            new IterativeEvaluationOptimizer().optimize(tupleExpr, dataset, bindings);
+            new FilterOptimizer().optimize(tupleExpr, dataset, bindings);
+            new OrderLimitOptimizer().optimize(tupleExpr, dataset, bindings);
+            return strategy.evaluate(tupleExpr, EmptyBindingSet.getInstance());
+        } catch (QueryEvaluationException e) {
+            throw new SailException(e);
+        }
+    }
+
+    @Override
+    protected CloseableIteration<? extends Resource, SailException> getContextIDsInternal() throws SailException {
+        Set<Resource> contexts = new HashSet<Resource>();
+        StatementIteration<SailException> statements = statements(store.getSnapshot(), null, null, null);
+        try {
+            while (statements.hasNext()) {
+                Resource context = statements.next().getContext();
+                if (context != null) {
+                    contexts.add(context);
+                }
+            }
+        } finally {
+            statements.close();
+        }
+        return new CloseableIteratorIteration<Resource, SailException>(contexts.iterator());
+    }
+
+    @Override
+    protected CloseableIteration<? extends Statement, SailException> getStatementsInternal(Resource subj, URI pred, Value obj, boolean includeInferred, Resource... contexts) throws SailException {
+        return statements(store.getSnapshot(), subj, pred, obj, contexts);
+    }
+
+    @Override
+    protected long sizeInternal(Resource... contexts) throws SailException {
+        long size = 0;
+        StatementIteration<SailException> statements = statements(store.getSnapshot(), null, null, null, contexts);
+        try {
+            while (statements.hasNext()) {
+                statements.next();
+                size++;
+            }
+        } finally {
+            statements.close();
+        }
+        return size;
+    }
+
+    @Override
+    protected void startTransactionInternal() throws SailException {
+        changes.clear();
+    }
+
+    @Override
+    protected void commitInternal() throws SailException {
+        try {
+            publish();
+        } finally {
+            endWrite();
+        }
+    }
+
+    private void publish() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        int count = changes.size();
+        int[] quads = new int[4 * count];
+        byte[] added = new byte[count];
+        int i = 0;
+        for (Map.Entry<Quad, Boolean> change : changes.entrySet()) {
+            System.arraycopy(change.getKey().ids, 0, quads, 4 * i, 4);
+            added[i++] = (byte) (change.getValue() ? 1 : 0);
+        }
+        store.commit(quads, added, count);
+        changes.clear();
+    }
+
+    @Override
+    protected void rollbackInternal() throws SailException {
+        changes.clear();
+        endWrite();
+    }
+
+    @Override
+    protected void closeInternal() throws SailException {
+        changes.clear();
+        endWrite();
+    }
+
+    private void beginWrite() throws SailException {
+        if (!writing) {
+            store.lockWrites();
+            writing = true;
+        }
+    }
+
+    private void endWrite() {
+        if (writing) {
+            writing = false;
+            store.unlockWrites();
+        }
+    }
+
+    @Override
+    protected void addStatementInternal(Resource subj, URI pred, Value obj, Resource... contexts) throws SailException {
+        beginWrite();
+        int s = dictionary.store(subj);
+        int p = dictionary.store(pred);
+        int o = dictionary.store(obj);
+        if (contexts.length == 0) {
+            changes.put(new Quad(s, p, o, 0), true);
+        }
+        for (Resource context : contexts) {
+            changes.put(new Quad(s, p, o, context == null ? 0 : dictionary.store(context)), true);
+        }
+    }
+
+    @Override
+    protected void removeStatementsInternal(Resource subj, URI pred, Value obj, Resource... contexts) throws SailException {
+        beginWrite();
+        List<Quad> removed = new ArrayList<Quad>();
+        StatementIteration<SailException> statements = statements(store.getSnapshot(), subj, pred, obj, contexts);
+        try {
+            while (statements.hasNext()) {
+                statements.next();
+                removed.add(statements.current);
+            }
+        } finally {
+            statements.close();
+        }
+        for (Quad quad : removed) {
+            changes.put(quad, false);
+        }
+    }
+
+    @Override
+    protected void clearInternal(Resource... contexts) throws SailException {
+        removeStatementsInternal(null, null, null, contexts);
+    }
+
+    @Override
+    protected CloseableIteration<? extends Namespace, SailException> getNamespacesInternal() throws SailException {
+        List<Namespace> namespaces = new ArrayList<Namespace>();
+        synchronized (store.getNamespaces()) {
+            for (Map.Entry<String, String> namespace : store.getNamespaces().entrySet()) {
+                namespaces.add(new NamespaceImpl(namespace.getKey(), namespace.getValue()));
+            }
+        }
+        return new CloseableIteratorIteration<Namespace, SailException>(namespaces.iterator());
+    }
+
+    @Override
+    protected String getNamespaceInternal(String prefix) throws SailException {
+        synchronized (store.getNamespaces()) {
+            return store.getNamespaces().get(prefix);
+        }
+    }
+
+    @Override
+    protected void setNamespaceInternal(String prefix, String name) throws SailException {
+        synchronized (store.getNamespaces()) {
+            store.getNamespaces().put(prefix, name);
+        }
+    }
+
+    @Override
+    protected void removeNamespaceInternal(String prefix) throws SailException {
+        synchronized (store.getNamespaces()) {
+            store.getNamespaces().remove(prefix);
+        }
+    }
+
+    @Override
+    protected void clearNamespacesInternal() throws SailException {
+        synchronized (store.getNamespaces()) {
+            store.getNamespaces().clear();
+        }
+    }
+
+    private <X extends Exception> StatementIteration<X> statements(QuadSnapshot snapshot, Resource subj, URI pred, Value obj, Resource... contexts) {
+        int[] pattern = new int[]{id(subj), id(pred), id(obj), QuadIndex.ANY};
+        int[] graphs = null;
+        if (contexts.length > 0) {
+            int count = 0;
+            graphs = new int[contexts.length];
+            for (Resource context : contexts) {
+                int id = context == null ? 0 : id(context);
+                if (context == null || id != 0) {
+                    graphs[count++] = id;
+                }
+            }
+            graphs = Arrays.copyOf(graphs, count);
+            Arrays.sort(graphs);
+            if (graphs.length == 1) {
+                pattern[QuadIndex.CONTEXT] = graphs[0];
+            }
+        }
+        return new StatementIteration<X>(snapshot, pattern, graphs);
+    }
+
+    /**
+     * @return the id of the value, {@link QuadIndex#ANY} for null and 0 for unknown values
+     */
+    private int id(Value value) {
+        return value == null ? QuadIndex.ANY : dictionary.lookup(value);
+    }
+
+    /**
+     * Statements matching a pattern, read from a snapshot and from the changes of the active transaction.
+     */
+    private class StatementIteration<X extends Exception> extends LookAheadIteration<Statement, X> {
+
+        private final QuadCursor cursor;
+
+        private final int[] pattern;
+
+        /**
+         * The sorted ids of the contexts to read from, null to read from all
+         */
+        private final int[] contexts;
+
+        private final Iterator<Quad> added;
+
+        /**
+         * The quad of the statement returned last
+         */
+        Quad current;
+
+        StatementIteration(QuadSnapshot snapshot, int[] pattern, int[] contexts) {
+            this.pattern = pattern;
+            this.contexts = contexts;
+            if (matchesNothing()) {
+                cursor = null;
+                added = null;
+                return;
+            }
+            cursor = snapshot.cursor(pattern);
+            List<Quad> pending = new ArrayList<Quad>();
+            for (Map.Entry<Quad, Boolean> change : changes.entrySet()) {
+                if (change.getValue() && matches(change.getKey().ids)) {
+                    pending.add(change.getKey());
+                }
+            }
+            added = pending.iterator();
+        }
+
+        @Override
+        protected Statement getNextElement() throws X {
+            if (cursor == null) {
+                return null;
+            }
+            while (cursor.next()) {
+                int[] quad = cursor.quad;
+                if (contexts != null && Arrays.binarySearch(contexts, quad[QuadIndex.CONTEXT]) < 0) {
+                    continue;
+                }
+                Quad key = new Quad(quad[0], quad[1], quad[2], quad[3]);
+                if (!changes.isEmpty() && changes.containsKey(key)) {
+                    continue;
+                }
+                return statement(key);
+            }
+            return added.hasNext() ? statement(added.next()) : null;
+        }
+
+        private boolean matchesNothing() {
+            for (int i = 0; i < 3; i++) {
+                if (pattern[i] == 0) {
+                    return true;
+                }
+            }
+            return contexts != null && contexts.length == 0;
+        }
+
+        private boolean matches(int[] quad) {
+            for (int i = 0; i < 3; i++) {
+                if (pattern[i] != QuadIndex.ANY && pattern[i] != quad[i]) {
+                    return false;
+                }
+            }
+            return contexts == null || Arrays.binarySearch(contexts, quad[QuadIndex.CONTEXT]) >= 0;
+        }
+
+        private Statement statement(Quad quad) {
+            current = quad;
+            int[] ids = quad.ids;
+            Resource subj = (Resource) dictionary.value(ids[0]);
+            URI pred = (URI) dictionary.value(ids[1]);
+            Value obj = dictionary.value(ids[2]);
+            if (ids[3] == 0) {
+                return new StatementImpl(subj, pred, obj);
+            }
+            return new ContextStatementImpl(subj, pred, obj, (Resource) dictionary.value(ids[3]));
+        }
+    }
+
+    /**
+     * Estimates the cardinality of statement patterns by the size of their ranges in the indexes.
+     */
+    private class Statistics extends EvaluationStatistics {
+
+        private final QuadSnapshot snapshot;
+
+        Statistics(QuadSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected CardinalityCalculator createCardinalityCalculator() {
+            return new CardinalityCalculator() {
+                @Override
+                protected double getCardinality(StatementPattern sp) {
+                    int[] pattern = new int[]{
+                            id(sp.getSubjectVar()), id(sp.getPredicateVar()), id(sp.getObjectVar()), id(sp.getContextVar())
+                    };
+                    for (int id : pattern) {
+                        if (id == 0) {
+                            return 0;
+                        }
+                    }
+                    return snapshot.estimate(pattern);
+                }
+            };
+        }
+
+        private int id(Var var) {
+            return var == null || !var.hasValue() ? QuadIndex.ANY : dictionary.lookup(var.getValue());
+        }
+    }
+
+    /**
+     * The ids of a changed statement in subject, predicate, object, context order.
+     */
+    private static final class Quad {
+
+        final int[] ids;
+
+        Quad(int subj, int pred, int obj, int context) {
+            ids = new int[]{subj, pred, obj, context};
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Quad && Arrays.equals(ids, ((Quad) o).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(ids);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.anno4j.sail;
+
+/**
+ * Walks the matching entries of the runs of an index in order, skipping the entries replaced by newer runs and the
+ * quads that are removed.
+ */
+final class QuadCursor {
+
+    private final int[] order;
+    private final QuadRun[] runs;
+    private final int[] positions;
+    private final int[] ends;
+    private final int[] pattern;
+    private final int[] key = new int[4];
+
+    /**
+     * The current quad in subject, predicate, object, context order
+     */
+    final int[] quad = new int[4];
+
+    QuadCursor(int[] order, QuadRun[] runs, int[] positions, int[] ends, int[] pattern) {
+        this.order = order;
+        this.runs = runs;
+        this.positions = positions;
+        this.ends = ends;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Moves to the next matching quad.
+     *
+     * @return false if there is none
+     */
+    boolean next() {
+        while (true) {
+            int newest = -1;
+            for (int i = runs.length - 1; i >= 0; i--) {
+                if (positions[i] < ends[i] && (newest < 0 || runs[i].compare(positions[i], key, 4) < 0)) {
+                    newest = i;
+                    runs[i].read(positions[i], key);
+                }
+            }
+            if (newest < 0) {
+                return false;
+            }
+            boolean added = runs[newest].isAdded(positions[newest]);
+            for (int i = 0; i < runs.length; i++) {
+                if (positions[i] < ends[i] && runs[i].compare(positions[i], key, 4) == 0) {
+                    positions[i]++;
+                }
+            }
+            if (added && matches()) {
+                return true;
+            }
+        }
+    }
+
+    private boolean matches() {
+        for (int i = 0; i < 4; i++) {
+            int component = order[i];
+            quad[component] = key[i];
+            if (pattern[component] != QuadIndex.ANY && pattern[component] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
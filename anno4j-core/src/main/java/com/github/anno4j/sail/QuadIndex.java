@@ -0,0 +1,104 @@
+package com.github.anno4j.sail;
+
+/**
+ * An immutable index of quads in one component order, made of sorted runs from the oldest to the newest. Adding a
+ * run merges it with the runs before it while they are not much larger, so an index of n quads has no more than
+ * about log(n) runs and every quad is copied about log(n) times.
+ */
+final class QuadIndex {
+
+    static final int SUBJECT = 0;
+    static final int PREDICATE = 1;
+    static final int OBJECT = 2;
+    static final int CONTEXT = 3;
+
+    /**
+     * Marks an unbound component of a pattern
+     */
+    static final int ANY = -1;
+
+    /**
+     * The component of the quads at every position of this index
+     */
+    final int[] order;
+
+    private final QuadRun[] runs;
+
+    QuadIndex(int... order) {
+        this(order, new QuadRun[0]);
+    }
+
+    private QuadIndex(int[] order, QuadRun[] runs) {
+        this.order = order;
+        this.runs = runs;
+    }
+
+    /**
+     * @return an index with the changes of one transaction added
+     */
+    QuadIndex with(int[] quads, byte[] added, int count) {
+        QuadRun[] runs = new QuadRun[this.runs.length + 1];
+        System.arraycopy(this.runs, 0, runs, 0, this.runs.length);
+        int n = runs.length;
+        runs[n - 1] = QuadRun.sort(quads, added, count, order);
+        while (n >= 2 && runs[n - 2].size <= 2 * runs[n - 1].size) {
+            runs[n - 2] = QuadRun.merge(runs[n - 2], runs[n - 1], n == 2);
+            n--;
+        }
+        if (n == 1 && runs[0].size == 0) {
+            n = 0;
+        }
+        QuadRun[] merged = new QuadRun[n];
+        System.arraycopy(runs, 0, merged, 0, n);
+        return new QuadIndex(order, merged);
+    }
+
+    /**
+     * @return the number of leading components of this index that are bound in the pattern
+     */
+    int prefix(int[] pattern) {
+        int length = 0;
+        while (length < 4 && pattern[order[length]] != ANY) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * @return the quads that match the pattern, in subject, predicate, object, context order with {@link #ANY} for
+     * unbound components
+     */
+    QuadCursor cursor(int[] pattern) {
+        int length = prefix(pattern);
+        int[] key = key(pattern, length);
+        int[] from = new int[runs.length];
+        int[] to = new int[runs.length];
+        for (int i = 0; i < runs.length; i++) {
+            from[i] = runs[i].lowerBound(key, length);
+            to[i] = runs[i].upperBound(key, length);
+        }
+        return new QuadCursor(order, runs, from, to, pattern);
+    }
+
+    /**
+     * @return the number of entries with the leading bound components of the pattern, which counts removed and
+     * replaced quads too
+     */
+    long estimate(int[] pattern) {
+        int length = prefix(pattern);
+        int[] key = key(pattern, length);
+        long count = 0;
+        for (QuadRun run : runs) {
+            count += run.upperBound(key, length) - run.lowerBound(key, length);
+        }
+        return count;
+    }
+
+    private int[] key(int[] pattern, int length) {
+        int[] key = new int[4];
+        for (int i = 0; i < length; i++) {
+            key[i] = pattern[order[i]];
+        }
+        return key;
+    }
+}
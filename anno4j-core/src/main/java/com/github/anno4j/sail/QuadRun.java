@@ -0,0 +1,228 @@
+package com.github.anno4j.sail;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * An immutable sorted run of quad ids in the order of one index, each marked as added or removed. Small runs are
+ * kept on the heap, larger ones in off-heap memory.
+ */
+final class QuadRun {
+
+    /**
+     * Number of entries up to which a run is kept on the heap
+     */
+    static final int SMALL = 4096;
+
+    static final QuadRun EMPTY = new QuadRun(IntBuffer.allocate(0), ByteBuffer.allocate(0), 0);
+
+    /**
+     * Four ids per entry, in the order of the index
+     */
+    private final IntBuffer keys;
+
+    /**
+     * 1 if the entry adds its quad, 0 if it removes it
+     */
+    private final ByteBuffer added;
+
+    final int size;
+
+    private QuadRun(IntBuffer keys, ByteBuffer added, int size) {
+        this.keys = keys;
+        this.added = added;
+        this.size = size;
+    }
+
+    int get(int entry, int component) {
+        return keys.get(4 * entry + component);
+    }
+
+    boolean isAdded(int entry) {
+        return added.get(entry) != 0;
+    }
+
+    /**
+     * @return negative, zero or positive as the first {@code length} ids of the entry are before, equal to or
+     * after those of the key
+     */
+    int compare(int entry, int[] key, int length) {
+        int base = 4 * entry;
+        for (int i = 0; i < length; i++) {
+            int id = keys.get(base + i);
+            if (id != key[i]) {
+                return id < key[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the first entry whose first {@code length} ids are not before those of the key
+     */
+    int lowerBound(int[] key, int length) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key, length) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first entry whose first {@code length} ids are after those of the key
+     */
+    int upperBound(int[] key, int length) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, key, length) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Creates a run of the given quads.
+     *
+     * @param quads the ids of the quads in subject, predicate, object, context order
+     * @param added 1 for every quad that is added, 0 for every quad that is removed
+     * @param count the number of quads, which must be distinct
+     * @param order the component of the quads at every position of the index
+     */
+    static QuadRun sort(int[] quads, byte[] added, int count, int[] order) {
+        int[] entries = new int[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = i;
+        }
+        int[] keys = new int[4 * count];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 4; j++) {
+                keys[4 * i + j] = quads[4 * i + order[j]];
+            }
+        }
+        mergeSort(entries, new int[count], 0, count, keys);
+
+        Builder builder = new Builder(count);
+        for (int entry : entries) {
+            builder.add(keys, 4 * entry, added[entry] != 0);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Merges two runs, the entries of the newer one replacing those of the older one.
+     *
+     * @param dropRemoved whether the result has no older run, so removed entries can be dropped
+     */
+    static QuadRun merge(QuadRun older, QuadRun newer, boolean dropRemoved) {
+        Builder builder = new Builder(older.size + newer.size);
+        int[] key = new int[4];
+        int i = 0;
+        int j = 0;
+        while (i < older.size || j < newer.size) {
+            QuadRun run;
+            int entry;
+            if (j == newer.size) {
+                run = older;
+                entry = i++;
+            } else {
+                newer.read(j, key);
+                int comparison = i == older.size ? 1 : older.compare(i, key, 4);
+                if (comparison < 0) {
+                    run = older;
+                    entry = i++;
+                } else {
+                    if (comparison == 0) {
+                        i++;
+                    }
+                    run = newer;
+                    entry = j++;
+                }
+            }
+            boolean isAdded = run.isAdded(entry);
+            if (isAdded || !dropRemoved) {
+                run.read(entry, key);
+                builder.add(key, 0, isAdded);
+            }
+        }
+        return builder.build();
+    }
+
+    void read(int entry, int[] key) {
+        int base = 4 * entry;
+        for (int i = 0; i < 4; i++) {
+            key[i] = keys.get(base + i);
+        }
+    }
+
+    private static void mergeSort(int[] entries, int[] buffer, int from, int to, int[] keys) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(entries, buffer, from, middle, keys);
+        mergeSort(entries, buffer, middle, to, keys);
+        System.arraycopy(entries, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j == to || i < middle && compare(keys, buffer[i], buffer[j]) <= 0) {
+                entries[k] = buffer[i++];
+            } else {
+                entries[k] = buffer[j++];
+            }
+        }
+    }
+
+    private static int compare(int[] keys, int a, int b) {
+        for (int i = 0; i < 4; i++) {
+            int x = keys[4 * a + i];
+            int y = keys[4 * b + i];
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the entries of a new run in order.
+     */
+    private static final class Builder {
+        private final IntBuffer keys;
+        private final ByteBuffer added;
+        private int size;
+
+        Builder(int capacity) {
+            if (capacity <= SMALL) {
+                keys = IntBuffer.allocate(4 * capacity);
+                added = ByteBuffer.allocate(capacity);
+            } else {
+                keys = ValueDictionary.allocate(16L * capacity).asIntBuffer();
+                added = ValueDictionary.allocate(capacity);
+            }
+        }
+
+        void add(int[] key, int offset, boolean isAdded) {
+            for (int i = 0; i < 4; i++) {
+                keys.put(4 * size + i, key[offset + i]);
+            }
+            added.put(size, (byte) (isAdded ? 1 : 0));
+            size++;
+        }
+
+        QuadRun build() {
+            return size == 0 ? EMPTY : new QuadRun(keys, added, size);
+        }
+    }
+}
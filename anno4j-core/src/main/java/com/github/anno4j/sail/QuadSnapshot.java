@@ -0,0 +1,63 @@
+package com.github.anno4j.sail;
+
+/**
+ * An immutable state of the quads of a {@link DictionaryStore}, indexed by subject, predicate and object. Queries
+ * read from the snapshot taken when they start, so they never wait for and never see concurrent commits.
+ */
+final class QuadSnapshot {
+
+    static final QuadSnapshot EMPTY = new QuadSnapshot(new QuadIndex[]{
+            new QuadIndex(QuadIndex.SUBJECT, QuadIndex.PREDICATE, QuadIndex.OBJECT, QuadIndex.CONTEXT),
+            new QuadIndex(QuadIndex.PREDICATE, QuadIndex.OBJECT, QuadIndex.SUBJECT, QuadIndex.CONTEXT),
+            new QuadIndex(QuadIndex.OBJECT, QuadIndex.SUBJECT, QuadIndex.PREDICATE, QuadIndex.CONTEXT)
+    });
+
+    private final QuadIndex[] indexes;
+
+    private QuadSnapshot(QuadIndex[] indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * @param quads the ids of the changed quads in subject, predicate, object, context order
+     * @param added 1 for every quad that is added, 0 for every quad that is removed
+     * @param count the number of changed quads, which must be distinct
+     * @return a snapshot with the changes applied
+     */
+    QuadSnapshot with(int[] quads, byte[] added, int count) {
+        QuadIndex[] indexes = new QuadIndex[this.indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = this.indexes[i].with(quads, added, count);
+        }
+        return new QuadSnapshot(indexes);
+    }
+
+    /**
+     * @param pattern the ids of the bound components in subject, predicate, object, context order, {@link
+     *                QuadIndex#ANY} for unbound ones
+     * @return the matching quads, read from the index with the most leading bound components
+     */
+    QuadCursor cursor(int[] pattern) {
+        return index(pattern).cursor(pattern);
+    }
+
+    /**
+     * @return an upper bound of the number of quads matching the pattern
+     */
+    long estimate(int[] pattern) {
+        return index(pattern).estimate(pattern);
+    }
+
+    private QuadIndex index(int[] pattern) {
+        QuadIndex best = indexes[0];
+        int length = best.prefix(pattern);
+        for (int i = 1; i < indexes.length; i++) {
+            int prefix = indexes[i].prefix(pattern);
+            if (prefix > length) {
+                best = indexes[i];
+                length = prefix;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,427 @@
+package com.github.anno4j.sail;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Assigns every RDF value a numeric id, starting at 1. The values are kept encoded in off-heap chunks and are
+ * found again by an open addressing hash table of their ids, also kept off-heap. The values created by
+ * {@link #value(int)} carry their id, so they are not looked up again when they are used in a query.
+ */
+class ValueDictionary {
+
+    private static final byte URI_TAG = 1;
+    private static final byte BNODE_TAG = 2;
+    private static final byte PLAIN_TAG = 3;
+    private static final byte LANG_TAG = 4;
+    private static final byte TYPED_TAG = 5;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Size of the off-heap chunks the encoded values are appended to
+     */
+    private static final int CHUNK_SIZE = 1 << 22;
+
+    /**
+     * Number of recently used values whose ids or decoded values are kept on the heap
+     */
+    private static final int RECENT = 1 << 12;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The encoded values, each as its length followed by its bytes
+     */
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * The chunk index (high 32 bits) and position (low 32 bits) of every id, at index id - 1
+     */
+    private volatile LongBuffer offsets = allocate(1024).asLongBuffer();
+
+    /**
+     * Ids by the hash of their encoded values, 0 marks a free slot
+     */
+    private IntBuffer table = allocate(4 * 2048).asIntBuffer();
+
+    private volatile int size;
+
+    private final ConcurrentMap<Value, Integer> ids = new ConcurrentHashMap<Value, Integer>();
+
+    private final Decoded[] decoded = new Decoded[RECENT];
+
+    /**
+     * @return the number of values
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the value or 0 if it has none
+     */
+    int lookup(Value value) {
+        int id = cachedId(value);
+        if (id != 0) {
+            return id;
+        }
+        byte[] encoded = encode(value);
+        lock.readLock().lock();
+        try {
+            id = find(encoded, hash(encoded));
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (id != 0) {
+            cache(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the value, assigning a new one if it has none
+     */
+    int store(Value value) {
+        int id = cachedId(value);
+        if (id != 0) {
+            return id;
+        }
+        byte[] encoded = encode(value);
+        int hash = hash(encoded);
+        lock.writeLock().lock();
+        try {
+            id = find(encoded, hash);
+            if (id == 0) {
+                id = append(encoded);
+                insert(id, hash);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        cache(value, id);
+        return id;
+    }
+
+    /**
+     * @return the value of the id
+     */
+    Value value(int id) {
+        int slot = id & (RECENT - 1);
+        Decoded recent = decoded[slot];
+        if (recent != null && recent.id == id) {
+            return recent.value;
+        }
+        long offset = offsets.get(id - 1);
+        ByteBuffer chunk = chunks[(int) (offset >>> 32)];
+        int position = (int) offset;
+        byte[] bytes = new byte[chunk.getInt(position)];
+        ByteBuffer reader = chunk.duplicate();
+        reader.position(position + 4);
+        reader.get(bytes);
+        Value value = decode(bytes, id);
+        decoded[slot] = new Decoded(id, value);
+        return value;
+    }
+
+    /**
+     * Releases the memory of all values.
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            chunks = new ByteBuffer[0];
+            offsets = allocate(1024).asLongBuffer();
+            table = allocate(4 * 2048).asIntBuffer();
+            size = 0;
+            ids.clear();
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int cachedId(Value value) {
+        if (value instanceof Encoded) {
+            int id = ((Encoded) value).getId(this);
+            if (id != 0) {
+                return id;
+            }
+        }
+        Integer id = ids.get(value);
+        return id == null ? 0 : id;
+    }
+
+    private void cache(Value value, int id) {
+        if (ids.size() >= RECENT) {
+            ids.clear();
+        }
+        ids.put(value, id);
+    }
+
+    private int find(byte[] encoded, int hash) {
+        int mask = table.capacity() - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table.get(slot);
+            if (id == 0 || matches(id, encoded)) {
+                return id;
+            }
+        }
+    }
+
+    private boolean matches(int id, byte[] encoded) {
+        long offset = offsets.get(id - 1);
+        ByteBuffer chunk = chunks[(int) (offset >>> 32)];
+        int position = (int) offset;
+        if (chunk.getInt(position) != encoded.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (chunk.get(position + 4 + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(byte[] encoded) {
+        ByteBuffer[] chunks = this.chunks;
+        ByteBuffer chunk = chunks.length == 0 ? null : chunks[chunks.length - 1];
+        if (chunk == null || chunk.remaining() < 4 + encoded.length) {
+            chunk = allocate(Math.max(CHUNK_SIZE, 4 + encoded.length));
+            ByteBuffer[] grown = new ByteBuffer[chunks.length + 1];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            grown[chunks.length] = chunk;
+            chunks = grown;
+            this.chunks = grown;
+        }
+        long offset = ((long) (chunks.length - 1) << 32) | chunk.position();
+        chunk.putInt(encoded.length);
+        chunk.put(encoded);
+
+        int id = size + 1;
+        LongBuffer offsets = this.offsets;
+        if (id > offsets.capacity()) {
+            LongBuffer grown = allocate(16L * offsets.capacity()).asLongBuffer();
+            for (int i = 0; i < size; i++) {
+                grown.put(i, offsets.get(i));
+            }
+            offsets = grown;
+        }
+        offsets.put(id - 1, offset);
+        this.offsets = offsets;
+        size = id;
+        return id;
+    }
+
+    private void insert(int id, int hash) {
+        if (2 * size > table.capacity()) {
+            IntBuffer old = table;
+            table = allocate(8L * old.capacity()).asIntBuffer();
+            for (int i = 0; i < old.capacity(); i++) {
+                int other = old.get(i);
+                if (other != 0) {
+                    put(other, hash(other));
+                }
+            }
+        }
+        put(id, hash);
+    }
+
+    private void put(int id, int hash) {
+        int mask = table.capacity() - 1;
+        int slot = hash & mask;
+        while (table.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.put(slot, id);
+    }
+
+    private int hash(byte[] encoded) {
+        int hash = 1;
+        for (byte b : encoded) {
+            hash = 31 * hash + b;
+        }
+        return mix(hash);
+    }
+
+    private int hash(int id) {
+        long offset = offsets.get(id - 1);
+        ByteBuffer chunk = chunks[(int) (offset >>> 32)];
+        int position = (int) offset;
+        int length = chunk.getInt(position);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chunk.get(position + 4 + i);
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * Allocates an off-heap buffer in native byte order.
+     *
+     * @throws IllegalStateException if the size exceeds the 2 GB limit of a buffer
+     */
+    static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Buffer of " + bytes + " bytes exceeds the capacity of the store");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    static byte[] encode(Value value) {
+        ByteBuffer buffer;
+        if (value instanceof URI) {
+            byte[] uri = value.stringValue().getBytes(UTF8);
+            buffer = ByteBuffer.allocate(1 + uri.length).put(URI_TAG).put(uri);
+        } else if (value instanceof BNode) {
+            byte[] id = value.stringValue().getBytes(UTF8);
+            buffer = ByteBuffer.allocate(1 + id.length).put(BNODE_TAG).put(id);
+        } else if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            byte[] label = literal.getLabel().getBytes(UTF8);
+            if (literal.getLanguage() != null) {
+                byte[] language = literal.getLanguage().getBytes(UTF8);
+                buffer = ByteBuffer.allocate(5 + language.length + label.length).put(LANG_TAG)
+                        .putInt(language.length).put(language).put(label);
+            } else if (literal.getDatatype() != null) {
+                byte[] datatype = literal.getDatatype().stringValue().getBytes(UTF8);
+                buffer = ByteBuffer.allocate(5 + datatype.length + label.length).put(TYPED_TAG)
+                        .putInt(datatype.length).put(datatype).put(label);
+            } else {
+                buffer = ByteBuffer.allocate(1 + label.length).put(PLAIN_TAG).put(label);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown value type: " + value);
+        }
+        return buffer.array();
+    }
+
+    Value decode(byte[] bytes, int id) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte tag = buffer.get();
+        if (tag == URI_TAG) {
+            return new DictionaryURI(string(buffer, bytes.length - 1), this, id);
+        } else if (tag == BNODE_TAG) {
+            return new DictionaryBNode(string(buffer, bytes.length - 1), this, id);
+        } else if (tag == PLAIN_TAG) {
+            return new DictionaryLiteral(string(buffer, bytes.length - 1), this, id);
+        }
+        String qualifier = string(buffer, buffer.getInt());
+        String label = string(buffer, buffer.remaining());
+        if (tag == LANG_TAG) {
+            return new DictionaryLiteral(label, qualifier, this, id);
+        }
+        return new DictionaryLiteral(label, new URIImpl(qualifier), this, id);
+    }
+
+    private static String string(ByteBuffer buffer, int length) {
+        String string = new String(buffer.array(), buffer.position(), length, UTF8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * A value that knows its id in a dictionary
+     */
+    interface Encoded {
+
+        /**
+         * @return the id of this value in the dictionary or 0 if it is from another one
+         */
+        int getId(ValueDictionary dictionary);
+    }
+
+    static class DictionaryURI extends URIImpl implements Encoded {
+        private static final long serialVersionUID = 1L;
+        private final transient ValueDictionary dictionary;
+        private final int id;
+
+        DictionaryURI(String uri, ValueDictionary dictionary, int id) {
+            super(uri);
+            this.dictionary = dictionary;
+            this.id = id;
+        }
+
+        public int getId(ValueDictionary dictionary) {
+            return dictionary == this.dictionary ? id : 0;
+        }
+    }
+
+    static class DictionaryBNode extends BNodeImpl implements Encoded {
+        private static final long serialVersionUID = 1L;
+        private final transient ValueDictionary dictionary;
+        private final int id;
+
+        DictionaryBNode(String nodeId, ValueDictionary dictionary, int id) {
+            super(nodeId);
+            this.dictionary = dictionary;
+            this.id = id;
+        }
+
+        public int getId(ValueDictionary dictionary) {
+            return dictionary == this.dictionary ? id : 0;
+        }
+    }
+
+    static class DictionaryLiteral extends LiteralImpl implements Encoded {
+        private static final long serialVersionUID = 1L;
+        private final transient ValueDictionary dictionary;
+        private final int id;
+
+        DictionaryLiteral(String label, ValueDictionary dictionary, int id) {
+            super(label);
+            this.dictionary = dictionary;
+            this.id = id;
+        }
+
+        DictionaryLiteral(String label, String language, ValueDictionary dictionary, int id) {
+            super(label, language);
+            this.dictionary = dictionary;
+            this.id = id;
+        }
+
+        DictionaryLiteral(String label, URI datatype, ValueDictionary dictionary, int id) {
+            super(label, datatype);
+            this.dictionary = dictionary;
+            this.id = id;
+        }
+
+        public int getId(ValueDictionary dictionary) {
+            return dictionary == this.dictionary ? id : 0;
+        }
+    }
+
+    private static class Decoded {
+        final int id;
+        final Value value;
+
+        Decoded(int id, Value value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
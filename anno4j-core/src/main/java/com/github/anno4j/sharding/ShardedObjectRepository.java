@@ -0,0 +1,115 @@
+package com.github.anno4j.sharding;
+
+import com.github.anno4j.model.Annotation;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.config.RepositoryConfigException;
+import org.openrdf.repository.object.ObjectRepository;
+import org.openrdf.repository.object.config.ObjectRepositoryFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Groups several repositories (shards) into one logical annotation store. Every annotation is owned by exactly one shard,
+ * which is selected by the configured {@link com.github.anno4j.sharding.ShardingStrategy}. Queries are sent to all shards
+ * in parallel by the {@link com.github.anno4j.querying.QueryService}.
+ */
+public class ShardedObjectRepository {
+
+    /**
+     * Alibaba wrappers of the configured shards.
+     */
+    private final List<ObjectRepository> shards;
+
+    /**
+     * Strategy deciding which shard owns an annotation.
+     */
+    private final ShardingStrategy shardingStrategy;
+
+    /**
+     * Executor used to query the shards concurrently.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor
+     * @param repositories openrdf/sesame repositories used as shards.
+     * @param shardingStrategy strategy deciding which shard owns an annotation.
+     * @throws RepositoryException
+     * @throws RepositoryConfigException
+     */
+    public ShardedObjectRepository(List<? extends Repository> repositories, ShardingStrategy shardingStrategy) throws RepositoryException, RepositoryConfigException {
+        if (repositories == null || repositories.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard repository is required.");
+        }
+
+        List<ObjectRepository> objectRepositories = new ArrayList<ObjectRepository>(repositories.size());
+        ObjectRepositoryFactory factory = new ObjectRepositoryFactory();
+        for (Repository repository : repositories) {
+            objectRepositories.add(factory.createRepository(repository));
+        }
+
+        this.shards = Collections.unmodifiableList(objectRepositories);
+        this.shardingStrategy = shardingStrategy;
+        this.executor = Executors.newFixedThreadPool(objectRepositories.size(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                // Daemon threads, so an unclosed sharded repository does not keep the JVM alive
+                Thread thread = new Thread(runnable, "anno4j-shard-query");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Getter for the shard owning the given annotation.
+     * @param annotation annotation to route.
+     * @return ObjectRepository of the owning shard.
+     */
+    public ObjectRepository getShard(Annotation annotation) {
+        int index = shardingStrategy.selectShard(annotation, shards.size());
+
+        if (index < 0 || index >= shards.size()) {
+            throw new IllegalStateException(shardingStrategy.getClass() + " selected shard " + index + " of " + shards.size() + " shards.");
+        }
+
+        return shards.get(index);
+    }
+
+    /**
+     * Getter for all configured shards.
+     * @return unmodifiable list of all shards.
+     */
+    public List<ObjectRepository> getShards() {
+        return shards;
+    }
+
+    /**
+     * Getter for the configured sharding strategy.
+     * @return configured sharding strategy.
+     */
+    public ShardingStrategy getShardingStrategy() {
+        return shardingStrategy;
+    }
+
+    /**
+     * Getter for the executor querying the shards concurrently.
+     * @return executor for scatter-gather queries.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Stops the query executor. The shard repositories themselves are not shut down.
+     */
+    public void shutDown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.anno4j.sharding;
+
+import com.github.anno4j.model.Annotation;
+
+/**
+ * Interface for sharding strategies. A sharding strategy decides which of the configured repositories owns an annotation.
+ */
+public interface ShardingStrategy {
+
+    /**
+     * Selects the shard the given annotation is written to.
+     * @param annotation annotation to route.
+     * @param shardCount number of configured shards.
+     * @return index of the owning shard, between 0 (inclusive) and shardCount (exclusive).
+     */
+    int selectShard(Annotation annotation, int shardCount);
+}
@@ -0,0 +1,22 @@
+package com.github.anno4j.sharding.impl;
+
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.sharding.ShardingStrategy;
+
+/**
+ * A ShardingStrategy distributing annotations by the hash of their resource, as generated by the configured IDGenerator.
+ */
+public class ResourceHashShardingStrategy implements ShardingStrategy {
+
+    /**
+     * Selects the shard by hashing the string value of the annotation resource.
+     * @param annotation annotation to route.
+     * @param shardCount number of configured shards.
+     * @return index of the owning shard.
+     */
+    @Override
+    public int selectShard(Annotation annotation, int shardCount) {
+        int hash = annotation.getResource().stringValue().hashCode();
+        return (hash & Integer.MAX_VALUE) % shardCount;
+    }
+}
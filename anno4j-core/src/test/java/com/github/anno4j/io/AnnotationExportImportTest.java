@@ -0,0 +1,178 @@
+package com.github.anno4j.io;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import com.github.anno4j.model.impl.selector.FragmentSelector;
+import com.github.anno4j.model.impl.target.SpecificResource;
+import com.github.anno4j.model.namespaces.OADM;
+import com.github.anno4j.querying.Comparison;
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.QueryService;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests the streaming export and import of annotations.
+ */
+public class AnnotationExportImportTest {
+
+    private Repository repository;
+
+    private URI graph1 = new URIImpl("http://www.example.com/GRAPH1");
+
+    private URI graph2 = new URIImpl("http://www.example.com/GRAPH2");
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        persist("Value1", graph1);
+        persist("Value2", graph1);
+        persist("Value3", graph2);
+    }
+
+    @Test
+    public void testRoundTripNTriples() throws Exception {
+        testRoundTrip(RDFFormat.NTRIPLES);
+    }
+
+    @Test
+    public void testRoundTripBinary() throws Exception {
+        testRoundTrip(RDFFormat.BINARY);
+    }
+
+    @Test
+    public void testExportCriteria() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new AnnotationExporter(repository)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .addCriteria(new Criteria("oa:hasBody/ex:value", "Value2", Comparison.EQ))
+                .export(out, RDFFormat.TURTLE);
+
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void testParallelGraphExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new AnnotationExporter(repository, graph1, graph2)
+                .setParallel(true)
+                .export(out, RDFFormat.NTRIPLES);
+
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testSharedTargetExportedOnce() throws Exception {
+        RepositoryConnection connection = repository.getConnection();
+        ValueFactory factory = connection.getValueFactory();
+        URI target = factory.createURI("http://www.example.com/sharedTarget");
+        URI related = factory.createURI("http://www.example.com/related");
+        URI value = factory.createURI("http://www.example.com/schema#value");
+        for (int i = 0; i < 2; i++) {
+            URI annotation = factory.createURI("http://www.example.com/sharing" + i);
+            connection.add(annotation, RDF.TYPE, factory.createURI(OADM.ANNOTATION));
+            connection.add(annotation, factory.createURI(OADM.HAS_TARGET), target);
+        }
+        connection.add(target, value, factory.createLiteral("shared"));
+        connection.add(target, RDFS.SEEALSO, related);
+        connection.add(related, value, factory.createLiteral("related"));
+        connection.close();
+
+        StatementCollector collector = new StatementCollector();
+        long count = new AnnotationExporter(repository).export(collector);
+        assertEquals(5, count);
+
+        int shared = 0;
+        for (Statement statement : collector.getStatements()) {
+            if (target.equals(statement.getSubject())) {
+                shared++;
+            }
+            assertFalse(related.equals(statement.getSubject()));
+        }
+        assertEquals(2, shared);
+    }
+
+    private void testRoundTrip(RDFFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new AnnotationExporter(repository).export(out, format);
+        assertEquals(3, count);
+
+        Repository target = new SailRepository(new MemoryStore());
+        target.initialize();
+        long statements = new AnnotationImporter(target)
+                .setBatchSize(5)
+                .importAnnotations(new ByteArrayInputStream(out.toByteArray()), "", format);
+
+        RepositoryConnection connection = repository.getConnection();
+        assertEquals(connection.size(), statements);
+        connection.close();
+
+        Anno4j.getInstance().setRepository(target);
+        QueryService<Annotation> queryService = Anno4j.getInstance().createQueryService(Annotation.class);
+        List<Annotation> annotations = queryService
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:value", "Value3")
+                .execute();
+
+        assertEquals(1, annotations.size());
+        assertEquals("Value3", ((ExportTestBody) annotations.get(0).getBody()).getValue());
+        assertEquals("xywh=1,2,3,4", ((FragmentSelector) ((SpecificResource) annotations.get(0).getTarget()).getSelector()).getValue());
+    }
+
+    private void persist(String value, URI graph) throws Exception {
+        Annotation annotation = new Annotation();
+        annotation.setBody(new ExportTestBody(value));
+
+        SpecificResource target = new SpecificResource();
+        target.setSelector(new FragmentSelector("xywh=1,2,3,4", null));
+        annotation.setTarget(target);
+
+        Anno4j.getInstance().createPersistenceService(graph).persistAnnotation(annotation);
+    }
+
+    @Iri("http://www.example.com/schema#exportBody")
+    public static class ExportTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#value")
+        private String value;
+
+        public ExportTestBody() {
+        }
+
+        public ExportTestBody(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.anno4j.io;
+
+import com.github.anno4j.sail.DictionaryStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests writing and restoring repository snapshots.
+ */
+public class RepositorySnapshotTest {
+
+    private static final String NS = "http://www.example.com/schema#";
+
+    private Repository repository;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        ValueFactory vf = repository.getValueFactory();
+        URI graph = vf.createURI(NS, "graph");
+
+        RepositoryConnection connection = repository.getConnection();
+        connection.setNamespace("ex", NS);
+        for (int i = 0; i < 100; i++) {
+            URI subject = vf.createURI(NS, "annotation" + i);
+            connection.add(subject, RDF.TYPE, vf.createURI(NS, "Annotation"), graph);
+            connection.add(subject, vf.createURI(NS, "body"), vf.createBNode("body" + i), graph);
+            connection.add(vf.createBNode("body" + i), RDF.VALUE, vf.createLiteral("Wert" + i, "de"), graph);
+            connection.add(subject, vf.createURI(NS, "index"), vf.createLiteral(String.valueOf(i), XMLSchema.INT));
+            connection.add(subject, RDF.VALUE, vf.createLiteral("Value" + i));
+        }
+        connection.close();
+
+        file = File.createTempFile("anno4j-snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertEquals(500, new RepositorySnapshot(repository).write(file));
+
+        Repository restored = new SailRepository(new MemoryStore());
+        restored.initialize();
+        assertEquals(500, new RepositorySnapshot(restored).setBatchSize(64).restore(file));
+        assertEquals(statements(repository), statements(restored));
+
+        RepositoryConnection connection = restored.getConnection();
+        assertEquals(NS, connection.getNamespace("ex"));
+        assertEquals(300, connection.size(repository.getValueFactory().createURI(NS, "graph")));
+        connection.close();
+    }
+
+    @Test
+    public void testRestoreDictionaryStore() throws Exception {
+        new RepositorySnapshot(repository).write(file);
+
+        Repository restored = new SailRepository(new DictionaryStore());
+        restored.initialize();
+        new RepositorySnapshot(restored).restore(file);
+        assertEquals(statements(repository), statements(restored));
+    }
+
+    @Test
+    public void testCorruptSnapshot() throws Exception {
+        new RepositorySnapshot(repository).write(file);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(file.length() / 2);
+        int b = randomAccessFile.read();
+        randomAccessFile.seek(file.length() / 2);
+        randomAccessFile.write(b ^ 1);
+        randomAccessFile.close();
+
+        Repository restored = new SailRepository(new MemoryStore());
+        restored.initialize();
+        try {
+            new RepositorySnapshot(restored).restore(file);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        RepositoryConnection connection = restored.getConnection();
+        assertEquals(0, connection.size());
+        connection.close();
+    }
+
+    @Test
+    public void testScheduledSnapshots() throws Exception {
+        file.delete();
+        RepositorySnapshot snapshot = new RepositorySnapshot(repository);
+        snapshot.scheduleSnapshots(file, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 500 && !file.exists(); i++) {
+            Thread.sleep(10);
+        }
+        snapshot.cancelSnapshots();
+        assertTrue(file.exists());
+
+        Repository restored = new SailRepository(new MemoryStore());
+        restored.initialize();
+        assertEquals(500, new RepositorySnapshot(restored).restore(file));
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final RepositorySnapshot snapshot = new RepositorySnapshot(repository);
+        final List<Exception> errors = new ArrayList<Exception>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 5; j++) {
+                            snapshot.write(file);
+                        }
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty());
+        assertEquals(1, file.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(file.getName()) || name.startsWith("." + file.getName());
+            }
+        }).length);
+
+        Repository restored = new SailRepository(new MemoryStore());
+        restored.initialize();
+        assertEquals(500, new RepositorySnapshot(restored).restore(file));
+    }
+
+    private Set<String> statements(Repository repository) throws Exception {
+        Set<String> statements = new HashSet<String>();
+        RepositoryConnection connection = repository.getConnection();
+        for (Statement statement : connection.getStatements(null, null, null, false).asList()) {
+            statements.add(statement.getSubject() + " " + statement.getPredicate() + " " + statement.getObject() + " " + statement.getContext());
+        }
+        connection.close();
+        return statements;
+    }
+}
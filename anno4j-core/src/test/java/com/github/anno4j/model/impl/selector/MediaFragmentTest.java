@@ -0,0 +1,77 @@
+package com.github.anno4j.model.impl.selector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests parsing and formatting of W3C media fragments
+ */
+public class MediaFragmentTest {
+
+    @Test
+    public void testSpatialTemporal() {
+        MediaFragment fragment = MediaFragment.parse("#xywh=10,20,100,50&t=npt:4.556,10.000");
+
+        assertNotNull(fragment);
+        assertTrue(fragment.hasSpatial());
+        assertTrue(fragment.hasTemporal());
+        assertEquals(10, fragment.getX());
+        assertEquals(20, fragment.getY());
+        assertEquals(100, fragment.getWidth());
+        assertEquals(50, fragment.getHeight());
+        assertEquals(4556, fragment.getStart());
+        assertEquals(10000, fragment.getEnd());
+    }
+
+    @Test
+    public void testTimeFormats() {
+        assertEquals(5500, MediaFragment.parse("t=5.5,10").getStart());
+        assertEquals(3723000, MediaFragment.parse("t=npt:1:02:03,1:02:04").getStart());
+        assertEquals(0, MediaFragment.parse("t=,10").getStart());
+        assertEquals(MediaFragment.UNDEFINED, MediaFragment.parse("t=10").getEnd());
+        assertEquals(1, MediaFragment.parse("xywh=pixel:1,2,3,4").getX());
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(MediaFragment.parse("xywh=percent:1,2,3,4"));
+        assertNull(MediaFragment.parse("t=10,5"));
+        assertNull(MediaFragment.parse("xywh=1,2,3"));
+        assertNull(MediaFragment.parse("page=2"));
+        assertNull(MediaFragment.parse(null));
+
+        MediaFragment fragment = MediaFragment.parse("xywh=a,2,3,4&t=1,2");
+        assertFalse(fragment.hasSpatial());
+        assertEquals(MediaFragment.UNDEFINED, fragment.getX());
+        assertTrue(fragment.hasTemporal());
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("#xywh=1,2,3,4", MediaFragment.formatSpatial(1, 2, 3, 4));
+        assertEquals("t=npt:4.556,10.005", MediaFragment.formatTemporal(4556, 10005));
+        assertEquals("#xywh=1,2,3,4&t=npt:0.000,1.500", MediaFragment.formatSpatialTemporal(1, 2, 3, 4, 0, 1500));
+
+        MediaFragment fragment = MediaFragment.parse(MediaFragment.formatSpatialTemporal(1, 2, 3, 4, 120, 130000));
+        assertEquals(120, fragment.getStart());
+        assertEquals(130000, fragment.getEnd());
+    }
+
+    @Test
+    public void testSelectorCache() {
+        FragmentSelector selector = new FragmentSelector(MediaFragment.formatTemporal(1000, 2000), FragmentSpecification.W3C_MEDIA_FRAGMENTS.toString());
+
+        MediaFragment fragment = selector.getMediaFragment();
+        assertEquals(1000, fragment.getStart());
+        assertSame(fragment, selector.getMediaFragment());
+
+        selector.setValue(MediaFragment.formatTemporal(3000, 4000));
+        assertEquals(3000, selector.getMediaFragment().getStart());
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.URI;
+import org.openrdf.repository.object.ObjectConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests writing the changes of persisted annotations.
+ */
+public class AnnotationUpdateTest {
+
+    private static final String EX = "http://www.example.com/schema#";
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        PersistenceService persistenceService = Anno4j.getInstance().createPersistenceService();
+        Annotation annotation = createAnnotation("Value1", "Author1");
+        persistenceService.persistAnnotation(annotation);
+
+        ((AnnotationUpdateTestBody) annotation.getBody()).setValue("Value2");
+        persistenceService.updateAnnotation(annotation);
+
+        assertEquals(0, count("Value1"));
+        assertEquals(1, count("Value2"));
+        assertEquals(1, countStatements(EX + "value"));
+        assertEquals(1, Anno4j.getInstance().createQueryService(Annotation.class).count());
+        assertEquals(1, countStatements(EX + "author"));
+    }
+
+    @Test
+    public void testUnchangedUpdate() throws Exception {
+        PersistenceService persistenceService = Anno4j.getInstance().createPersistenceService();
+        Annotation annotation = createAnnotation("Value1", "Author1");
+        persistenceService.persistAnnotation(annotation);
+        persistenceService.updateAnnotation(annotation);
+
+        assertEquals(1, count("Value1"));
+        assertEquals(1, countStatements(EX + "value"));
+    }
+
+    @Test
+    public void testUpdateNotPersisted() throws Exception {
+        Anno4j.getInstance().createPersistenceService().updateAnnotation(createAnnotation("Value1", null));
+
+        assertEquals(1, count("Value1"));
+    }
+
+    @Test
+    public void testWriteBehindUpdate() throws Exception {
+        WriteBehindPersistenceService persistenceService = new WriteBehindPersistenceService(Anno4j.getInstance().getObjectRepository(), null, null, 100, 100, 60000);
+        Annotation annotation = createAnnotation("Value1", null);
+        persistenceService.persistAnnotation(annotation);
+
+        ((AnnotationUpdateTestBody) annotation.getBody()).setValue("Value2");
+        persistenceService.updateAnnotation(annotation);
+
+        assertEquals(0, count("Value1"));
+        assertEquals(1, count("Value2"));
+        persistenceService.close();
+    }
+
+    private long count(String value) throws Exception {
+        return Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", EX)
+                .setBodyCriteria("ex:value", value)
+                .count();
+    }
+
+    private int countStatements(String predicate) throws Exception {
+        ObjectConnection connection = Anno4j.getInstance().getObjectRepository().getConnection();
+        try {
+            URI uri = connection.getValueFactory().createURI(predicate);
+            return connection.getStatements(null, uri, null).asList().size();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Annotation createAnnotation(String value, String author) {
+        Annotation annotation = new Annotation();
+        AnnotationUpdateTestBody body = new AnnotationUpdateTestBody();
+        body.setValue(value);
+        body.setAuthor(author);
+        annotation.setBody(body);
+        return annotation;
+    }
+
+    @Iri(EX + "AnnotationUpdateTestBody")
+    public static class AnnotationUpdateTestBody extends Body {
+
+        @Iri(EX + "value")
+        private String value;
+
+        @Iri(EX + "author")
+        private String author;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public void setAuthor(String author) {
+            this.author = author;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import com.github.anno4j.model.impl.selector.FragmentSelector;
+import com.github.anno4j.model.impl.target.SpecificResource;
+import com.github.anno4j.querying.Comparison;
+import com.github.anno4j.querying.Criteria;
+import com.github.anno4j.querying.QueryService;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests deleting and updating annotations by criteria.
+ */
+public class BulkUpdateTest {
+
+    private SailRepository repository;
+
+    private Annotation deleted;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        deleted = persist("Value1");
+        persist("Value2");
+        persist("Value2");
+        persist("Value3");
+    }
+
+    @Test
+    public void testDeleteWhere() throws Exception {
+        Anno4j.getInstance().createPersistenceService()
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .deleteWhere(new Criteria("oa:hasBody/ex:value", "Value1", Comparison.EQ));
+
+        assertEquals(3, query(null).size());
+        assertEquals(0, query("Value1").size());
+
+        RepositoryConnection connection = repository.getConnection();
+        assertFalse(connection.hasStatement(deleted.getResource(), null, null, false));
+        assertFalse(connection.hasStatement(deleted.getBody().getResource(), null, null, false));
+        assertFalse(connection.hasStatement(deleted.getTarget().getResource(), null, null, false));
+        assertFalse(connection.hasStatement(((SpecificResource) deleted.getTarget()).getSelector().getResource(), null, null, false));
+        connection.close();
+    }
+
+    @Test
+    public void testDeleteWhereKeepsSharedParts() throws Exception {
+        // Sharing the target and its selector with the deleted annotation
+        Annotation sharingTarget = new Annotation();
+        sharingTarget.setBody(new BulkTestBody("Kept"));
+        sharingTarget.setTarget(deleted.getTarget());
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(sharingTarget);
+
+        // Sharing the body with an annotation selected by its target
+        Annotation selected = persist("Shared", "xywh=5,6,7,8");
+        Annotation sharingBody = new Annotation();
+        sharingBody.setBody(selected.getBody());
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(sharingBody);
+
+        Anno4j.getInstance().createPersistenceService()
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .deleteWhere(new Criteria("oa:hasBody/ex:value", "Value1", Comparison.EQ));
+        Anno4j.getInstance().createPersistenceService()
+                .deleteWhere(new Criteria("oa:hasTarget/oa:hasSelector/rdf:value", "xywh=5,6,7,8", Comparison.EQ));
+
+        RepositoryConnection connection = repository.getConnection();
+        assertFalse(connection.hasStatement(deleted.getResource(), null, null, false));
+        assertFalse(connection.hasStatement(deleted.getBody().getResource(), null, null, false));
+        assertTrue(connection.hasStatement(deleted.getTarget().getResource(), null, null, false));
+        assertTrue(connection.hasStatement(((SpecificResource) deleted.getTarget()).getSelector().getResource(), null, null, false));
+
+        assertFalse(connection.hasStatement(selected.getResource(), null, null, false));
+        assertFalse(connection.hasStatement(selected.getTarget().getResource(), null, null, false));
+        assertTrue(connection.hasStatement(selected.getBody().getResource(), null, null, false));
+        connection.close();
+
+        assertEquals(1, query("Kept").size());
+        assertEquals(1, query("Shared").size());
+    }
+
+    @Test
+    public void testUpdateWhere() throws Exception {
+        Anno4j.getInstance().createPersistenceService()
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .updateWhere("oa:hasBody/ex:value", "Updated", new Criteria("oa:hasBody/ex:value", "Value2", Comparison.EQ));
+
+        assertEquals(0, query("Value2").size());
+        List<Annotation> updated = query("Updated");
+        assertEquals(2, updated.size());
+        assertEquals("Updated", ((BulkTestBody) updated.get(0).getBody()).getValue());
+        assertEquals(1, query("Value3").size());
+    }
+
+    private List<Annotation> query(String value) throws Exception {
+        QueryService<Annotation> queryService = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#");
+        if (value != null) {
+            queryService.setBodyCriteria("ex:value", value);
+        }
+        return queryService.execute();
+    }
+
+    private Annotation persist(String value) throws Exception {
+        return persist(value, "xywh=1,2,3,4");
+    }
+
+    private Annotation persist(String value, String fragment) throws Exception {
+        Annotation annotation = new Annotation();
+        annotation.setBody(new BulkTestBody(value));
+
+        SpecificResource target = new SpecificResource();
+        target.setSelector(new FragmentSelector(fragment, null));
+        annotation.setTarget(target);
+
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+        return annotation;
+    }
+
+    @Iri("http://www.example.com/schema#bulkBody")
+    public static class BulkTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#value")
+        private String value;
+
+        public BulkTestBody() {
+        }
+
+        public BulkTestBody(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.persistence.impl.IDGeneratorAnno4jURN;
+import com.github.anno4j.persistence.impl.IDGeneratorTimeOrdered;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of the IDGenerators with several threads. Not part of the test suite, run it with
+ * mvn exec:java -Dexec.mainClass=com.github.anno4j.persistence.IDGeneratorBenchmark -Dexec.classpathScope=test
+ */
+public class IDGeneratorBenchmark {
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final int IDS_PER_THREAD = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        IDGenerator[] generators = {new IDGeneratorAnno4jURN(), new IDGeneratorTimeOrdered()};
+
+        // The first round warms up the JIT
+        for (int round = 0; round < 3; round++) {
+            for (IDGenerator generator : generators) {
+                double idsPerSecond = measure(generator);
+                if (round > 0) {
+                    System.out.printf("%-25s %d threads: %,.0f IDs/sec%n", generator.getClass().getSimpleName(), THREADS, idsPerSecond);
+                }
+            }
+        }
+    }
+
+    private static double measure(final IDGenerator generator) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicLong checksum = new AtomicLong();
+
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long hash = 0;
+                        for (int i = 0; i < IDS_PER_THREAD; i++) {
+                            hash += generator.generateID().hashCode();
+                        }
+                        // Keeps the JIT from eliminating the generation
+                        checksum.addAndGet(hash);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        return (double) THREADS * IDS_PER_THREAD / elapsed * 1000000000L;
+    }
+}
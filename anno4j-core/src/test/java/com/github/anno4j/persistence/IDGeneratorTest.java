@@ -0,0 +1,99 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.persistence.impl.IDGeneratorTimeOrdered;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the generation and lazy assignment of resource identifiers
+ */
+public class IDGeneratorTest {
+
+    private final IDGenerator defaultGenerator = Anno4j.getInstance().getIdGenerator();
+
+    @After
+    public void tearDown() {
+        Anno4j.getInstance().setIdGenerator(defaultGenerator);
+    }
+
+    @Test
+    public void testTimeOrdered() {
+        IDGenerator generator = new IDGeneratorTimeOrdered();
+
+        String previous = generator.generateID().stringValue();
+        assertTrue(previous.matches("urn:anno4j:[0-9A-HJKMNP-TV-Z]{26}"));
+        for (int i = 0; i < 10000; i++) {
+            String next = generator.generateID().stringValue();
+            assertTrue(next.compareTo(previous) > 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        final IDGenerator generator = new IDGeneratorTimeOrdered("urn:test:");
+        final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (int i = 0; i < 25000; i++) {
+                        ids.add(generator.generateID().stringValue());
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(100000, ids.size());
+    }
+
+    @Test
+    public void testLazyAssignment() {
+        CountingGenerator generator = new CountingGenerator();
+        Anno4j.getInstance().setIdGenerator(generator);
+
+        Annotation annotation = new Annotation();
+        assertEquals(0, generator.count);
+
+        assertSame(annotation.getResource(), annotation.getResource());
+        assertEquals(annotation.getResource().stringValue(), annotation.getResourceAsString());
+        assertEquals(1, generator.count);
+    }
+
+    private static class CountingGenerator implements IDGenerator {
+
+        private final IDGenerator delegate = new IDGeneratorTimeOrdered();
+
+        private int count = 0;
+
+        @Override
+        public org.openrdf.model.Resource generateID() {
+            count++;
+            return delegate.generateID();
+        }
+    }
+}
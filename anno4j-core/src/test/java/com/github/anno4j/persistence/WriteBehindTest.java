@@ -0,0 +1,273 @@
+package com.github.anno4j.persistence;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import com.github.anno4j.model.namespaces.OADM;
+import com.github.anno4j.querying.Comparison;
+import com.github.anno4j.querying.Criteria;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.repository.object.ObjectRepository;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests writing annotations by background group commits.
+ */
+public class WriteBehindTest {
+
+    private File journal;
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        journal = File.createTempFile("anno4j-journal", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.delete();
+    }
+
+    @Test
+    public void testConcurrentPersist() throws Exception {
+        final WriteBehindPersistenceService persistenceService = Anno4j.getInstance().createWriteBehindPersistenceService(null, journal);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Exception> errors = new ArrayList<Exception>();
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 25; j++) {
+                            persistenceService.persistAnnotation(createAnnotation("Value" + thread));
+                        }
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        persistenceService.flush();
+        assertTrue(errors.isEmpty());
+        assertEquals(0, persistenceService.getPendingCount());
+        assertEquals(100, Anno4j.getInstance().createQueryService(Annotation.class).count());
+        assertEquals(25, Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:value", "Value2")
+                .count());
+
+        persistenceService.close();
+        assertEquals(0, journal.length());
+    }
+
+    @Test
+    public void testConcurrentConversion() throws Exception {
+        final WriteBehindPersistenceService persistenceService = new WriteBehindPersistenceService(Anno4j.getInstance().getObjectRepository(), null, null, 1000, 100, 60000);
+
+        // The producers start converting at the same time, each with its own in-memory repository
+        final CyclicBarrier start = new CyclicBarrier(8);
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Exception> errors = new ArrayList<Exception>();
+        for (int i = 0; i < 8; i++) {
+            final int thread = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 50; j++) {
+                            persistenceService.persistAnnotation(createAnnotation("Value" + thread + "-" + j));
+                        }
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        persistenceService.close();
+        assertTrue(errors.isEmpty());
+
+        // No annotation received the statements converted by another producer
+        RepositoryConnection connection = Anno4j.getInstance().getObjectRepository().getConnection();
+        try {
+            Set<String> values = new HashSet<String>();
+            RepositoryResult<Statement> result = connection.getStatements(null, new URIImpl("http://www.example.com/schema#value"), null, false);
+            while (result.hasNext()) {
+                values.add(result.next().getObject().stringValue());
+            }
+            result.close();
+            assertEquals(400, values.size());
+            assertEquals(400, connection.getStatements(null, new URIImpl(OADM.HAS_BODY), null, false).asList().size());
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        WriteBehindPersistenceService persistenceService = new WriteBehindPersistenceService(Anno4j.getInstance().getObjectRepository(), null, null, 100, 100, 60000);
+
+        persistenceService.persistAnnotation(createAnnotation("Value1"));
+        assertEquals(1, persistenceService.getPendingCount());
+        assertEquals(0, Anno4j.getInstance().createQueryService(Annotation.class).count());
+
+        persistenceService.flush();
+        assertEquals(1, Anno4j.getInstance().createQueryService(Annotation.class).count());
+        persistenceService.close();
+    }
+
+    @Test
+    public void testBulkUpdateFlushes() throws Exception {
+        WriteBehindPersistenceService persistenceService = new WriteBehindPersistenceService(Anno4j.getInstance().getObjectRepository(), null, null, 100, 100, 60000);
+
+        persistenceService.persistAnnotation(createAnnotation("Value1"));
+        persistenceService.persistAnnotation(createAnnotation("Value2"));
+        persistenceService.addPrefix("ex", "http://www.example.com/schema#")
+                .deleteWhere(new Criteria("oa:hasBody/ex:value", "Value1", Comparison.EQ));
+
+        assertEquals(1, Anno4j.getInstance().createQueryService(Annotation.class).count());
+        persistenceService.close();
+    }
+
+    @Test
+    public void testListener() throws Exception {
+        final AtomicInteger persisted = new AtomicInteger();
+        WriteBehindPersistenceService persistenceService = new WriteBehindPersistenceService(Anno4j.getInstance().getObjectRepository(), null, null, 100, 100, 60000);
+        persistenceService.addListener(new PersistenceListener() {
+            @Override
+            public void annotationPersisted(Annotation annotation, ObjectRepository repository, URI graph) {
+                persisted.incrementAndGet();
+            }
+
+            @Override
+            public void annotationsUpdated(ObjectRepository repository, URI graph) {
+            }
+        });
+
+        persistenceService.persistAnnotation(createAnnotation("Value1"));
+        assertEquals(0, persisted.get());
+
+        persistenceService.close();
+        assertEquals(1, persisted.get());
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        // The committer of the crashed service would wait for an hour
+        WriteBehindPersistenceService crashed = new WriteBehindPersistenceService(Anno4j.getInstance().getObjectRepository(), null, journal, 100, 100, 3600000);
+        Annotation annotation = createAnnotation("Value1");
+        crashed.persistAnnotation(annotation);
+        crashed.persistAnnotation(createAnnotation("Value2"));
+        assertFalse(journal.length() == 0);
+        assertEquals(0, Anno4j.getInstance().createQueryService(Annotation.class).count());
+
+        WriteBehindPersistenceService restarted = Anno4j.getInstance().createWriteBehindPersistenceService(null, journal);
+        assertEquals(0, journal.length());
+        List<Annotation> result = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:value", "Value1")
+                .execute();
+        assertEquals(1, result.size());
+        assertEquals(annotation.getResource(), result.get(0).getResource());
+        assertEquals(2, Anno4j.getInstance().createQueryService(Annotation.class).count());
+        restarted.close();
+    }
+
+    @Test
+    public void testJournalCompaction() throws Exception {
+        WriteBehindJournal writeBehindJournal = new WriteBehindJournal(journal, 1024);
+        List<Statement> statements = new ArrayList<Statement>();
+        statements.add(new StatementImpl(new URIImpl("urn:test:annotation"), new URIImpl(OADM.HAS_BODY), new URIImpl("urn:test:body")));
+
+        // The first record is committed last, e.g. queued after the second one
+        long first = writeBehindJournal.append(0, null, statements);
+        long second = writeBehindJournal.append(0, null, statements);
+        assertFalse(writeBehindJournal.checkpoint(Collections.singleton(second)));
+        assertTrue(writeBehindJournal.checkpoint(Collections.singleton(first)));
+        assertEquals(0, writeBehindJournal.size());
+
+        // Under constant load one record stays uncommitted, the committed prefix is compacted
+        long pending = writeBehindJournal.append(0, null, statements);
+        for (int i = 0; i < 200; i++) {
+            long next = writeBehindJournal.append(0, null, statements);
+            writeBehindJournal.checkpoint(Collections.singleton(pending));
+            pending = next;
+            assertTrue(writeBehindJournal.size() < 2048);
+        }
+        writeBehindJournal.close();
+
+        WriteBehindJournal reopened = new WriteBehindJournal(journal);
+        List<WriteBehindJournal.Record> records = reopened.read();
+        assertTrue(records.size() < 20);
+        assertEquals(statements, records.get(records.size() - 1).getStatements());
+        reopened.close();
+    }
+
+    private Annotation createAnnotation(String value) {
+        Annotation annotation = new Annotation();
+        WriteBehindTestBody body = new WriteBehindTestBody();
+        body.setValue(value);
+        annotation.setBody(body);
+        return annotation;
+    }
+
+    @Iri("http://www.example.com/schema#WriteBehindTestBody")
+    public static class WriteBehindTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#value")
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
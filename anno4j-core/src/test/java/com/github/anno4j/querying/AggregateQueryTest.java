@@ -0,0 +1,117 @@
+package com.github.anno4j.querying;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests counting and aggregating annotations without loading them
+ */
+public class AggregateQueryTest {
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        persist("Face", 0.5);
+        persist("Face", 0.75);
+        persist("Animal", 1.0);
+    }
+
+    @Test
+    public void countTest() throws Exception {
+        assertEquals(3, createQueryService().count());
+        assertEquals(2, createQueryService().setBodyCriteria("ex:label", "Face").count());
+        assertEquals(0, createQueryService().setBodyCriteria("ex:label", "Car").count());
+    }
+
+    @Test
+    public void existsTest() throws Exception {
+        assertTrue(createQueryService().setBodyCriteria("ex:label", "Animal").exists());
+        assertFalse(createQueryService().setBodyCriteria("ex:label", "Car").exists());
+    }
+
+    @Test
+    public void countByTest() throws Exception {
+        Map<String, Long> counts = createQueryService().countBy("oa:hasBody/ex:label");
+
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(2), counts.get("Face"));
+        assertEquals(Long.valueOf(1), counts.get("Animal"));
+    }
+
+    @Test
+    public void numericAggregateTest() throws Exception {
+        assertEquals(0.5, createQueryService().min("oa:hasBody/ex:confidence"), 0.0001);
+        assertEquals(1.0, createQueryService().max("oa:hasBody/ex:confidence"), 0.0001);
+        assertEquals(0.75, createQueryService().avg("oa:hasBody/ex:confidence"), 0.0001);
+        assertEquals(0.625, createQueryService().setBodyCriteria("ex:label", "Face").avg("oa:hasBody/ex:confidence"), 0.0001);
+        assertNull(createQueryService().setBodyCriteria("ex:label", "Car").avg("oa:hasBody/ex:confidence"));
+    }
+
+    @Test
+    public void valueAggregateTest() throws Exception {
+        assertEquals("Animal", createQueryService().minValue("oa:hasBody/ex:label").stringValue());
+        assertEquals("Face", createQueryService().maxValue("oa:hasBody/ex:label").stringValue());
+        assertNull(createQueryService().setBodyCriteria("ex:label", "Car").maxValue("oa:hasBody/ex:label"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonNumericAggregateTest() throws Exception {
+        createQueryService().max("oa:hasBody/ex:label");
+    }
+
+    private QueryService<Annotation> createQueryService() throws Exception {
+        return Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#");
+    }
+
+    private void persist(String label, double confidence) throws Exception {
+        Annotation annotation = new Annotation();
+        AggregateTestBody body = new AggregateTestBody();
+        body.setLabel(label);
+        body.setConfidence(confidence);
+        annotation.setBody(body);
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+    }
+
+    @Iri("http://www.example.com/schema#AggregateTestBody")
+    public static class AggregateTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#label")
+        String label;
+
+        @Iri("http://www.example.com/schema#confidence")
+        Double confidence;
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public Double getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(Double confidence) {
+            this.confidence = confidence;
+        }
+    }
+}
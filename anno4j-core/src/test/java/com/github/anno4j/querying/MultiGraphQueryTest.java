@@ -0,0 +1,154 @@
+package com.github.anno4j.querying;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
+import org.openrdf.repository.base.RepositoryWrapper;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests querying multiple graph contexts at once
+ */
+public class MultiGraphQueryTest {
+
+    URI graph1 = new URIImpl("http://www.example.com/GRAPH1");
+    URI graph2 = new URIImpl("http://www.example.com/GRAPH2");
+    URI graph3 = new URIImpl("http://www.example.com/GRAPH3");
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository memory = new SailRepository(new MemoryStore());
+        memory.initialize();
+        // Counts the connections not closed yet
+        Repository repository = new RepositoryWrapper(memory) {
+            @Override
+            public RepositoryConnection getConnection() throws RepositoryException {
+                openConnections.incrementAndGet();
+                return new RepositoryConnectionWrapper(this, getDelegate().getConnection()) {
+                    @Override
+                    public void close() throws RepositoryException {
+                        openConnections.decrementAndGet();
+                        super.close();
+                    }
+                };
+            }
+        };
+        Anno4j.getInstance().setRepository(repository);
+
+        persist(graph1, "Value1");
+        persist(graph2, "Value2");
+        persist(graph3, "Value3");
+
+        // The same annotation contained in two graphs
+        Annotation shared = createAnnotation("Shared");
+        Anno4j.getInstance().createPersistenceService(graph1).persistAnnotation(shared);
+        Anno4j.getInstance().createPersistenceService(graph2).persistAnnotation(shared);
+    }
+
+    @Test
+    public void datasetQueryTest() throws Exception {
+        List<Annotation> annotations = Anno4j.getInstance().createQueryService(Annotation.class, graph1, graph2)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:value")
+                .execute();
+
+        assertEquals(3, annotations.size());
+    }
+
+    @Test
+    public void parallelQueryTest() throws Exception {
+        List<Annotation> annotations = Anno4j.getInstance().createQueryService(Annotation.class, graph1, graph2)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:value")
+                .graphQueryMode(GraphQueryMode.PARALLEL)
+                .execute();
+
+        assertEquals(3, annotations.size());
+    }
+
+    @Test
+    public void parallelQueryOrderedLimitTest() throws Exception {
+        // A single query on the merged dataset returns the annotations in the order of the store
+        List<Annotation> annotations = Anno4j.getInstance().createQueryService(Annotation.class, graph1, graph2, graph3).execute();
+        List<String> all = new ArrayList<String>();
+        for (Annotation annotation : annotations) {
+            all.add(annotation.getResource().stringValue());
+        }
+        Collections.sort(all, Collections.reverseOrder());
+
+        List<Annotation> page = Anno4j.getInstance().createQueryService(Annotation.class, graph1, graph2, graph3)
+                .graphQueryMode(GraphQueryMode.PARALLEL)
+                .orderBy(Order.DESCENDING)
+                .offset(1)
+                .limit(2)
+                .execute();
+
+        assertEquals(4, all.size());
+        assertEquals(2, page.size());
+        assertEquals(all.get(1), page.get(0).getResource().stringValue());
+        assertEquals(all.get(2), page.get(1).getResource().stringValue());
+    }
+
+    @Test
+    public void connectionsClosedTest() throws Exception {
+        int open = openConnections.get();
+        for (GraphQueryMode mode : GraphQueryMode.values()) {
+            List<Annotation> annotations = Anno4j.getInstance().createQueryService(Annotation.class, graph1, graph2)
+                    .addPrefix("ex", "http://www.example.com/schema#")
+                    .setBodyCriteria("ex:value", "Value2")
+                    .graphQueryMode(mode)
+                    .execute();
+
+            assertEquals(open, openConnections.get());
+            // The body is read after the connection was closed
+            assertEquals(1, annotations.size());
+            assertEquals("Value2", ((MultiGraphTestBody) annotations.get(0).getBody()).getValue());
+        }
+    }
+
+    private void persist(URI graph, String value) throws Exception {
+        Anno4j.getInstance().createPersistenceService(graph).persistAnnotation(createAnnotation(value));
+    }
+
+    private Annotation createAnnotation(String value) {
+        Annotation annotation = new Annotation();
+        MultiGraphTestBody body = new MultiGraphTestBody();
+        body.setValue(value);
+        annotation.setBody(body);
+        return annotation;
+    }
+
+    @Iri("http://www.example.com/schema#MultiGraphTestBody")
+    public static class MultiGraphTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#value")
+        String value;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.anno4j.querying;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the keyset pagination of query results
+ */
+public class PaginationTest {
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        for (int i = 0; i < 25; i++) {
+            Annotation annotation = new Annotation();
+            PaginationTestBody body = new PaginationTestBody();
+            // Every rank is used twice, so ties are ordered by resource
+            body.setRank(i / 2);
+            annotation.setBody(body);
+            Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+        }
+    }
+
+    @Test
+    public void resourceOrderTest() throws Exception {
+        // A single query returns the annotations in the order of the store
+        List<Annotation> annotations = Anno4j.getInstance().createQueryService(Annotation.class).execute();
+        List<String> all = new ArrayList<String>();
+        for (Annotation annotation : annotations) {
+            all.add(annotation.getResource().stringValue());
+        }
+        Collections.sort(all);
+
+        List<Annotation> paged = readAllPages(Anno4j.getInstance().createQueryService(Annotation.class), 10, 3);
+
+        assertEquals(25, paged.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.get(i), paged.get(i).getResource().stringValue());
+        }
+    }
+
+    @Test
+    public void keyOrderTest() throws Exception {
+        QueryService<Annotation> queryService = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .orderBy("oa:hasBody/ex:rank", Order.DESCENDING);
+
+        List<Annotation> paged = readAllPages(queryService, 4, 7);
+
+        assertEquals(25, paged.size());
+        Set<String> resources = new HashSet<String>();
+        for (int i = 0; i < paged.size(); i++) {
+            resources.add(paged.get(i).getResource().stringValue());
+            if (i > 0) {
+                int previous = ((PaginationTestBody) paged.get(i - 1).getBody()).getRank();
+                int current = ((PaginationTestBody) paged.get(i).getBody()).getRank();
+                assertTrue(previous >= current);
+            }
+        }
+        assertEquals(25, resources.size());
+        assertEquals(12, ((PaginationTestBody) paged.get(0).getBody()).getRank().intValue());
+    }
+
+    @Test
+    public void emptyPageTest() throws Exception {
+        Page<Annotation> page = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:rank", 100)
+                .executePage(10);
+
+        assertTrue(page.getResults().isEmpty());
+        assertFalse(page.hasNext());
+        assertNull(page.getContinuationToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTokenTest() throws Exception {
+        Anno4j.getInstance().createQueryService(Annotation.class).executePage(10, "not a token");
+    }
+
+    private List<Annotation> readAllPages(QueryService<Annotation> queryService, int pageSize, int expectedPages) throws Exception {
+        List<Annotation> results = new ArrayList<Annotation>();
+        int pages = 0;
+        String token = null;
+        do {
+            Page<Annotation> page = queryService.executePage(pageSize, token);
+            results.addAll(page.getResults());
+            token = page.getContinuationToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(expectedPages, pages);
+        return results;
+    }
+
+    @Iri("http://www.example.com/schema#PaginationTestBody")
+    public static class PaginationTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#rank")
+        Integer rank;
+
+        public Integer getRank() {
+            return rank;
+        }
+
+        public void setRank(Integer rank) {
+            this.rank = rank;
+        }
+    }
+}
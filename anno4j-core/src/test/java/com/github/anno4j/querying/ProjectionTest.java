@@ -0,0 +1,145 @@
+package com.github.anno4j.querying;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests selecting plain values instead of annotation objects
+ */
+public class ProjectionTest {
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        persist("Face", 0.5);
+        persist("Animal", 1.0);
+        persist("Unrated", null);
+    }
+
+    @Test
+    public void selectTest() throws Exception {
+        List<ProjectionRow> rows = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:label", "Face")
+                .select("oa:hasBody/ex:label", "oa:hasBody/ex:confidence");
+
+        assertEquals(1, rows.size());
+        assertEquals("Face", rows.get(0).getValue(0).stringValue());
+        assertEquals("Face", rows.get(0).getObject("oa:hasBody/ex:label"));
+        assertEquals(0.5, (Double) rows.get(0).getObject(1), 0.0001);
+    }
+
+    @Test
+    public void missingValueTest() throws Exception {
+        List<ProjectionRow> rows = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:label", "Unrated")
+                .select("oa:hasBody/ex:confidence");
+
+        assertEquals(1, rows.size());
+        assertNull(rows.get(0).getValue(0));
+        assertNull(rows.get(0).getObject(0));
+    }
+
+    @Test
+    public void orderedLimitTest() throws Exception {
+        List<ProjectionRow> rows = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .orderBy("oa:hasBody/ex:label", Order.ASCENDING)
+                .limit(2)
+                .select("oa:hasBody/ex:label");
+
+        assertEquals(2, rows.size());
+        assertEquals("Animal", rows.get(0).getObject(0));
+        assertEquals("Face", rows.get(1).getObject(0));
+    }
+
+    @Test
+    public void multiValuedTest() throws Exception {
+        persist("Tagged", 0.25, "red", "round");
+
+        List<ProjectionRow> rows = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:label", "Tagged")
+                .select("oa:hasBody/ex:label", "oa:hasBody/ex:tag");
+
+        assertEquals(2, rows.size());
+        Set<Object> tags = new HashSet<Object>();
+        for (ProjectionRow row : rows) {
+            assertEquals("Tagged", row.getObject(0));
+            tags.add(row.getObject(1));
+        }
+        assertEquals(new HashSet<Object>(Arrays.asList("red", "round")), tags);
+
+        // Every combination of the values of two multi-valued expressions is a row
+        rows = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:label", "Tagged")
+                .select("oa:hasBody/ex:tag", "oa:hasBody/ex:tag");
+        assertEquals(4, rows.size());
+    }
+
+    private void persist(String label, Double confidence, String... tags) throws Exception {
+        Annotation annotation = new Annotation();
+        ProjectionTestBody body = new ProjectionTestBody();
+        body.setLabel(label);
+        body.setConfidence(confidence);
+        body.setTags(new HashSet<String>(Arrays.asList(tags)));
+        annotation.setBody(body);
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+    }
+
+    @Iri("http://www.example.com/schema#ProjectionTestBody")
+    public static class ProjectionTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#label")
+        String label;
+
+        @Iri("http://www.example.com/schema#confidence")
+        Double confidence;
+
+        @Iri("http://www.example.com/schema#tag")
+        Set<String> tags;
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public Double getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(Double confidence) {
+            this.confidence = confidence;
+        }
+
+        public Set<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(Set<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
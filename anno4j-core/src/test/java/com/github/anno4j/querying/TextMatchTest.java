@@ -0,0 +1,192 @@
+package com.github.anno4j.querying;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.index.TextHit;
+import com.github.anno4j.index.TextIndex;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import com.github.anno4j.model.impl.selector.TextQuoteSelector;
+import com.github.anno4j.model.impl.target.SpecificResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the full-text index and the text criteria of the QueryService
+ */
+public class TextMatchTest {
+
+    private static final String TEXT = "oa:hasBody/ex:text";
+
+    private static final String EXACT = "oa:hasTarget/oa:hasSelector/oa:exact";
+
+    private TextIndex textIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        textIndex = new TextIndex(TEXT, EXACT).addPrefix("ex", "http://www.example.com/schema#");
+        Anno4j.getInstance().setTextIndex(textIndex);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Anno4j.getInstance().setTextIndex(null);
+    }
+
+    @Test
+    public void textMatchTest() throws Exception {
+        Annotation redCar = persist("A red car.", null);
+        persist("The blue car", null);
+        persist("red bike", null);
+
+        List<Annotation> result = Anno4j.getInstance().createQueryService(Annotation.class)
+                .textMatch(TEXT, "Red CAR")
+                .execute();
+        assertEquals(1, result.size());
+        assertEquals(redCar.getResource(), result.get(0).getResource());
+
+        assertEquals(2, Anno4j.getInstance().createQueryService(Annotation.class).textMatch(TEXT, "car").execute().size());
+        assertEquals(0, Anno4j.getInstance().createQueryService(Annotation.class).textMatch(TEXT, "green").execute().size());
+        assertEquals(0, Anno4j.getInstance().createQueryService(Annotation.class).textMatch(EXACT, "car").execute().size());
+    }
+
+    @Test
+    public void selectorTest() throws Exception {
+        Annotation quote = persist(null, "exact quote");
+        persist("exact body", null);
+
+        List<Annotation> result = Anno4j.getInstance().createQueryService(Annotation.class)
+                .textMatch(EXACT, "exact")
+                .execute();
+        assertEquals(1, result.size());
+        assertEquals(quote.getResource(), result.get(0).getResource());
+    }
+
+    @Test
+    public void combinedCriteriaTest() throws Exception {
+        persist("red car", null);
+        persist("red car", "quote");
+
+        long count = Anno4j.getInstance().createQueryService(Annotation.class)
+                .textMatch(TEXT, "car")
+                .setSelectorCriteria("oa:exact", "quote")
+                .count();
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void rankingTest() throws Exception {
+        Annotation focused = persist("car car", null);
+        Annotation verbose = persist("a long sentence mentioning a car once", null);
+        persist("bike", null);
+
+        List<TextHit> hits = textIndex.search(TEXT, "car");
+        assertEquals(2, hits.size());
+        assertEquals(focused.getResource(), hits.get(0).getAnnotation());
+        assertEquals(verbose.getResource(), hits.get(1).getAnnotation());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+        assertEquals(1, textIndex.search(TEXT, "car", 1).size());
+    }
+
+    @Test
+    public void updateTest() throws Exception {
+        Annotation annotation = persist("old text", null);
+
+        Anno4j.getInstance().createPersistenceService()
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .updateWhere(TEXT, "new text");
+
+        assertEquals(0, textIndex.search(TEXT, "old").size());
+        assertEquals(annotation.getResource(), textIndex.search(TEXT, "new").get(0).getAnnotation());
+    }
+
+    @Test
+    public void graphUpdateTest() throws Exception {
+        URI graph1 = new URIImpl("http://www.example.com/GRAPH1");
+        URI graph2 = new URIImpl("http://www.example.com/GRAPH2");
+        persistInGraph("old text", graph1);
+        Annotation other = persistInGraph("old text", graph2);
+
+        Anno4j.getInstance().createPersistenceService(graph1)
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .updateWhere(TEXT, "new text");
+
+        List<TextHit> hits = textIndex.search(TEXT, "old");
+        assertEquals(1, hits.size());
+        assertEquals(other.getResource(), hits.get(0).getAnnotation());
+        assertEquals(1, textIndex.search(TEXT, "new").size());
+        assertEquals(2, textIndex.size(TEXT));
+    }
+
+    @Test
+    public void rebuildTest() throws Exception {
+        Anno4j.getInstance().setTextIndex(null);
+        persist("unindexed text", null);
+        Anno4j.getInstance().setTextIndex(textIndex);
+
+        assertEquals(0, Anno4j.getInstance().createQueryService(Annotation.class).textMatch(TEXT, "unindexed").execute().size());
+
+        textIndex.rebuild(Anno4j.getInstance().getObjectRepository());
+        assertEquals(1, textIndex.size(TEXT));
+        assertEquals(1, Anno4j.getInstance().createQueryService(Annotation.class).textMatch(TEXT, "unindexed").execute().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldTest() throws Exception {
+        Anno4j.getInstance().createQueryService(Annotation.class).textMatch("oa:hasBody/ex:other", "text");
+    }
+
+    private Annotation persistInGraph(String text, URI graph) throws Exception {
+        TextMatchTestBody body = new TextMatchTestBody();
+        body.setText(text);
+        Annotation annotation = new Annotation();
+        annotation.setBody(body);
+        Anno4j.getInstance().createPersistenceService(graph).persistAnnotation(annotation);
+        return annotation;
+    }
+
+    private Annotation persist(String text, String exact) throws Exception {
+        Annotation annotation = new Annotation();
+        if (text != null) {
+            TextMatchTestBody body = new TextMatchTestBody();
+            body.setText(text);
+            annotation.setBody(body);
+        }
+        if (exact != null) {
+            SpecificResource target = new SpecificResource();
+            target.setSelector(new TextQuoteSelector(exact, null, null));
+            annotation.setTarget(target);
+        }
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+        return annotation;
+    }
+
+    @Iri("http://www.example.com/schema#TextMatchTestBody")
+    public static class TextMatchTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#text")
+        private String text;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.anno4j.sail;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the off-heap dictionary-encoded store.
+ */
+public class DictionaryStoreTest {
+
+    private static final String NS = "http://www.example.com/schema#";
+
+    private SailRepository repository;
+
+    private RepositoryConnection connection;
+
+    private ValueFactory vf;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new SailRepository(new DictionaryStore());
+        repository.initialize();
+        connection = repository.getConnection();
+        vf = repository.getValueFactory();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+        repository.shutDown();
+
+        SailRepository memory = new SailRepository(new MemoryStore());
+        memory.initialize();
+        Anno4j.getInstance().setRepository(memory);
+    }
+
+    @Test
+    public void testAddAndRemove() throws Exception {
+        URI subject = vf.createURI(NS, "subject");
+        URI graph = vf.createURI(NS, "graph");
+        Literal typed = vf.createLiteral("42", XMLSchema.INT);
+        Literal language = vf.createLiteral("Wert", "de");
+
+        connection.add(subject, RDF.TYPE, vf.createURI(NS, "Type"));
+        connection.add(subject, vf.createURI(NS, "value"), typed, graph);
+        connection.add(subject, vf.createURI(NS, "value"), language, graph);
+        connection.add(subject, vf.createURI(NS, "value"), language, graph);
+
+        assertEquals(3, connection.size());
+        assertEquals(2, connection.size(graph));
+        assertEquals(1, connection.size((URI) null));
+        assertTrue(connection.hasStatement(subject, null, typed, false));
+        assertTrue(connection.hasStatement(null, null, language, false, graph));
+        assertFalse(connection.hasStatement(subject, null, typed, false, vf.createURI(NS, "other")));
+        assertEquals(graph, connection.getContextIDs().asList().get(0));
+
+        connection.remove(subject, null, language);
+        assertEquals(2, connection.size());
+        assertFalse(connection.hasStatement(null, null, language, false));
+        assertEquals(typed, connection.getStatements(subject, vf.createURI(NS, "value"), null, false).asList().get(0).getObject());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        URI subject = vf.createURI(NS, "subject");
+        connection.add(subject, RDF.TYPE, vf.createURI(NS, "Committed"));
+
+        connection.begin();
+        connection.add(subject, RDF.TYPE, vf.createURI(NS, "Pending"));
+        connection.remove(subject, RDF.TYPE, vf.createURI(NS, "Committed"));
+        assertEquals(1, connection.size());
+        assertTrue(connection.hasStatement(subject, RDF.TYPE, vf.createURI(NS, "Pending"), false));
+
+        RepositoryConnection other = repository.getConnection();
+        assertTrue(other.hasStatement(subject, RDF.TYPE, vf.createURI(NS, "Committed"), false));
+        assertFalse(other.hasStatement(subject, RDF.TYPE, vf.createURI(NS, "Pending"), false));
+
+        connection.rollback();
+        assertEquals(1, connection.size());
+        assertTrue(connection.hasStatement(subject, RDF.TYPE, vf.createURI(NS, "Committed"), false));
+
+        connection.begin();
+        connection.add(subject, RDF.TYPE, vf.createURI(NS, "Pending"));
+        connection.commit();
+        assertEquals(2, other.size());
+        other.close();
+    }
+
+    @Test
+    public void testSerializedWriters() throws Exception {
+        final URI subject = vf.createURI(NS, "subject");
+        connection.begin();
+        connection.add(subject, RDF.TYPE, vf.createURI(NS, "Type"));
+
+        final List<Exception> errors = new ArrayList<Exception>();
+        Thread remover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    RepositoryConnection other = repository.getConnection();
+                    other.begin();
+                    other.remove(subject, null, null);
+                    other.commit();
+                    other.close();
+                } catch (Exception e) {
+                    errors.add(e);
+                }
+            }
+        });
+        remover.start();
+        remover.join(200);
+        assertTrue(remover.isAlive());
+
+        connection.commit();
+        remover.join();
+        assertTrue(errors.isEmpty());
+        // The removal waited for the commit, so it removed the added statement
+        assertEquals(0, connection.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBufferLimit() {
+        ValueDictionary.allocate(16L * 200000000);
+    }
+
+    @Test
+    public void testManyStatements() throws Exception {
+        URI type = vf.createURI(NS, "Type");
+        URI value = vf.createURI(NS, "value");
+        for (int i = 0; i < 20000; i++) {
+            if (i % 1000 == 0) {
+                connection.begin();
+            }
+            URI subject = vf.createURI(NS, "s" + i);
+            connection.add(subject, RDF.TYPE, type);
+            connection.add(subject, value, vf.createLiteral("Value" + i % 10));
+            if (i % 1000 == 999) {
+                connection.commit();
+            }
+        }
+        for (int i = 0; i < 20000; i += 2) {
+            connection.remove(vf.createURI(NS, "s" + i), null, null);
+        }
+
+        assertEquals(20000, connection.size());
+        assertEquals(2000, count(type, value, "Value3"));
+        assertEquals(0, count(type, value, "Value4"));
+    }
+
+    @Test
+    public void testAnno4j() throws Exception {
+        Anno4j.getInstance().setRepository(repository);
+
+        Annotation annotation = new Annotation();
+        DictionaryStoreTestBody body = new DictionaryStoreTestBody();
+        body.setValue("Value1");
+        annotation.setBody(body);
+        Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+
+        List<Annotation> result = Anno4j.getInstance().createQueryService(Annotation.class)
+                .addPrefix("ex", NS)
+                .setBodyCriteria("ex:value", "Value1")
+                .execute();
+        assertEquals(1, result.size());
+        assertEquals(annotation.getResource(), result.get(0).getResource());
+        assertEquals("Value1", ((DictionaryStoreTestBody) result.get(0).getBody()).getValue());
+    }
+
+    private int count(URI type, URI value, String label) throws Exception {
+        TupleQueryResult result = connection.prepareTupleQuery(QueryLanguage.SPARQL,
+                "SELECT (COUNT(?s) AS ?count) { ?s a <" + type + "> ; <" + value + "> \"" + label + "\" }").evaluate();
+        try {
+            return Integer.parseInt(result.next().getValue("count").stringValue());
+        } finally {
+            result.close();
+        }
+    }
+
+    @Iri(NS + "DictionaryStoreTestBody")
+    public static class DictionaryStoreTestBody extends Body {
+
+        @Iri(NS + "value")
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.anno4j.sharding;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Body;
+import com.github.anno4j.querying.Order;
+import com.github.anno4j.querying.Page;
+import com.github.anno4j.querying.QueryService;
+import com.github.anno4j.sharding.impl.ResourceHashShardingStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.annotations.Iri;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the distribution of annotations over several repositories and the scatter-gather querying.
+ */
+public class ShardingTest {
+
+    private List<SailRepository> shards = new ArrayList<SailRepository>();
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            SailRepository repository = new SailRepository(new MemoryStore());
+            repository.initialize();
+            shards.add(repository);
+        }
+        Anno4j.getInstance().setShards(shards, new ResourceHashShardingStrategy());
+
+        for (int i = 0; i < 12; i++) {
+            Annotation annotation = new Annotation();
+            annotation.setBody(new ShardTestBody("Value" + i));
+            Anno4j.getInstance().createPersistenceService().persistAnnotation(annotation);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+    }
+
+    @Test
+    public void testAnnotationsAreDistributed() throws Exception {
+        int total = 0;
+        for (SailRepository shard : shards) {
+            RepositoryConnection connection = shard.getConnection();
+            int count = connection.getStatements(null, org.openrdf.model.vocabulary.RDF.TYPE, connection.getValueFactory().createURI("http://www.w3.org/ns/oa#Annotation"), false).asList().size();
+            connection.close();
+            total += count;
+        }
+
+        assertEquals(12, total);
+    }
+
+    @Test
+    public void testQueryAllShards() throws Exception {
+        QueryService<Annotation> queryService = Anno4j.getInstance().createQueryService(Annotation.class);
+        List<Annotation> annotations = queryService
+                .addPrefix("ex", "http://www.example.com/schema#")
+                .setBodyCriteria("ex:value")
+                .execute();
+
+        assertEquals(12, annotations.size());
+    }
+
+    @Test
+    public void testOrderedLimitOffset() throws Exception {
+        List<Annotation> all = Anno4j.getInstance().createQueryService(Annotation.class)
+                .orderBy(Order.ASCENDING)
+                .execute();
+
+        assertEquals(12, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getResource().stringValue().compareTo(all.get(i).getResource().stringValue()) < 0);
+        }
+
+        List<Annotation> page = Anno4j.getInstance().createQueryService(Annotation.class)
+                .orderBy(Order.ASCENDING)
+                .offset(4)
+                .limit(5)
+                .execute();
+
+        assertEquals(5, page.size());
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(all.get(i + 4).getResource().stringValue(), page.get(i).getResource().stringValue());
+        }
+    }
+
+    @Test
+    public void testPagination() throws Exception {
+        List<Annotation> all = Anno4j.getInstance().createQueryService(Annotation.class)
+                .orderBy(Order.DESCENDING)
+                .execute();
+
+        QueryService<Annotation> queryService = Anno4j.getInstance().createQueryService(Annotation.class)
+                .orderBy(Order.DESCENDING);
+        Page<Annotation> first = queryService.executePage(5);
+        Page<Annotation> second = queryService.executePage(5, first.getContinuationToken());
+        Page<Annotation> third = queryService.executePage(5, second.getContinuationToken());
+
+        assertEquals(5, first.getResults().size());
+        assertEquals(5, second.getResults().size());
+        assertEquals(2, third.getResults().size());
+        assertFalse(third.hasNext());
+        assertEquals(all.get(5).getResource(), second.getResults().get(0).getResource());
+        assertEquals(all.get(11).getResource(), third.getResults().get(1).getResource());
+    }
+
+    @Iri("http://www.example.com/schema#shardBody")
+    public static class ShardTestBody extends Body {
+
+        @Iri("http://www.example.com/schema#value")
+        private String value;
+
+        public ShardTestBody() {
+        }
+
+        public ShardTestBody(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,754 @@
+package eu.mico.platform.anno4j.index;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.Selector;
+import com.github.anno4j.model.Target;
+import com.github.anno4j.model.impl.selector.FragmentSelector;
+import com.github.anno4j.model.impl.selector.MediaFragment;
+import com.github.anno4j.model.impl.target.SpecificResource;
+import com.github.anno4j.model.namespaces.OADM;
+import com.github.anno4j.model.namespaces.RDF;
+import com.github.anno4j.persistence.PersistenceListener;
+import org.openrdf.model.URI;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.object.ObjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process index of the W3C media fragments (e.g. "#xywh=10,20,100,50&amp;t=npt:120.000,130.000") of annotation
+ * targets. Temporal fragments are kept in an interval tree and spatial fragments in an R-tree per source, so overlap
+ * queries take logarithmic time instead of loading and parsing every selector.
+ * <p/>
+ * Registered as listener of a persistence service, e.g. by {@link eu.mico.platform.anno4j.persistence.MICOPersistenceService},
+ * the index follows the annotations written, updated and deleted by it. Persisted annotations are only queued by the
+ * writing thread. Their fragments are loaded in batches from the repository they were written to before the next
+ * search, or by the writing thread once many annotations are queued. A bulk update or deletion reloads the annotations
+ * of the updated graph. The index can be rebuilt from the store at any time. Times are given in milliseconds, regions
+ * in pixels.
+ */
+public class FragmentIndex implements PersistenceListener {
+
+    private final Logger logger = LoggerFactory.getLogger(FragmentIndex.class);
+
+    /**
+     * Selects the source and the selector value of every annotation target
+     */
+    private static final String FRAGMENT_QUERY = "PREFIX oa: <" + OADM.NS + ">\n"
+            + "PREFIX rdf: <" + RDF.NS + ">\n"
+            + "SELECT ?annotation ?source ?fragment WHERE {\n"
+            + "  ?annotation oa:hasTarget ?target .\n"
+            + "  ?target oa:hasSource ?source ; oa:hasSelector ?selector .\n"
+            + "  ?selector rdf:value ?fragment .\n"
+            + "}";
+
+    /**
+     * Selects the fragments of the annotations given by a VALUES clause prepended to the pattern
+     */
+    private static final String ANNOTATION_FRAGMENT_QUERY = "PREFIX oa: <" + OADM.NS + ">\n"
+            + "PREFIX rdf: <" + RDF.NS + ">\n"
+            + "SELECT ?annotation ?source ?fragment WHERE {\n"
+            + "  VALUES ?annotation { %s }\n"
+            + "  ?annotation oa:hasTarget ?target .\n"
+            + "  ?target oa:hasSource ?source ; oa:hasSelector ?selector .\n"
+            + "  ?selector rdf:value ?fragment .\n"
+            + "}";
+
+    /**
+     * Number of annotations whose fragments are loaded by one query
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Number of queued annotations at which the writing thread indexes them itself
+     */
+    private static final int MAX_PENDING = 10000;
+
+    /**
+     * The fragments of every indexed annotation
+     */
+    private final Map<String, List<Fragment>> fragments = new HashMap<String, List<Fragment>>();
+
+    /**
+     * Temporal fragments per source
+     */
+    private Map<String, IntervalTree<Fragment>> temporal = new HashMap<String, IntervalTree<Fragment>>();
+
+    /**
+     * Spatial fragments per source
+     */
+    private Map<String, RTree<Fragment>> spatial = new HashMap<String, RTree<Fragment>>();
+
+    /**
+     * Number of removed fragments still contained in the R-trees
+     */
+    private int stale = 0;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The repository and graph every indexed annotation was loaded from, guarded by the lock
+     */
+    private final Map<String, Source> sources = new HashMap<String, Source>();
+
+    /**
+     * The annotations persisted since the last flush, per repository and graph. Guarded by itself, like the updated
+     * sources and the number of pending annotations.
+     */
+    private final Map<Source, Set<String>> pending = new LinkedHashMap<Source, Set<String>>();
+
+    /**
+     * The repositories and graphs changed by bulk updates since the last flush
+     */
+    private final Set<Source> updated = new LinkedHashSet<Source>();
+
+    private int pendingCount = 0;
+
+    /**
+     * Serializes the flushes
+     */
+    private final Object flushing = new Object();
+
+    /**
+     * Indexes the media fragments of the targets of the annotation, replacing previously indexed fragments of it.
+     *
+     * @param annotation The annotation to index
+     * @return true if at least one media fragment was indexed
+     */
+    public boolean add(Annotation annotation) {
+        String resource = annotation.getResource().stringValue();
+        Target target = annotation.getTarget();
+
+        lock.writeLock().lock();
+        try {
+            removeFragments(resource);
+
+            if (target instanceof SpecificResource) {
+                SpecificResource specificResource = (SpecificResource) target;
+                Selector selector = specificResource.getSelector();
+                if (specificResource.getSource() != null && selector instanceof FragmentSelector) {
+                    return addFragment(resource, specificResource.getSource().getResource().stringValue(), ((FragmentSelector) selector).getValue());
+                }
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a media fragment of an annotation target, in addition to already indexed fragments of the annotation.
+     *
+     * @param annotation The resource of the annotation
+     * @param source     The resource of the target source, e.g. the video
+     * @param fragment   The value of the fragment selector
+     * @return true if the value is a supported media fragment
+     */
+    public boolean add(String annotation, String source, String fragment) {
+        lock.writeLock().lock();
+        try {
+            return addFragment(annotation, source, fragment);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all fragments of the annotation from the index.
+     *
+     * @param annotation The resource of the annotation
+     */
+    public void remove(String annotation) {
+        synchronized (pending) {
+            for (Set<String> annotations : pending.values()) {
+                if (annotations.remove(annotation)) {
+                    pendingCount--;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            removeFragments(annotation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all fragments from the index, including the queued annotations.
+     */
+    public void clear() {
+        synchronized (pending) {
+            pending.clear();
+            updated.clear();
+            pendingCount = 0;
+        }
+        lock.writeLock().lock();
+        try {
+            fragments.clear();
+            sources.clear();
+            temporal = new HashMap<String, IntervalTree<Fragment>>();
+            spatial = new HashMap<String, RTree<Fragment>>();
+            stale = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the selector values of all annotations of the current Anno4j repository, or of all its
+     * shards.
+     */
+    public void rebuild() throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        Anno4j anno4j = Anno4j.getInstance();
+        if (anno4j.getShardedRepository() != null) {
+            rebuild(anno4j.getShardedRepository().getShards());
+        } else {
+            rebuild(anno4j.getObjectRepository());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the selector values of the annotations of the given repository.
+     *
+     * @param repository The repository to index
+     * @param graphs     The graph contexts to index, none for the whole repository
+     */
+    public void rebuild(ObjectRepository repository, URI... graphs) throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        rebuild(Collections.singletonList(repository), graphs);
+    }
+
+    /**
+     * Rebuilds the index from the selector values of the annotations of the given repositories, e.g. the shards of a
+     * sharded repository. Every source is read with the selector of the same target.
+     *
+     * @param repositories The repositories to index
+     * @param graphs       The graph contexts to index, none for the whole repositories
+     */
+    public void rebuild(Collection<ObjectRepository> repositories, URI... graphs) throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        Map<Source, List<String[]>> rows = new LinkedHashMap<Source, List<String[]>>();
+        for (ObjectRepository repository : repositories) {
+            if (graphs.length == 0) {
+                Source source = new Source(repository, null);
+                rows.put(source, loadFragments(source, null));
+            }
+            for (URI graph : graphs) {
+                Source source = new Source(repository, graph);
+                rows.put(source, loadFragments(source, null));
+            }
+        }
+
+        synchronized (flushing) {
+            clear();
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<Source, List<String[]>> source : rows.entrySet()) {
+                    for (String[] row : source.getValue()) {
+                        removeFragments(row[0]);
+                    }
+                    putFragments(source.getKey(), source.getValue());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Indexes the queued annotations and reloads the annotations of the updated graphs. Called before every search.
+     */
+    public void flush() throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        synchronized (flushing) {
+            Map<Source, Set<String>> annotations;
+            Set<Source> reloaded;
+            synchronized (pending) {
+                if (pending.isEmpty() && updated.isEmpty()) {
+                    return;
+                }
+                annotations = new LinkedHashMap<Source, Set<String>>(pending);
+                reloaded = new LinkedHashSet<Source>(updated);
+                pending.clear();
+                updated.clear();
+                pendingCount = 0;
+            }
+
+            try {
+                Iterator<Source> sourceIterator = reloaded.iterator();
+                while (sourceIterator.hasNext()) {
+                    reindex(sourceIterator.next());
+                    sourceIterator.remove();
+                }
+                Iterator<Map.Entry<Source, Set<String>>> annotationIterator = annotations.entrySet().iterator();
+                while (annotationIterator.hasNext()) {
+                    Map.Entry<Source, Set<String>> source = annotationIterator.next();
+                    List<String> resources = new ArrayList<String>(source.getValue());
+                    for (int from = 0; from < resources.size(); from += BATCH_SIZE) {
+                        index(source.getKey(), resources.subList(from, Math.min(from + BATCH_SIZE, resources.size())));
+                    }
+                    annotationIterator.remove();
+                }
+            } finally {
+                // Queuing what could not be indexed again
+                synchronized (pending) {
+                    updated.addAll(reloaded);
+                    for (Map.Entry<Source, Set<String>> source : annotations.entrySet()) {
+                        for (String annotation : source.getValue()) {
+                            queue(source.getKey(), annotation);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the persisted annotation to be indexed before the next search. Also called for updated annotations,
+     * whose fragments are replaced by the stored ones.
+     */
+    @Override
+    public void annotationPersisted(Annotation annotation, ObjectRepository repository, URI graph) {
+        boolean full;
+        synchronized (pending) {
+            queue(new Source(repository, graph), annotation.getResource().stringValue());
+            full = pendingCount >= MAX_PENDING;
+        }
+        if (full) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Reloads the annotations of the updated graph before the next search, as the changed or deleted annotations are
+     * unknown.
+     */
+    @Override
+    public void annotationsUpdated(ObjectRepository repository, URI graph) {
+        Source source = new Source(repository, graph);
+        synchronized (pending) {
+            updated.add(source);
+            Set<String> annotations = pending.remove(source);
+            if (annotations != null) {
+                pendingCount -= annotations.size();
+            }
+        }
+    }
+
+    /**
+     * Finds the annotations with a temporal fragment of the source overlapping the given time range.
+     *
+     * @param source The resource of the target source, e.g. the video
+     * @param start  Start of the range in milliseconds
+     * @param end    End of the range in milliseconds
+     * @return the resources of the matching annotations
+     */
+    public Set<String> findTemporal(String source, int start, int end) {
+        flushQuietly();
+        lock.readLock().lock();
+        try {
+            List<Fragment> hits = new ArrayList<Fragment>();
+            IntervalTree<Fragment> tree = temporal.get(source);
+            if (tree != null) {
+                tree.findOverlapping(start, end, hits);
+            }
+            return toAnnotations(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the annotations with a spatial fragment of the source intersecting the given region.
+     *
+     * @param source The resource of the target source, e.g. the image or video
+     * @param x      x-coordinate of the region as absolute pixel
+     * @param y      y-coordinate of the region as absolute pixel
+     * @param width  width of the region
+     * @param height height of the region
+     * @return the resources of the matching annotations
+     */
+    public Set<String> findSpatial(String source, int x, int y, int width, int height) {
+        flushQuietly();
+        lock.readLock().lock();
+        try {
+            List<Fragment> hits = new ArrayList<Fragment>();
+            RTree<Fragment> tree = spatial.get(source);
+            if (tree != null) {
+                tree.findIntersecting(x, y, x + width - 1, y + height - 1, hits);
+            }
+            return toAnnotations(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the annotations with a spatial and temporal fragment of the source intersecting the given region during
+     * the given time range.
+     *
+     * @param source The resource of the target source, e.g. the video
+     * @param x      x-coordinate of the region as absolute pixel
+     * @param y      y-coordinate of the region as absolute pixel
+     * @param width  width of the region
+     * @param height height of the region
+     * @param start  Start of the range in milliseconds
+     * @param end    End of the range in milliseconds
+     * @return the resources of the matching annotations
+     */
+    public Set<String> findSpatialTemporal(String source, int x, int y, int width, int height, int start, int end) {
+        flushQuietly();
+        lock.readLock().lock();
+        try {
+            IntervalTree<Fragment> temporalTree = temporal.get(source);
+            RTree<Fragment> spatialTree = spatial.get(source);
+            if (temporalTree == null || spatialTree == null) {
+                return new LinkedHashSet<String>();
+            }
+
+            List<Fragment> temporalHits = new ArrayList<Fragment>();
+            temporalTree.findOverlapping(start, end, temporalHits);
+            List<Fragment> spatialHits = new ArrayList<Fragment>();
+            spatialTree.findIntersecting(x, y, x + width - 1, y + height - 1, spatialHits);
+
+            // Fragments are compared by identity, so the intersection keeps the fragments found by both trees
+            Set<Fragment> inRegion = new HashSet<Fragment>(spatialHits);
+            List<Fragment> hits = new ArrayList<Fragment>();
+            for (Fragment hit : temporalHits) {
+                if (inRegion.contains(hit)) {
+                    hits.add(hit);
+                }
+            }
+            return toAnnotations(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed annotations
+     */
+    public int size() {
+        flushQuietly();
+        lock.readLock().lock();
+        try {
+            return fragments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the annotation to the pending ones, guarded by the pending map.
+     */
+    private void queue(Source source, String annotation) {
+        Set<String> annotations = pending.get(source);
+        if (annotations == null) {
+            annotations = new LinkedHashSet<String>();
+            pending.put(source, annotations);
+        }
+        if (annotations.add(annotation)) {
+            pendingCount++;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Could not index the fragments of the persisted annotations", e);
+        }
+    }
+
+    /**
+     * Loads the fragments of the annotations from their repository and graph and replaces their indexed fragments.
+     * Annotations no longer stored are removed.
+     */
+    private void index(Source source, List<String> annotations) throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        List<String[]> rows = loadFragments(source, annotations);
+
+        lock.writeLock().lock();
+        try {
+            for (String annotation : annotations) {
+                removeFragments(annotation);
+            }
+            putFragments(source, rows);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the annotations loaded from the repository and graph by their current fragments. Reloading the
+     * default graph reloads the whole repository.
+     */
+    private void reindex(Source source) throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        List<String[]> rows = loadFragments(source, null);
+
+        lock.writeLock().lock();
+        try {
+            List<String> stale = new ArrayList<String>();
+            for (Map.Entry<String, Source> indexed : sources.entrySet()) {
+                Source other = indexed.getValue();
+                if (other.equals(source) || (source.graph == null && other.repository == source.repository)) {
+                    stale.add(indexed.getKey());
+                }
+            }
+            for (String annotation : stale) {
+                removeFragments(annotation);
+            }
+            for (String[] row : rows) {
+                removeFragments(row[0]);
+            }
+            putFragments(source, rows);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the loaded fragments, called with the write lock held.
+     */
+    private void putFragments(Source source, List<String[]> rows) {
+        for (String[] row : rows) {
+            if (addFragment(row[0], row[1], row[2])) {
+                sources.put(row[0], source);
+            }
+        }
+    }
+
+    /**
+     * Selects the source and the selector value of the targets of the annotations of the repository and graph.
+     *
+     * @param source      The repository and graph to read from
+     * @param annotations The annotations to load, null for all
+     * @return the annotation, source and fragment of every target
+     */
+    private static List<String[]> loadFragments(Source source, List<String> annotations) throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        List<String[]> rows = new ArrayList<String[]>();
+        String sparql = FRAGMENT_QUERY;
+        if (annotations != null) {
+            StringBuilder values = new StringBuilder();
+            for (String annotation : annotations) {
+                values.append('<').append(annotation).append("> ");
+            }
+            sparql = String.format(ANNOTATION_FRAGMENT_QUERY, values);
+        }
+
+        RepositoryConnection connection = source.repository.getConnection();
+        try {
+            TupleQuery query = connection.prepareTupleQuery(QueryLanguage.SPARQL, sparql);
+            if (source.graph != null) {
+                DatasetImpl dataset = new DatasetImpl();
+                dataset.addDefaultGraph(source.graph);
+                query.setDataset(dataset);
+            }
+
+            TupleQueryResult result = query.evaluate();
+            try {
+                while (result.hasNext()) {
+                    BindingSet bindings = result.next();
+                    rows.add(new String[]{
+                            bindings.getValue("annotation").stringValue(),
+                            bindings.getValue("source").stringValue(),
+                            bindings.getValue("fragment").stringValue()});
+                }
+            } finally {
+                result.close();
+            }
+        } finally {
+            connection.close();
+        }
+        return rows;
+    }
+
+    private boolean addFragment(String annotation, String source, String value) {
+        Fragment fragment = Fragment.parse(annotation, value);
+        if (fragment == null) {
+            return false;
+        }
+
+        if (!fragments.containsKey(annotation)) {
+            fragments.put(annotation, new ArrayList<Fragment>(1));
+        }
+        fragments.get(annotation).add(fragment);
+        insert(source, fragment);
+        return true;
+    }
+
+    private void insert(String source, Fragment fragment) {
+        fragment.source = source;
+        if (fragment.temporal) {
+            if (!temporal.containsKey(source)) {
+                temporal.put(source, new IntervalTree<Fragment>());
+            }
+            temporal.get(source).insert(fragment.start, fragment.end, fragment);
+        }
+        if (fragment.spatial) {
+            if (!spatial.containsKey(source)) {
+                spatial.put(source, new RTree<Fragment>());
+            }
+            spatial.get(source).insert(fragment.x1, fragment.y1, fragment.x2, fragment.y2, fragment);
+        }
+    }
+
+    /**
+     * Removes the fragments of the annotation. Temporal fragments are removed from the interval trees. The R-trees do
+     * not support removal, removed spatial fragments are skipped by the queries until the trees are compacted.
+     */
+    private void removeFragments(String annotation) {
+        sources.remove(annotation);
+        List<Fragment> removed = fragments.remove(annotation);
+        if (removed == null) {
+            return;
+        }
+
+        for (Fragment fragment : removed) {
+            if (fragment.temporal) {
+                temporal.get(fragment.source).remove(fragment.start, fragment);
+            }
+            if (fragment.spatial) {
+                stale++;
+            }
+        }
+        if (stale > 1024 && stale > fragments.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Recreates the trees from the current fragments, dropping the removed ones.
+     */
+    private void compact() {
+        temporal = new HashMap<String, IntervalTree<Fragment>>();
+        spatial = new HashMap<String, RTree<Fragment>>();
+        for (List<Fragment> annotationFragments : fragments.values()) {
+            for (Fragment fragment : annotationFragments) {
+                insert(fragment.source, fragment);
+            }
+        }
+        stale = 0;
+    }
+
+    /**
+     * Collects the annotations of the current fragments among the hits.
+     */
+    private Set<String> toAnnotations(List<Fragment> hits) {
+        Set<String> annotations = new LinkedHashSet<String>();
+        for (Fragment hit : hits) {
+            List<Fragment> current = fragments.get(hit.annotation);
+            if (current == null || !current.contains(hit)) {
+                continue;
+            }
+            annotations.add(hit.annotation);
+        }
+        return annotations;
+    }
+
+    /**
+     * A parsed media fragment of an annotation target. Fragments are compared by identity.
+     */
+    private static class Fragment {
+
+        private final String annotation;
+
+        private String source;
+
+        private boolean temporal;
+
+        private int start, end;
+
+        private boolean spatial;
+
+        private int x1, y1, x2, y2;
+
+        private Fragment(String annotation) {
+            this.annotation = annotation;
+        }
+
+        /**
+         * Converts the spatial and temporal dimensions of the media fragment.
+         *
+         * @return the fragment, or null if the value is no valid media fragment
+         */
+        static Fragment parse(String annotation, String value) {
+            MediaFragment mediaFragment = MediaFragment.parse(value);
+            if (mediaFragment == null) {
+                return null;
+            }
+
+            Fragment fragment = new Fragment(annotation);
+            if (mediaFragment.hasSpatial()) {
+                fragment.spatial = true;
+                fragment.x1 = mediaFragment.getX();
+                fragment.y1 = mediaFragment.getY();
+                fragment.x2 = mediaFragment.getX() + mediaFragment.getWidth() - 1;
+                fragment.y2 = mediaFragment.getY() + mediaFragment.getHeight() - 1;
+            }
+            if (mediaFragment.hasTemporal()) {
+                fragment.temporal = true;
+                fragment.start = mediaFragment.getStart();
+                // Without end the fragment lasts until the end of the media
+                fragment.end = (mediaFragment.getEnd() != MediaFragment.UNDEFINED) ? mediaFragment.getEnd() : Integer.MAX_VALUE;
+            }
+            return fragment;
+        }
+    }
+
+    /**
+     * A repository and graph context annotations are loaded from.
+     */
+    private static class Source {
+
+        private final ObjectRepository repository;
+
+        /**
+         * The graph context, null for the default graph
+         */
+        private final URI graph;
+
+        Source(ObjectRepository repository, URI graph) {
+            this.repository = repository;
+            this.graph = graph;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Source)) {
+                return false;
+            }
+
+            Source that = (Source) o;
+            return repository == that.repository && ((graph != null) ? graph.equals(that.graph) : that.graph == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(repository) + ((graph != null) ? graph.hashCode() : 0);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package eu.mico.platform.anno4j.index;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Interval tree, implemented as randomized binary search tree (treap) ordered by the start of the intervals. Every node
+ * is augmented by the maximum end of its subtree, so overlap queries skip all subtrees ending before the query range.
+ * Inserting and removing take O(log n), querying O(log n + k) for k results, all in expectation.
+ * The tree is not thread-safe.
+ *
+ * @param <V> The type of the values associated with the intervals
+ */
+class IntervalTree<V> {
+
+    private final Random random = new Random();
+
+    private Node<V> root;
+
+    private int size;
+
+    /**
+     * Adds the closed interval [start, end].
+     */
+    public void insert(int start, int end, V value) {
+        root = insert(root, new Node<V>(start, end, value, random.nextInt()));
+        size++;
+    }
+
+    /**
+     * Removes the interval of the value, compared by identity.
+     *
+     * @return true if the interval was found
+     */
+    public boolean remove(int start, V value) {
+        int before = size;
+        root = remove(root, start, value);
+        return size < before;
+    }
+
+    /**
+     * Collects the values of all intervals overlapping the closed interval [start, end].
+     */
+    public void findOverlapping(int start, int end, List<V> results) {
+        findOverlapping(root, start, end, results);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Node<V> insert(Node<V> node, Node<V> inserted) {
+        if (node == null) {
+            return inserted;
+        }
+
+        if (inserted.start < node.start) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node<V> remove(Node<V> node, int start, V value) {
+        if (node == null) {
+            return null;
+        }
+        if (node.start == start && node.value == value) {
+            size--;
+            return merge(node.left, node.right);
+        }
+
+        // Rotations may move intervals of equal start into either subtree
+        int before = size;
+        if (start <= node.start) {
+            node.left = remove(node.left, start, value);
+        }
+        if (size == before && start >= node.start) {
+            node.right = remove(node.right, start, value);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Joins two subtrees, all intervals of the left one starting before or with those of the right one.
+     */
+    private Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private void findOverlapping(Node<V> node, int start, int end, List<V> results) {
+        if (node == null || node.maxEnd < start) {
+            return;
+        }
+
+        findOverlapping(node.left, start, end, results);
+        if (node.start <= end) {
+            if (node.end >= start) {
+                results.add(node.value);
+            }
+            // All nodes of the right subtree start after this one
+            findOverlapping(node.right, start, end, results);
+        }
+    }
+
+    private Node<V> rotateRight(Node<V> node) {
+        Node<V> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    private Node<V> rotateLeft(Node<V> node) {
+        Node<V> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+    private static class Node<V> {
+
+        private final int start;
+
+        private final int end;
+
+        private final V value;
+
+        private final int priority;
+
+        private int maxEnd;
+
+        private Node<V> left;
+
+        private Node<V> right;
+
+        Node(int start, int end, V value, int priority) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        void update() {
+            maxEnd = end;
+            if (left != null && left.maxEnd > maxEnd) {
+                maxEnd = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > maxEnd) {
+                maxEnd = right.maxEnd;
+            }
+        }
+    }
+}
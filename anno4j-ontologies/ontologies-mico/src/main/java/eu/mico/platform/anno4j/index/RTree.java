@@ -0,0 +1,273 @@
+package eu.mico.platform.anno4j.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * R-tree of axis-aligned rectangles (Guttman), using the linear split. Every node holds the bounding box of its
+ * children, so intersection queries only descend into subtrees whose bounding box intersects the query rectangle.
+ * The tree is not thread-safe.
+ *
+ * @param <V> The type of the values associated with the rectangles
+ */
+class RTree<V> {
+
+    /**
+     * Maximum number of children per node
+     */
+    private static final int MAX_ENTRIES = 16;
+
+    /**
+     * Minimum number of children per node after a split
+     */
+    private static final int MIN_ENTRIES = 6;
+
+    private Node root = new Node(true);
+
+    private int size;
+
+    /**
+     * Adds the closed rectangle from (x1, y1) to (x2, y2).
+     */
+    public void insert(int x1, int y1, int x2, int y2, V value) {
+        Entry entry = new Entry(x1, y1, x2, y2, value, null);
+        Node leaf = chooseLeaf(root, entry);
+        leaf.add(entry);
+
+        Node split = (leaf.entries.size() > MAX_ENTRIES) ? split(leaf) : null;
+        adjust(leaf, split);
+        size++;
+    }
+
+    /**
+     * Collects the values of all rectangles intersecting the closed rectangle from (x1, y1) to (x2, y2).
+     */
+    public void findIntersecting(int x1, int y1, int x2, int y2, List<V> results) {
+        findIntersecting(root, x1, y1, x2, y2, results);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void findIntersecting(Node node, int x1, int y1, int x2, int y2, List<V> results) {
+        for (Entry entry : node.entries) {
+            if (entry.intersects(x1, y1, x2, y2)) {
+                if (node.leaf) {
+                    results.add(entry.value);
+                } else {
+                    findIntersecting(entry.child, x1, y1, x2, y2, results);
+                }
+            }
+        }
+    }
+
+    private Node chooseLeaf(Node node, Entry entry) {
+        while (!node.leaf) {
+            Entry best = null;
+            long bestEnlargement = Long.MAX_VALUE;
+            long bestArea = Long.MAX_VALUE;
+            for (Entry candidate : node.entries) {
+                long area = candidate.area();
+                long enlargement = candidate.enlargedArea(entry) - area;
+                if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = candidate;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = best.child;
+        }
+        return node;
+    }
+
+    /**
+     * Propagates the changed bounding boxes and splits up to the root.
+     */
+    private void adjust(Node node, Node split) {
+        while (node != root) {
+            Node parent = node.parent;
+            parent.entryOf(node).fit(node);
+
+            Node parentSplit = null;
+            if (split != null) {
+                parent.add(new Entry(split));
+                if (parent.entries.size() > MAX_ENTRIES) {
+                    parentSplit = split(parent);
+                }
+            }
+            node = parent;
+            split = parentSplit;
+        }
+
+        if (split != null) {
+            Node newRoot = new Node(false);
+            newRoot.add(new Entry(root));
+            newRoot.add(new Entry(split));
+            root = newRoot;
+        }
+    }
+
+    /**
+     * Splits the overflowing node, keeping one group of entries and returning a new node with the other one.
+     */
+    private Node split(Node node) {
+        List<Entry> entries = new ArrayList<Entry>(node.entries);
+        node.entries.clear();
+        Node sibling = new Node(node.leaf);
+
+        // Linear pick seeds: the pair with the greatest normalized separation along either axis
+        int[] seeds = pickSeeds(entries);
+        Entry first = entries.get(seeds[0]);
+        Entry second = entries.get(seeds[1]);
+        entries.remove(Math.max(seeds[0], seeds[1]));
+        entries.remove(Math.min(seeds[0], seeds[1]));
+        node.add(first);
+        sibling.add(second);
+        Entry nodeBox = new Entry(first);
+        Entry siblingBox = new Entry(second);
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            int remaining = entries.size() - i;
+            if (node.entries.size() + remaining == MIN_ENTRIES) {
+                node.add(entry);
+                nodeBox.include(entry);
+            } else if (sibling.entries.size() + remaining == MIN_ENTRIES) {
+                sibling.add(entry);
+                siblingBox.include(entry);
+            } else if (nodeBox.enlargedArea(entry) - nodeBox.area() <= siblingBox.enlargedArea(entry) - siblingBox.area()) {
+                node.add(entry);
+                nodeBox.include(entry);
+            } else {
+                sibling.add(entry);
+                siblingBox.include(entry);
+            }
+        }
+        return sibling;
+    }
+
+    private int[] pickSeeds(List<Entry> entries) {
+        int lowestHighX = 0, highestLowX = 0, lowestHighY = 0, highestLowY = 0;
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.x2 < entries.get(lowestHighX).x2) {
+                lowestHighX = i;
+            }
+            if (entry.x1 > entries.get(highestLowX).x1) {
+                highestLowX = i;
+            }
+            if (entry.y2 < entries.get(lowestHighY).y2) {
+                lowestHighY = i;
+            }
+            if (entry.y1 > entries.get(highestLowY).y1) {
+                highestLowY = i;
+            }
+            minX = Math.min(minX, entry.x1);
+            maxX = Math.max(maxX, entry.x2);
+            minY = Math.min(minY, entry.y1);
+            maxY = Math.max(maxY, entry.y2);
+        }
+
+        double separationX = (double) (entries.get(highestLowX).x1 - entries.get(lowestHighX).x2) / Math.max(1, maxX - minX);
+        double separationY = (double) (entries.get(highestLowY).y1 - entries.get(lowestHighY).y2) / Math.max(1, maxY - minY);
+        int[] seeds = (separationX >= separationY) ? new int[]{lowestHighX, highestLowX} : new int[]{lowestHighY, highestLowY};
+        if (seeds[0] == seeds[1]) {
+            seeds[1] = (seeds[0] == 0) ? 1 : 0;
+        }
+        return seeds;
+    }
+
+    private class Node {
+
+        private final boolean leaf;
+
+        private final List<Entry> entries = new ArrayList<Entry>(MAX_ENTRIES + 1);
+
+        private Node parent;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Entry entry) {
+            entries.add(entry);
+            if (entry.child != null) {
+                entry.child.parent = this;
+            }
+        }
+
+        Entry entryOf(Node child) {
+            for (Entry entry : entries) {
+                if (entry.child == child) {
+                    return entry;
+                }
+            }
+            throw new IllegalStateException("Node is not a child of its parent.");
+        }
+    }
+
+    /**
+     * A rectangle, either of a value in a leaf or the bounding box of a child node.
+     */
+    private class Entry {
+
+        private int x1, y1, x2, y2;
+
+        private final V value;
+
+        private final Node child;
+
+        Entry(int x1, int y1, int x2, int y2, V value, Node child) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.value = value;
+            this.child = child;
+        }
+
+        Entry(Node child) {
+            this(0, 0, 0, 0, null, child);
+            fit(child);
+        }
+
+        /**
+         * Creates a bounding box initialized to the given rectangle.
+         */
+        Entry(Entry entry) {
+            this(entry.x1, entry.y1, entry.x2, entry.y2, null, null);
+        }
+
+        void fit(Node node) {
+            Entry first = node.entries.get(0);
+            x1 = first.x1;
+            y1 = first.y1;
+            x2 = first.x2;
+            y2 = first.y2;
+            for (Entry entry : node.entries) {
+                include(entry);
+            }
+        }
+
+        void include(Entry entry) {
+            x1 = Math.min(x1, entry.x1);
+            y1 = Math.min(y1, entry.y1);
+            x2 = Math.max(x2, entry.x2);
+            y2 = Math.max(y2, entry.y2);
+        }
+
+        long area() {
+            return (long) (x2 - x1) * (y2 - y1);
+        }
+
+        long enlargedArea(Entry entry) {
+            return (long) (Math.max(x2, entry.x2) - Math.min(x1, entry.x1)) * (Math.max(y2, entry.y2) - Math.min(y1, entry.y1));
+        }
+
+        boolean intersects(int x1, int y1, int x2, int y2) {
+            return this.x1 <= x2 && x1 <= this.x2 && this.y1 <= y2 && y1 <= this.y2;
+        }
+    }
+}
@@ -2,15 +2,10 @@ package eu.mico.platform.anno4j.model.impl.selector;
 
 import com.github.anno4j.model.impl.selector.FragmentSelector;
 import com.github.anno4j.model.impl.selector.FragmentSpecification;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.github.anno4j.model.impl.selector.MediaFragment;
 
 public class SpatialFragmentSelector extends FragmentSelector {
 
-    private Pattern pattern = Pattern.compile("#xywh=(\\d+),(\\d+),(\\d+),(\\d+)");
-
-
     public SpatialFragmentSelector() {
         this.setConformsToFragmentSpecification(FragmentSpecification.W3C_MEDIA_FRAGMENTS);
     }
@@ -21,7 +16,7 @@ public class SpatialFragmentSelector extends FragmentSelector {
     }
 
     public void setSpatialFragment(int x, int y, int width, int height) {
-        this.setValue("#xywh="+x+","+y+","+width+","+height);
+        this.setValue(MediaFragment.formatSpatial(x, y, width, height));
     }
 
     /**
@@ -30,11 +25,8 @@ public class SpatialFragmentSelector extends FragmentSelector {
      * @return The x coordinate of the fragment
      */
     public int getX() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(1));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial()) ? fragment.getX() : -1;
     }
 
     /**
@@ -43,11 +35,8 @@ public class SpatialFragmentSelector extends FragmentSelector {
      * @return The y coordinate of the fragment
      */
     public int getY() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(2));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial()) ? fragment.getY() : -1;
     }
 
     /**
@@ -56,11 +45,8 @@ public class SpatialFragmentSelector extends FragmentSelector {
      * @return The width of the fragment
      */
     public int getWidth() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(3));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial()) ? fragment.getWidth() : -1;
     }
 
     /**
@@ -69,10 +55,7 @@ public class SpatialFragmentSelector extends FragmentSelector {
      * @return The height of the fragment
      */
     public int getHeight() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(4));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial()) ? fragment.getHeight() : -1;
     }
 }
@@ -2,18 +2,13 @@ package eu.mico.platform.anno4j.model.impl.selector;
 
 import com.github.anno4j.model.impl.selector.FragmentSelector;
 import com.github.anno4j.model.impl.selector.FragmentSpecification;
-
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.github.anno4j.model.impl.selector.MediaFragment;
 
 /**
  * Spatial and temporal fragment selector which is conform to W3C Media Fragments specification
  */
 public class SpatialTemporalFragmentSelector extends FragmentSelector {
 
-    private Pattern pattern = Pattern.compile("#xywh=(\\d+),(\\d+),(\\d+),(\\d+)&t=npt:(\\d+.\\d+),(\\d+.\\d+)");
-
     /**
      * Default constructor
      */
@@ -45,7 +40,7 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @param end end of the temporal fragment in miliseconds
      */
     public void setSpatialTemporalFragment(int x, int y, int width, int height, int start, int end) {
-        this.setValue("#xywh="+x+","+y+","+width+","+height+"&t=npt:"+convertToTimeString(start)+","+convertToTimeString(end));
+        this.setValue(MediaFragment.formatSpatialTemporal(x, y, width, height, start, end));
     }
 
     /**
@@ -54,11 +49,8 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @return The x coordinate of the fragment
      */
     public int getX() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(1));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial() && fragment.hasTemporal()) ? fragment.getX() : -1;
     }
 
     /**
@@ -67,11 +59,8 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @return The y coordinate of the fragment
      */
     public int getY() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(2));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial() && fragment.hasTemporal()) ? fragment.getY() : -1;
     }
 
     /**
@@ -80,11 +69,8 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @return The width of the fragment
      */
     public int getWidth() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(3));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial() && fragment.hasTemporal()) ? fragment.getWidth() : -1;
     }
 
     /**
@@ -93,11 +79,8 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @return The height of the fragment
      */
     public int getHeight() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return Integer.parseInt(m.group(4));
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial() && fragment.hasTemporal()) ? fragment.getHeight() : -1;
     }
 
     /**
@@ -106,11 +89,8 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @return The start time of the fragment as miliseconds
      */
     public int getStart() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return (int) Float.parseFloat(m.group(5))*1000;
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial() && fragment.hasTemporal()) ? fragment.getStart() : -1;
     }
 
     /**
@@ -119,19 +99,8 @@ public class SpatialTemporalFragmentSelector extends FragmentSelector {
      * @return The end time of the fragment as miliseconds
      */
     public int getEnd() {
-        Matcher m = pattern.matcher(this.getValue());
-        if (m.matches()) {
-            return (int) Float.parseFloat(m.group(6))*1000;
-        }
-        return -1;
+        MediaFragment fragment = getMediaFragment();
+        return (fragment != null && fragment.hasSpatial() && fragment.hasTemporal()) ? fragment.getEnd() : -1;
     }
 
-    /**
-     * Converts miliseconds to a media fragment compatible string representation (e.g. 4556 ms -> 4.556)
-     * @param miliseconds
-     * @return timestamp as compatible media fragment string representation
-     */
-    private String convertToTimeString(int miliseconds) {
-        return String.format(Locale.US, "%.3f", (float)miliseconds/1000f);
-    }
 }
@@ -0,0 +1,38 @@
+package eu.mico.platform.anno4j.persistence;
+
+import com.github.anno4j.persistence.PersistenceService;
+import com.github.anno4j.sharding.ShardedObjectRepository;
+import eu.mico.platform.anno4j.index.FragmentIndex;
+import org.openrdf.model.URI;
+import org.openrdf.repository.object.ObjectRepository;
+
+/**
+ * Persistence service keeping a {@link eu.mico.platform.anno4j.index.FragmentIndex} up to date with the media
+ * fragments of the annotations it persists, updates and deletes. The index is registered as its listener.
+ */
+public class MICOPersistenceService extends PersistenceService {
+
+    private final FragmentIndex fragmentIndex;
+
+    public MICOPersistenceService(ObjectRepository objectRepository, FragmentIndex fragmentIndex) {
+        super(objectRepository);
+        this.fragmentIndex = fragmentIndex;
+        addListener(fragmentIndex);
+    }
+
+    public MICOPersistenceService(ObjectRepository objectRepository, URI graph, FragmentIndex fragmentIndex) {
+        super(objectRepository, graph);
+        this.fragmentIndex = fragmentIndex;
+        addListener(fragmentIndex);
+    }
+
+    public MICOPersistenceService(ShardedObjectRepository shardedRepository, URI graph, FragmentIndex fragmentIndex) {
+        super(shardedRepository, graph);
+        this.fragmentIndex = fragmentIndex;
+        addListener(fragmentIndex);
+    }
+
+    public FragmentIndex getFragmentIndex() {
+        return fragmentIndex;
+    }
+}
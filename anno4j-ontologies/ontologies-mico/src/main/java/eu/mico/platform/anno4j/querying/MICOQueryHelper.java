@@ -3,13 +3,16 @@ package eu.mico.platform.anno4j.querying;
 import com.github.anno4j.Anno4j;
 import com.github.anno4j.model.Annotation;
 import com.github.anno4j.model.namespaces.DCTERMS;
+import eu.mico.platform.anno4j.index.FragmentIndex;
 import eu.mico.platform.anno4j.model.namespaces.MICO;
+import eu.mico.platform.anno4j.persistence.MICOPersistenceService;
 import org.apache.marmotta.ldpath.parser.ParseException;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.repository.RepositoryException;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * The MICOQueryHelper provides shortcut functions to query specific items more easily,
@@ -24,6 +27,11 @@ public class MICOQueryHelper {
      */
     private static MICOQueryHelper instance = null;
 
+    /**
+     * Index of the media fragments of the annotation targets.
+     */
+    private final FragmentIndex fragmentIndex = new FragmentIndex();
+
     /**
      * Allows to query all annotation objects of a given content item.
      *
@@ -100,6 +108,85 @@ public class MICOQueryHelper {
                 .execute();
     }
 
+    /**
+     * Allows to query for all annotations with a temporal fragment of the given source overlapping the time range,
+     * e.g. the annotations of seconds 120 to 130 of a video. Uses the fragment index instead of the store.
+     *
+     * @param sourceId The id (url) of the source, e.g. the video.
+     * @param start    Start of the time range in miliseconds.
+     * @param end      End of the time range in miliseconds.
+     * @return The ids of the matching annotations.
+     */
+    public Set<String> getAnnotationsInTimeRange(String sourceId, int start, int end) {
+        return fragmentIndex.findTemporal(sourceId, start, end);
+    }
+
+    /**
+     * Allows to query for all annotations with a spatial fragment of the given source intersecting the region.
+     * Uses the fragment index instead of the store.
+     *
+     * @param sourceId The id (url) of the source, e.g. the image.
+     * @param x        x-coordinate of the region as absolute pixel.
+     * @param y        y-coordinate of the region as absolute pixel.
+     * @param width    width of the region.
+     * @param height   height of the region.
+     * @return The ids of the matching annotations.
+     */
+    public Set<String> getAnnotationsInRegion(String sourceId, int x, int y, int width, int height) {
+        return fragmentIndex.findSpatial(sourceId, x, y, width, height);
+    }
+
+    /**
+     * Allows to query for all annotations with a spatial and temporal fragment of the given source intersecting the
+     * region during the time range. Uses the fragment index instead of the store.
+     *
+     * @param sourceId The id (url) of the source, e.g. the video.
+     * @param x        x-coordinate of the region as absolute pixel.
+     * @param y        y-coordinate of the region as absolute pixel.
+     * @param width    width of the region.
+     * @param height   height of the region.
+     * @param start    Start of the time range in miliseconds.
+     * @param end      End of the time range in miliseconds.
+     * @return The ids of the matching annotations.
+     */
+    public Set<String> getAnnotationsInRegionAndTimeRange(String sourceId, int x, int y, int width, int height, int start, int end) {
+        return fragmentIndex.findSpatialTemporal(sourceId, x, y, width, height, start, end);
+    }
+
+    /**
+     * Creates a persistence service for the current Anno4j repository, which adds the media fragments of the
+     * persisted annotations to the fragment index.
+     *
+     * @return The persistence service.
+     */
+    public MICOPersistenceService createPersistenceService() {
+        Anno4j anno4j = Anno4j.getInstance();
+        if (anno4j.getShardedRepository() != null) {
+            return new MICOPersistenceService(anno4j.getShardedRepository(), null, fragmentIndex);
+        }
+        return new MICOPersistenceService(anno4j.getObjectRepository(), fragmentIndex);
+    }
+
+    /**
+     * Rebuilds the fragment index from the annotations of the current Anno4j repository, e.g. after a restart.
+     *
+     * @throws RepositoryException
+     * @throws QueryEvaluationException
+     * @throws MalformedQueryException
+     */
+    public void rebuildFragmentIndex() throws RepositoryException, QueryEvaluationException, MalformedQueryException {
+        fragmentIndex.rebuild();
+    }
+
+    /**
+     * Getter for the index of the media fragments of the annotation targets.
+     *
+     * @return The fragment index.
+     */
+    public FragmentIndex getFragmentIndex() {
+        return fragmentIndex;
+    }
+
     /**
      * Getter for the Anno4j getter instance.
      *
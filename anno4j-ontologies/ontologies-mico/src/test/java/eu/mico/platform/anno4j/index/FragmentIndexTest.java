@@ -0,0 +1,124 @@
+package eu.mico.platform.anno4j.index;
+
+import com.github.anno4j.Anno4j;
+import com.github.anno4j.model.Annotation;
+import com.github.anno4j.model.impl.ResourceObject;
+import com.github.anno4j.model.impl.selector.FragmentSelector;
+import com.github.anno4j.model.impl.target.SpecificResource;
+import com.github.anno4j.querying.Comparison;
+import com.github.anno4j.querying.Criteria;
+import eu.mico.platform.anno4j.persistence.MICOPersistenceService;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests indexing the media fragments of persisted annotations and rebuilding the index from the store
+ */
+public class FragmentIndexTest {
+
+    private static final String VIDEO = "http://www.example.com/video";
+
+    private FragmentIndex index;
+
+    private MICOPersistenceService persistenceService;
+
+    private String face, car, intro;
+
+    @Before
+    public void setUp() throws Exception {
+        SailRepository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        Anno4j.getInstance().setRepository(repository);
+
+        index = new FragmentIndex();
+        persistenceService = new MICOPersistenceService(Anno4j.getInstance().getObjectRepository(), index);
+
+        face = persist(VIDEO, "xywh=10,20,100,50&t=npt:10.000,20.000");
+        car = persist(VIDEO, "xywh=500,500,100,100&t=npt:15.000,25.000");
+        intro = persist(VIDEO, "t=npt:0.000,5.000");
+        persist("http://www.example.com/image", "xywh=10,20,100,50");
+    }
+
+    @Test
+    public void persistTest() throws Exception {
+        assertEquals(4, index.size());
+        assertFindings();
+    }
+
+    @Test
+    public void rebuildTest() throws Exception {
+        FragmentIndex rebuilt = new FragmentIndex();
+        rebuilt.rebuild(Anno4j.getInstance().getObjectRepository());
+
+        assertEquals(4, rebuilt.size());
+        index = rebuilt;
+        assertFindings();
+
+        rebuilt.clear();
+        rebuilt.rebuild();
+        assertEquals(4, rebuilt.size());
+    }
+
+    @Test
+    public void removeTest() throws Exception {
+        index.remove(face);
+        index.remove(intro);
+
+        assertEquals(2, index.size());
+        assertEquals(Collections.singleton(car), index.findTemporal(VIDEO, 0, 30000));
+        assertEquals(Collections.singleton(car), index.findSpatial(VIDEO, 0, 0, 1000, 1000));
+        assertTrue(index.findSpatialTemporal(VIDEO, 0, 0, 200, 200, 0, 30000).isEmpty());
+    }
+
+    @Test
+    public void deleteTest() throws Exception {
+        assertEquals(4, index.size());
+        persistenceService.deleteWhere(new Criteria("oa:hasTarget/oa:hasSelector/rdf:value", "t=npt:0.000,5.000", Comparison.EQ));
+
+        assertEquals(3, index.size());
+        assertTrue(index.findTemporal(VIDEO, 0, 1000).isEmpty());
+        assertEquals(Collections.singleton(face), index.findSpatial(VIDEO, 50, 50, 10, 10));
+    }
+
+    @Test
+    public void updateAnnotationTest() throws Exception {
+        assertEquals(4, index.size());
+        Annotation annotation = new Annotation();
+        annotation.setResource(new URIImpl(car));
+        annotation.setTarget(new SpecificResource(new ResourceObject(VIDEO), new FragmentSelector("t=npt:1.000,2.000", "http://www.w3.org/TR/media-frags/")));
+        persistenceService.updateAnnotation(annotation);
+
+        assertEquals(Collections.singleton(face), index.findTemporal(VIDEO, 16000, 17000));
+        assertEquals(new HashSet<String>(Arrays.asList(car, intro)), index.findTemporal(VIDEO, 1500, 1600));
+        assertTrue(index.findSpatial(VIDEO, 550, 550, 10, 10).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    private void assertFindings() {
+        assertEquals(new HashSet<String>(Arrays.asList(face, car)), index.findTemporal(VIDEO, 16000, 17000));
+        assertEquals(Collections.singleton(intro), index.findTemporal(VIDEO, 0, 1000));
+        assertEquals(Collections.singleton(face), index.findSpatial(VIDEO, 50, 50, 10, 10));
+
+        // Both fragments overlap the time range, only the face lies within the region
+        assertEquals(Collections.singleton(face), index.findSpatialTemporal(VIDEO, 0, 0, 200, 200, 16000, 17000));
+        // The car lies within the region, but not during the time range
+        assertTrue(index.findSpatialTemporal(VIDEO, 450, 450, 200, 200, 0, 12000).isEmpty());
+    }
+
+    private String persist(String source, String fragment) throws Exception {
+        Annotation annotation = new Annotation();
+        annotation.setTarget(new SpecificResource(new ResourceObject(source), new FragmentSelector(fragment, "http://www.w3.org/TR/media-frags/")));
+        persistenceService.persistAnnotation(annotation);
+        return annotation.getResource().stringValue();
+    }
+}
@@ -0,0 +1,112 @@
+package eu.mico.platform.anno4j.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the overlap queries of the interval tree with a linear scan, before and after removing intervals
+ */
+public class IntervalTreeTest {
+
+    @Test
+    public void overlapTest() {
+        IntervalTree<String> tree = new IntervalTree<String>();
+        tree.insert(0, 10, "a");
+        tree.insert(5, 15, "b");
+        tree.insert(20, 30, "c");
+
+        assertEquals(set("a", "b"), find(tree, 8, 12));
+        assertEquals(set("a"), find(tree, 0, 4));
+        assertEquals(set("b", "c"), find(tree, 15, 20));
+        assertEquals(set(), find(tree, 16, 19));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    public void removeTest() {
+        IntervalTree<String> tree = new IntervalTree<String>();
+        tree.insert(0, 10, "a");
+        tree.insert(0, 20, "b");
+        tree.insert(0, 30, "c");
+
+        assertTrue(tree.remove(0, "b"));
+        assertFalse(tree.remove(0, "b"));
+        assertFalse(tree.remove(5, "a"));
+        assertEquals(2, tree.size());
+        assertEquals(set("c"), find(tree, 15, 20));
+        assertEquals(set("a", "c"), find(tree, 0, 0));
+    }
+
+    @Test
+    public void randomTest() {
+        Random random = new Random(42);
+        IntervalTree<Interval> tree = new IntervalTree<Interval>();
+        List<Interval> intervals = new ArrayList<Interval>();
+        for (int i = 0; i < 2000; i++) {
+            // Few distinct starts, so many intervals share their start
+            int start = random.nextInt(500);
+            Interval interval = new Interval(start, start + random.nextInt(100));
+            intervals.add(interval);
+            tree.insert(interval.start, interval.end, interval);
+        }
+        assertQueries(random, tree, intervals);
+
+        for (int i = 0; i < 1000; i++) {
+            Interval interval = intervals.remove(random.nextInt(intervals.size()));
+            assertTrue(tree.remove(interval.start, interval));
+        }
+        assertEquals(intervals.size(), tree.size());
+        assertQueries(random, tree, intervals);
+    }
+
+    private static void assertQueries(Random random, IntervalTree<Interval> tree, List<Interval> intervals) {
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(600);
+            int end = start + random.nextInt(50);
+
+            Set<Interval> expected = new HashSet<Interval>();
+            for (Interval interval : intervals) {
+                if (interval.start <= end && start <= interval.end) {
+                    expected.add(interval);
+                }
+            }
+            List<Interval> results = new ArrayList<Interval>();
+            tree.findOverlapping(start, end, results);
+            assertEquals(expected.size(), results.size());
+            assertEquals(expected, new HashSet<Interval>(results));
+        }
+    }
+
+    private static Set<String> find(IntervalTree<String> tree, int start, int end) {
+        List<String> results = new ArrayList<String>();
+        tree.findOverlapping(start, end, results);
+        return new HashSet<String>(results);
+    }
+
+    private static Set<String> set(String... values) {
+        Set<String> set = new HashSet<String>();
+        for (String value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    private static class Interval {
+
+        private final int start, end;
+
+        Interval(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
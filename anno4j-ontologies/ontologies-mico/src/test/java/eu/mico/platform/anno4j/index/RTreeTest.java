@@ -0,0 +1,95 @@
+package eu.mico.platform.anno4j.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the intersection queries of the R-tree with a linear scan, with enough rectangles to split the nodes
+ */
+public class RTreeTest {
+
+    @Test
+    public void searchTest() {
+        RTree<String> tree = new RTree<String>();
+        tree.insert(0, 0, 9, 9, "a");
+        tree.insert(5, 5, 14, 14, "b");
+        tree.insert(20, 20, 29, 29, "c");
+
+        List<String> results = new ArrayList<String>();
+        tree.findIntersecting(8, 8, 12, 12, results);
+        assertEquals(2, results.size());
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b")), new HashSet<String>(results));
+
+        results.clear();
+        tree.findIntersecting(15, 15, 19, 19, results);
+        assertEquals(0, results.size());
+    }
+
+    @Test
+    public void splitTest() {
+        Random random = new Random(42);
+        RTree<Rectangle> tree = new RTree<Rectangle>();
+        List<Rectangle> rectangles = new ArrayList<Rectangle>();
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(1920);
+            int y = random.nextInt(1080);
+            Rectangle rectangle = new Rectangle(x, y, x + random.nextInt(200), y + random.nextInt(200));
+            rectangles.add(rectangle);
+            tree.insert(rectangle.x1, rectangle.y1, rectangle.x2, rectangle.y2, rectangle);
+        }
+        assertEquals(rectangles.size(), tree.size());
+
+        for (int i = 0; i < 200; i++) {
+            int x = random.nextInt(1920);
+            int y = random.nextInt(1080);
+            assertSearch(tree, rectangles, x, y, x + random.nextInt(300), y + random.nextInt(300));
+        }
+    }
+
+    @Test
+    public void identicalRectanglesTest() {
+        RTree<Rectangle> tree = new RTree<Rectangle>();
+        List<Rectangle> rectangles = new ArrayList<Rectangle>();
+        for (int i = 0; i < 100; i++) {
+            Rectangle rectangle = new Rectangle(10, 10, 20, 20);
+            rectangles.add(rectangle);
+            tree.insert(10, 10, 20, 20, rectangle);
+        }
+
+        assertSearch(tree, rectangles, 20, 20, 30, 30);
+        assertSearch(tree, rectangles, 21, 21, 30, 30);
+    }
+
+    private static void assertSearch(RTree<Rectangle> tree, List<Rectangle> rectangles, int x1, int y1, int x2, int y2) {
+        Set<Rectangle> expected = new HashSet<Rectangle>();
+        for (Rectangle rectangle : rectangles) {
+            if (rectangle.x1 <= x2 && x1 <= rectangle.x2 && rectangle.y1 <= y2 && y1 <= rectangle.y2) {
+                expected.add(rectangle);
+            }
+        }
+        List<Rectangle> results = new ArrayList<Rectangle>();
+        tree.findIntersecting(x1, y1, x2, y2, results);
+        assertEquals(expected.size(), results.size());
+        assertEquals(expected, new HashSet<Rectangle>(results));
+    }
+
+    private static class Rectangle {
+
+        private final int x1, y1, x2, y2;
+
+        Rectangle(int x1, int y1, int x2, int y2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+    }
+}